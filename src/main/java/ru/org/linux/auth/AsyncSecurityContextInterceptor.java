@@ -0,0 +1,65 @@
+/*
+ * Copyright 1998-2012 Linux.org.ru
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.org.linux.auth;
+
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Перенос SecurityContext в асинхронный dispatch.
+ *
+ * Фильтры Spring Security 3.1 не обрабатывают async dispatch, и ответ
+ * асинхронного запроса пишется с пустым SecurityContextHolder. Обертка ответа
+ * при сбросе буфера сохранила бы пустой контекст в сессию и разлогинила
+ * пользователя, поэтому восстанавливаем контекст исходного запроса.
+ */
+public class AsyncSecurityContextInterceptor extends HandlerInterceptorAdapter implements AsyncHandlerInterceptor {
+  private static final String ATTRIBUTE = AsyncSecurityContextInterceptor.class.getName() + ".context";
+  private static final String RESTORED = AsyncSecurityContextInterceptor.class.getName() + ".restored";
+
+  @Override
+  public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+    if (request.getDispatcherType() == DispatcherType.ASYNC) {
+      SecurityContext context = (SecurityContext) request.getAttribute(ATTRIBUTE);
+
+      if (context != null) {
+        SecurityContextHolder.setContext(context);
+        request.setAttribute(RESTORED, Boolean.TRUE);
+      }
+    }
+
+    return true;
+  }
+
+  @Override
+  public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+    request.setAttribute(ATTRIBUTE, SecurityContextHolder.getContext());
+  }
+
+  @Override
+  public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+    if (request.getAttribute(RESTORED) != null) {
+      request.removeAttribute(RESTORED);
+      SecurityContextHolder.clearContext();
+    }
+  }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 1998-2012 Linux.org.ru
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.org.linux.auth;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableSet;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.web.authentication.rememberme.TokenBasedRememberMeServices;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remember-me с кешированием проверенных пользователей.
+ *
+ * Сессии не создаются, поэтому cookie проверяется на каждом запросе. Успешно
+ * проверенный пользователь (вместе с правами и профилем) кладется в кеш
+ * Principals по id пользователя; запись сбрасывается теми же @CacheEvict,
+ * что и кеш Users, а также при записи профиля. Повторный запрос с той же
+ * cookie (ник, срок действия и подпись) не обращается к базе.
+ *
+ * Кеш Principals локален для узла. При выходе, смене пароля или блокировке
+ * запись сбрасывается только на узле, где это произошло; на остальных узлах
+ * старая cookie продолжает приниматься, пока запись не истечет по
+ * timeToLiveSeconds кеша Principals (5 минут, ehcache.xml).
+ */
+public class CachedRememberMeServices extends TokenBasedRememberMeServices {
+  private static final String CACHE_NAME = "Principals";
+  private static final int MAX_TOKENS = 8;
+
+  private Cache cache;
+
+  /**
+   * ник -> id, ник пользователя не меняется
+   */
+  private final com.google.common.cache.Cache<String, Integer> userIds = CacheBuilder.newBuilder()
+          .maximumSize(10000)
+          .expireAfterWrite(1, TimeUnit.HOURS)
+          .build();
+
+  public CachedRememberMeServices(String key, UserDetailsService userDetailsService) {
+    super(key, userDetailsService);
+  }
+
+  public void setCacheManager(CacheManager cacheManager) {
+    cache = cacheManager.getCache(CACHE_NAME);
+  }
+
+  @Override
+  protected UserDetails processAutoLoginCookie(String[] cookieTokens, HttpServletRequest request, HttpServletResponse response) {
+    String token = cookieTokens.length == 3 ? cookieTokens[0] + ':' + cookieTokens[1] + ':' + cookieTokens[2] : null;
+
+    if (token != null) {
+      UserDetails cached = getCached(cookieTokens[0], cookieTokens[1], token);
+
+      if (cached != null) {
+        return cached;
+      }
+    }
+
+    UserDetails details = super.processAutoLoginCookie(cookieTokens, request, response);
+
+    if (token != null && details instanceof UserDetailsImpl) {
+      int id = ((UserDetailsImpl) details).getUser().getId();
+
+      userIds.put(cookieTokens[0], id);
+
+      Cache.ValueWrapper current = cache.get(id);
+
+      ImmutableSet<String> tokens;
+
+      if (current != null && ((CachedPrincipal) current.get()).tokens.size() < MAX_TOKENS) {
+        tokens = ImmutableSet.<String>builder().addAll(((CachedPrincipal) current.get()).tokens).add(token).build();
+      } else {
+        tokens = ImmutableSet.of(token);
+      }
+
+      cache.put(id, new CachedPrincipal(tokens, (UserDetailsImpl) details));
+    }
+
+    return details;
+  }
+
+  private UserDetails getCached(String nick, String expiry, String token) {
+    Integer id = userIds.getIfPresent(nick);
+
+    if (id == null) {
+      return null;
+    }
+
+    try {
+      if (isTokenExpired(Long.parseLong(expiry))) {
+        return null;
+      }
+    } catch (NumberFormatException ex) {
+      return null;
+    }
+
+    Cache.ValueWrapper value = cache.get(id);
+
+    if (value == null) {
+      return null;
+    }
+
+    CachedPrincipal principal = (CachedPrincipal) value.get();
+
+    if (!principal.tokens.contains(token)) {
+      return null;
+    }
+
+    return principal.details;
+  }
+
+  private static class CachedPrincipal {
+    /**
+     * cookie, с которыми пользователь уже проверен (с нескольких устройств)
+     */
+    private final ImmutableSet<String> tokens;
+    private final UserDetailsImpl details;
+
+    private CachedPrincipal(ImmutableSet<String> tokens, UserDetailsImpl details) {
+      this.tokens = tokens;
+      this.details = details;
+    }
+  }
+}
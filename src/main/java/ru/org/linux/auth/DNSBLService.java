@@ -0,0 +1,250 @@
+/*
+ * Copyright 1998-2012 Linux.org.ru
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.org.linux.auth;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.stereotype.Service;
+import ru.org.linux.util.DNSBLClient;
+import ru.org.linux.util.DNSBLResolver;
+
+import javax.annotation.PreDestroy;
+import java.net.UnknownHostException;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Проверка адресов по tor.ahbl.org.
+ *
+ * Результаты кешируются с учетом TTL записи, проверка запускается в фоне
+ * при показе формы ({@link #prefetch(String)}), так что к моменту отправки
+ * формы ответ обычно уже есть. Если DNS сервер не отвечает или отвечает
+ * медленно, проверки на время отключаются.
+ */
+@Service
+public class DNSBLService {
+  private static final Log logger = LogFactory.getLog(DNSBLService.class);
+
+  public static final String TOR_ZONE = "tor.ahbl.org";
+
+  private static final int RESOLVER_TIMEOUT_SEC = 3;
+
+  /**
+   * Сколько запрос отправки формы ждет ответа DNS, мс
+   */
+  private static final int WAIT_TIMEOUT = 2000;
+
+  /**
+   * Ответ дольше SLOW_LOOKUP мс считается сбоем
+   */
+  private static final int SLOW_LOOKUP = 1000;
+
+  private static final int NEGATIVE_TTL = 30 * 60;
+  private static final int MAX_TTL = 6 * 60 * 60;
+
+  /**
+   * Сколько проверок может ждать свободного потока; остальные отбрасываются
+   */
+  private static final int QUEUE_SIZE = 100;
+
+  private static final int BREAKER_FAILURES = 5;
+  private static final int BREAKER_OPEN_TIME = 60 * 1000;
+
+  private volatile DNSBLResolver resolver;
+
+  private final Cache<String, Entry> cache = CacheBuilder.newBuilder()
+          .maximumSize(100000)
+          .expireAfterWrite(MAX_TTL, TimeUnit.SECONDS)
+          .build();
+
+  private final ConcurrentMap<String, Future<Boolean>> inflight = new ConcurrentHashMap<>();
+
+  private final ExecutorService executor = new ThreadPoolExecutor(
+          2, 2,
+          0L, TimeUnit.MILLISECONDS,
+          new ArrayBlockingQueue<Runnable>(QUEUE_SIZE),
+          new DiscardLookupPolicy()
+  );
+
+  private final AtomicInteger failures = new AtomicInteger();
+  private volatile long breakerOpenUntil = 0;
+
+  private static class Entry {
+    private final boolean listed;
+    private final long expires;
+
+    private Entry(boolean listed, int ttl) {
+      this.listed = listed;
+      expires = System.currentTimeMillis() + ttl * 1000L;
+    }
+
+    private boolean isExpired() {
+      return System.currentTimeMillis() > expires;
+    }
+  }
+
+  /**
+   * Отброшенная проверка отменяется, чтобы ожидающий ее запрос сразу получил ответ
+   * и адрес освободился в inflight
+   */
+  private static class DiscardLookupPolicy extends ThreadPoolExecutor.DiscardPolicy {
+    @Override
+    public void rejectedExecution(Runnable r, ThreadPoolExecutor e) {
+      if (r instanceof Future) {
+        ((Future<?>) r).cancel(false);
+      }
+    }
+  }
+
+  public DNSBLService() throws UnknownHostException {
+    resolver = new DNSBLClient(TOR_ZONE, RESOLVER_TIMEOUT_SEC);
+  }
+
+  /**
+   * Заменить DNS клиент, например заглушкой в тестах
+   */
+  public void setResolver(DNSBLResolver resolver) {
+    this.resolver = resolver;
+    cache.invalidateAll();
+  }
+
+  /**
+   * Запустить проверку адреса в фоне
+   */
+  public void prefetch(String addr) {
+    if (getCached(addr) == null && !isBreakerOpen()) {
+      startLookup(addr);
+    }
+  }
+
+  /**
+   * Проверить адрес. Если DNS недоступен или не успел ответить, адрес считается
+   * не попавшим в список.
+   */
+  public boolean isListed(String addr) {
+    Entry entry = getCached(addr);
+
+    if (entry != null) {
+      return entry.listed;
+    }
+
+    if (isBreakerOpen()) {
+      return false;
+    }
+
+    try {
+      return startLookup(addr).get(WAIT_TIMEOUT, TimeUnit.MILLISECONDS);
+    } catch (TimeoutException ex) {
+      // сбой засчитает сама проверка, когда закончится
+      logger.warn("DNSBL lookup timeout for "+addr);
+      return false;
+    } catch (CancellationException ex) {
+      return false;
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      return false;
+    } catch (ExecutionException ex) {
+      return false;
+    }
+  }
+
+  private Entry getCached(String addr) {
+    Entry entry = cache.getIfPresent(addr);
+
+    if (entry != null && entry.isExpired()) {
+      cache.invalidate(addr);
+      return null;
+    }
+
+    return entry;
+  }
+
+  private Future<Boolean> startLookup(final String addr) {
+    Future<Boolean> current = inflight.get(addr);
+
+    if (current != null) {
+      return current;
+    }
+
+    FutureTask<Boolean> task = new FutureTask<Boolean>(new Callable<Boolean>() {
+      @Override
+      public Boolean call() throws Exception {
+        return lookup(addr);
+      }
+    }) {
+      @Override
+      protected void done() {
+        inflight.remove(addr, this);
+      }
+    };
+
+    current = inflight.putIfAbsent(addr, task);
+
+    if (current != null) {
+      return current;
+    }
+
+    executor.execute(task);
+
+    return task;
+  }
+
+  private boolean lookup(String addr) throws Exception {
+    long start = System.currentTimeMillis();
+
+    int ttl;
+
+    try {
+      ttl = resolver.lookup(addr);
+    } catch (Exception ex) {
+      logger.warn("DNSBL lookup failed for "+addr+": "+ex.toString());
+      registerFailure();
+      throw ex;
+    }
+
+    if (System.currentTimeMillis() - start > SLOW_LOOKUP) {
+      registerFailure();
+    } else {
+      failures.set(0);
+    }
+
+    boolean listed = ttl != DNSBLResolver.NOT_LISTED;
+
+    cache.put(addr, new Entry(listed, listed ? Math.min(ttl, MAX_TTL) : NEGATIVE_TTL));
+
+    return listed;
+  }
+
+  private void registerFailure() {
+    if (failures.incrementAndGet() >= BREAKER_FAILURES) {
+      logger.warn("DNSBL is slow, disabling checks for "+BREAKER_OPEN_TIME/1000+" seconds");
+
+      breakerOpenUntil = System.currentTimeMillis() + BREAKER_OPEN_TIME;
+      failures.set(0);
+    }
+  }
+
+  public boolean isBreakerOpen() {
+    return System.currentTimeMillis() < breakerOpenUntil;
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+}
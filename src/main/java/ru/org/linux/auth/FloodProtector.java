@@ -15,31 +15,31 @@
 
 package ru.org.linux.auth;
 
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
-import org.joda.time.DateTime;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.validation.Errors;
+import ru.org.linux.spring.Configuration;
 
-import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
 
 @Component
 public class FloodProtector {
-  private final Cache<String,DateTime> hash =
-          CacheBuilder.newBuilder()
-                  .expireAfterWrite(30, TimeUnit.MINUTES)
-                  .maximumSize(100000)
-                  .build();
+  @Autowired
+  private Configuration configuration;
+
+  private FloodStore store = new LocalFloodStore();
 
   public enum Action {
-    ADD_COMMENT(30000, 3000) , ADD_TOPIC(600000, 30000);
+    ADD_COMMENT(30000, 3000, 1) , ADD_TOPIC(600000, 30000, 1);
 
     private final int threshold;
     private final int thresholdTrusted;
+    private final int burst;
 
-    private Action(int threshold, int thresholdTrusted) {
+    private Action(int threshold, int thresholdTrusted, int burst) {
       this.threshold = threshold;
       this.thresholdTrusted = thresholdTrusted;
+      this.burst = burst;
     }
 
     public int getThreshold() {
@@ -49,28 +49,26 @@ public class FloodProtector {
     public int getThresholdTrusted() {
       return thresholdTrusted;
     }
-  }
-
-  private boolean check(Action action, String ip, int threshold) {
-    String key = action.toString() + ':' + ip;
-
-    DateTime date = hash.getIfPresent(key);
 
-    if (date!=null) {
-      if (date.plusMillis(threshold).isAfterNow()) {
-        return false;
-      }
+    /**
+     * @return сколько сообщений можно отправить подряд
+     */
+    public int getBurst() {
+      return burst;
     }
+  }
 
-    hash.put(key, new DateTime());
-
-    return true;
+  @PostConstruct
+  public void init() {
+    if (Configuration.FLOOD_STORE_MEMCACHED.equals(configuration.getFloodStore())) {
+      store = new MemCachedFloodStore(store);
+    }
   }
 
   public void checkDuplication(Action action, String ip, boolean trusted, Errors errors) {
     int threshold = trusted?action.getThresholdTrusted():action.getThreshold();
 
-    if (!check(action, ip, threshold)) {
+    if (!store.tryAcquire(action, ip, threshold, action.getBurst())) {
       errors.reject(
               null,
               String.format("Следующее сообщение может быть записано не менее чем через %d секунд после предыдущего", threshold/1000)
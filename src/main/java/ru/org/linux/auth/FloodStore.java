@@ -0,0 +1,35 @@
+/*
+ * Copyright 1998-2012 Linux.org.ru
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.org.linux.auth;
+
+/**
+ * Хранилище счетчиков защиты от флуда.
+ *
+ * Ограничение работает как token bucket: в ведро помещается burst сообщений,
+ * одно сообщение восстанавливается за interval мс.
+ */
+public interface FloodStore {
+  /**
+   * Попытаться выполнить действие
+   *
+   * @param action действие
+   * @param ip адрес клиента
+   * @param interval время восстановления одного сообщения, мс
+   * @param burst сколько сообщений можно отправить подряд
+   * @return true если действие разрешено
+   */
+  boolean tryAcquire(FloodProtector.Action action, String ip, int interval, int burst);
+}
@@ -15,64 +15,101 @@
 
 package ru.org.linux.auth;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Repository;
 import org.springframework.validation.Errors;
-import org.xbill.DNS.TextParseException;
 import ru.org.linux.user.User;
-import ru.org.linux.util.DNSBLClient;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import javax.annotation.PostConstruct;
 import javax.sql.DataSource;
-import java.net.UnknownHostException;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
-import java.util.List;
 
+/**
+ * Баны по IP адресам и подсетям.
+ *
+ * Таблица b_ips целиком держится в памяти в виде {@link IPBlockTable}, которая
+ * перестраивается при изменении банов и периодически перечитывается, чтобы
+ * подхватить изменения, сделанные на других узлах.
+ */
 @Repository
 public class IPBlockDao {
+  private static final Log logger = LogFactory.getLog(IPBlockDao.class);
+
+  private static final int TEN_MINS = 10 * 60 * 1000;
+
+  private static final String queryAll =
+          "SELECT ip, reason, ban_date, date, mod_id, allow_posting, captcha_required FROM b_ips";
+
   private JdbcTemplate jdbcTemplate;
 
+  @Autowired
+  private DNSBLService dnsblService;
+
+  private volatile IPBlockTable table = IPBlockTable.builder().build();
+
   @Autowired
   public void setDataSource(DataSource ds) {
     jdbcTemplate = new JdbcTemplate(ds);
   }
 
+  @PostConstruct
+  @Scheduled(fixedDelay = TEN_MINS, initialDelay = TEN_MINS)
+  public void reload() {
+    final IPBlockTable.Builder builder = IPBlockTable.builder();
+
+    jdbcTemplate.query(queryAll, new RowCallbackHandler() {
+      @Override
+      public void processRow(ResultSet rs) throws SQLException {
+        IPBlockInfo info = new IPBlockInfo(rs);
+
+        try {
+          builder.add(info.getIp(), info);
+        } catch (IllegalArgumentException ex) {
+          logger.warn("Bad b_ips entry: "+info.getIp());
+        }
+      }
+    });
+
+    table = builder.build();
+  }
+
   public IPBlockInfo getBlockInfo(String addr) {
-    List<IPBlockInfo> list = jdbcTemplate.query(
-            "SELECT ip, reason, ban_date, date, mod_id, allow_posting, captcha_required FROM b_ips WHERE ip = ?::inet",
-            new RowMapper<IPBlockInfo>() {
-              @Override
-              public IPBlockInfo mapRow(ResultSet rs, int rowNum) throws SQLException {
-                return new IPBlockInfo(rs);
-              }
-            },
-            addr
-    );
+    IPBlockInfo info = table.lookup(addr);
 
-    if (list.isEmpty()) {
+    if (info == null) {
       return new IPBlockInfo(addr);
+    } else if (info.getIp().equals(addr)) {
+      return info;
     } else {
-      return list.get(0);
+      return new IPBlockInfo(addr, info);
     }
   }
 
-  public static boolean getTor(String addr) throws TextParseException, UnknownHostException {
-    DNSBLClient dnsbl = new DNSBLClient("tor.ahbl.org");
-    return (dnsbl.checkIP(addr));
+  public boolean getTor(String addr) {
+    return dnsblService.isListed(addr);
+  }
+
+  /**
+   * Начать проверку адреса по DNSBL заранее, при показе формы
+   */
+  public void prefetchTor(String addr) {
+    dnsblService.prefetch(addr);
   }
 
-  public void checkBlockIP(@Nonnull String addr, @Nonnull Errors errors, @Nullable User user)
-          throws UnknownHostException, TextParseException {
+  public void checkBlockIP(@Nonnull String addr, @Nonnull Errors errors, @Nullable User user) {
     checkBlockIP(getBlockInfo(addr), errors, user);
   }
 
-  public static void checkBlockIP(@Nonnull IPBlockInfo block, @Nonnull Errors errors, @Nullable User user)
-    throws UnknownHostException, TextParseException {
+  public void checkBlockIP(@Nonnull IPBlockInfo block, @Nonnull Errors errors, @Nullable User user) {
     if (getTor(block.getIp())) {
       errors.reject(null, "Постинг заблокирован: tor.ahbl.org");
     }
@@ -82,11 +119,25 @@ public class IPBlockDao {
     }
   }
 
+  /**
+   * Забанить адрес или подсеть
+   *
+   * @param ip адрес ("1.2.3.4") или подсеть ("1.2.3.0/24")
+   */
   public void blockIP(String ip, User moderator, String reason, Timestamp ts,
                       boolean allow_posting, boolean captcha_required) {
-    IPBlockInfo blockInfo = getBlockInfo(ip);
+    int updated = jdbcTemplate.update(
+            "UPDATE b_ips SET mod_id=?,date=CURRENT_TIMESTAMP, reason=?, ban_date=?, allow_posting=?, captcha_required=?"+
+              " WHERE ip=?::inet",
+            moderator.getId(),
+            reason,
+            ts,
+            allow_posting,
+            captcha_required,
+            ip
+    );
 
-    if (!blockInfo.isInitialized()) {
+    if (updated == 0) {
       jdbcTemplate.update(
               "INSERT INTO b_ips (ip, mod_id, date, reason, ban_date, allow_posting, captcha_required)"+
                 " VALUES (?::inet, ?, CURRENT_TIMESTAMP, ?, ?, ?, ?)",
@@ -97,17 +148,8 @@ public class IPBlockDao {
               allow_posting,
               captcha_required
       );
-    } else {
-      jdbcTemplate.update(
-              "UPDATE b_ips SET mod_id=?,date=CURRENT_TIMESTAMP, reason=?, ban_date=?, allow_posting=?, captcha_required=?"+
-                " WHERE ip=?::inet",
-              moderator.getId(),
-              reason,
-              ts,
-              allow_posting,
-              captcha_required,
-              ip
-      );
     }
+
+    reload();
   }
 }
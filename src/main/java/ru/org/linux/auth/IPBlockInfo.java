@@ -41,6 +41,35 @@ public class IPBlockInfo {
     initialized = false;
   }
 
+  public IPBlockInfo(String ip, String reason, Timestamp banDate, Timestamp originalDate,
+                     int moderator, boolean allowPosting, boolean captchaRequired) {
+    this.ip = ip;
+    this.reason = reason;
+    this.banDate = banDate;
+    this.originalDate = originalDate;
+    this.moderator = moderator;
+    this.allowPosting = allowPosting;
+    this.captchaRequired = captchaRequired;
+    initialized = true;
+  }
+
+  /**
+   * Бан подсети, примененный к конкретному адресу
+   *
+   * @param ip адрес
+   * @param network бан подсети, в которую входит адрес
+   */
+  public IPBlockInfo(String ip, IPBlockInfo network) {
+    this.ip = ip;
+    reason = network.reason;
+    banDate = network.banDate;
+    originalDate = network.originalDate;
+    moderator = network.moderator;
+    allowPosting = network.allowPosting;
+    captchaRequired = network.captchaRequired;
+    initialized = network.initialized;
+  }
+
   public IPBlockInfo(ResultSet rs) throws SQLException {
     ip = rs.getString("ip");
     reason = rs.getString("reason");
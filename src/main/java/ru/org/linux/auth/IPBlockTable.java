@@ -0,0 +1,152 @@
+/*
+ * Copyright 1998-2012 Linux.org.ru
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.org.linux.auth;
+
+import com.google.common.net.InetAddresses;
+
+import javax.annotation.Nullable;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+
+/**
+ * Таблица заблокированных адресов и подсетей.
+ *
+ * Префиксное дерево по битам адреса, отдельное для IPv4 и IPv6. Таблица
+ * неизменяема, при изменении банов строится новая.
+ */
+public class IPBlockTable {
+  private final Node root4 = new Node();
+  private final Node root6 = new Node();
+
+  private static class Node {
+    private Node zero;
+    private Node one;
+    private IPBlockInfo value;
+  }
+
+  public static class Builder {
+    private final IPBlockTable table = new IPBlockTable();
+
+    /**
+     * @param network адрес ("1.2.3.4") или подсеть ("1.2.3.0/24")
+     * @param info бан
+     */
+    public Builder add(String network, IPBlockInfo info) {
+      int slash = network.indexOf('/');
+
+      InetAddress address;
+      int prefix;
+
+      if (slash == -1) {
+        address = InetAddresses.forString(network);
+        prefix = address.getAddress().length * 8;
+      } else {
+        address = InetAddresses.forString(network.substring(0, slash));
+        prefix = Integer.parseInt(network.substring(slash + 1));
+      }
+
+      byte[] bytes = address.getAddress();
+
+      if (prefix < 0 || prefix > bytes.length * 8) {
+        throw new IllegalArgumentException("Bad prefix length: " + network);
+      }
+
+      Node node = table.root(address);
+
+      for (int i = 0; i < prefix; i++) {
+        if (bit(bytes, i)) {
+          if (node.one == null) {
+            node.one = new Node();
+          }
+
+          node = node.one;
+        } else {
+          if (node.zero == null) {
+            node.zero = new Node();
+          }
+
+          node = node.zero;
+        }
+      }
+
+      node.value = info;
+
+      return this;
+    }
+
+    public IPBlockTable build() {
+      return table;
+    }
+  }
+
+  private IPBlockTable() {
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  private Node root(InetAddress address) {
+    return address instanceof Inet4Address ? root4 : root6;
+  }
+
+  private static boolean bit(byte[] bytes, int index) {
+    return (bytes[index >> 3] & (0x80 >>> (index & 7))) != 0;
+  }
+
+  /**
+   * Найти бан для адреса. Из подходящих записей выбирается самая узкая
+   * действующая, если действующих нет - самая узкая из истекших.
+   *
+   * @param addr адрес
+   * @return бан или null, если адрес нигде не упоминается
+   */
+  @Nullable
+  public IPBlockInfo lookup(String addr) {
+    InetAddress address;
+
+    try {
+      address = InetAddresses.forString(addr);
+    } catch (IllegalArgumentException ex) {
+      return null;
+    }
+
+    byte[] bytes = address.getAddress();
+
+    Node node = root(address);
+
+    IPBlockInfo blocked = null;
+    IPBlockInfo any = null;
+
+    for (int i = 0; node != null; i++) {
+      if (node.value != null) {
+        any = node.value;
+
+        if (node.value.isBlocked()) {
+          blocked = node.value;
+        }
+      }
+
+      if (i == bytes.length * 8) {
+        break;
+      }
+
+      node = bit(bytes, i) ? node.one : node.zero;
+    }
+
+    return blocked != null ? blocked : any;
+  }
+}
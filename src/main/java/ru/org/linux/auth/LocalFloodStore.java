@@ -0,0 +1,71 @@
+/*
+ * Copyright 1998-2012 Linux.org.ru
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.org.linux.auth;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Счетчики в памяти одного узла.
+ *
+ * Для каждого адреса хранится только момент, когда ведро снова станет пустым
+ * (GCRA), так что проверка уже известного адреса не создает объектов.
+ */
+public class LocalFloodStore implements FloodStore {
+  private final Map<FloodProtector.Action, LoadingCache<String, AtomicLong>> caches =
+          new EnumMap<>(FloodProtector.Action.class);
+
+  public LocalFloodStore() {
+    for (FloodProtector.Action action : FloodProtector.Action.values()) {
+      caches.put(action, CacheBuilder.newBuilder()
+              .expireAfterAccess(30, TimeUnit.MINUTES)
+              .maximumSize(100000)
+              .build(new CacheLoader<String, AtomicLong>() {
+                @Override
+                public AtomicLong load(String key) {
+                  return new AtomicLong();
+                }
+              }));
+    }
+  }
+
+  @Override
+  public boolean tryAcquire(FloodProtector.Action action, String ip, int interval, int burst) {
+    return tryAcquire(action, ip, interval, burst, System.currentTimeMillis());
+  }
+
+  boolean tryAcquire(FloodProtector.Action action, String ip, int interval, int burst, long now) {
+    AtomicLong tat = caches.get(action).getUnchecked(ip);
+
+    while (true) {
+      long current = tat.get();
+
+      if (now < current - (long) (burst - 1) * interval) {
+        return false;
+      }
+
+      if (tat.compareAndSet(current, Math.max(current, now) + interval)) {
+        return true;
+      }
+    }
+  }
+}
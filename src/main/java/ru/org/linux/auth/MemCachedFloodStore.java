@@ -0,0 +1,96 @@
+/*
+ * Copyright 1998-2012 Linux.org.ru
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.org.linux.auth;
+
+import net.spy.memcached.CASResponse;
+import net.spy.memcached.CASValue;
+import net.spy.memcached.MemcachedClient;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import ru.org.linux.site.MemCachedSettings;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Счетчики в memcached, общие для всех узлов, у которых в memcached.servers
+ * указан один и тот же список серверов.
+ *
+ * Состояние обновляется через gets/cas. Если memcached недоступен,
+ * используются локальные счетчики.
+ */
+public class MemCachedFloodStore implements FloodStore {
+  private static final Log logger = LogFactory.getLog(MemCachedFloodStore.class);
+
+  private static final int MAX_ATTEMPTS = 3;
+
+  private final FloodStore fallback;
+
+  public MemCachedFloodStore(FloodStore fallback) {
+    this.fallback = fallback;
+  }
+
+  @Override
+  public boolean tryAcquire(FloodProtector.Action action, String ip, int interval, int burst) {
+    MemcachedClient mc = MemCachedSettings.getMemCachedClient();
+
+    try {
+      if (mc.getAvailableServers().isEmpty()) {
+        return fallback.tryAcquire(action, ip, interval, burst);
+      }
+
+      String key = MemCachedSettings.getId("flood/" + action + '/' + ip);
+      int expire = (int) ((long) interval * burst / 1000) + 1;
+
+      for (int i = 0; i < MAX_ATTEMPTS; i++) {
+        long now = System.currentTimeMillis();
+
+        CASValue<Object> value = mc.gets(key);
+
+        if (value == null) {
+          Future<Boolean> added = mc.add(key, expire, now + interval);
+
+          if (added.get()) {
+            return true;
+          }
+
+          continue;
+        }
+
+        long tat = (Long) value.getValue();
+
+        if (now < tat - (long) (burst - 1) * interval) {
+          return false;
+        }
+
+        Object next = Math.max(tat, now) + interval;
+
+        if (mc.cas(key, value.getCas(), expire, next, mc.getTranscoder()) == CASResponse.OK) {
+          return true;
+        }
+      }
+
+      // кто-то очень активно пишет с этого адреса
+      return false;
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      return fallback.tryAcquire(action, ip, interval, burst);
+    } catch (ExecutionException | RuntimeException ex) {
+      logger.info("Memcached flood check failed", ex);
+      return fallback.tryAcquire(action, ip, interval, burst);
+    }
+  }
+}
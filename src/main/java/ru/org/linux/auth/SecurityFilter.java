@@ -16,8 +16,7 @@
 package ru.org.linux.auth;
 
 import org.springframework.beans.factory.InitializingBean;
-import org.springframework.web.context.WebApplicationContext;
-import org.springframework.web.context.support.WebApplicationContextUtils;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.filter.GenericFilterBean;
 import ru.org.linux.csrf.CSRFProtectionService;
 import ru.org.linux.site.Template;
@@ -31,43 +30,62 @@ import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import javax.servlet.http.HttpSession;
 import java.io.IOException;
-import java.util.Properties;
 
 /**
+ * Общая подготовка запроса: атрибуты для JSP, CSRF cookie и cookie для wiki.
+ *
+ * HTTP сессия создается только для авторизованных пользователей: анонимные
+ * запросы (в том числе поисковых роботов) обрабатываются без сессии и получают
+ * один общий Template с профилем по умолчанию.
  */
 public class SecurityFilter extends GenericFilterBean implements InitializingBean {
+  @Autowired
+  private Configuration configuration;
+
+  private Template anonymousTemplate;
+
+  @Override
+  protected void initFilterBean() {
+    anonymousTemplate = new Template(configuration, AuthUtil.getDefaultProfile());
+  }
 
   public void doFilter(ServletRequest req, ServletResponse res, FilterChain chain)
       throws IOException, ServletException {
 
-    WebApplicationContext ctx = WebApplicationContextUtils.getWebApplicationContext(getServletContext());
     HttpServletRequest request = (HttpServletRequest) req;
-    request.setAttribute("configuration", ctx.getBean(Configuration.class));
-    request.setAttribute("template", new Template(ctx));
+    User user = AuthUtil.getCurrentUser();
+
+    request.setAttribute("configuration", configuration);
+
+    if (user != null) {
+      request.setAttribute("template", new Template(configuration, AuthUtil.getProfile()));
+    } else {
+      request.setAttribute("template", anonymousTemplate);
+    }
+
     request.setCharacterEncoding("utf-8"); // блядский tomcat
     CSRFManipulation(request, (HttpServletResponse) res);
-    forWikiManipulation(request, (HttpServletResponse) res);
+
+    if (user != null) {
+      forWikiManipulation(user, request, (HttpServletResponse) res);
+    }
+
     chain.doFilter(req, res);
   }
 
   private void CSRFManipulation(HttpServletRequest request, HttpServletResponse response) {
-    Properties cookies = LorHttpUtils.getCookies(request.getCookies());
-    if (cookies.get(CSRFProtectionService.CSRF_COOKIE) == null) {
+    String token = LorHttpUtils.getCookie(request.getCookies(), CSRFProtectionService.CSRF_COOKIE);
+    if (token == null) {
       CSRFProtectionService.generateCSRFCookie(request, response);
     } else {
-      request.setAttribute(CSRFProtectionService.CSRF_ATTRIBUTE, cookies.getProperty(CSRFProtectionService.CSRF_COOKIE).trim());
+      request.setAttribute(CSRFProtectionService.CSRF_ATTRIBUTE, token.trim());
     }
     response.addHeader("Cache-Control", "private");
   }
 
-  private void forWikiManipulation(HttpServletRequest request, HttpServletResponse response) {
-    HttpSession session = request.getSession();
-    User user = AuthUtil.getCurrentUser();
-    if(user!=null){
-      user.acegiSecurityHack(response, session);
-    }
+  private void forWikiManipulation(User user, HttpServletRequest request, HttpServletResponse response) {
+    user.acegiSecurityHack(response, request.getSession());
   }
 
 }
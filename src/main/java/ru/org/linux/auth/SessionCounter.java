@@ -0,0 +1,61 @@
+/*
+ * Copyright 1998-2012 Linux.org.ru
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.org.linux.auth;
+
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.security.web.session.HttpSessionCreatedEvent;
+import org.springframework.security.web.session.HttpSessionDestroyedEvent;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Счетчик HTTP сессий по событиям HttpSessionEventPublisher, доступен через JMX.
+ * Сессии должны создаваться только для авторизованных пользователей, рост
+ * числа активных сессий без роста числа пользователей означает, что какой-то
+ * путь снова создает сессии для анонимных запросов.
+ */
+@Component
+public class SessionCounter implements ApplicationListener<ApplicationEvent> {
+  private final AtomicInteger activeSessions = new AtomicInteger();
+  private final AtomicLong createdSessions = new AtomicLong();
+
+  @Override
+  public void onApplicationEvent(ApplicationEvent event) {
+    if (event instanceof HttpSessionCreatedEvent) {
+      activeSessions.incrementAndGet();
+      createdSessions.incrementAndGet();
+    } else if (event instanceof HttpSessionDestroyedEvent) {
+      activeSessions.decrementAndGet();
+    }
+  }
+
+  /**
+   * @return число активных сессий
+   */
+  public int getActiveSessions() {
+    return activeSessions.get();
+  }
+
+  /**
+   * @return число сессий, созданных с момента запуска
+   */
+  public long getCreatedSessions() {
+    return createdSessions.get();
+  }
+}
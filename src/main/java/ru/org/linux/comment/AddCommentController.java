@@ -63,6 +63,8 @@ public class AddCommentController {
 
   @ModelAttribute("ipBlockInfo")
   private IPBlockInfo loadIPBlock(HttpServletRequest request) {
+    ipBlockDao.prefetchTor(request.getRemoteAddr());
+
     return ipBlockDao.getBlockInfo(request.getRemoteAddr());
   }
 
@@ -15,12 +15,13 @@
 
 package ru.org.linux.comment;
 
+import ru.org.linux.util.IntSet;
+
 import javax.annotation.Nonnull;
 import java.io.Serializable;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
-import java.util.Set;
 
 /**
  * DTO-объект для хранения одного  комментария из DAO
@@ -91,7 +92,7 @@ public class Comment implements Serializable {
     return replyto;
   }
 
-  public boolean isIgnored(Set<Integer> ignoreList) {
+  public boolean isIgnored(IntSet ignoreList) {
     return ignoreList != null && !ignoreList.isEmpty() && ignoreList.contains(userid);
   }
 
@@ -22,8 +22,10 @@ import ru.org.linux.util.StringUtil;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 public interface CommentDao {
 
@@ -40,6 +42,14 @@ public interface CommentDao {
   )
     throws MessageNotFoundException;
 
+  /**
+   * Получить флаги удаления для набора комментариев одним запросом
+   *
+   * @param ids id комментариев
+   * @return флаг удаления по id комментария, отсутствующих комментариев в результате нет
+   */
+  Map<Integer, Boolean> getDeletedFlags(Collection<Integer> ids);
+
   /**
    * Список комментариев топика
    *
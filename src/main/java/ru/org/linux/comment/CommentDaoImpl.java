@@ -25,10 +25,13 @@ import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.PreparedStatementCallback;
 import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
 import org.springframework.stereotype.Repository;
 import ru.org.linux.site.MessageNotFoundException;
 import ru.org.linux.spring.dao.DeleteInfoDao;
+import ru.org.linux.topic.TopicCache;
+import ru.org.linux.topic.TopicTagDao;
 import ru.org.linux.user.User;
 import ru.org.linux.util.StringUtil;
 
@@ -78,13 +81,17 @@ class CommentDaoImpl implements CommentDao {
   private static final String updateScore = "UPDATE users SET score=score+? WHERE id=(SELECT userid FROM comments WHERE id=?)";
 
   private JdbcTemplate jdbcTemplate;
+  private NamedParameterJdbcTemplate namedJdbcTemplate;
   private DeleteInfoDao deleteInfoDao;
+  private TopicTagDao topicTagDao;
+  private TopicCache topicCache;
 
   private SimpleJdbcInsert insertMsgbase;
 
   @Autowired
   public void setDataSource(DataSource dataSource) {
     jdbcTemplate = new JdbcTemplate(dataSource);
+    namedJdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
 
     insertMsgbase = new SimpleJdbcInsert(dataSource);
     insertMsgbase.setTableName("msgbase");
@@ -96,6 +103,16 @@ class CommentDaoImpl implements CommentDao {
     this.deleteInfoDao = deleteInfoDao;
   }
 
+  @Autowired
+  public void setTopicTagDao(TopicTagDao topicTagDao) {
+    this.topicTagDao = topicTagDao;
+  }
+
+  @Autowired
+  public void setTopicCache(TopicCache topicCache) {
+    this.topicCache = topicCache;
+  }
+
   @Override
   public Comment getById(int id) throws MessageNotFoundException {
     Comment comment;
@@ -112,6 +129,28 @@ class CommentDaoImpl implements CommentDao {
     return comment;
   }
 
+  @Override
+  public Map<Integer, Boolean> getDeletedFlags(Collection<Integer> ids) {
+    if (ids.isEmpty()) {
+      return ImmutableMap.of();
+    }
+
+    final Map<Integer, Boolean> flags = new HashMap<>();
+
+    namedJdbcTemplate.query(
+      "SELECT id, deleted FROM comments WHERE id IN (:list)",
+      ImmutableMap.of("list", ids),
+      new RowCallbackHandler() {
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+          flags.put(rs.getInt("id"), rs.getBoolean("deleted"));
+        }
+      }
+    );
+
+    return flags;
+  }
+
   @Override
   public List<Comment> getCommentList(int topicId, boolean showDeleted) {
     final List<Comment> comments = new ArrayList<>();
@@ -166,6 +205,8 @@ class CommentDaoImpl implements CommentDao {
 
     int groupId = jdbcTemplate.queryForInt("SELECT groupid FROM topics WHERE id = ?", topicId);
     jdbcTemplate.update("UPDATE groups SET stat1=stat1-? WHERE id = ?", count, groupId);
+
+    topicCache.invalidate(topicId);
   }
 
   @Override
@@ -270,6 +311,8 @@ class CommentDaoImpl implements CommentDao {
     for (int msgid : topicIds) {
       deleteInfo.put(msgid, "Топик " + msgid + " удален");
       jdbcTemplate.update("UPDATE topics SET deleted='t',sticky='f' WHERE id=?", msgid);
+      topicTagDao.updateCounters(msgid, -1);
+      topicCache.invalidate(msgid);
       deleteInfoDao.insert(msgid, moderator, reason, 0);
     }
 
@@ -336,6 +379,9 @@ class CommentDaoImpl implements CommentDao {
       "bbcode", true)
     );
 
+    // триггер на comments обновляет счетчик комментариев и lastmod топика
+    topicCache.invalidate(comment.getTopicId());
+
     return msgid;
   }
 
@@ -18,6 +18,7 @@ package ru.org.linux.comment;
 import ru.org.linux.user.User;
 import ru.org.linux.user.UserDao;
 import ru.org.linux.user.UserNotFoundException;
+import ru.org.linux.util.IntSet;
 
 import java.io.Serializable;
 import java.sql.SQLException;
@@ -60,7 +61,7 @@ public class CommentNode implements Serializable {
     }
   }
 
-  public void hideIgnored(Set<Integer> hideSet, Set<Integer> ignoreList) {
+  public void hideIgnored(Set<Integer> hideSet, IntSet ignoreList) {
     if (comment != null) {
       if (comment.isIgnored(ignoreList)) {
         hideNode(hideSet);
@@ -137,11 +137,7 @@ public class CommentPrepareService {
 
     String remark = null;
     if(tmpl != null && tmpl.isSessionAuthorized() ){
-      Remark remarkObject = userDao.getRemark(tmpl.getCurrentUser(), author);
-
-      if (remarkObject!=null) {
-        remark = remarkObject.getText();
-      }
+      remark = userDao.getRemarks(tmpl.getCurrentUser()).getText(author.getId());
     }
 
     Userpic userpic = null;
@@ -209,7 +205,7 @@ public class CommentPrepareService {
   ) throws UserNotFoundException {
     User author = userDao.getUserCached(comment.getUserid());
 
-    String processedMessage = prepareCommentTextRSS(messageText, secure);
+    String processedMessage = prepareCommentTextRSS(comment.getId(), messageText, secure);
 
     return new PreparedRSSComment(comment, author, processedMessage);
   }
@@ -310,11 +306,12 @@ public class CommentPrepareService {
   /**
    * Получить RSS представление текста комментария
    *
+   * @param msgid id комментария
    * @param messageText текст комментария
    * @param secure https соединение?
    * @return строку html комментария
    */
-  private String prepareCommentTextRSS(MessageText messageText, final boolean secure) {
-    return lorCodeService.prepareTextRSS(messageText.getText(), secure, messageText.isLorcode());
+  private String prepareCommentTextRSS(int msgid, MessageText messageText, final boolean secure) {
+    return lorCodeService.prepareTextRSS(msgid, messageText.getText(), secure, messageText.isLorcode());
   }
 }
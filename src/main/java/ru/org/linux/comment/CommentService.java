@@ -50,6 +50,7 @@ import ru.org.linux.util.StringUtil;
 import ru.org.linux.util.bbcode.LorCodeService;
 import ru.org.linux.util.formatter.ToLorCodeFormatter;
 import ru.org.linux.util.formatter.ToLorCodeTexFormatter;
+import ru.org.linux.util.IntSet;
 
 import javax.annotation.Nonnull;
 import javax.servlet.http.HttpServletRequest;
@@ -57,6 +58,7 @@ import java.beans.PropertyEditorSupport;
 import java.net.UnknownHostException;
 import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -93,6 +95,9 @@ public class CommentService {
   @Autowired
   private FloodProtector floodProtector;
 
+  @Autowired
+  private IPBlockDao ipBlockDao;
+
   @Autowired
   private LorCodeService lorCodeService;
 
@@ -189,7 +194,7 @@ public class CommentService {
 
     user.checkBlocked(errors);
 
-    IPBlockDao.checkBlockIP(ipBlockInfo, errors, user);
+    ipBlockDao.checkBlockIP(ipBlockInfo, errors, user);
 
     if (!commentRequest.isPreviewMode() && !errors.hasErrors()) {
       floodProtector.checkDuplication(FloodProtector.Action.ADD_COMMENT, request.getRemoteAddr(), user.getScore() >= 100, errors);
@@ -340,7 +345,7 @@ public class CommentService {
         User parentAuthor = userDao.getUserCached(parentComment.getUserid());
 
         if (!parentAuthor.isAnonymous()) {
-          Set<Integer> ignoreList = ignoreListDao.get(parentAuthor);
+          IntSet ignoreList = ignoreListDao.get(parentAuthor);
 
           if (!ignoreList.contains(comment.getUserid())) {
             userEventService.addReplyEvent(
@@ -422,6 +427,16 @@ public class CommentService {
     return commentDao.getById(id);
   }
 
+  /**
+   * Получить флаги удаления для набора комментариев
+   *
+   * @param ids идентификационные номера комментариев
+   * @return флаг удаления по идентификационному номеру комментария
+   */
+  public Map<Integer, Boolean> getDeletedFlags(Collection<Integer> ids) {
+    return commentDao.getDeletedFlags(ids);
+  }
+
   /**
    * Добавить элемент истории для комментария.
    *
@@ -652,7 +667,7 @@ public class CommentService {
   public Set<Integer> makeHideSet(
           CommentList comments,
           int filterChain,
-          @Nonnull Set<Integer> ignoreList
+          @Nonnull IntSet ignoreList
   ) throws SQLException, UserNotFoundException {
     if (filterChain == CommentFilter.FILTER_NONE) {
       return ImmutableSet.of();
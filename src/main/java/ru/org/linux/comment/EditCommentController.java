@@ -75,6 +75,8 @@ public class EditCommentController extends ApplicationObjectSupport {
 
   @ModelAttribute("ipBlockInfo")
   private IPBlockInfo loadIPBlock(HttpServletRequest request) {
+    ipBlockDao.prefetchTor(request.getRemoteAddr());
+
     return ipBlockDao.getBlockInfo(request.getRemoteAddr());
   }
 
@@ -34,9 +34,9 @@ public class CSRFProtectionService {
   private static final int TWO_YEARS = 60 * 60 * 24 * 31 * 24;
   public static final String CSRF_INPUT_NAME = "csrf";
 
-  public static void generateCSRFCookie(HttpServletRequest request, HttpServletResponse response) {
-    SecureRandom random = new SecureRandom();
+  private static final SecureRandom random = new SecureRandom();
 
+  public static void generateCSRFCookie(HttpServletRequest request, HttpServletResponse response) {
     byte[] value = new byte[16];
     random.nextBytes(value);
 
@@ -0,0 +1,68 @@
+/*
+ * Copyright 1998-2012 Linux.org.ru
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.org.linux.edithistory;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Фоновый перевод старых записей истории изменений на хранение дельтами.
+ *
+ * Каждый запуск обрабатывает до BATCH_SIZE сообщений каждого типа; когда
+ * полных копий не остается, запрос кандидатов идет по пустому частичному индексу.
+ */
+@Component
+public class EditHistoryCompactor {
+  private static final Log logger = LogFactory.getLog(EditHistoryCompactor.class);
+
+  private static final int BATCH_SIZE = 50;
+
+  private static final int MINUTE = 60 * 1000;
+  private static final int FIVE_MINS = 5 * MINUTE;
+
+  @Autowired
+  private EditHistoryService editHistoryService;
+
+  @Scheduled(fixedDelay = MINUTE, initialDelay = FIVE_MINS)
+  public void compact() {
+    for (EditHistoryObjectTypeEnum objectType : EditHistoryObjectTypeEnum.values()) {
+      List<Integer> ids = editHistoryService.getUncompactedIds(objectType, BATCH_SIZE);
+
+      int done = 0;
+
+      for (int id : ids) {
+        try {
+          if (editHistoryService.compactMessage(id, objectType)) {
+            done++;
+          } else {
+            logger.warn("Edit history of " + objectType + " " + id + " does not survive compaction, skipped");
+          }
+        } catch (RuntimeException ex) {
+          logger.warn("Can't compact edit history of " + objectType + " " + id, ex);
+        }
+      }
+
+      if (!ids.isEmpty()) {
+        logger.info("Compacted edit history of " + done + " of " + ids.size() + " " + objectType + " messages");
+      }
+    }
+  }
+}
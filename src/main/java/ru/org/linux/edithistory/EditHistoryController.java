@@ -19,6 +19,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.servlet.ModelAndView;
 import ru.org.linux.comment.Comment;
 import ru.org.linux.comment.CommentService;
@@ -30,6 +31,11 @@ import java.util.List;
 
 @Controller
 public class EditHistoryController {
+  /**
+   * Число версий на странице истории
+   */
+  private static final int PAGE_SIZE = 20;
+
   @Autowired
   private TopicDao messageDao;
 
@@ -47,18 +53,19 @@ public class EditHistoryController {
 })
   public ModelAndView showEditInfo(
     HttpServletRequest request,
-    @PathVariable("id") int msgid
+    @PathVariable("id") int msgid,
+    @RequestParam(value = "offset", defaultValue = "0") int offset
   ) throws Exception {
     Topic message = messageDao.getById(msgid);
 
-    List<PreparedEditHistory> editHistories = editHistoryService.prepareEditInfo(message, request.isSecure());
-
-    ModelAndView modelAndView = new ModelAndView("history");
-
-    modelAndView.getModel().put("message", message);
-    modelAndView.getModel().put("editHistories", editHistories);
+    List<PreparedEditHistory> editHistories = editHistoryService.prepareEditInfo(
+            message,
+            request.isSecure(),
+            Math.max(offset, 0),
+            PAGE_SIZE + 1
+    );
 
-    return modelAndView;
+    return historyView(message, editHistories, Math.max(offset, 0));
   }
 
   @RequestMapping({
@@ -70,17 +77,40 @@ public class EditHistoryController {
   public ModelAndView showCommentEditInfo(
     HttpServletRequest request,
     @PathVariable("id") int msgid,
-    @PathVariable("commentid") int commentId
+    @PathVariable("commentid") int commentId,
+    @RequestParam(value = "offset", defaultValue = "0") int offset
   ) throws Exception {
     Topic message = messageDao.getById(msgid);
     Comment comment =  commentService.getById(commentId);
 
-    List<PreparedEditHistory> editHistories = editHistoryService.prepareEditInfo(comment, request.isSecure());
+    List<PreparedEditHistory> editHistories = editHistoryService.prepareEditInfo(
+            comment,
+            request.isSecure(),
+            Math.max(offset, 0),
+            PAGE_SIZE + 1
+    );
+
+    return historyView(message, editHistories, Math.max(offset, 0));
+  }
 
+  /**
+   * @param editHistories версии, на одну больше размера страницы, если есть следующая страница
+   */
+  private static ModelAndView historyView(Topic message, List<PreparedEditHistory> editHistories, int offset) {
     ModelAndView modelAndView = new ModelAndView("history");
 
     modelAndView.getModel().put("message", message);
-    modelAndView.getModel().put("editHistories", editHistories);
+
+    if (editHistories.size() > PAGE_SIZE) {
+      modelAndView.getModel().put("editHistories", editHistories.subList(0, PAGE_SIZE));
+      modelAndView.getModel().put("nextOffset", offset + PAGE_SIZE);
+    } else {
+      modelAndView.getModel().put("editHistories", editHistories);
+    }
+
+    if (offset > 0) {
+      modelAndView.getModel().put("prevOffset", Math.max(offset - PAGE_SIZE, 0));
+    }
 
     return modelAndView;
   }
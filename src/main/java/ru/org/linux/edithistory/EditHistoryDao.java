@@ -18,10 +18,12 @@ package ru.org.linux.edithistory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.namedparam.BeanPropertySqlParameterSource;
 import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
 import org.springframework.stereotype.Repository;
 
+import javax.annotation.Nullable;
 import javax.sql.DataSource;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -32,6 +34,10 @@ import java.util.List;
 public class EditHistoryDao {
   private static final String queryEditInfo = "SELECT * FROM edit_info WHERE msgid=? AND object_type = ?::edit_event_type ORDER BY id DESC";
 
+  private static final String queryLastEditInfo =
+          "SELECT id, msgid, editor, editdate, object_type, count(*) OVER () AS edit_count " +
+          "FROM edit_info WHERE msgid=? AND object_type = ?::edit_event_type ORDER BY id DESC LIMIT 1";
+
   private JdbcTemplate jdbcTemplate;
   private SimpleJdbcInsert editInsert;
 
@@ -52,7 +58,9 @@ public class EditHistoryDao {
                 "oldurl",
                 "object_type",
                 "oldminor",
-                "oldimage"
+                "oldimage",
+                "message_prefix",
+                "message_suffix"
         );
 
   }
@@ -89,6 +97,8 @@ public class EditHistoryDao {
           editHistoryDto.setOldminor(null);
         }
 
+        readMessageDelta(resultSet, editHistoryDto);
+
         editInfoDTOs.add(editHistoryDto);
       }
     },
@@ -98,6 +108,112 @@ public class EditHistoryDao {
     return editInfoDTOs;
   }
 
+  /**
+   * Получить последнюю правку топика/комментария и общее число правок.
+   * В отличие от getEditInfo не читает старые тексты.
+   *
+   * @param id id топика
+   * @param objectTypeEnum тип: топик или комментарий
+   * @return сводка или null, если сообщение не редактировалось
+   */
+  @Nullable
+  public EditInfoSummary getLastEditInfo(int id, EditHistoryObjectTypeEnum objectTypeEnum) {
+    List<EditInfoSummary> result = jdbcTemplate.query(queryLastEditInfo, new RowMapper<EditInfoSummary>() {
+      @Override
+      public EditInfoSummary mapRow(ResultSet resultSet, int i) throws SQLException {
+        EditHistoryDto editHistoryDto = new EditHistoryDto();
+        editHistoryDto.setId(resultSet.getInt("id"));
+        editHistoryDto.setMsgid(resultSet.getInt("msgid"));
+        editHistoryDto.setEditor(resultSet.getInt("editor"));
+        editHistoryDto.setEditdate(resultSet.getTimestamp("editdate"));
+        editHistoryDto.setObjectType(resultSet.getString("object_type"));
+
+        return new EditInfoSummary(editHistoryDto, resultSet.getInt("edit_count"));
+      }
+    },
+      id,
+      objectTypeEnum.toString()
+    );
+
+    return result.isEmpty() ? null : result.get(0);
+  }
+
+  /**
+   * Получить сохраненные версии текста топика/комментария, от новых к старым.
+   * Строки блокируются до конца транзакции.
+   *
+   * @param id id топика или комментария
+   * @param objectTypeEnum тип: топик или комментарий
+   * @param limit сколько версий получить
+   * @return версии, заполнены только id, oldmessage, messagePrefix и messageSuffix
+   */
+  public List<EditHistoryDto> getMessageRevisions(int id, EditHistoryObjectTypeEnum objectTypeEnum, int limit) {
+    return jdbcTemplate.query(
+            "SELECT id, oldmessage, message_prefix, message_suffix FROM edit_info " +
+                    "WHERE msgid=? AND object_type = ?::edit_event_type AND oldmessage IS NOT NULL " +
+                    "ORDER BY id DESC LIMIT ? FOR UPDATE",
+            new RowMapper<EditHistoryDto>() {
+              @Override
+              public EditHistoryDto mapRow(ResultSet resultSet, int i) throws SQLException {
+                EditHistoryDto editHistoryDto = new EditHistoryDto();
+                editHistoryDto.setId(resultSet.getInt("id"));
+                editHistoryDto.setOldmessage(resultSet.getString("oldmessage"));
+                readMessageDelta(resultSet, editHistoryDto);
+                return editHistoryDto;
+              }
+            },
+            id,
+            objectTypeEnum.toString(),
+            limit
+    );
+  }
+
+  /**
+   * Заменить сохраненный текст правки
+   *
+   * @param id id записи edit_info
+   * @param delta новое представление текста
+   */
+  public void updateMessageDelta(int id, TextDelta delta) {
+    jdbcTemplate.update(
+            "UPDATE edit_info SET oldmessage=?, message_prefix=?, message_suffix=? WHERE id=?",
+            delta.getMiddle(),
+            delta.getPrefix(),
+            delta.getSuffix(),
+            id
+    );
+  }
+
+  /**
+   * Топики/комментарии, в истории которых остались полные копии текста,
+   * сохраненные до перехода на дельты
+   *
+   * @param objectTypeEnum тип: топик или комментарий
+   * @param limit сколько id получить
+   * @return id топиков или комментариев
+   */
+  public List<Integer> getUncompactedIds(EditHistoryObjectTypeEnum objectTypeEnum, int limit) {
+    return jdbcTemplate.queryForList(
+            "SELECT DISTINCT msgid FROM edit_info " +
+                    "WHERE oldmessage IS NOT NULL AND message_prefix IS NULL AND object_type = ?::edit_event_type LIMIT ?",
+            Integer.class,
+            objectTypeEnum.toString(),
+            limit
+    );
+  }
+
+  private static void readMessageDelta(ResultSet resultSet, EditHistoryDto editHistoryDto) throws SQLException {
+    editHistoryDto.setMessagePrefix(resultSet.getInt("message_prefix"));
+    if (resultSet.wasNull()) {
+      editHistoryDto.setMessagePrefix(null);
+    }
+
+    editHistoryDto.setMessageSuffix(resultSet.getInt("message_suffix"));
+    if (resultSet.wasNull()) {
+      editHistoryDto.setMessageSuffix(null);
+    }
+  }
+
   /**
    *
    * @param editHistoryDto
@@ -15,6 +15,7 @@
 
 package ru.org.linux.edithistory;
 
+import javax.annotation.Nullable;
 import java.sql.Timestamp;
 
 public class EditHistoryDto {
@@ -30,6 +31,8 @@ public class EditHistoryDto {
   private EditHistoryObjectTypeEnum objectType;
   private Boolean oldminor;
   private Integer oldimage;
+  private Integer messagePrefix;
+  private Integer messageSuffix;
 
   public int getId() {
     return id;
@@ -55,6 +58,9 @@ public class EditHistoryDto {
     this.editor = editor;
   }
 
+  /**
+   * @return сохраненный текст: целиком или изменившаяся часть, см. getMessageDelta
+   */
   public String getOldmessage() {
     return oldmessage;
   }
@@ -130,4 +136,45 @@ public class EditHistoryDto {
   public void setOldimage(Integer oldimage) {
     this.oldimage = oldimage;
   }
+
+  public Integer getMessagePrefix() {
+    return messagePrefix;
+  }
+
+  public void setMessagePrefix(Integer messagePrefix) {
+    this.messagePrefix = messagePrefix;
+  }
+
+  public Integer getMessageSuffix() {
+    return messageSuffix;
+  }
+
+  public void setMessageSuffix(Integer messageSuffix) {
+    this.messageSuffix = messageSuffix;
+  }
+
+  /**
+   * Старый текст в виде дельты относительно следующей версии.
+   * Записи, сохраненные до перехода на дельты, считаются полными копиями.
+   *
+   * @return дельта или null, если текст в этой правке не менялся
+   */
+  @Nullable
+  public TextDelta getMessageDelta() {
+    if (oldmessage == null) {
+      return null;
+    }
+
+    if (messagePrefix == null || messageSuffix == null) {
+      return TextDelta.snapshot(oldmessage);
+    }
+
+    return new TextDelta(messagePrefix, messageSuffix, oldmessage);
+  }
+
+  public void setMessageDelta(TextDelta delta) {
+    oldmessage = delta.getMiddle();
+    messagePrefix = delta.getPrefix();
+    messageSuffix = delta.getSuffix();
+  }
 }
@@ -21,6 +21,8 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 import ru.org.linux.comment.Comment;
 import ru.org.linux.spring.dao.MsgbaseDao;
 import ru.org.linux.tag.TagService;
@@ -32,6 +34,7 @@ import ru.org.linux.user.UserErrorException;
 import ru.org.linux.user.UserNotFoundException;
 import ru.org.linux.util.bbcode.LorCodeService;
 
+import javax.annotation.Nullable;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -56,50 +59,65 @@ public class EditHistoryService {
   private EditHistoryDao editHistoryDao;
 
   /**
-   * Получить историю изменений топика
+   * Как часто в истории текста сохраняется полная копия: восстановление
+   * любой версии требует не больше SNAPSHOT_INTERVAL-1 дельт
+   */
+  static final int SNAPSHOT_INTERVAL = 10;
+
+  /**
+   * Получить страницу истории изменений топика. Версии идут от новых к старым,
+   * последняя из них - исходная. Текст отрисовывается только для версий,
+   * попавших на страницу.
    *
-   * @param message
-   * @param secure
-   * @return
+   * @param message топик
+   * @param secure флаг https
+   * @param offset сколько версий пропустить
+   * @param limit сколько версий вернуть
+   * @return список версий
    * @throws UserNotFoundException
-   * @throws UserErrorException
    */
   public List<PreparedEditHistory> prepareEditInfo(
     Topic message,
-    boolean secure
+    boolean secure,
+    int offset,
+    int limit
   ) throws UserNotFoundException {
     List<EditHistoryDto> editInfoDTOs = editHistoryDao.getEditInfo(message.getId(), EditHistoryObjectTypeEnum.TOPIC);
-    List<PreparedEditHistory> editHistories = new ArrayList<>(editInfoDTOs.size());
+    List<PreparedEditHistory> editHistories = new ArrayList<>(Math.min(limit, editInfoDTOs.size() + 1));
 
-    String currentMessage = msgbaseDao.getMessageText(message.getId()).getText();
+    TextHistory currentMessage = new TextHistory(msgbaseDao.getMessageText(message.getId()).getText());
     String currentTitle = message.getTitle();
     String currentUrl = message.getUrl();
     String currentLinktext = message.getLinktext();
     List<String> currentTags = topicTagService.getMessageTags(message.getId());
     boolean currentMinor = message.isMinor();
 
-    for (int i = 0; i < editInfoDTOs.size(); i++) {
+    int end = offset + limit;
+
+    for (int i = 0; i < editInfoDTOs.size() && i < end; i++) {
       EditHistoryDto dto = editInfoDTOs.get(i);
 
-      editHistories.add(
-        new PreparedEditHistory(
-          lorCodeService,
-          secure,
-          userDao.getUserCached(dto.getEditor()),
-          dto.getEditdate(),
-          dto.getOldmessage() != null ? currentMessage : null,
-          dto.getOldtitle() != null ? currentTitle : null,
-          dto.getOldurl() != null ? currentUrl : null,
-          dto.getOldlinktext() != null ? currentLinktext : null,
-          dto.getOldtags() != null ? currentTags : null,
-          i == 0,
-          false,
-          dto.getOldminor() != null ? currentMinor : null
-        )
-      );
+      if (i >= offset) {
+        editHistories.add(
+          new PreparedEditHistory(
+            lorCodeService,
+            secure,
+            userDao.getUserCached(dto.getEditor()),
+            dto.getEditdate(),
+            dto.getOldmessage() != null ? currentMessage.get() : null,
+            dto.getOldtitle() != null ? currentTitle : null,
+            dto.getOldurl() != null ? currentUrl : null,
+            dto.getOldlinktext() != null ? currentLinktext : null,
+            dto.getOldtags() != null ? currentTags : null,
+            i == 0,
+            false,
+            dto.getOldminor() != null ? currentMinor : null
+          )
+        );
+      }
 
       if (dto.getOldmessage() != null) {
-        currentMessage = dto.getOldmessage();
+        currentMessage.back(dto.getMessageDelta());
       }
 
       if (dto.getOldtitle() != null) {
@@ -123,7 +141,7 @@ public class EditHistoryService {
       }
     }
 
-    if (!editInfoDTOs.isEmpty()) {
+    if (!editInfoDTOs.isEmpty() && editInfoDTOs.size() >= offset && editInfoDTOs.size() < end) {
       if (currentTags.isEmpty()) {
         currentTags = null;
       }
@@ -133,7 +151,7 @@ public class EditHistoryService {
               secure,
               userDao.getUserCached(message.getUid()),
               message.getPostdate(),
-              currentMessage,
+              currentMessage.get(),
               currentTitle,
               currentUrl,
               currentLinktext,
@@ -147,38 +165,47 @@ public class EditHistoryService {
     return editHistories;
   }
 
+  /**
+   * Получить страницу истории изменений комментария, см. prepareEditInfo для топика
+   */
   public List<PreparedEditHistory> prepareEditInfo(
     Comment comment,
-    boolean secure
+    boolean secure,
+    int offset,
+    int limit
   ) throws UserNotFoundException {
     List<EditHistoryDto> editInfoDTOs = editHistoryDao.getEditInfo(comment.getId(), EditHistoryObjectTypeEnum.COMMENT);
-    List<PreparedEditHistory> editHistories = new ArrayList<>(editInfoDTOs.size());
+    List<PreparedEditHistory> editHistories = new ArrayList<>(Math.min(limit, editInfoDTOs.size() + 1));
 
-    String currentMessage = msgbaseDao.getMessageText(comment.getId()).getText();
+    TextHistory currentMessage = new TextHistory(msgbaseDao.getMessageText(comment.getId()).getText());
     String currentTitle = comment.getTitle();
 
-    for (int i = 0; i < editInfoDTOs.size(); i++) {
+    int end = offset + limit;
+
+    for (int i = 0; i < editInfoDTOs.size() && i < end; i++) {
       EditHistoryDto dto = editInfoDTOs.get(i);
 
-      editHistories.add(
-        new PreparedEditHistory(
-          lorCodeService,
-          secure,
-          userDao.getUserCached(dto.getEditor()),
-          dto.getEditdate(),
-          dto.getOldmessage() != null ? currentMessage : null,
-          dto.getOldtitle() != null ? currentTitle : null,
-          null,
-          null,
-          null,
-          i == 0,
-          false,
-          null
-        )
-      );
+      if (i >= offset) {
+        editHistories.add(
+          new PreparedEditHistory(
+            lorCodeService,
+            secure,
+            userDao.getUserCached(dto.getEditor()),
+            dto.getEditdate(),
+            dto.getOldmessage() != null ? currentMessage.get() : null,
+            dto.getOldtitle() != null ? currentTitle : null,
+            null,
+            null,
+            null,
+            i == 0,
+            false,
+            null
+          )
+        );
+      }
 
       if (dto.getOldmessage() != null) {
-        currentMessage = dto.getOldmessage();
+        currentMessage.back(dto.getMessageDelta());
       }
 
       if (dto.getOldtitle() != null) {
@@ -186,14 +213,14 @@ public class EditHistoryService {
       }
     }
 
-    if (!editInfoDTOs.isEmpty()) {
+    if (!editInfoDTOs.isEmpty() && editInfoDTOs.size() >= offset && editInfoDTOs.size() < end) {
       editHistories.add(
         new PreparedEditHistory(
           lorCodeService,
           secure,
           userDao.getUserCached(comment.getUserid()),
           comment.getPostdate(),
-          currentMessage,
+          currentMessage.get(),
           currentTitle,
           null,
           null,
@@ -212,10 +239,175 @@ public class EditHistoryService {
     return editHistoryDao.getEditInfo(id, objectTypeEnum);
   }
 
+  /**
+   * Последняя правка и число правок без загрузки всей истории
+   *
+   * @param id id топика или комментария
+   * @param objectTypeEnum тип: топик или комментарий
+   * @return сводка или null, если правок не было
+   */
+  @Nullable
+  public EditInfoSummary getLastEditInfo(int id, EditHistoryObjectTypeEnum objectTypeEnum) {
+    return editHistoryDao.getLastEditInfo(id, objectTypeEnum);
+  }
+
+  /**
+   * Сохранить правку. Старый текст сохраняется целиком, а предыдущая полная
+   * копия заменяется дельтой относительно него (кроме каждой SNAPSHOT_INTERVAL-ой).
+   *
+   * @param editHistoryDto правка
+   */
   public void insert(EditHistoryDto editHistoryDto) {
+    if (editHistoryDto.getOldmessage() != null) {
+      packPreviousRevision(editHistoryDto.getMsgid(), editHistoryDto.getObjectType(), editHistoryDto.getOldmessage());
+
+      editHistoryDto.setMessageDelta(TextDelta.snapshot(editHistoryDto.getOldmessage()));
+    }
+
     editHistoryDao.insert(editHistoryDto);
   }
 
+  private void packPreviousRevision(int msgid, EditHistoryObjectTypeEnum objectType, String newerText) {
+    List<EditHistoryDto> revisions = editHistoryDao.getMessageRevisions(msgid, objectType, SNAPSHOT_INTERVAL);
+
+    if (revisions.isEmpty()) {
+      return;
+    }
+
+    EditHistoryDto previous = revisions.get(0);
+    TextDelta stored = previous.getMessageDelta();
+
+    if (!stored.isSnapshot()) {
+      return;
+    }
+
+    TextDelta packed;
+
+    if (isChainFull(revisions)) {
+      packed = stored;
+    } else {
+      packed = TextDelta.encode(newerText, stored.getMiddle());
+    }
+
+    if (previous.getMessagePrefix() == null || !packed.equals(stored)) {
+      editHistoryDao.updateMessageDelta(previous.getId(), packed);
+    }
+  }
+
+  /**
+   * Переписать историю текста топика/комментария в виде дельт с полными копиями
+   * через каждые SNAPSHOT_INTERVAL версий. Используется для записей, сохраненных
+   * до перехода на дельты.
+   *
+   * @param id id топика или комментария
+   * @param objectType тип: топик или комментарий
+   * @return false, если новые дельты не восстанавливают прежние версии
+   *         и история оставлена без изменений
+   */
+  @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
+  public boolean compactMessage(int id, EditHistoryObjectTypeEnum objectType) {
+    List<EditHistoryDto> revisions = editHistoryDao.getMessageRevisions(id, objectType, Integer.MAX_VALUE);
+
+    List<TextDelta> stored = new ArrayList<>(revisions.size());
+
+    for (EditHistoryDto revision : revisions) {
+      stored.add(revision.getMessageDelta());
+    }
+
+    List<TextDelta> packed = compact(stored);
+
+    // полные копии заменяются дельтами, поэтому перед записью проверяем,
+    // что из них получаются ровно те же версии
+    if (!decode(packed).equals(decode(stored))) {
+      return false;
+    }
+
+    for (int i = 0; i < revisions.size(); i++) {
+      EditHistoryDto revision = revisions.get(i);
+
+      if (revision.getMessagePrefix() == null || !packed.get(i).equals(stored.get(i))) {
+        editHistoryDao.updateMessageDelta(revision.getId(), packed.get(i));
+      }
+    }
+
+    return true;
+  }
+
+  public List<Integer> getUncompactedIds(EditHistoryObjectTypeEnum objectType, int limit) {
+    return editHistoryDao.getUncompactedIds(objectType, limit);
+  }
+
+  /**
+   * Перекодировать версии текста: каждая SNAPSHOT_INTERVAL-ая версия (начиная
+   * с последней) сохраняется целиком, остальные - дельтой относительно более новой
+   *
+   * @param revisions версии текста от новых к старым
+   * @return новые представления версий в том же порядке
+   */
+  static List<TextDelta> compact(List<TextDelta> revisions) {
+    List<String> texts = decode(revisions);
+    List<TextDelta> packed = new ArrayList<>(texts.size());
+
+    for (int i = 0; i < texts.size(); i++) {
+      if (i % SNAPSHOT_INTERVAL == 0) {
+        packed.add(TextDelta.snapshot(texts.get(i)));
+      } else {
+        packed.add(TextDelta.encode(texts.get(i - 1), texts.get(i)));
+      }
+    }
+
+    return packed;
+  }
+
+  /**
+   * Восстановить все версии текста
+   *
+   * @param revisions версии текста от новых к старым; последняя должна быть полной копией
+   * @return тексты версий в том же порядке
+   */
+  static List<String> decode(List<TextDelta> revisions) {
+    List<String> texts = new ArrayList<>(revisions.size());
+
+    String newer = null;
+
+    for (TextDelta revision : revisions) {
+      String text;
+
+      if (revision.isSnapshot()) {
+        text = revision.getMiddle();
+      } else if (newer != null) {
+        text = revision.apply(newer);
+      } else {
+        throw new IllegalStateException("Latest revision must be stored in full");
+      }
+
+      texts.add(text);
+      newer = text;
+    }
+
+    return texts;
+  }
+
+  /**
+   * Проверить, что за последней версией уже идет SNAPSHOT_INTERVAL-1 дельт подряд
+   * и она должна остаться полной копией
+   *
+   * @param revisions версии текста от новых к старым
+   */
+  static boolean isChainFull(List<EditHistoryDto> revisions) {
+    int deltas = 0;
+
+    for (EditHistoryDto revision : revisions.subList(1, revisions.size())) {
+      if (revision.getMessageDelta().isSnapshot()) {
+        break;
+      }
+
+      deltas++;
+    }
+
+    return deltas >= SNAPSHOT_INTERVAL - 1;
+  }
+
   public ImmutableSet<User> getEditors(final Topic message, List<EditHistoryDto> editInfoList) {
     return ImmutableSet.copyOf(
             Iterables.transform(
@@ -233,4 +425,37 @@ public class EditHistoryService {
                     })
     );
   }
+
+  /**
+   * Текст сообщения при обходе истории от новых версий к старым.
+   * Дельты применяются только когда текст действительно нужен,
+   * а полная копия отменяет все накопленные дельты.
+   */
+  static class TextHistory {
+    private String text;
+    private final List<TextDelta> pending = new ArrayList<>();
+
+    TextHistory(String current) {
+      text = current;
+    }
+
+    String get() {
+      for (TextDelta delta : pending) {
+        text = delta.apply(text);
+      }
+
+      pending.clear();
+
+      return text;
+    }
+
+    void back(TextDelta delta) {
+      if (delta.isSnapshot()) {
+        pending.clear();
+        text = delta.getMiddle();
+      } else {
+        pending.add(delta);
+      }
+    }
+  }
 }
@@ -0,0 +1,40 @@
+/*
+ * Copyright 1998-2012 Linux.org.ru
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.org.linux.edithistory;
+
+/**
+ * Сводка по истории изменений: последняя правка (без старых текстов) и число правок
+ */
+public class EditInfoSummary {
+  private final EditHistoryDto lastEdit;
+  private final int editCount;
+
+  public EditInfoSummary(EditHistoryDto lastEdit, int editCount) {
+    this.lastEdit = lastEdit;
+    this.editCount = editCount;
+  }
+
+  /**
+   * @return последняя правка, заполнены только id, msgid, editor, editdate и objectType
+   */
+  public EditHistoryDto getLastEdit() {
+    return lastEdit;
+  }
+
+  public int getEditCount() {
+    return editCount;
+  }
+}
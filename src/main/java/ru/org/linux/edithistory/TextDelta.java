@@ -0,0 +1,130 @@
+/*
+ * Copyright 1998-2012 Linux.org.ru
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.org.linux.edithistory;
+
+/**
+ * Разница между двумя версиями текста: старая версия получается из новой
+ * заменой всего, кроме общего начала (prefix символов) и общего конца
+ * (suffix символов), на middle.
+ *
+ * Правка обычно затрагивает один участок текста, поэтому middle намного
+ * короче полного текста. Дельта с prefix=0 и suffix=0 содержит текст целиком.
+ */
+public final class TextDelta {
+  private final int prefix;
+  private final int suffix;
+  private final String middle;
+
+  public TextDelta(int prefix, int suffix, String middle) {
+    this.prefix = prefix;
+    this.suffix = suffix;
+    this.middle = middle;
+  }
+
+  /**
+   * Полная копия текста
+   */
+  public static TextDelta snapshot(String text) {
+    return new TextDelta(0, 0, text);
+  }
+
+  /**
+   * Построить дельту, по которой из newer восстанавливается older
+   */
+  public static TextDelta encode(String newer, String older) {
+    int maxCommon = Math.min(newer.length(), older.length());
+
+    int prefix = 0;
+    while (prefix < maxCommon && newer.charAt(prefix) == older.charAt(prefix)) {
+      prefix++;
+    }
+
+    // граница не должна разрезать суррогатную пару: половина пары
+    // в middle не переживает запись в базу
+    if (prefix > 0 && Character.isHighSurrogate(newer.charAt(prefix - 1))) {
+      prefix--;
+    }
+
+    int suffix = 0;
+    while (suffix < maxCommon - prefix &&
+            newer.charAt(newer.length() - suffix - 1) == older.charAt(older.length() - suffix - 1)) {
+      suffix++;
+    }
+
+    if (suffix > 0 && Character.isLowSurrogate(newer.charAt(newer.length() - suffix))) {
+      suffix--;
+    }
+
+    return new TextDelta(prefix, suffix, older.substring(prefix, older.length() - suffix));
+  }
+
+  /**
+   * Восстановить старую версию текста
+   *
+   * @param newer версия, относительно которой построена дельта
+   * @return старая версия
+   */
+  public String apply(String newer) {
+    if (isSnapshot()) {
+      return middle;
+    }
+
+    if (prefix + suffix > newer.length()) {
+      throw new IllegalArgumentException("Delta does not match text: prefix=" + prefix + ", suffix=" + suffix + ", length=" + newer.length());
+    }
+
+    return newer.substring(0, prefix) + middle + newer.substring(newer.length() - suffix);
+  }
+
+  public boolean isSnapshot() {
+    return prefix == 0 && suffix == 0;
+  }
+
+  public int getPrefix() {
+    return prefix;
+  }
+
+  public int getSuffix() {
+    return suffix;
+  }
+
+  public String getMiddle() {
+    return middle;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+
+    TextDelta textDelta = (TextDelta) o;
+
+    return prefix == textDelta.prefix && suffix == textDelta.suffix && middle.equals(textDelta.middle);
+  }
+
+  @Override
+  public int hashCode() {
+    int result = prefix;
+    result = 31 * result + suffix;
+    result = 31 * result + middle.hashCode();
+    return result;
+  }
+}
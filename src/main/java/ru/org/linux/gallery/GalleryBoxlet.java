@@ -26,6 +26,7 @@ import java.util.List;
 
 @Controller
 public class GalleryBoxlet extends AbstractBoxlet {
+  private static final int EXPIRE_TIME = 2 * 60 * 1000;
   private static final int COUNT_ITEMS = 3;
   @Autowired
   private ImageDao imageDao;
@@ -39,4 +40,9 @@ public class GalleryBoxlet extends AbstractBoxlet {
     mav.addObject("items", list);
     return mav;
   }
+
+  @Override
+  protected long getExpireTime() {
+    return EXPIRE_TIME;
+  }
 }
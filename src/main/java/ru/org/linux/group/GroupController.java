@@ -15,13 +15,11 @@
 
 package ru.org.linux.group;
 
-import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.support.rowset.SqlRowSet;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.ModelAndView;
@@ -31,16 +29,10 @@ import ru.org.linux.section.Section;
 import ru.org.linux.section.SectionService;
 import ru.org.linux.site.Template;
 import ru.org.linux.spring.Configuration;
-import ru.org.linux.topic.TopicTagService;
-import ru.org.linux.user.IgnoreListDao;
-import ru.org.linux.user.User;
-import ru.org.linux.user.UserDao;
-import ru.org.linux.user.UserNotFoundException;
 import ru.org.linux.util.BadImageException;
 import ru.org.linux.util.ImageInfo;
 import ru.org.linux.util.ServletParameterBadValueException;
 
-import javax.annotation.Nullable;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.sql.DataSource;
@@ -56,20 +48,14 @@ public class GroupController {
   @Autowired
   private SectionService sectionService;
 
-  @Autowired
-  private UserDao userDao;
-
   @Autowired
   private GroupInfoPrepareService prepareService;
 
-  @Autowired
-  private IgnoreListDao ignoreListDao;
-
   @Autowired
   private GroupPermissionService groupPermissionService;
 
   @Autowired
-  private TopicTagService topicTagService;
+  private GroupListService groupListService;
 
   @Autowired
   private Configuration configuration;
@@ -132,103 +118,6 @@ public class GroupController {
     return forum(groupName, offset, lastmod, request, response, null, null);
   }
 
-  private List<TopicsListItem> getStickyTopics(
-          Group group,
-          int messagesInPage
-  ) {
-    String q =
-            "SELECT topics.title as subj, lastmod, userid, topics.id as msgid, deleted, topics.stat1, topics.stat3, topics.stat4, topics.sticky, topics.resolved " +
-            "FROM topics WHERE sticky AND NOT deleted AND topics.groupid=? ORDER BY msgid DESC";
-
-    SqlRowSet rs = jdbcTemplate.queryForRowSet(q, group.getId());
-
-    return prepareTopic(rs, messagesInPage);
-  }
-
-  // TODO: move to dao/service
-  private List<TopicsListItem> getTopics(
-          Group group,
-          int messagesInPage,
-          boolean lastmod,
-          Integer year,
-          Integer month,
-          int topics,
-          int offset,
-          boolean showDeleted,
-          boolean showIgnored,
-          @Nullable User currentUser
-  ) {
-    Set<Integer> ignoreList;
-
-    if (currentUser!=null) {
-      ignoreList = ignoreListDao.get(currentUser);
-    } else {
-      ignoreList = Collections.emptySet();
-    }
-
-   String delq = showDeleted ? "" : " AND NOT deleted ";
-
-    String q = "SELECT topics.title as subj, lastmod, userid, topics.id as msgid, deleted, topics.stat1, topics.stat3, topics.stat4, topics.sticky, topics.resolved " +
-            "FROM topics WHERE NOT sticky AND topics.groupid=" + group.getId() + delq;
-
-    if (year!=null) {
-      q+=" AND postdate>='" + year + '-' + month + "-01'::timestamp AND (postdate<'" + year + '-' + month + "-01'::timestamp+'1 month'::interval)";
-    }
-
-    String ignq = "";
-
-    if (!showIgnored && currentUser!=null) {
-      int currentUserId = currentUser.getId();
-      if (!ignoreList.isEmpty()) {
-        ignq = " AND topics.userid NOT IN (SELECT ignored FROM ignore_list WHERE userid=" + currentUserId + ')';
-      }
-
-      if (!currentUser.isModerator()) {
-        ignq += " AND topics.id NOT IN (select distinct tags.msgid from tags, user_tags "
-          + "where tags.tagid=user_tags.tag_id and user_tags.is_favorite = false and user_id=" + currentUserId + ") ";
-      }
-    }
-
-    SqlRowSet rs;
-
-    if (!lastmod) {
-      if (year==null) {
-        if (offset==0) {
-          q += " AND postdate>CURRENT_TIMESTAMP-'3 month'::interval ";
-        }
-
-        rs = jdbcTemplate.queryForRowSet(q + ignq + " ORDER BY msgid DESC LIMIT " + topics + " OFFSET " + offset);
-      } else {
-        rs = jdbcTemplate.queryForRowSet(q + ignq + " ORDER BY msgid DESC LIMIT " + topics + " OFFSET " + offset);
-      }
-    } else {
-      rs = jdbcTemplate.queryForRowSet(q + ignq + " ORDER BY lastmod DESC LIMIT " + topics + " OFFSET " + offset);
-    }
-
-    return prepareTopic(rs, messagesInPage);
-  }
-
-  private List<TopicsListItem> prepareTopic(
-          SqlRowSet rs,
-          int messagesInPage
-  ) {
-    List<TopicsListItem> topicsList = new ArrayList<>();
-
-    while (rs.next()) {
-      User author;
-
-      author = userDao.getUserCached(rs.getInt("userid"));
-
-      ImmutableList<String> tags = topicTagService.getMessageTagsForTitle(rs.getInt("msgid"));
-
-      TopicsListItem topic = new TopicsListItem(author, rs, messagesInPage, tags);
-
-      topicsList.add(topic);
-    }
-
-    return topicsList;
-  }
-
   private ModelAndView forum(
     @PathVariable("group") String groupName,
     @RequestParam(defaultValue = "0", value="offset") int offset,
@@ -322,7 +211,7 @@ public class GroupController {
       params.put("url", group.getUrl());
     }
 
-    List<TopicsListItem> mainTopics = getTopics(
+    List<TopicsListItem> mainTopics = groupListService.getTopics(
             group,
             tmpl.getProf().getMessages(),
             lastmod,
@@ -336,7 +225,7 @@ public class GroupController {
     );
 
     if (year==null && offset==0 && !lastmod) {
-      List<TopicsListItem> stickyTopics = getStickyTopics(group, tmpl.getProf().getMessages());
+      List<TopicsListItem> stickyTopics = groupListService.getStickyTopics(group, tmpl.getProf().getMessages());
 
       params.put("topicsList",  Lists.newArrayList(Iterables.concat(stickyTopics, mainTopics)));
     } else {
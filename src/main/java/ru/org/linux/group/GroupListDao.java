@@ -0,0 +1,195 @@
+/*
+ * Copyright 1998-2012 Linux.org.ru
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.org.linux.group;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.rowset.SqlRowSet;
+import org.springframework.stereotype.Repository;
+import ru.org.linux.topic.TopicTagService;
+import ru.org.linux.user.User;
+import ru.org.linux.user.UserDao;
+import ru.org.linux.util.IntSet;
+import ru.org.linux.util.StringUtil;
+
+import javax.annotation.Nullable;
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Списки топиков группы форума
+ */
+@Repository
+public class GroupListDao {
+  private static final String columns =
+          "SELECT topics.title as subj, lastmod, postdate, userid, topics.id as msgid, deleted, " +
+          "topics.stat1, topics.stat3, topics.stat4, topics.sticky, topics.resolved FROM topics ";
+
+  @Autowired
+  private UserDao userDao;
+
+  @Autowired
+  private TopicTagService topicTagService;
+
+  private JdbcTemplate jdbcTemplate;
+
+  @Autowired
+  public void setDataSource(DataSource ds) {
+    jdbcTemplate = new JdbcTemplate(ds);
+  }
+
+  /**
+   * Прикрепленные топики группы
+   */
+  public List<GroupTopicRow> getStickyTopics(Group group) {
+    SqlRowSet rs = jdbcTemplate.queryForRowSet(
+            columns + "WHERE sticky AND NOT deleted AND topics.groupid=? ORDER BY msgid DESC",
+            group.getId()
+    );
+
+    return prepareTopics(rs);
+  }
+
+  /**
+   * Последние неудаленные топики группы без учета игнорирования, от новых к старым
+   *
+   * @param group группа
+   * @param limit сколько топиков выбрать
+   */
+  public List<GroupTopicRow> getRecentTopics(Group group, int limit) {
+    SqlRowSet rs = jdbcTemplate.queryForRowSet(
+            columns + "WHERE NOT sticky AND NOT deleted AND topics.groupid=? ORDER BY msgid DESC LIMIT ?",
+            group.getId(),
+            limit
+    );
+
+    return prepareTopics(rs);
+  }
+
+  /**
+   * Страница списка топиков группы с учетом игнорируемых пользователем авторов и тегов
+   */
+  public List<GroupTopicRow> getTopics(
+          Group group,
+          boolean lastmod,
+          Integer year,
+          Integer month,
+          int topics,
+          int offset,
+          boolean showDeleted,
+          boolean showIgnored,
+          @Nullable User currentUser,
+          boolean hasIgnoredUsers
+  ) {
+    String delq = showDeleted ? "" : " AND NOT deleted ";
+
+    String q = columns + "WHERE NOT sticky AND topics.groupid=" + group.getId() + delq;
+
+    if (year!=null) {
+      q+=" AND postdate>='" + year + '-' + month + "-01'::timestamp AND (postdate<'" + year + '-' + month + "-01'::timestamp+'1 month'::interval)";
+    }
+
+    String ignq = "";
+
+    if (!showIgnored && currentUser!=null) {
+      int currentUserId = currentUser.getId();
+      if (hasIgnoredUsers) {
+        ignq = " AND topics.userid NOT IN (SELECT ignored FROM ignore_list WHERE userid=" + currentUserId + ')';
+      }
+
+      if (!currentUser.isModerator()) {
+        ignq += " AND topics.id NOT IN (select distinct tags.msgid from tags, user_tags "
+          + "where tags.tagid=user_tags.tag_id and user_tags.is_favorite = false and user_id=" + currentUserId + ") ";
+      }
+    }
+
+    SqlRowSet rs;
+
+    if (!lastmod) {
+      if (year==null && offset==0) {
+        q += " AND postdate>CURRENT_TIMESTAMP-'3 month'::interval ";
+      }
+
+      rs = jdbcTemplate.queryForRowSet(q + ignq + " ORDER BY msgid DESC LIMIT " + topics + " OFFSET " + offset);
+    } else {
+      rs = jdbcTemplate.queryForRowSet(q + ignq + " ORDER BY lastmod DESC LIMIT " + topics + " OFFSET " + offset);
+    }
+
+    return prepareTopics(rs);
+  }
+
+  /**
+   * Id группы топика
+   *
+   * @return id группы или null, если топика нет
+   */
+  @Nullable
+  public Integer getTopicGroupId(int msgid) {
+    List<Integer> res = jdbcTemplate.queryForList("SELECT groupid FROM topics WHERE id=?", Integer.class, msgid);
+
+    if (!res.isEmpty()) {
+      return res.get(0);
+    } else {
+      return null;
+    }
+  }
+
+  private List<GroupTopicRow> prepareTopics(SqlRowSet rs) {
+    List<Integer> msgids = new ArrayList<>();
+
+    while (rs.next()) {
+      msgids.add(rs.getInt("msgid"));
+    }
+
+    ImmutableListMultimap<Integer, String> tags = topicTagService.getMessageTagsForTitle(msgids);
+    ImmutableListMultimap<Integer, Integer> tagIds = topicTagService.getTagIds(msgids);
+
+    rs.beforeFirst();
+
+    List<GroupTopicRow> topicsList = new ArrayList<>(msgids.size());
+
+    while (rs.next()) {
+      int msgid = rs.getInt("msgid");
+
+      Timestamp lastmod = rs.getTimestamp("lastmod");
+      if (lastmod==null) {
+        lastmod = new Timestamp(0);
+      }
+
+      topicsList.add(new GroupTopicRow(
+              msgid,
+              StringUtil.makeTitle(rs.getString("subj")),
+              lastmod,
+              rs.getTimestamp("postdate"),
+              userDao.getUserCached(rs.getInt("userid")),
+              rs.getBoolean("deleted"),
+              rs.getInt("stat1"),
+              rs.getInt("stat3"),
+              rs.getInt("stat4"),
+              rs.getBoolean("sticky"),
+              rs.getBoolean("resolved"),
+              ImmutableList.copyOf(tags.get(msgid)),
+              IntSet.of(tagIds.get(msgid))
+      ));
+    }
+
+    return topicsList;
+  }
+}
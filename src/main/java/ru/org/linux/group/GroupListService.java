@@ -0,0 +1,326 @@
+/*
+ * Copyright 1998-2012 Linux.org.ru
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.org.linux.group;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import ru.org.linux.topic.TopicCache.InvalidateTopic;
+import ru.org.linux.user.IgnoreListDao;
+import ru.org.linux.user.User;
+import ru.org.linux.user.UserTagDao;
+import ru.org.linux.util.IntSet;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Списки топиков групп форума.
+ *
+ * Для запрошенных групп в памяти держатся прикрепленные топики и первые
+ * MATERIALIZED_TOPICS топиков, из них без запросов к базе собираются первые
+ * страницы с учетом игнорируемых авторов и тегов. После изменения топиков
+ * группы (сообщения об изменении топиков рассылает TopicCache) список помечается
+ * устаревшим и перечитывается не чаще раза в REBUILD_INTERVAL, до этого
+ * отдается старый список. Сообщения от других узлов приходят, только если все
+ * узлы подключены к общему брокеру (jms.brokerUrl); иначе чужие изменения
+ * видны не позже чем через TTL.
+ * Архив, сортировка по lastmod и показ удаленных читаются из базы.
+ */
+@Service
+public class GroupListService {
+  private static final Log logger = LogFactory.getLog(GroupListService.class);
+
+  /**
+   * Сколько топиков группы держать в памяти
+   */
+  static final int MATERIALIZED_TOPICS = GroupController.MAX_OFFSET + 50;
+
+  /**
+   * Время жизни списка в минутах
+   */
+  private static final int TTL = 2;
+
+  /**
+   * Минимальный интервал между перечитываниями списка одной группы, мс
+   */
+  private static final long REBUILD_INTERVAL = 10 * 1000;
+
+  private long rebuildInterval = REBUILD_INTERVAL;
+
+  @Autowired
+  private GroupListDao groupListDao;
+
+  @Autowired
+  private IgnoreListDao ignoreListDao;
+
+  @Autowired
+  private UserTagDao userTagDao;
+
+  private final Cache<Integer, GroupTopics> cache = CacheBuilder.newBuilder()
+          .maximumSize(100)
+          .expireAfterWrite(TTL, TimeUnit.MINUTES)
+          .build();
+
+  /**
+   * Увеличивается при каждом изменении, чтобы пометить устаревшими данные,
+   * прочитанные во время изменения
+   */
+  private final AtomicLong generation = new AtomicLong();
+
+  public List<TopicsListItem> getStickyTopics(Group group, int messagesInPage) {
+    return prepare(getGroupTopics(group).getSticky(), messagesInPage);
+  }
+
+  public List<TopicsListItem> getTopics(
+          Group group,
+          int messagesInPage,
+          boolean lastmod,
+          Integer year,
+          Integer month,
+          int topics,
+          int offset,
+          boolean showDeleted,
+          boolean showIgnored,
+          @Nullable User currentUser
+  ) {
+    IntSet ignoredUsers;
+    IntSet ignoredTags;
+
+    if (currentUser != null && !showIgnored) {
+      ignoredUsers = ignoreListDao.get(currentUser);
+      ignoredTags = currentUser.isModerator() ? IntSet.EMPTY : userTagDao.getTagIds(currentUser.getId(), false);
+    } else {
+      ignoredUsers = IntSet.EMPTY;
+      ignoredTags = IntSet.EMPTY;
+    }
+
+    if (!lastmod && year == null && !showDeleted) {
+      List<GroupTopicRow> page = getPage(getGroupTopics(group), topics, offset, ignoredUsers, ignoredTags);
+
+      if (page != null) {
+        return prepare(page, messagesInPage);
+      }
+    }
+
+    return prepare(
+            groupListDao.getTopics(
+                    group, lastmod, year, month, topics, offset, showDeleted, showIgnored, currentUser,
+                    !ignoredUsers.isEmpty()
+            ),
+            messagesInPage
+    );
+  }
+
+  /**
+   * Страница из топиков в памяти
+   *
+   * @return страница или null, если топиков в памяти не хватает
+   */
+  @Nullable
+  static List<GroupTopicRow> getPage(GroupTopics groupTopics, int topics, int offset,
+                                     IntSet ignoredUsers, IntSet ignoredTags) {
+    long threshold = 0;
+
+    if (offset == 0) {
+      Calendar calendar = Calendar.getInstance();
+      calendar.add(Calendar.MONTH, -3);
+      threshold = calendar.getTimeInMillis();
+    }
+
+    List<GroupTopicRow> page = new ArrayList<>(topics);
+    int skipped = 0;
+
+    for (GroupTopicRow row : groupTopics.getTopics()) {
+      // на первой странице только топики за последние 3 месяца
+      if (row.getPostdate().getTime() <= threshold ||
+              ignoredUsers.contains(row.getAuthor().getId()) || ignoredTags.containsAny(row.getTagIds())) {
+        continue;
+      }
+
+      if (skipped < offset) {
+        skipped++;
+        continue;
+      }
+
+      page.add(row);
+
+      if (page.size() == topics) {
+        return page;
+      }
+    }
+
+    if (groupTopics.isComplete()) {
+      return page;
+    } else {
+      return null;
+    }
+  }
+
+  private GroupTopics getGroupTopics(Group group) {
+    GroupTopics groupTopics = cache.getIfPresent(group.getId());
+
+    // устаревший список перечитывает один запрос, остальные пока получают старый
+    if (groupTopics != null && !groupTopics.tryRebuild(System.currentTimeMillis(), rebuildInterval)) {
+      return groupTopics;
+    }
+
+    try {
+      return load(group);
+    } catch (RuntimeException ex) {
+      if (groupTopics != null) {
+        groupTopics.invalidate();
+      }
+
+      throw ex;
+    }
+  }
+
+  private GroupTopics load(Group group) {
+    long current = generation.get();
+
+    List<GroupTopicRow> topics = groupListDao.getRecentTopics(group, MATERIALIZED_TOPICS);
+
+    GroupTopics groupTopics = new GroupTopics(
+            groupListDao.getStickyTopics(group),
+            topics,
+            topics.size() < MATERIALIZED_TOPICS
+    );
+
+    if (generation.get() != current) {
+      groupTopics.invalidate();
+    }
+
+    cache.put(group.getId(), groupTopics);
+
+    return groupTopics;
+  }
+
+  /**
+   * Топик изменился: помечаем устаревшими группы, в которых он показывается
+   * сейчас и в которой он находится теперь
+   */
+  public void handleMessage(InvalidateTopic message) {
+    int msgid = message.getTopicId();
+
+    generation.incrementAndGet();
+
+    for (GroupTopics groupTopics : cache.asMap().values()) {
+      if (groupTopics.contains(msgid)) {
+        groupTopics.invalidate();
+      }
+    }
+
+    Integer groupId = groupListDao.getTopicGroupId(msgid);
+
+    if (groupId != null) {
+      GroupTopics groupTopics = cache.getIfPresent(groupId);
+
+      if (groupTopics != null) {
+        groupTopics.invalidate();
+      }
+    }
+
+    logger.debug("Group lists invalidated for topic " + msgid);
+  }
+
+  private static List<TopicsListItem> prepare(List<GroupTopicRow> rows, int messagesInPage) {
+    List<TopicsListItem> result = new ArrayList<>(rows.size());
+
+    for (GroupTopicRow row : rows) {
+      result.add(new TopicsListItem(row, messagesInPage));
+    }
+
+    return result;
+  }
+
+  static class GroupTopics {
+    private final ImmutableList<GroupTopicRow> sticky;
+    private final ImmutableList<GroupTopicRow> topics;
+    private final boolean complete;
+    private final ImmutableSet<Integer> msgids;
+    private final long loaded = System.currentTimeMillis();
+    private final AtomicBoolean invalid = new AtomicBoolean(false);
+
+    /**
+     * @param sticky прикрепленные топики
+     * @param topics остальные неудаленные топики от новых к старым
+     * @param complete true если в topics все топики группы
+     */
+    GroupTopics(List<GroupTopicRow> sticky, List<GroupTopicRow> topics, boolean complete) {
+      this.sticky = ImmutableList.copyOf(sticky);
+      this.topics = ImmutableList.copyOf(topics);
+      this.complete = complete;
+
+      ImmutableSet.Builder<Integer> builder = ImmutableSet.builder();
+
+      for (GroupTopicRow row : sticky) {
+        builder.add(row.getMsgid());
+      }
+
+      for (GroupTopicRow row : topics) {
+        builder.add(row.getMsgid());
+      }
+
+      msgids = builder.build();
+    }
+
+    ImmutableList<GroupTopicRow> getSticky() {
+      return sticky;
+    }
+
+    ImmutableList<GroupTopicRow> getTopics() {
+      return topics;
+    }
+
+    boolean isComplete() {
+      return complete;
+    }
+
+    boolean contains(int msgid) {
+      return msgids.contains(msgid);
+    }
+
+    void invalidate() {
+      invalid.set(true);
+    }
+
+    boolean isInvalid() {
+      return invalid.get();
+    }
+
+    /**
+     * Захватить право на перестроение устаревшего списка.
+     *
+     * @param now      текущее время, мс
+     * @param interval сколько должно пройти с загрузки списка, мс
+     * @return true, если перестраивать будет вызвавший поток
+     */
+    boolean tryRebuild(long now, long interval) {
+      return now - loaded >= interval && invalid.compareAndSet(true, false);
+    }
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 1998-2012 Linux.org.ru
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.org.linux.group;
+
+import com.google.common.collect.ImmutableList;
+import ru.org.linux.user.User;
+import ru.org.linux.util.IntSet;
+
+import java.io.Serializable;
+import java.sql.Timestamp;
+
+/**
+ * Строка списка топиков группы, не зависящая от настроек пользователя
+ */
+public class GroupTopicRow implements Serializable {
+  private final int msgid;
+  private final String subj;
+  private final Timestamp lastmod;
+  private final Timestamp postdate;
+  private final User author;
+  private final boolean deleted;
+  private final int stat1;
+  private final int stat3;
+  private final int stat4;
+  private final boolean sticky;
+  private final boolean resolved;
+  private final ImmutableList<String> tags;
+  private final IntSet tagIds;
+
+  private static final long serialVersionUID = -3340926316446376032L;
+
+  public GroupTopicRow(int msgid, String subj, Timestamp lastmod, Timestamp postdate, User author, boolean deleted,
+                       int stat1, int stat3, int stat4, boolean sticky, boolean resolved,
+                       ImmutableList<String> tags, IntSet tagIds) {
+    this.msgid = msgid;
+    this.subj = subj;
+    this.lastmod = lastmod;
+    this.postdate = postdate;
+    this.author = author;
+    this.deleted = deleted;
+    this.stat1 = stat1;
+    this.stat3 = stat3;
+    this.stat4 = stat4;
+    this.sticky = sticky;
+    this.resolved = resolved;
+    this.tags = tags;
+    this.tagIds = tagIds;
+  }
+
+  public int getMsgid() {
+    return msgid;
+  }
+
+  public String getSubj() {
+    return subj;
+  }
+
+  public Timestamp getLastmod() {
+    return lastmod;
+  }
+
+  public Timestamp getPostdate() {
+    return postdate;
+  }
+
+  public User getAuthor() {
+    return author;
+  }
+
+  public boolean isDeleted() {
+    return deleted;
+  }
+
+  public int getStat1() {
+    return stat1;
+  }
+
+  public int getStat3() {
+    return stat3;
+  }
+
+  public int getStat4() {
+    return stat4;
+  }
+
+  public boolean isSticky() {
+    return sticky;
+  }
+
+  public boolean isResolved() {
+    return resolved;
+  }
+
+  /**
+   * @return теги для показа в заголовке
+   */
+  public ImmutableList<String> getTags() {
+    return tags;
+  }
+
+  /**
+   * @return все теги топика, для фильтрации игнорируемых
+   */
+  public IntSet getTagIds() {
+    return tagIds;
+  }
+}
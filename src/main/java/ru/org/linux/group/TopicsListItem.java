@@ -16,10 +16,8 @@
 package ru.org.linux.group;
 
 import com.google.common.collect.ImmutableList;
-import org.springframework.jdbc.support.rowset.SqlRowSet;
 import ru.org.linux.topic.Topic;
 import ru.org.linux.user.User;
-import ru.org.linux.util.StringUtil;
 
 import java.io.Serializable;
 import java.sql.Timestamp;
@@ -40,26 +38,18 @@ public class TopicsListItem implements Serializable {
   
   private static final long serialVersionUID = 5344250574674257995L;
 
-  // SELECT topics.title as subj, sections.name, lastmod, topics.id as msgid, topics.deleted, topics.stat1, topics.stat3, topics.stat4, topics.sticky, userid
-  public TopicsListItem(User author, SqlRowSet rs, int messagesInPage, ImmutableList<String> tags) {
-    this.author = author;
-    this.tags = tags;
-    subj = StringUtil.makeTitle(rs.getString("subj"));
-
-    Timestamp lastmod = rs.getTimestamp("lastmod");
-    if (lastmod==null) {
-      this.lastmod = new Timestamp(0);
-    } else {
-      this.lastmod = lastmod;
-    }
-
-    msgid = rs.getInt("msgid");
-    deleted = rs.getBoolean("deleted");
-    stat1 = rs.getInt("stat1");
-    stat3 = rs.getInt("stat3");
-    stat4 = rs.getInt("stat4");
-    sticky = rs.getBoolean("sticky");
-    resolved = rs.getBoolean("resolved");
+  public TopicsListItem(GroupTopicRow row, int messagesInPage) {
+    author = row.getAuthor();
+    tags = row.getTags();
+    subj = row.getSubj();
+    lastmod = row.getLastmod();
+    msgid = row.getMsgid();
+    deleted = row.isDeleted();
+    stat1 = row.getStat1();
+    stat3 = row.getStat3();
+    stat4 = row.getStat4();
+    sticky = row.isSticky();
+    resolved = row.isResolved();
 
     pages = Topic.getPageCount(stat1, messagesInPage);
   }
@@ -28,6 +28,7 @@ import javax.servlet.http.HttpServletRequest;
 @Controller
 public class PollBoxlet extends AbstractBoxlet {
   private PollDao pollDao;
+  private PollTallyService pollTallyService;
   private TopicDao messageDao;
 
   @Autowired
@@ -35,6 +36,11 @@ public class PollBoxlet extends AbstractBoxlet {
     this.pollDao = pollDao;
   }
 
+  @Autowired
+  public void setPollTallyService(PollTallyService pollTallyService) {
+    this.pollTallyService = pollTallyService;
+  }
+
   @Autowired
   public void setMessageDao(TopicDao messageDao) {
     this.messageDao = messageDao;
@@ -47,9 +53,9 @@ public class PollBoxlet extends AbstractBoxlet {
 
     Topic msg = messageDao.getById(poll.getTopicId());
 
-    int count = pollDao.getVotersCount(poll.getId());
+    int count = pollTallyService.getVotersCount(poll);
 
-    int countUsers = pollDao.getCountUsers(poll);
+    int countUsers = pollTallyService.getCountUsers(poll);
 
     ModelAndView result = new ModelAndView("boxlets/poll");
     result.addObject("poll", poll);
@@ -17,11 +17,13 @@ package ru.org.linux.poll;
 
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.support.rowset.SqlRowSet;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Propagation;
@@ -34,8 +36,11 @@ import javax.sql.DataSource;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 
 @Repository
 public class PollDao {
@@ -46,11 +51,16 @@ public class PollDao {
   private static final String queryPollVariantsOrderByVotes = "SELECT id, label, votes FROM polls_variants WHERE vote=? ORDER BY votes DESC, id";
   private static final String queryPollUserVote = "select count(vote) from vote_users where userid=? and variant_id=?";
 
-  private static final String queryCountVotesUser = "SELECT count(vote) FROM vote_users WHERE vote=? AND userid=?";
+  private static final String queryVoterIds = "SELECT DISTINCT userid FROM vote_users WHERE vote=?";
+  private static final String queryUserVotes = "SELECT variant_id FROM vote_users WHERE vote=? AND userid=?";
   private static final String queryCountVotesPool = "SELECT count(DISTINCT userid) FROM vote_users WHERE vote=?";
   private static final String queryCountVotes = "SELECT sum(votes) as s FROM polls_variants WHERE vote=?";
-  private static final String updateVote = "UPDATE polls_variants SET votes=votes+1 WHERE id=? AND vote=?";
-  private static final String insertVoteUser = "INSERT INTO vote_users VALUES(?, ?, ?)";
+  private static final String updateVotes = "UPDATE polls_variants SET votes=votes+? WHERE id=? AND vote=?";
+  private static final String insertVoteUser =
+          "INSERT INTO vote_users (vote, userid, variant_id) SELECT ?, ?, ? " +
+          "WHERE EXISTS (SELECT 1 FROM polls_variants WHERE id=? AND vote=?)";
+  private static final String queryVotedUsers = "SELECT DISTINCT userid FROM vote_users WHERE vote=:vote AND userid IN (:list)";
+  private static final String lockPoll = "SELECT id FROM polls WHERE id=? FOR UPDATE";
   private static final String insertPoll = "INSERT INTO polls (id, multiselect, topic) values (?,?,?)";
   
   private static final String queryNextPollId = "select nextval('vote_id') as voteid";
@@ -62,10 +72,27 @@ public class PollDao {
   private static final String updateMultiselect = "UPDATE polls SET multiselect=? WHERE id=?";
 
   private JdbcTemplate jdbcTemplate;
+  private NamedParameterJdbcTemplate namedJdbcTemplate;
 
   @Autowired
   public void setDataSource(DataSource dataSource) {
     jdbcTemplate = new JdbcTemplate(dataSource);
+    namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+  }
+
+  /**
+   * Варианты голосования с кол-вом голосов, отсортированные по id варианта.
+   *
+   * @param pollId идентификатор голосования
+   * @return неизменяемый список вариантов
+   */
+  public ImmutableList<PollVariantResult> getPollVariants(int pollId) {
+    return ImmutableList.copyOf(jdbcTemplate.query(queryPollVariantsOrderById, new RowMapper<PollVariantResult>() {
+      @Override
+      public PollVariantResult mapRow(ResultSet rs, int rowNum) throws SQLException {
+        return new PollVariantResult(rs.getInt("id"), rs.getString("label"), rs.getInt("votes"), false);
+      }
+    }, pollId));
   }
 
   /**
@@ -105,23 +132,86 @@ public class PollDao {
   }
 
   /**
-   * Учет голосования, если user не голосовал в этом голосании, то
-   * добавить его варианты в голосование и пометить, что он проголосовал.
+   * Пользователи, проголосовавшие в голосовании.
    *
    * @param pollId идентификатор голосования
-   * @param votes  пункты за которые голосует пользователь
-   * @param user   голосующий пользователь
-   * @throws BadVoteException неправильное голосование
+   * @return список id пользователей
+   */
+  public List<Integer> getVoterIds(int pollId) {
+    return jdbcTemplate.queryForList(queryVoterIds, Integer.class, pollId);
+  }
+
+  /**
+   * Варианты, за которые проголосовал пользователь.
+   *
+   * @param pollId идентификатор голосования
+   * @param user   пользователь
+   * @return список id вариантов
+   */
+  public List<Integer> getUserVotes(int pollId, User user) {
+    return jdbcTemplate.queryForList(queryUserVotes, Integer.class, pollId, user.getId());
+  }
+
+  /**
+   * Записать накопленные голоса одной транзакцией. Голоса за удаленные
+   * варианты пропускаются; пользователь, уже голосовавший в этом опросе,
+   * пропускается целиком, со всеми вариантами.
+   *
+   * @param pollId идентификатор голосования
+   * @param votes  id пользователя -> варианты, за которые он голосует
    */
   @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
-  public void updateVotes(int pollId, int[] votes, User user) throws BadVoteException {
-    if(jdbcTemplate.queryForInt(queryCountVotesUser, pollId, user.getId()) == 0){
-      for(int vote : votes) {
-        if(jdbcTemplate.update(updateVote, vote, pollId) == 0) {
-          throw new BadVoteException();
-        }
-        jdbcTemplate.update(insertVoteUser, pollId, user.getId(), vote);
+  public void saveVotes(int pollId, Map<Integer, int[]> votes) {
+    if (votes.isEmpty()) {
+      return;
+    }
+
+    List<Object[]> rows = new ArrayList<>();
+    List<Integer> variants = new ArrayList<>();
+
+    // проверка и вставка ниже не должны пересекаться с записью голосов другим узлом
+    jdbcTemplate.queryForRowSet(lockPoll, pollId);
+
+    Set<Integer> voted = new HashSet<>(namedJdbcTemplate.queryForList(
+            queryVotedUsers,
+            ImmutableMap.of("vote", pollId, "list", votes.keySet()),
+            Integer.class
+    ));
+
+    for (Map.Entry<Integer, int[]> entry : votes.entrySet()) {
+      if (voted.contains(entry.getKey())) {
+        continue;
       }
+
+      for (int variant : entry.getValue()) {
+        rows.add(new Object[] { pollId, entry.getKey(), variant, variant, pollId });
+        variants.add(variant);
+      }
+    }
+
+    if (rows.isEmpty()) {
+      return;
+    }
+
+    int[] inserted = jdbcTemplate.batchUpdate(insertVoteUser, rows);
+
+    Map<Integer, Integer> increments = new TreeMap<>();
+
+    for (int i = 0; i < inserted.length; i++) {
+      if (inserted[i] > 0) {
+        Integer current = increments.get(variants.get(i));
+        increments.put(variants.get(i), current == null ? 1 : current + 1);
+      }
+    }
+
+    List<Object[]> updates = new ArrayList<>(increments.size());
+
+    for (Map.Entry<Integer, Integer> entry : increments.entrySet()) {
+      updates.add(new Object[] { entry.getValue(), entry.getKey(), pollId });
+    }
+
+    if (!updates.isEmpty()) {
+      jdbcTemplate.batchUpdate(updateVotes, updates);
     }
   }
 
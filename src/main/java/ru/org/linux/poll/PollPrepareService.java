@@ -32,6 +32,9 @@ public class PollPrepareService {
   @Autowired
   private PollDao pollDao;
 
+  @Autowired
+  private PollTallyService pollTallyService;
+
   /**
    * Функция подготовки опроса для пользователя
    * @param topic топик в котором опрос
@@ -44,8 +47,8 @@ public class PollPrepareService {
 
     return new PreparedPoll(
             poll,
-            pollDao.getCountUsers(poll),
-            pollDao.getPollVariants(poll, Poll.ORDER_VOTES, user)
+            pollTallyService.getCountUsers(poll),
+            pollTallyService.getPollVariants(poll, Poll.ORDER_VOTES, user)
     );
   }
 
@@ -0,0 +1,305 @@
+/*
+ * Copyright 1998-2012 Linux.org.ru
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.org.linux.poll;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import ru.org.linux.util.IntSet;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Счетчики голосов текущего опроса в памяти.
+ *
+ * Проголосовавшие пользователи хранятся в BitSet по id, новые голоса
+ * накапливаются в pending до сброса в базу.
+ */
+class PollTally {
+  private static final Comparator<PollVariantResult> VOTES_ORDER = new Comparator<PollVariantResult>() {
+    @Override
+    public int compare(PollVariantResult o1, PollVariantResult o2) {
+      if (o1.getVotes() != o2.getVotes()) {
+        return o1.getVotes() > o2.getVotes() ? -1 : 1;
+      }
+
+      return Integer.compare(o1.getId(), o2.getId());
+    }
+  };
+
+  private final int pollId;
+  private final int[] variantIds;
+  private final int[] votes;
+  private final BitSet voters = new BitSet();
+  private int voterCount = 0;
+
+  private Map<Integer, int[]> pending = new HashMap<>();
+  private boolean closed = false;
+
+  /**
+   * @param pollId идентификатор опроса
+   * @param variants варианты опроса с голосами из базы
+   * @param voterIds пользователи, уже проголосовавшие в опросе
+   */
+  PollTally(int pollId, List<PollVariantResult> variants, Collection<Integer> voterIds) {
+    this.pollId = pollId;
+
+    variantIds = new int[variants.size()];
+    votes = new int[variants.size()];
+
+    for (int i = 0; i < variants.size(); i++) {
+      variantIds[i] = variants.get(i).getId();
+      votes[i] = variants.get(i).getVotes();
+    }
+
+    setVoters(voterIds);
+  }
+
+  private void setVoters(Collection<Integer> voterIds) {
+    voters.clear();
+    voterCount = 0;
+
+    for (Integer userId : voterIds) {
+      if (!voters.get(userId)) {
+        voters.set(userId);
+        voterCount++;
+      }
+    }
+  }
+
+  /**
+   * Обновить счетчики из базы, где есть голоса, записанные другими узлами.
+   * Еще не записанные голоса добавляются сверху; голос пользователя, который
+   * уже есть в базе, отбрасывается — при записи он все равно будет пропущен.
+   * Если варианты опроса изменились, ничего не делаем: такой счетчик
+   * перечитывается целиком (см. matches).
+   *
+   * @param variants варианты опроса с голосами из базы, по порядку id
+   * @param voterIds пользователи, проголосовавшие в опросе по данным базы
+   */
+  synchronized void reload(List<PollVariantResult> variants, Collection<Integer> voterIds) {
+    if (variants.size() != variantIds.length) {
+      return;
+    }
+
+    int[] fresh = new int[variantIds.length];
+
+    for (int i = 0; i < variantIds.length; i++) {
+      if (variants.get(i).getId() != variantIds[i]) {
+        return;
+      }
+
+      fresh[i] = variants.get(i).getVotes();
+    }
+
+    setVoters(voterIds);
+
+    Iterator<Map.Entry<Integer, int[]>> it = pending.entrySet().iterator();
+
+    while (it.hasNext()) {
+      Map.Entry<Integer, int[]> entry = it.next();
+
+      if (voters.get(entry.getKey())) {
+        it.remove();
+        continue;
+      }
+
+      for (int variant : entry.getValue()) {
+        fresh[indexOf(variant)]++;
+      }
+
+      voters.set(entry.getKey());
+      voterCount++;
+    }
+
+    System.arraycopy(fresh, 0, votes, 0, votes.length);
+  }
+
+  int getPollId() {
+    return pollId;
+  }
+
+  /**
+   * Совпадает ли набор вариантов с опросом; после редактирования опроса
+   * счетчики нужно перечитать из базы
+   */
+  boolean matches(Poll poll) {
+    if (poll.getId() != pollId || poll.getVariants().size() != variantIds.length) {
+      return false;
+    }
+
+    for (int i = 0; i < variantIds.length; i++) {
+      if (poll.getVariants().get(i).getId() != variantIds[i]) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Учесть голос пользователя. Повторный голос игнорируется.
+   *
+   * @param userId голосующий пользователь
+   * @param variants варианты, за которые он голосует
+   * @return false если счетчик уже закрыт и голос нужно отдать новому
+   * @throws BadVoteException вариант не принадлежит опросу
+   */
+  synchronized boolean vote(int userId, int[] variants) throws BadVoteException {
+    if (closed) {
+      return false;
+    }
+
+    int[] unique = IntSet.of(variants).toArray();
+    int[] indexes = new int[unique.length];
+
+    for (int i = 0; i < unique.length; i++) {
+      indexes[i] = indexOf(unique[i]);
+
+      if (indexes[i] < 0) {
+        throw new BadVoteException();
+      }
+    }
+
+    if (voters.get(userId)) {
+      return true;
+    }
+
+    for (int index : indexes) {
+      votes[index]++;
+    }
+
+    voters.set(userId);
+    voterCount++;
+    pending.put(userId, unique);
+
+    return true;
+  }
+
+  private int indexOf(int variantId) {
+    for (int i = 0; i < variantIds.length; i++) {
+      if (variantIds[i] == variantId) {
+        return i;
+      }
+    }
+
+    return -1;
+  }
+
+  /**
+   * Забрать накопленные голоса для записи в базу
+   */
+  synchronized ImmutableMap<Integer, int[]> drain() {
+    ImmutableMap<Integer, int[]> batch = ImmutableMap.copyOf(pending);
+
+    pending = new HashMap<>();
+
+    return batch;
+  }
+
+  /**
+   * Вернуть голоса, которые не удалось записать
+   */
+  synchronized void requeue(Map<Integer, int[]> batch) {
+    pending.putAll(batch);
+  }
+
+  /**
+   * Закрыть счетчик: дальнейшие голоса не принимаются
+   *
+   * @return голоса, еще не записанные в базу
+   */
+  synchronized ImmutableMap<Integer, int[]> close() {
+    closed = true;
+
+    return drain();
+  }
+
+  synchronized boolean hasVoted(int userId) {
+    return voters.get(userId);
+  }
+
+  /**
+   * @return варианты, за которые пользователь проголосовал, если голос еще не записан в базу
+   */
+  synchronized int[] getPendingVotes(int userId) {
+    return pending.get(userId);
+  }
+
+  synchronized int getPendingCount() {
+    return pending.size();
+  }
+
+  synchronized int getVoterCount() {
+    return voterCount;
+  }
+
+  synchronized int getTotalVotes() {
+    int total = 0;
+
+    for (int count : votes) {
+      total += count;
+    }
+
+    return total;
+  }
+
+  /**
+   * Результаты опроса
+   *
+   * @param poll опрос, из него берутся названия вариантов
+   * @param order порядок сортировки Poll.ORDER_ID и Poll.ORDER_VOTES
+   * @param userVotes варианты, за которые проголосовал пользователь
+   */
+  ImmutableList<PollVariantResult> getResults(Poll poll, int order, IntSet userVotes) {
+    int[] snapshot;
+
+    synchronized (this) {
+      snapshot = Arrays.copyOf(votes, votes.length);
+    }
+
+    PollVariantResult[] results = new PollVariantResult[variantIds.length];
+
+    for (int i = 0; i < variantIds.length; i++) {
+      PollVariant variant = poll.getVariants().get(i);
+
+      results[i] = new PollVariantResult(
+              variantIds[i],
+              variant.getLabel(),
+              snapshot[i],
+              userVotes.contains(variantIds[i])
+      );
+    }
+
+    switch (order) {
+      case Poll.ORDER_ID:
+        break;
+      case Poll.ORDER_VOTES:
+        Arrays.sort(results, VOTES_ORDER);
+        break;
+      default:
+        throw new RuntimeException("Oops!? order="+order);
+    }
+
+    return ImmutableList.copyOf(results);
+  }
+}
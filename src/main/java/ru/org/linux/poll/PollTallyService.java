@@ -0,0 +1,203 @@
+/*
+ * Copyright 1998-2012 Linux.org.ru
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.org.linux.poll;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.org.linux.user.User;
+import ru.org.linux.util.IntSet;
+
+import javax.annotation.PreDestroy;
+import java.util.Map;
+
+/**
+ * Голосование в текущем опросе.
+ *
+ * Голоса учитываются в памяти и периодически записываются в базу
+ * одной транзакцией, результаты текущего опроса отдаются из памяти.
+ * После каждой записи счетчики и список проголосовавших перечитываются
+ * из базы, так что голоса, поданные на других узлах, видны не позже
+ * чем через FLUSH_DELAY. Для остальных опросов данные читаются из базы.
+ */
+@Service
+public class PollTallyService {
+  private static final Log logger = LogFactory.getLog(PollTallyService.class);
+
+  /**
+   * Период записи голосов в базу, мс
+   */
+  private static final int FLUSH_DELAY = 10000;
+
+  @Autowired
+  private PollDao pollDao;
+
+  private volatile PollTally current = null;
+
+  /**
+   * Блокировка записи в базу и смены текущего счетчика
+   */
+  private final Object flushLock = new Object();
+
+  /**
+   * Учесть голос пользователя в текущем опросе.
+   * Повторное голосование игнорируется.
+   *
+   * @param poll  текущий опрос
+   * @param votes варианты, за которые голосует пользователь
+   * @param user  голосующий пользователь
+   * @throws BadVoteException вариант не принадлежит опросу
+   */
+  public void vote(Poll poll, int[] votes, User user) throws BadVoteException {
+    while (!getTally(poll).vote(user.getId(), votes)) {
+      logger.debug("Poll tally reloaded while voting, retrying");
+    }
+  }
+
+  /**
+   * Кол-во проголосовавших пользователей
+   */
+  public int getCountUsers(Poll poll) {
+    if (!poll.isCurrent()) {
+      return pollDao.getCountUsers(poll);
+    }
+
+    return getTally(poll).getVoterCount();
+  }
+
+  /**
+   * Кол-во голосов всего
+   */
+  public int getVotersCount(Poll poll) {
+    if (!poll.isCurrent()) {
+      return pollDao.getVotersCount(poll.getId());
+    }
+
+    return getTally(poll).getTotalVotes();
+  }
+
+  /**
+   * Варианты опроса для кокретного пользователя
+   *
+   * @param poll  объект голосования
+   * @param order порядок сортировки вариантов Poll.ORDER_ID и Poll.ORDER_VOTES
+   * @param user  для какого пользователя отдаем, может быть null
+   * @return неизменяемый список вариантов опроса
+   */
+  public ImmutableList<PollVariantResult> getPollVariants(Poll poll, int order, User user) {
+    if (!poll.isCurrent()) {
+      return pollDao.getPollVariants(poll, order, user);
+    }
+
+    PollTally tally = getTally(poll);
+
+    IntSet userVotes = IntSet.EMPTY;
+
+    if (user != null && tally.hasVoted(user.getId())) {
+      int[] pending = tally.getPendingVotes(user.getId());
+
+      if (pending != null) {
+        userVotes = IntSet.of(pending);
+      } else {
+        userVotes = IntSet.of(pollDao.getUserVotes(poll.getId(), user));
+      }
+    }
+
+    return tally.getResults(poll, order, userVotes);
+  }
+
+  private PollTally getTally(Poll poll) {
+    PollTally tally = current;
+
+    if (tally != null && tally.matches(poll)) {
+      return tally;
+    }
+
+    synchronized (flushLock) {
+      tally = current;
+
+      if (tally != null && tally.matches(poll)) {
+        return tally;
+      }
+
+      if (tally != null) {
+        current = null;
+
+        try {
+          save(tally.getPollId(), tally.close());
+        } catch (DataAccessException ex) {
+          logger.error("Failed to save votes for poll " + tally.getPollId(), ex);
+        }
+      }
+
+      logger.info("Loading poll tally for poll " + poll.getId());
+
+      current = new PollTally(
+              poll.getId(),
+              pollDao.getPollVariants(poll),
+              pollDao.getVoterIds(poll.getId())
+      );
+
+      return current;
+    }
+  }
+
+  /**
+   * Записать накопленные голоса в базу
+   */
+  @Scheduled(fixedDelay = FLUSH_DELAY)
+  @PreDestroy
+  public void flush() {
+    synchronized (flushLock) {
+      PollTally tally = current;
+
+      if (tally == null) {
+        return;
+      }
+
+      ImmutableMap<Integer, int[]> batch = tally.drain();
+
+      try {
+        save(tally.getPollId(), batch);
+      } catch (DataAccessException ex) {
+        logger.warn("Failed to save votes, will retry: " + ex.toString());
+        tally.requeue(batch);
+        return;
+      }
+
+      try {
+        tally.reload(pollDao.getPollVariants(tally.getPollId()), pollDao.getVoterIds(tally.getPollId()));
+      } catch (DataAccessException ex) {
+        logger.warn("Failed to reload poll tally: " + ex.toString());
+      }
+    }
+  }
+
+  private void save(int pollId, Map<Integer, int[]> batch) {
+    if (batch.isEmpty()) {
+      return;
+    }
+
+    logger.debug("Saving " + batch.size() + " votes for poll " + pollId);
+
+    pollDao.saveVotes(pollId, batch);
+  }
+}
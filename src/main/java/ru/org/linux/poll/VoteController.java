@@ -15,10 +15,7 @@
 
 package ru.org.linux.poll;
 
-import org.apache.commons.logging.Log;
-import org.apache.commons.logging.LogFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
@@ -38,11 +35,12 @@ import java.util.Map;
 
 @Controller
 public class VoteController {
-  private static final Log logger = LogFactory.getLog(VoteController.class);
-
   @Autowired
   private PollDao pollDao;
 
+  @Autowired
+  private PollTallyService pollTallyService;
+
   @Autowired
   private TopicDao messageDao;
 
@@ -75,11 +73,7 @@ public class VoteController {
       throw new BadVoteException("этот опрос допускает только один вариант ответа");
     }
 
-    try {
-      pollDao.updateVotes(voteid, votes, user);
-    } catch (DuplicateKeyException ex) {
-      logger.info("Failed to vote", ex);
-    }
+    pollTallyService.vote(poll, votes, user);
 
     return new ModelAndView(new RedirectView(msg.getLink()));
   }
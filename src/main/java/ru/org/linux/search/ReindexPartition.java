@@ -0,0 +1,61 @@
+/*
+ * Copyright 1998-2012 Linux.org.ru
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.org.linux.search;
+
+public class ReindexPartition {
+  private final int partition;
+  private final int startId;
+  private final int endId;
+  private final int lastId;
+  private final boolean finished;
+  private final String owner;
+
+  public ReindexPartition(int partition, int startId, int endId, int lastId, boolean finished, String owner) {
+    this.partition = partition;
+    this.startId = startId;
+    this.endId = endId;
+    this.lastId = lastId;
+    this.finished = finished;
+    this.owner = owner;
+  }
+
+  public int getPartition() {
+    return partition;
+  }
+
+  public int getStartId() {
+    return startId;
+  }
+
+  public int getEndId() {
+    return endId;
+  }
+
+  public int getLastId() {
+    return lastId;
+  }
+
+  public boolean isFinished() {
+    return finished;
+  }
+
+  /**
+   * @return узел, обрабатывающий часть, или null
+   */
+  public String getOwner() {
+    return owner;
+  }
+}
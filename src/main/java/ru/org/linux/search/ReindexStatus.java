@@ -0,0 +1,67 @@
+/*
+ * Copyright 1998-2012 Linux.org.ru
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.org.linux.search;
+
+import java.util.List;
+
+public class ReindexStatus {
+  private final boolean running;
+  private final double progress;
+  private final Long eta;
+  private final List<ReindexPartition> partitions;
+  private final int skipped;
+
+  public ReindexStatus(boolean running, double progress, Long eta, List<ReindexPartition> partitions, int skipped) {
+    this.running = running;
+    this.progress = progress;
+    this.eta = eta;
+    this.partitions = partitions;
+    this.skipped = skipped;
+  }
+
+  public boolean isRunning() {
+    return running;
+  }
+
+  /**
+   * @return процент выполнения
+   */
+  public int getPercent() {
+    return (int) (progress * 100);
+  }
+
+  /**
+   * @return оценка оставшегося времени в минутах или null, если оценки нет
+   */
+  public Long getEtaMinutes() {
+    if (eta == null) {
+      return null;
+    }
+
+    return eta / 60000;
+  }
+
+  public List<ReindexPartition> getPartitions() {
+    return partitions;
+  }
+
+  /**
+   * @return число топиков, пропущенных из-за ошибок индексации
+   */
+  public int getSkipped() {
+    return skipped;
+  }
+}
@@ -22,16 +22,15 @@ import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.servlet.ModelAndView;
-import ru.org.linux.topic.TopicDao;
 
 import javax.servlet.ServletRequest;
-import java.sql.Timestamp;
 import java.util.Calendar;
 
 @Controller
 public class SearchControlController {
   private SearchQueueSender searchQueueSender;
-  private TopicDao messageDao;
+  private SearchQueueListener searchQueueListener;
+  private SearchReindexService searchReindexService;
 
   @Autowired
   @Required
@@ -40,30 +39,25 @@ public class SearchControlController {
   }
 
   @Autowired
-  public void setMessageDao(TopicDao messageDao) {
-    this.messageDao = messageDao;
+  public void setSearchQueueListener(SearchQueueListener searchQueueListener) {
+    this.searchQueueListener = searchQueueListener;
+  }
+
+  @Autowired
+  public void setSearchReindexService(SearchReindexService searchReindexService) {
+    this.searchReindexService = searchReindexService;
   }
 
   @RequestMapping(value="/admin/search-reindex", method=RequestMethod.POST, params = "action=all")
   @PreAuthorize("hasRole('ROLE_ADMIN')")
   public ModelAndView reindexAll(ServletRequest request) throws Exception {
-
-    Timestamp startDate = messageDao.getTimeFirstTopic();
-
-    Calendar start = Calendar.getInstance();
-    start.setTime(startDate);
-
-    start.set(Calendar.DAY_OF_MONTH, 1);
-    start.set(Calendar.HOUR, 0);
-    start.set(Calendar.MINUTE, 0);
-
-    for  (Calendar i = Calendar.getInstance(); i.after(start); i.add(Calendar.MONTH, -1)) {
-      searchQueueSender.updateMonth(i.get(Calendar.YEAR), i.get(Calendar.MONTH)+1);
+    if (searchReindexService.isRunning()) {
+      return new ModelAndView("action-done", "message", "Reindex already running");
     }
 
-    searchQueueSender.updateMonth(1970, 1);
+    searchReindexService.start();
 
-    return new ModelAndView("action-done", "message", "Scheduled reindex");
+    return new ModelAndView("action-done", "message", "Started reindex");
   }
 
   @RequestMapping(value="/admin/search-reindex", method=RequestMethod.POST, params = "action=current")
@@ -82,6 +76,14 @@ public class SearchControlController {
   @RequestMapping(value="/admin/search-reindex", method=RequestMethod.GET)
   @PreAuthorize("hasRole('ROLE_ADMIN')")
   public ModelAndView reindexAll()  {
-    return new ModelAndView("search-reindex");
+    ModelAndView mv = new ModelAndView("search-reindex");
+
+    mv.addObject("pending", searchQueueListener.getPendingCount());
+    mv.addObject("received", searchQueueListener.getReceivedCount());
+    mv.addObject("indexed", searchQueueListener.getIndexedCount());
+    mv.addObject("coalescingRatio", searchQueueListener.getCoalescingRatio());
+    mv.addObject("reindex", searchReindexService.getStatus());
+
+    return mv;
   }
 }
@@ -25,6 +25,8 @@ import org.apache.solr.client.solrj.SolrServerException;
 import org.apache.solr.client.solrj.request.UpdateRequest;
 import org.apache.solr.common.SolrInputDocument;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 import ru.org.linux.comment.Comment;
 import ru.org.linux.comment.CommentList;
@@ -37,17 +39,35 @@ import ru.org.linux.spring.dao.MsgbaseDao;
 import ru.org.linux.topic.Topic;
 import ru.org.linux.topic.TopicDao;
 
+import javax.annotation.PreDestroy;
 import java.io.IOException;
 import java.sql.Timestamp;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Component
 public class SearchQueueListener {
   private static final Log logger = LogFactory.getLog(SearchQueueListener.class);
-  
+
+  /**
+   * Максимальная задержка видимости изменений в индексе, мс
+   */
+  private static final int COMMIT_WITHIN = 10000;
+
+  /**
+   * Окно, в течении которого накапливаются запросы на переиндексацию, мс
+   */
+  private static final int FLUSH_DELAY = 2000;
+
+  /**
+   * Максимальная пауза между повторами после ошибок индексации, мс
+   */
+  private static final int MAX_BACKOFF = 5 * 60 * 1000;
+
   @Autowired
   private CommentService commentService;
   
@@ -60,80 +80,229 @@ public class SearchQueueListener {
   @Autowired
   private TopicDao topicDao;
 
-  public void handleMessage(UpdateMessage msgUpdate) throws MessageNotFoundException, IOException, SolrServerException {
-    logger.info("Indexing "+msgUpdate.getMsgid());
+  private final SearchUpdateBuffer buffer = new SearchUpdateBuffer();
+
+  /**
+   * Число неудачных сбросов подряд и время, раньше которого не повторять
+   */
+  private int failures = 0;
+  private long nextAttempt = 0;
+
+  public void handleMessage(UpdateMessage msgUpdate) {
+    logger.debug("Queued indexing "+msgUpdate.getMsgid());
 
-    reindexMessage(msgUpdate.getMsgid(), msgUpdate.isWithComments());
-    solrServer.commit();
+    buffer.addTopic(msgUpdate.getMsgid(), msgUpdate.isWithComments());
   }
 
-  private void reindexMessage(int msgid, boolean withComments) throws IOException, SolrServerException,  MessageNotFoundException {
-    Topic msg = topicDao.getById(msgid);
+  public void handleMessage(UpdateComments msgUpdate) {
+    logger.debug("Queued indexing comments "+msgUpdate.getMsgids());
 
-    if (!msg.isDeleted()) {
-      updateMessage(msg);
-    } else {
-      //logger.info("Deleting message "+msgid+" from solr");      
-      solrServer.deleteById((Integer.toString(msg.getId())));
+    buffer.addComments(msgUpdate.getMsgids());
+  }
+
+  @Scheduled(fixedDelay = FLUSH_DELAY)
+  public synchronized void flush() {
+    if (System.currentTimeMillis() < nextAttempt) {
+      return;
     }
 
-    if (withComments) {
-      CommentList commentList = commentService.getCommentList(msg, true);
+    flushBuffer();
+  }
 
-      if (!msg.isDeleted()) {
-        reindexComments(msg, commentList);
-      } else {
-        List<String> msgids = Lists.transform(commentList.getList(), new Function<Comment, String>() {
-          @Override
-          public String apply(Comment comment) {
-            return Integer.toString(comment.getId());
-          }
-        });
+  /**
+   * Сообщения из очереди подтверждаются сразу после попадания в буфер,
+   * поэтому при остановке накопленное отправляется в solr без ожидания.
+   * При аварийном завершении содержимое буфера теряется, его восстанавливает
+   * полная переиндексация.
+   */
+  @PreDestroy
+  public synchronized void shutdown() {
+    flushBuffer();
+
+    if (buffer.getPendingCount() > 0) {
+      logger.warn("Indexing of " + buffer.getPendingCount() + " messages lost on shutdown");
+    }
+  }
+
+  /**
+   * Отправить накопленное в solr. Если пакет не проходит из-за отдельного
+   * сообщения, сообщения индексируются по одному и попытка засчитывается
+   * только сломанным. Ошибки solr не повторяются по одному: весь остаток
+   * возвращается в буфер, следующий сброс откладывается.
+   */
+  private void flushBuffer() {
+    SearchUpdateBuffer.Batch batch = buffer.drain();
+
+    if (batch.isEmpty()) {
+      return;
+    }
+
+    logger.info(
+            "Indexing "+batch.getTopics().size()+" topics and "+batch.getComments().size()+" comments; " +
+            "pending="+buffer.getPendingCount()+", coalescing ratio="+String.format("%.2f", buffer.getCoalescingRatio())
+    );
+
+    try {
+      processBatch(batch);
+      buffer.done(batch);
+      failures = 0;
+      nextAttempt = 0;
+      return;
+    } catch (IOException | SolrServerException ex) {
+      backoff(ex);
+      requeue(batch);
+      return;
+    } catch (MessageNotFoundException | RuntimeException ex) {
+      logger.info("Indexing batch failed, retrying one by one: " + ex.toString());
+    }
 
-        if (!msgids.isEmpty()) {
-          solrServer.deleteById(msgids);
+    List<SearchUpdateBuffer.Batch> items = batch.split();
+
+    for (int i = 0; i < items.size(); i++) {
+      SearchUpdateBuffer.Batch item = items.get(i);
+
+      try {
+        processBatch(item);
+        buffer.done(item);
+      } catch (IOException | SolrServerException ex) {
+        backoff(ex);
+
+        for (SearchUpdateBuffer.Batch rest : items.subList(i, items.size())) {
+          requeue(rest);
         }
+
+        return;
+      } catch (MessageNotFoundException | RuntimeException ex) {
+        logger.warn("Indexing failed for " + item.getTopics().keySet() + item.getComments(), ex);
+        requeue(item);
       }
     }
+
+    failures = 0;
+    nextAttempt = 0;
   }
 
-  public void handleMessage(UpdateComments msgUpdate) throws MessageNotFoundException, IOException, SolrServerException {
-    logger.info("Indexing comments "+msgUpdate.getMsgids());
+  private void backoff(Exception ex) {
+    failures++;
+
+    long delay = Math.min((long) FLUSH_DELAY << Math.min(failures, 20), MAX_BACKOFF);
+    nextAttempt = System.currentTimeMillis() + delay;
 
+    logger.warn("Indexing failed (" + failures + " in a row), will retry in " + delay + " ms: " + ex.toString());
+  }
+
+  private void requeue(SearchUpdateBuffer.Batch batch) {
+    Set<Integer> dropped = buffer.requeue(batch);
+
+    if (!dropped.isEmpty()) {
+      logger.error("Indexing given up after " + SearchUpdateBuffer.MAX_ATTEMPTS + " attempts for " + dropped);
+    }
+  }
+
+  /**
+   * Проиндексировать пакет. Сообщения, которых уже нет в базе, удаляются из индекса.
+   */
+  private void processBatch(SearchUpdateBuffer.Batch batch) throws MessageNotFoundException, IOException, SolrServerException {
     UpdateRequest rq = new UpdateRequest();
+    rq.setCommitWithin(COMMIT_WITHIN);
+
+    List<String> delete = new ArrayList<>();
+
+    Map<Integer, Topic> topics = new HashMap<>();
 
-    rq.setCommitWithin(10000);
+    for (Map.Entry<Integer, Boolean> entry : batch.getTopics().entrySet()) {
+      Topic topic;
 
-    boolean delete = false;
+      try {
+        topic = topicDao.getById(entry.getKey());
+      } catch (MessageNotFoundException ex) {
+        logger.warn("Topic " + entry.getKey() + " not found, removing from index");
+        delete.add(Integer.toString(entry.getKey()));
+        continue;
+      }
+
+      topics.put(topic.getId(), topic);
+
+      reindexMessage(topic, entry.getValue(), rq, delete);
+    }
 
-    for (Integer msgid : msgUpdate.getMsgids()) {
+    for (Integer msgid : batch.getComments()) {
       if (msgid==0) {
         logger.warn("Skipping MSGID=0!!!");
         continue;
       }
 
-      Comment comment = commentService.getById(msgid);
+      try {
+        Comment comment = commentService.getById(msgid);
 
-      if (comment.isDeleted()) {
-        logger.info("Deleting comment "+comment.getId()+" from solr");
-        solrServer.deleteById(Integer.toString(comment.getId()));
-        delete = true;
-      } else {
-        // комментарии могут быть из разного топика в функция массового удаления
-        // возможно для скорости нужен какой-то кеш топиков, т.к. чаще бывает что все
-        // комментарии из одного топика
-        Topic topic = topicDao.getById(comment.getTopicId());
-        String message = msgbaseDao.getMessageText(comment.getId()).getText();
-        rq.add(processComment(topic, comment, message));
+        if (Boolean.TRUE.equals(batch.getTopics().get(comment.getTopicId()))) {
+          // уже переиндексирован вместе с топиком
+          continue;
+        }
+
+        if (comment.isDeleted()) {
+          delete.add(Integer.toString(comment.getId()));
+        } else {
+          // комментарии могут быть из разного топика в функция массового удаления,
+          // но чаще бывает что все комментарии из одного топика
+          Topic topic = topics.get(comment.getTopicId());
+
+          if (topic == null) {
+            topic = topicDao.getById(comment.getTopicId());
+            topics.put(topic.getId(), topic);
+          }
+
+          String message = msgbaseDao.getMessageText(comment.getId()).getText();
+          rq.add(processComment(topic, comment, message));
+        }
+      } catch (MessageNotFoundException | EmptyResultDataAccessException ex) {
+        logger.warn("Comment " + msgid + " not found, removing from index");
+        delete.add(Integer.toString(msgid));
       }
     }
 
-    if (rq.getDocuments()!=null && !rq.getDocuments().isEmpty())  {
+    process(rq, delete);
+  }
+
+  /**
+   * Отправить пакет в solr.
+   *
+   * Явный commit не делаем: commitWithin для удаления solr 3.x не учитывает,
+   * удаления становятся видны со следующим commit, который вызовет любое
+   * добавление документов (не позже COMMIT_WITHIN после него).
+   */
+  private void process(UpdateRequest rq, List<String> delete) throws IOException, SolrServerException {
+    boolean hasDocuments = rq.getDocuments()!=null && !rq.getDocuments().isEmpty();
+
+    if (!delete.isEmpty()) {
+      rq.deleteById(delete);
+    }
+
+    if (hasDocuments || !delete.isEmpty()) {
       rq.process(solrServer);
     }
+  }
+
+  private void reindexMessage(Topic msg, boolean withComments, UpdateRequest rq, List<String> delete) throws MessageNotFoundException {
+    if (!msg.isDeleted()) {
+      rq.add(processMessage(msg));
+    } else {
+      delete.add(Integer.toString(msg.getId()));
+    }
 
-    if (delete) {
-      solrServer.commit();
+    if (withComments) {
+      CommentList commentList = commentService.getCommentList(msg, true);
+
+      if (!msg.isDeleted()) {
+        reindexComments(msg, commentList, rq, delete);
+      } else {
+        delete.addAll(Lists.transform(commentList.getList(), new Function<Comment, String>() {
+          @Override
+          public String apply(Comment comment) {
+            return Integer.toString(comment.getId());
+          }
+        }));
+      }
     }
   }
 
@@ -146,15 +315,55 @@ public class SearchQueueListener {
 
     List<Integer> topicIds = topicDao.getMessageForMonth(year, month);
     for(int topicId : topicIds) {
-      reindexMessage(topicId, true);
+      UpdateRequest rq = new UpdateRequest();
+      rq.setCommitWithin(COMMIT_WITHIN);
+
+      List<String> delete = new ArrayList<>();
+
+      reindexMessage(topicDao.getById(topicId), true, rq, delete);
+
+      process(rq, delete);
     }
 
-    solrServer.commit();
     long endTime = System.nanoTime();
     logger.info("Reindex month "+year+'/'+month+" done, "+(endTime-startTime)/1000000+" millis");
   }
 
-  private void updateMessage(Topic topic) throws IOException, SolrServerException {
+  /**
+   * Переиндексировать пачку топиков вместе с комментариями одним запросом к solr
+   *
+   * @param topicIds id топиков
+   */
+  public void reindexTopics(List<Integer> topicIds) throws MessageNotFoundException, IOException, SolrServerException {
+    UpdateRequest rq = new UpdateRequest();
+    rq.setCommitWithin(COMMIT_WITHIN);
+
+    List<String> delete = new ArrayList<>();
+
+    for (int topicId : topicIds) {
+      reindexMessage(topicDao.getById(topicId), true, rq, delete);
+    }
+
+    process(rq, delete);
+  }
+
+  public int getPendingCount() {
+    return buffer.getPendingCount();
+  }
+
+  public long getReceivedCount() {
+    return buffer.getReceivedCount();
+  }
+
+  public long getIndexedCount() {
+    return buffer.getDrainedCount();
+  }
+
+  public double getCoalescingRatio() {
+    return buffer.getCoalescingRatio();
+  }
+
+  private SolrInputDocument processMessage(Topic topic) {
     SolrInputDocument doc = new SolrInputDocument();
 
     doc.addField("id", topic.getId());
@@ -174,27 +383,18 @@ public class SearchQueueListener {
 
     doc.addField("is_comment", false);
 
-    solrServer.add(doc);
+    return doc;
   }
 
-  private void reindexComments(Topic topic, CommentList comments) throws IOException, SolrServerException {
-    Collection<SolrInputDocument> docs = new ArrayList<>();
-    List<String> delete = new ArrayList<>();
-
+  private void reindexComments(Topic topic, CommentList comments, UpdateRequest rq, List<String> delete) {
     for (Comment comment : comments.getList()) {
       if (comment.isDeleted()) {
         delete.add(Integer.toString(comment.getId()));
+        continue;
       }
-      String message = msgbaseDao.getMessageText(comment.getId()).getText();
-      docs.add(processComment(topic, comment, message));
-    }
 
-    if (!docs.isEmpty()) {
-      solrServer.add(docs);
-    }
-    if (!delete.isEmpty()) {
-      //logger.info("Deleting comments: "+delete);
-      solrServer.deleteById(delete);
+      String message = msgbaseDao.getMessageText(comment.getId()).getText();
+      rq.add(processComment(topic, comment, message));
     }
   }
 
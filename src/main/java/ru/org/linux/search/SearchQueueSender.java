@@ -19,6 +19,7 @@ import com.google.common.base.Preconditions;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.jms.core.JmsTemplate;
 import org.springframework.jms.core.MessageCreator;
 import org.springframework.stereotype.Component;
@@ -43,7 +44,7 @@ public class SearchQueueSender {
   }
 
   @Autowired
-  public void setQueue(Queue queue) {
+  public void setQueue(@Qualifier("searchQueue") Queue queue) {
     this.queue = queue;
   }
 
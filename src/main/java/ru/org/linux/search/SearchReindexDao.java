@@ -0,0 +1,189 @@
+/*
+ * Copyright 1998-2012 Linux.org.ru
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.org.linux.search;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Хранение состояния полной переиндексации по диапазонам id топиков
+ */
+@Repository
+public class SearchReindexDao {
+  private static final String queryTopicIdRange = "SELECT min(id), max(id) FROM topics";
+
+  private static final String queryPartitions =
+          "SELECT partition, start_id, end_id, last_id, finished, owner FROM search_reindex ORDER BY partition";
+
+  private static final String queryTopicIds =
+          "SELECT id FROM topics WHERE id>? AND id<=? ORDER BY id LIMIT ?";
+
+  /**
+   * Захват части: условие перепроверяется под блокировкой строки, поэтому
+   * из нескольких узлов часть получает только один
+   */
+  private static final String updateClaim =
+          "UPDATE search_reindex SET owner=?, claimed_at=CURRENT_TIMESTAMP " +
+          "WHERE partition=? AND NOT finished AND " +
+          "(owner IS NULL OR owner=? OR claimed_at < CURRENT_TIMESTAMP - ? * '1 second'::interval)";
+
+  private static final String updateCheckpoint =
+          "UPDATE search_reindex SET last_id=?, finished=?, updated=CURRENT_TIMESTAMP, claimed_at=CURRENT_TIMESTAMP " +
+          "WHERE partition=? AND owner=?";
+
+  private static final String updateRelease =
+          "UPDATE search_reindex SET owner=NULL, claimed_at=NULL WHERE partition=? AND owner=?";
+
+  private static final String insertSkipped =
+          "INSERT INTO search_reindex_skipped (topic_id, partition, error) " +
+          "SELECT ?, ?, ? WHERE NOT EXISTS (SELECT 1 FROM search_reindex_skipped WHERE topic_id=?)";
+
+  /**
+   * Колонка state в pg_stat_activity появилась в PostgreSQL 9.2,
+   * в более старых версиях простаивающий backend виден по current_query
+   */
+  private static final String queryActiveBackends =
+          "SELECT count(*) FROM pg_stat_activity WHERE state='active'";
+
+  private static final String queryActiveBackendsLegacy =
+          "SELECT count(*) FROM pg_stat_activity WHERE current_query<>'<IDLE>'";
+
+  private static final int STATE_COLUMN_VERSION = 90200;
+
+  private JdbcTemplate jdbcTemplate;
+
+  private volatile String activeBackendsQuery;
+
+  @Autowired
+  public void setDataSource(DataSource dataSource) {
+    jdbcTemplate = new JdbcTemplate(dataSource);
+  }
+
+  /**
+   * Разбить диапазон id топиков на partitions частей, старое состояние при этом удаляется
+   *
+   * @param partitions количество частей
+   */
+  @Transactional(rollbackFor = Exception.class)
+  public void createPartitions(int partitions) {
+    jdbcTemplate.update("DELETE FROM search_reindex");
+    jdbcTemplate.update("DELETE FROM search_reindex_skipped");
+
+    int[] range = jdbcTemplate.queryForObject(queryTopicIdRange, new RowMapper<int[]>() {
+      @Override
+      public int[] mapRow(ResultSet rs, int rowNum) throws SQLException {
+        return new int[] { rs.getInt(1), rs.getInt(2) };
+      }
+    });
+
+    int start = range[0] - 1;
+    int end = range[1];
+
+    int size = Math.max(1, (end - start + partitions - 1) / partitions);
+
+    for (int i = 0; i < partitions && start < end; i++) {
+      int partitionEnd = Math.min(end, start + size);
+
+      jdbcTemplate.update(
+              "INSERT INTO search_reindex (partition, start_id, end_id, last_id) VALUES (?, ?, ?, ?)",
+              i, start, partitionEnd, start
+      );
+
+      start = partitionEnd;
+    }
+  }
+
+  public List<ReindexPartition> getPartitions() {
+    return jdbcTemplate.query(queryPartitions, new RowMapper<ReindexPartition>() {
+      @Override
+      public ReindexPartition mapRow(ResultSet rs, int rowNum) throws SQLException {
+        return new ReindexPartition(
+                rs.getInt("partition"),
+                rs.getInt("start_id"),
+                rs.getInt("end_id"),
+                rs.getInt("last_id"),
+                rs.getBoolean("finished"),
+                rs.getString("owner")
+        );
+      }
+    });
+  }
+
+  /**
+   * Следующая пачка id топиков в диапазоне (fromId, toId]
+   */
+  public List<Integer> getTopicIds(int fromId, int toId, int limit) {
+    return jdbcTemplate.queryForList(queryTopicIds, Integer.class, fromId, toId, limit);
+  }
+
+  /**
+   * Захватить незавершенную часть, если она свободна, принадлежит этому же узлу
+   * или ее владелец не отмечался дольше timeoutSeconds
+   *
+   * @return true, если часть захвачена
+   */
+  public boolean claim(int partition, String owner, int timeoutSeconds) {
+    return jdbcTemplate.update(updateClaim, owner, partition, owner, timeoutSeconds) > 0;
+  }
+
+  /**
+   * Сохранить позицию и продлить захват части
+   *
+   * @return false, если часть больше не принадлежит owner
+   */
+  public boolean updateCheckpoint(int partition, String owner, int lastId, boolean finished) {
+    return jdbcTemplate.update(updateCheckpoint, lastId, finished, partition, owner) > 0;
+  }
+
+  public void release(int partition, String owner) {
+    jdbcTemplate.update(updateRelease, partition, owner);
+  }
+
+  /**
+   * Запомнить топик, который не удается проиндексировать
+   */
+  public void addSkipped(int topicId, int partition, String error) {
+    jdbcTemplate.update(insertSkipped, topicId, partition, error, topicId);
+  }
+
+  public int getSkippedCount() {
+    return jdbcTemplate.queryForObject("SELECT count(*) FROM search_reindex_skipped", Integer.class);
+  }
+
+  /**
+   * Количество выполняющихся в данный момент запросов к базе
+   */
+  public int getActiveBackends() {
+    String query = activeBackendsQuery;
+
+    if (query == null) {
+      int version = jdbcTemplate.queryForObject("SELECT current_setting('server_version_num')::integer", Integer.class);
+
+      query = version >= STATE_COLUMN_VERSION ? queryActiveBackends : queryActiveBackendsLegacy;
+      activeBackendsQuery = query;
+    }
+
+    return jdbcTemplate.queryForObject(query, Integer.class);
+  }
+}
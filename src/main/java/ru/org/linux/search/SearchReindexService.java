@@ -0,0 +1,268 @@
+/*
+ * Copyright 1998-2012 Linux.org.ru
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.org.linux.search;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Полная переиндексация поиска.
+ *
+ * Диапазон id топиков делится на части, каждая часть обрабатывается отдельным
+ * потоком пачками по BATCH_SIZE топиков. После каждой пачки позиция сохраняется
+ * в таблицу search_reindex, поэтому после перезапуска переиндексация продолжается
+ * с места остановки.
+ *
+ * Каждая часть захватывается узлом через search_reindex.owner, поэтому
+ * при запуске на нескольких узлах часть обрабатывается только одним из них.
+ * Захват продлевается при каждом сохранении позиции; часть, владелец которой
+ * не отмечался CLAIM_TIMEOUT секунд, может захватить другой узел.
+ *
+ * Топики, которые не удается проиндексировать даже по одному, записываются
+ * в search_reindex_skipped и пропускаются.
+ */
+@Service
+public class SearchReindexService {
+  private static final Log logger = LogFactory.getLog(SearchReindexService.class);
+
+  private static final int WORKERS = 4;
+  private static final int BATCH_SIZE = 50;
+
+  /**
+   * Если в базе выполняется больше запросов, чем MAX_ACTIVE_BACKENDS,
+   * ждем THROTTLE_DELAY мс перед следующей пачкой
+   */
+  private static final int MAX_ACTIVE_BACKENDS = 10;
+  private static final int THROTTLE_DELAY = 5000;
+
+  /**
+   * Через сколько секунд без сохранения позиции захват части считается потерянным
+   */
+  private static final int CLAIM_TIMEOUT = 10 * 60;
+
+  private static final int FIVE_MINS = 5 * 60 * 1000;
+  private static final int HOUR = 60 * 60 * 1000;
+
+  @Autowired
+  private SearchReindexDao searchReindexDao;
+
+  @Autowired
+  private SearchQueueListener searchQueueListener;
+
+  private final String owner = ManagementFactory.getRuntimeMXBean().getName();
+
+  private ExecutorService executor;
+
+  private volatile long startTime;
+  private volatile double startProgress;
+
+  /**
+   * Начать переиндексацию заново
+   */
+  public synchronized void start() {
+    if (isRunning()) {
+      throw new IllegalStateException("Reindex already running");
+    }
+
+    searchReindexDao.createPartitions(WORKERS);
+
+    run();
+  }
+
+  /**
+   * Продолжить прерванную переиндексацию, если она есть и ее части не обрабатываются
+   * другим узлом
+   */
+  @Scheduled(fixedDelay = HOUR, initialDelay = FIVE_MINS)
+  public synchronized void resume() {
+    if (isRunning()) {
+      return;
+    }
+
+    for (ReindexPartition partition : searchReindexDao.getPartitions()) {
+      if (!partition.isFinished()) {
+        logger.info("Resuming search reindex");
+        run();
+        return;
+      }
+    }
+  }
+
+  public synchronized boolean isRunning() {
+    return executor != null && !executor.isTerminated();
+  }
+
+  private void run() {
+    List<ReindexPartition> partitions = searchReindexDao.getPartitions();
+
+    List<ReindexPartition> claimed = new ArrayList<>();
+
+    for (ReindexPartition partition : partitions) {
+      if (!partition.isFinished() && searchReindexDao.claim(partition.getPartition(), owner, CLAIM_TIMEOUT)) {
+        claimed.add(partition);
+      }
+    }
+
+    if (claimed.isEmpty()) {
+      logger.info("Search reindex: no free partitions");
+      return;
+    }
+
+    startTime = System.currentTimeMillis();
+    startProgress = getProgress(partitions);
+
+    executor = Executors.newFixedThreadPool(WORKERS);
+
+    for (final ReindexPartition partition : claimed) {
+      executor.submit(new Runnable() {
+        @Override
+        public void run() {
+          processPartition(partition);
+        }
+      });
+    }
+
+    executor.shutdown();
+  }
+
+  void processPartition(ReindexPartition partition) {
+    int lastId = partition.getLastId();
+    boolean release = true;
+
+    try {
+      while (!Thread.currentThread().isInterrupted()) {
+        while (searchReindexDao.getActiveBackends() > MAX_ACTIVE_BACKENDS) {
+          if (!searchReindexDao.updateCheckpoint(partition.getPartition(), owner, lastId, false)) {
+            logger.warn("Search reindex partition #"+partition.getPartition()+" claimed by another node");
+            release = false;
+            return;
+          }
+
+          Thread.sleep(THROTTLE_DELAY);
+        }
+
+        List<Integer> ids = searchReindexDao.getTopicIds(lastId, partition.getEndId(), BATCH_SIZE);
+
+        if (ids.isEmpty()) {
+          searchReindexDao.updateCheckpoint(partition.getPartition(), owner, partition.getEndId(), true);
+          logger.info("Search reindex partition #"+partition.getPartition()+" done");
+          return;
+        }
+
+        reindexBatch(partition, ids);
+
+        lastId = ids.get(ids.size() - 1);
+
+        if (!searchReindexDao.updateCheckpoint(partition.getPartition(), owner, lastId, false)) {
+          logger.warn("Search reindex partition #"+partition.getPartition()+" claimed by another node");
+          release = false;
+          return;
+        }
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    } catch (Exception ex) {
+      logger.warn("Search reindex partition #"+partition.getPartition()+" failed at id="+lastId, ex);
+    } finally {
+      if (release) {
+        searchReindexDao.release(partition.getPartition(), owner);
+      }
+    }
+  }
+
+  /**
+   * Переиндексировать пачку. Если пачка не проходит из-за отдельного топика,
+   * топики индексируются по одному, а сломанные записываются в search_reindex_skipped.
+   * Ошибки solr пробрасываются: повторять их по одному топику бессмысленно.
+   */
+  private void reindexBatch(ReindexPartition partition, List<Integer> ids) throws IOException, SolrServerException {
+    try {
+      searchQueueListener.reindexTopics(ids);
+      return;
+    } catch (IOException | SolrServerException ex) {
+      throw ex;
+    } catch (Exception ex) {
+      logger.info("Search reindex batch failed, retrying one by one: "+ex.toString());
+    }
+
+    for (Integer id : ids) {
+      try {
+        searchQueueListener.reindexTopics(Collections.singletonList(id));
+      } catch (IOException | SolrServerException ex) {
+        throw ex;
+      } catch (Exception ex) {
+        logger.warn("Search reindex: skipping topic "+id, ex);
+        searchReindexDao.addSkipped(id, partition.getPartition(), ex.toString());
+      }
+    }
+  }
+
+  /**
+   * Доля выполненной работы, от 0 до 1
+   */
+  private static double getProgress(List<ReindexPartition> partitions) {
+    long total = 0;
+    long done = 0;
+
+    for (ReindexPartition partition : partitions) {
+      total += partition.getEndId() - partition.getStartId();
+      done += partition.getLastId() - partition.getStartId();
+    }
+
+    if (total == 0) {
+      return 1.0;
+    }
+
+    return (double) done / total;
+  }
+
+  public ReindexStatus getStatus() {
+    List<ReindexPartition> partitions = new ArrayList<>(searchReindexDao.getPartitions());
+
+    double progress = getProgress(partitions);
+
+    Long eta = null;
+
+    if (isRunning() && progress > startProgress) {
+      long elapsed = System.currentTimeMillis() - startTime;
+      eta = (long) (elapsed * (1.0 - progress) / (progress - startProgress));
+    }
+
+    return new ReindexStatus(isRunning(), progress, eta, partitions, searchReindexDao.getSkippedCount());
+  }
+
+  @PreDestroy
+  public synchronized void stop() throws InterruptedException {
+    if (executor != null) {
+      executor.shutdownNow();
+      executor.awaitTermination(1, TimeUnit.MINUTES);
+    }
+  }
+}
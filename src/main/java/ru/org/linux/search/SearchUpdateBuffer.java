@@ -0,0 +1,205 @@
+/*
+ * Copyright 1998-2012 Linux.org.ru
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.org.linux.search;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Накопитель запросов на переиндексацию.
+ *
+ * Повторные запросы для одного топика/комментария схлопываются в один,
+ * флаг withComments для топика объединяется по ИЛИ. Сообщение, которое не удалось
+ * обработать, возвращается в буфер не более MAX_ATTEMPTS раз.
+ */
+public class SearchUpdateBuffer {
+  /**
+   * Сколько раз пытаться проиндексировать сообщение, прежде чем отказаться от него
+   */
+  public static final int MAX_ATTEMPTS = 10;
+
+  private Map<Integer, Boolean> topics = new HashMap<>();
+  private Set<Integer> comments = new HashSet<>();
+
+  /**
+   * Число неудачных попыток по id сообщения
+   */
+  private final Map<Integer, Integer> attempts = new HashMap<>();
+
+  private long received = 0;
+  private long drained = 0;
+
+  public synchronized void addTopic(int msgid, boolean withComments) {
+    Boolean current = topics.get(msgid);
+
+    topics.put(msgid, withComments || (current != null && current));
+
+    received++;
+  }
+
+  public synchronized void addComments(Collection<Integer> msgids) {
+    comments.addAll(msgids);
+
+    received += msgids.size();
+  }
+
+  /**
+   * Забрать все накопленные запросы, буфер при этом очищается
+   */
+  public synchronized Batch drain() {
+    Batch batch = new Batch(topics, comments);
+
+    topics = new HashMap<>();
+    comments = new HashSet<>();
+
+    drained += batch.size();
+
+    return batch;
+  }
+
+  /**
+   * Вернуть в буфер пакет, который не удалось обработать
+   *
+   * @return id сообщений, для которых исчерпаны попытки; они в буфер не возвращаются
+   */
+  public synchronized Set<Integer> requeue(Batch batch) {
+    Set<Integer> dropped = new HashSet<>();
+
+    for (Map.Entry<Integer, Boolean> entry : batch.getTopics().entrySet()) {
+      if (countAttempt(entry.getKey())) {
+        Boolean current = topics.get(entry.getKey());
+        topics.put(entry.getKey(), entry.getValue() || (current != null && current));
+      } else {
+        dropped.add(entry.getKey());
+      }
+    }
+
+    for (Integer msgid : batch.getComments()) {
+      if (countAttempt(msgid)) {
+        comments.add(msgid);
+      } else {
+        dropped.add(msgid);
+      }
+    }
+
+    drained -= batch.size() - dropped.size();
+
+    return Collections.unmodifiableSet(dropped);
+  }
+
+  /**
+   * Пакет успешно обработан, счетчики попыток его сообщений сбрасываются
+   */
+  public synchronized void done(Batch batch) {
+    if (attempts.isEmpty()) {
+      return;
+    }
+
+    attempts.keySet().removeAll(batch.getTopics().keySet());
+    attempts.keySet().removeAll(batch.getComments());
+  }
+
+  /**
+   * @return false, если попытки для сообщения исчерпаны
+   */
+  private boolean countAttempt(int msgid) {
+    Integer count = attempts.get(msgid);
+    int next = count == null ? 1 : count + 1;
+
+    if (next >= MAX_ATTEMPTS) {
+      attempts.remove(msgid);
+      return false;
+    }
+
+    attempts.put(msgid, next);
+    return true;
+  }
+
+  public synchronized int getPendingCount() {
+    return topics.size() + comments.size();
+  }
+
+  public synchronized long getReceivedCount() {
+    return received;
+  }
+
+  public synchronized long getDrainedCount() {
+    return drained;
+  }
+
+  /**
+   * Степень схлопывания: сколько запросов пришло на одно фактическое обновление
+   */
+  public synchronized double getCoalescingRatio() {
+    if (drained == 0) {
+      return 1.0;
+    }
+
+    return (double) received / drained;
+  }
+
+  public static class Batch {
+    private final ImmutableMap<Integer, Boolean> topics;
+    private final ImmutableSet<Integer> comments;
+
+    private Batch(Map<Integer, Boolean> topics, Set<Integer> comments) {
+      this.topics = ImmutableMap.copyOf(topics);
+      this.comments = ImmutableSet.copyOf(comments);
+    }
+
+    public ImmutableMap<Integer, Boolean> getTopics() {
+      return topics;
+    }
+
+    public ImmutableSet<Integer> getComments() {
+      return comments;
+    }
+
+    public boolean isEmpty() {
+      return topics.isEmpty() && comments.isEmpty();
+    }
+
+    public int size() {
+      return topics.size() + comments.size();
+    }
+
+    /**
+     * Разбить пакет на пакеты из одного сообщения
+     */
+    public List<Batch> split() {
+      List<Batch> result = new ArrayList<>(size());
+
+      for (Map.Entry<Integer, Boolean> entry : topics.entrySet()) {
+        result.add(new Batch(ImmutableMap.of(entry.getKey(), entry.getValue()), ImmutableSet.<Integer>of()));
+      }
+
+      for (Integer msgid : comments) {
+        result.add(new Batch(ImmutableMap.<Integer, Boolean>of(), ImmutableSet.of(msgid)));
+      }
+
+      return result;
+    }
+  }
+}
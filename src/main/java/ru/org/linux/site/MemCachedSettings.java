@@ -16,37 +16,53 @@
 package ru.org.linux.site;
 
 import java.io.IOException;
-import java.net.InetSocketAddress;
 
+import net.spy.memcached.AddrUtil;
 import net.spy.memcached.MemcachedClient;
 
 import ru.org.linux.spring.commons.CacheProvider;
 import ru.org.linux.spring.commons.MemCachedProvider;
 
+/**
+ * Клиент memcached. Список серверов задается свойством memcached.servers
+ * (через пробел, host:port); клиент создается при первом обращении,
+ * поэтому список нужно задать до него.
+ */
 public class MemCachedSettings {
-  private static final MemCachedSettings me;static {
-    try {
-      me = new MemCachedSettings();
-    } catch (IOException e) {
-      throw new RuntimeException(e);
-    }
-  }
+  public static final String DEFAULT_SERVERS = "127.0.0.1:11211";
 
-  private final MemcachedClient mc;
-  private final MemCachedProvider provider = new MemCachedProvider();
+  private static volatile String servers = DEFAULT_SERVERS;
+  private static volatile MemcachedClient mc;
+
+  private static final MemCachedProvider provider = new MemCachedProvider();
 
   private static String mainUrl = "uninitialized/";
 
-  private MemCachedSettings() throws IOException {
-    mc = new MemcachedClient(new InetSocketAddress("127.0.0.1", 11211));
+  private MemCachedSettings() {
   }
 
   public static MemcachedClient getMemCachedClient() {
-    return me.mc;
+    MemcachedClient client = mc;
+
+    if (client == null) {
+      synchronized (MemCachedSettings.class) {
+        if (mc == null) {
+          try {
+            mc = new MemcachedClient(AddrUtil.getAddresses(servers));
+          } catch (IOException e) {
+            throw new RuntimeException(e);
+          }
+        }
+
+        client = mc;
+      }
+    }
+
+    return client;
   }
 
   public static CacheProvider getCache() {
-    return me.provider;
+    return provider;
   }
 
   public static String getId(String suffix) {
@@ -56,4 +72,12 @@ public class MemCachedSettings {
   public static void setMainUrl(String mainUrl) {
     MemCachedSettings.mainUrl = mainUrl;
   }
+
+  public static synchronized void setServers(String servers) {
+    if (mc != null && !servers.equals(MemCachedSettings.servers)) {
+      throw new IllegalStateException("Memcached client already created");
+    }
+
+    MemCachedSettings.servers = servers;
+  }
 }
@@ -33,8 +33,12 @@ public final class Template {
   private final Configuration configuration;
 
   public Template(WebApplicationContext ctx) {
-    configuration = (Configuration)ctx.getBean("configuration");
-    userProfile = AuthUtil.getProfile();
+    this((Configuration)ctx.getBean("configuration"), AuthUtil.getProfile());
+  }
+
+  public Template(Configuration configuration, @Nonnull Profile userProfile) {
+    this.configuration = configuration;
+    this.userProfile = userProfile;
   }
 
   public Template(ServletRequest request) {
@@ -32,6 +32,7 @@ import java.util.Properties;
 public class Configuration {
   private static final String ERR_MSG = "Invalid MainUrl property: ";
   public static final String PROPERTY_MAIN_URL = "MainUrl";
+  public static final String FLOOD_STORE_MEMCACHED = "memcached";
 
   @Qualifier("properties")
   @Autowired
@@ -70,6 +71,7 @@ public class Configuration {
     }
 
     MemCachedSettings.setMainUrl(getMainUrl());
+    MemCachedSettings.setServers(getMemcachedServers());
   }
 
   public String getMainUrl() {
@@ -154,4 +156,24 @@ public class Configuration {
     }
     return Integer.valueOf(property);
   }
+
+  /**
+   * Где хранить счетчики защиты от флуда: local - в памяти узла,
+   * memcached - общие для всех узлов.
+   *
+   * @return тип хранилища
+   */
+  public String getFloodStore() {
+    return properties.getProperty("flood.store", "local");
+  }
+
+  /**
+   * Адреса memcached через пробел в виде host:port. Для flood.store=memcached
+   * на всех узлах должен быть указан один и тот же список.
+   *
+   * @return список серверов
+   */
+  public String getMemcachedServers() {
+    return properties.getProperty("memcached.servers", MemCachedSettings.DEFAULT_SERVERS);
+  }
 }
@@ -0,0 +1,251 @@
+/*
+ * Copyright 1998-2012 Linux.org.ru
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.org.linux.spring;
+
+import com.google.common.base.Charsets;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.View;
+import org.springframework.web.servlet.ViewResolver;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+import org.springframework.web.servlet.support.RequestContextUtils;
+import ru.org.linux.spring.boxlets.BufferedResponseWrapper;
+
+import javax.annotation.Nullable;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Кеш готового вывода RSS лент.
+ *
+ * Лента одинакова для всех читателей, поэтому отрендеренный ответ хранится
+ * TTL секунд вместе со сжатым gzip вариантом: сжатие выполняется один раз
+ * при сохранении, а не на каждый запрос. Вариант выбирается по Accept-Encoding.
+ * Ключ - схема, адрес с параметрами и признак FeedBurner: от них зависит
+ * содержимое ленты. Кешируются только успешно отрендеренные представления,
+ * перенаправления и ошибки проходят мимо кеша.
+ */
+public class FeedCacheInterceptor extends HandlerInterceptorAdapter {
+  private static final String ATTRIBUTE = "feedCacheKey";
+
+  /**
+   * Время жизни ленты в кеше, секунд
+   */
+  private static final int TTL = 60;
+
+  private final Cache<String, CachedFeed> cache = CacheBuilder.newBuilder()
+          .maximumSize(500)
+          .expireAfterWrite(TTL, TimeUnit.SECONDS)
+          .build();
+
+  @Autowired
+  private ViewResolver viewResolver;
+
+  public void setViewResolver(ViewResolver viewResolver) {
+    this.viewResolver = viewResolver;
+  }
+
+  @Override
+  public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+    if (!"GET".equals(request.getMethod())) {
+      return true;
+    }
+
+    String key = getKey(request);
+    CachedFeed feed = cache.getIfPresent(key);
+
+    if (feed != null) {
+      write(request, response, feed);
+      return false;
+    }
+
+    request.setAttribute(ATTRIBUTE, key);
+
+    return true;
+  }
+
+  @Override
+  public void postHandle(HttpServletRequest request, HttpServletResponse response, Object handler, ModelAndView modelAndView) throws Exception {
+    String key = (String) request.getAttribute(ATTRIBUTE);
+
+    if (key == null || modelAndView == null || !modelAndView.isReference() ||
+            modelAndView.getViewName().startsWith("redirect:")) {
+      return;
+    }
+
+    View view = viewResolver.resolveViewName(modelAndView.getViewName(), RequestContextUtils.getLocale(request));
+
+    if (view != null) {
+      modelAndView.setView(new CachingView(key, view));
+    }
+  }
+
+  static String getKey(HttpServletRequest request) {
+    String userAgent = request.getHeader("User-Agent");
+    boolean feedBurner = userAgent != null && userAgent.contains("FeedBurner");
+
+    StringBuilder key = new StringBuilder();
+
+    key.append(request.isSecure() ? "https:" : "http:");
+    key.append(request.getRequestURI());
+
+    if (request.getQueryString() != null) {
+      key.append('?').append(request.getQueryString());
+    }
+
+    if (feedBurner) {
+      key.append(" feedburner");
+    }
+
+    return key.toString();
+  }
+
+  static void write(HttpServletRequest request, HttpServletResponse response, CachedFeed feed) throws IOException {
+    byte[] data;
+
+    response.setContentType(feed.getContentType());
+    response.addHeader("Vary", "Accept-Encoding");
+
+    if (acceptsGzip(request.getHeader("Accept-Encoding"))) {
+      response.setHeader("Content-Encoding", "gzip");
+      data = feed.getGzipped();
+    } else {
+      data = feed.getContent();
+    }
+
+    response.setContentLength(data.length);
+    response.getOutputStream().write(data);
+  }
+
+  /**
+   * Принимает ли клиент gzip по заголовку Accept-Encoding
+   */
+  static boolean acceptsGzip(@Nullable String acceptEncoding) {
+    if (acceptEncoding == null) {
+      return false;
+    }
+
+    Boolean wildcard = null;
+
+    for (String coding : acceptEncoding.split(",")) {
+      String[] params = coding.split(";");
+      String name = params[0].trim().toLowerCase();
+
+      if ("gzip".equals(name) || "x-gzip".equals(name)) {
+        return isAcceptable(params);
+      }
+
+      if ("*".equals(name)) {
+        wildcard = isAcceptable(params);
+      }
+    }
+
+    return wildcard != null && wildcard;
+  }
+
+  private static boolean isAcceptable(String[] params) {
+    for (int i = 1; i < params.length; i++) {
+      String param = params[i].trim();
+
+      if (param.startsWith("q=")) {
+        try {
+          return Double.parseDouble(param.substring(2)) > 0;
+        } catch (NumberFormatException e) {
+          return false;
+        }
+      }
+    }
+
+    return true;
+  }
+
+  private class CachingView implements View {
+    private final String key;
+    private final View view;
+
+    private CachingView(String key, View view) {
+      this.key = key;
+      this.view = view;
+    }
+
+    @Override
+    public String getContentType() {
+      return view.getContentType();
+    }
+
+    @Override
+    public void render(Map<String, ?> model, HttpServletRequest request, HttpServletResponse response) throws Exception {
+      BufferedResponseWrapper wrapper = new BufferedResponseWrapper(response);
+
+      view.render(model, request, wrapper);
+
+      String contentType = response.getContentType() != null ? response.getContentType() : view.getContentType();
+      CachedFeed feed = new CachedFeed(contentType, wrapper.getContent());
+
+      if (response.getStatus() == HttpServletResponse.SC_OK) {
+        cache.put(key, feed);
+      }
+
+      write(request, response, feed);
+    }
+  }
+
+  /**
+   * Отрендеренная лента и ее сжатый вариант
+   */
+  static class CachedFeed {
+    private final String contentType;
+    private final byte[] content;
+    private final byte[] gzipped;
+
+    CachedFeed(String contentType, String content) {
+      this.contentType = contentType;
+      this.content = content.getBytes(Charsets.UTF_8);
+      gzipped = gzip(this.content);
+    }
+
+    String getContentType() {
+      return contentType;
+    }
+
+    byte[] getContent() {
+      return content;
+    }
+
+    byte[] getGzipped() {
+      return gzipped;
+    }
+
+    private static byte[] gzip(byte[] data) {
+      ByteArrayOutputStream buffer = new ByteArrayOutputStream(data.length / 3);
+
+      try (GZIPOutputStream out = new GZIPOutputStream(buffer)) {
+        out.write(data);
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+
+      return buffer.toByteArray();
+    }
+  }
+}
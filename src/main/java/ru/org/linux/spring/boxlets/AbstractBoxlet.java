@@ -20,8 +20,19 @@ import org.springframework.web.servlet.mvc.AbstractController;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 public abstract class AbstractBoxlet extends AbstractController {
+  private final ConcurrentMap<String, CachedFragment> fragments = new ConcurrentHashMap<>();
+
+  /**
+   * Фрагменты, которые сейчас строятся впервые
+   */
+  private final ConcurrentMap<String, CountDownLatch> loading = new ConcurrentHashMap<>();
+
   protected abstract ModelAndView getData(HttpServletRequest request
   ) throws Exception;
 
@@ -38,4 +49,63 @@ public abstract class AbstractBoxlet extends AbstractController {
     }
     return mav;
   }
+
+  /**
+   * Время жизни отрендеренного HTML бокслета в миллисекундах.
+   * 0 - бокслет не кешируется.
+   */
+  protected long getExpireTime() {
+    return 0;
+  }
+
+  /**
+   * Ключ фрагмента: параметры профиля, от которых зависит вывод бокслета
+   */
+  protected String getCacheKey(HttpServletRequest request) {
+    return "";
+  }
+
+  boolean isCacheable(HttpServletRequest request) {
+    return getExpireTime() > 0 && !request.getParameterMap().containsKey("edit");
+  }
+
+  CachedFragment getFragment(String key) {
+    return fragments.get(key);
+  }
+
+  void putFragment(String key, CachedFragment fragment) {
+    fragments.put(key, fragment);
+  }
+
+  /**
+   * Захватить право на построение отсутствующего фрагмента.
+   *
+   * @return true, если строить будет вызвавший поток
+   */
+  boolean tryLoad(String key) {
+    return loading.putIfAbsent(key, new CountDownLatch(1)) == null;
+  }
+
+  /**
+   * Дождаться, пока другой поток построит фрагмент
+   *
+   * @return фрагмент или null, если он не построен за timeout мс
+   */
+  CachedFragment awaitLoad(String key, long timeout) throws InterruptedException {
+    CountDownLatch latch = loading.get(key);
+
+    if (latch != null) {
+      latch.await(timeout, TimeUnit.MILLISECONDS);
+    }
+
+    return fragments.get(key);
+  }
+
+  void loadDone(String key) {
+    CountDownLatch latch = loading.remove(key);
+
+    if (latch != null) {
+      latch.countDown();
+    }
+  }
 }
@@ -31,6 +31,8 @@ import java.util.List;
 
 @Controller
 public class ArchiveBoxlet extends AbstractBoxlet {
+  private static final int EXPIRE_TIME = 10 * 60 * 1000;
+
   @Autowired
   private ArchiveDao archiveDao;
 
@@ -57,4 +59,9 @@ public class ArchiveBoxlet extends AbstractBoxlet {
 
     return new ModelAndView("boxlets/archive", "items", list);
   }
+
+  @Override
+  protected long getExpireTime() {
+    return EXPIRE_TIME;
+  }
 }
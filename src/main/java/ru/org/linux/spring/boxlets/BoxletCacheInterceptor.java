@@ -0,0 +1,188 @@
+/*
+ * Copyright 1998-2012 Linux.org.ru
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.org.linux.spring.boxlets;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.View;
+import org.springframework.web.servlet.ViewResolver;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+import org.springframework.web.servlet.support.RequestContextUtils;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.Map;
+
+/**
+ * Кеш отрендеренного HTML бокслетов.
+ *
+ * Свежий фрагмент отдается без вызова бокслета. Устаревший фрагмент отдается
+ * всем запросам, кроме одного, который перестраивает его; если перестроить
+ * не удалось (в том числе если бокслет бросил исключение, см.
+ * {@link BoxletExceptionResolver}), отдается старая версия.
+ *
+ * Если фрагмента еще нет, его строит один запрос, остальные ждут результата
+ * не дольше LOAD_TIMEOUT мс, а после этого строят HTML сами без кеширования.
+ */
+public class BoxletCacheInterceptor extends HandlerInterceptorAdapter {
+  private static final Log logger = LogFactory.getLog(BoxletCacheInterceptor.class);
+
+  static final String ATTRIBUTE = "boxletCacheKey";
+  private static final String LOADING_ATTRIBUTE = "boxletCacheLoading";
+  private static final long LOAD_TIMEOUT = 5000;
+  private static final String CONTENT_TYPE = "text/html;charset=UTF-8";
+
+  @Autowired
+  private ViewResolver viewResolver;
+
+  public void setViewResolver(ViewResolver viewResolver) {
+    this.viewResolver = viewResolver;
+  }
+
+  @Override
+  public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+    AbstractBoxlet boxlet = getBoxlet(handler);
+
+    if (boxlet == null || !boxlet.isCacheable(request)) {
+      return true;
+    }
+
+    String key = boxlet.getCacheKey(request);
+    CachedFragment fragment = boxlet.getFragment(key);
+
+    if (fragment == null) {
+      if (boxlet.tryLoad(key)) {
+        request.setAttribute(LOADING_ATTRIBUTE, Boolean.TRUE);
+      } else {
+        fragment = boxlet.awaitLoad(key, LOAD_TIMEOUT);
+
+        if (fragment == null) {
+          // первый запрос не смог построить фрагмент или строит слишком долго
+          return true;
+        }
+
+        write(response, fragment.getHtml());
+        return false;
+      }
+    } else if (fragment.isFresh(System.currentTimeMillis(), boxlet.getExpireTime()) || !fragment.tryRefresh()) {
+      write(response, fragment.getHtml());
+      return false;
+    }
+
+    request.setAttribute(ATTRIBUTE, key);
+
+    return true;
+  }
+
+  @Override
+  public void postHandle(HttpServletRequest request, HttpServletResponse response, Object handler, ModelAndView modelAndView) throws Exception {
+    String key = (String) request.getAttribute(ATTRIBUTE);
+
+    if (key == null || modelAndView == null || !modelAndView.isReference()) {
+      return;
+    }
+
+    View view = viewResolver.resolveViewName(modelAndView.getViewName(), RequestContextUtils.getLocale(request));
+
+    if (view != null) {
+      modelAndView.setView(new CachingView(getBoxlet(handler), key, view));
+    }
+  }
+
+  @Override
+  public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+    String key = (String) request.getAttribute(ATTRIBUTE);
+
+    if (key == null) {
+      return;
+    }
+
+    AbstractBoxlet boxlet = getBoxlet(handler);
+
+    if (request.getAttribute(LOADING_ATTRIBUTE) != null) {
+      boxlet.loadDone(key);
+      return;
+    }
+
+    CachedFragment fragment = boxlet.getFragment(key);
+
+    if (fragment != null) {
+      fragment.refreshDone();
+    }
+  }
+
+  static AbstractBoxlet getBoxlet(Object handler) {
+    if (handler instanceof HandlerMethod) {
+      Object bean = ((HandlerMethod) handler).getBean();
+
+      if (bean instanceof AbstractBoxlet) {
+        return (AbstractBoxlet) bean;
+      }
+    }
+
+    return null;
+  }
+
+  static void write(HttpServletResponse response, String html) throws Exception {
+    response.setContentType(CONTENT_TYPE);
+    response.getWriter().write(html);
+  }
+
+  private static class CachingView implements View {
+    private final AbstractBoxlet boxlet;
+    private final String key;
+    private final View view;
+
+    private CachingView(AbstractBoxlet boxlet, String key, View view) {
+      this.boxlet = boxlet;
+      this.key = key;
+      this.view = view;
+    }
+
+    @Override
+    public String getContentType() {
+      return view.getContentType();
+    }
+
+    @Override
+    public void render(Map<String, ?> model, HttpServletRequest request, HttpServletResponse response) throws Exception {
+      BufferedResponseWrapper wrapper = new BufferedResponseWrapper(response);
+
+      try {
+        view.render(model, request, wrapper);
+      } catch (Exception ex) {
+        CachedFragment stale = boxlet.getFragment(key);
+
+        if (stale == null) {
+          throw ex;
+        }
+
+        logger.warn("Boxlet " + boxlet.getClass().getSimpleName() + " render failed, serving stale copy", ex);
+        write(response, stale.getHtml());
+        return;
+      }
+
+      String html = wrapper.getContent();
+
+      boxlet.putFragment(key, new CachedFragment(html, System.currentTimeMillis()));
+
+      write(response, html);
+    }
+  }
+}
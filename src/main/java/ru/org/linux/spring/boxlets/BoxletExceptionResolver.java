@@ -0,0 +1,62 @@
+/*
+ * Copyright 1998-2012 Linux.org.ru
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.org.linux.spring.boxlets;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.handler.AbstractHandlerExceptionResolver;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Если бокслет бросил исключение при перестроении устаревшего фрагмента,
+ * отдает старую версию фрагмента вместо страницы ошибки.
+ *
+ * Работает только для запросов, которые {@link BoxletCacheInterceptor}
+ * пропустил к бокслету; остальные исключения обрабатываются дальше.
+ */
+public class BoxletExceptionResolver extends AbstractHandlerExceptionResolver {
+  private static final Log logger = LogFactory.getLog(BoxletExceptionResolver.class);
+
+  @Override
+  protected ModelAndView doResolveException(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+    String key = (String) request.getAttribute(BoxletCacheInterceptor.ATTRIBUTE);
+    AbstractBoxlet boxlet = BoxletCacheInterceptor.getBoxlet(handler);
+
+    if (key == null || boxlet == null) {
+      return null;
+    }
+
+    CachedFragment stale = boxlet.getFragment(key);
+
+    if (stale == null) {
+      return null;
+    }
+
+    logger.warn("Boxlet " + boxlet.getClass().getSimpleName() + " failed, serving stale copy", ex);
+
+    try {
+      BoxletCacheInterceptor.write(response, stale.getHtml());
+    } catch (Exception e) {
+      logger.warn("Can't write stale boxlet", e);
+      return null;
+    }
+
+    return new ModelAndView();
+  }
+}
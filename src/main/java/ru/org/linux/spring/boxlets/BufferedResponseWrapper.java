@@ -0,0 +1,67 @@
+/*
+ * Copyright 1998-2012 Linux.org.ru
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.org.linux.spring.boxlets;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+/**
+ * Ответ, собирающий вывод JSP в строку.
+ *
+ * Ссылки не кодируются идентификатором сессии: вывод попадает в общий кеш
+ * и не должен содержать ничего пользовательского.
+ */
+public class BufferedResponseWrapper extends HttpServletResponseWrapper {
+  private final StringWriter buffer = new StringWriter();
+  private final PrintWriter writer = new PrintWriter(buffer);
+
+  public BufferedResponseWrapper(HttpServletResponse response) {
+    super(response);
+  }
+
+  @Override
+  public PrintWriter getWriter() {
+    return writer;
+  }
+
+  @Override
+  public ServletOutputStream getOutputStream() {
+    throw new IllegalStateException("cached views must use writer");
+  }
+
+  @Override
+  public void flushBuffer() {
+    writer.flush();
+  }
+
+  @Override
+  public String encodeURL(String url) {
+    return url;
+  }
+
+  @Override
+  public String encodeRedirectURL(String url) {
+    return url;
+  }
+
+  public String getContent() {
+    writer.flush();
+    return buffer.toString();
+  }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 1998-2012 Linux.org.ru
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.org.linux.spring.boxlets;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Отрендеренный HTML бокслета.
+ *
+ * Устаревший фрагмент продолжает отдаваться, пока один из запросов
+ * его перестраивает (stale-while-revalidate).
+ */
+class CachedFragment {
+  private final String html;
+  private final long created;
+  private final AtomicBoolean refreshing = new AtomicBoolean(false);
+
+  CachedFragment(String html, long created) {
+    this.html = html;
+    this.created = created;
+  }
+
+  String getHtml() {
+    return html;
+  }
+
+  boolean isFresh(long now, long expireTime) {
+    return now - created < expireTime;
+  }
+
+  /**
+   * Захватить право на перестроение фрагмента.
+   *
+   * @return true, если перестраивать будет вызвавший поток
+   */
+  boolean tryRefresh() {
+    return refreshing.compareAndSet(false, true);
+  }
+
+  void refreshDone() {
+    refreshing.set(false);
+  }
+}
@@ -23,9 +23,16 @@ import org.springframework.web.servlet.ModelAndView;
 
 @Controller
 public class IbmBoxlet extends AbstractBoxlet {
+  private static final int EXPIRE_TIME = 60 * 60 * 1000;
+
   @Override
   @RequestMapping("/ibm.boxlet")
   protected ModelAndView getData(HttpServletRequest request) {
     return new ModelAndView("boxlets/ibm", null);
   }
+
+  @Override
+  protected long getExpireTime() {
+    return EXPIRE_TIME;
+  }
 }
@@ -31,6 +31,7 @@ import java.util.Map;
  */
 @Controller
 public class LastMiniNewsBoxlet extends AbstractBoxlet{
+  private static final int EXPIRE_TIME = 60 * 1000;
 
   @Autowired
   private LastMiniNewsDao lastMiniNewsDao;
@@ -45,4 +46,14 @@ public class LastMiniNewsBoxlet extends AbstractBoxlet{
 
     return new ModelAndView("boxlets/lastMiniNews", params);
   }
+
+  @Override
+  protected long getExpireTime() {
+    return EXPIRE_TIME;
+  }
+
+  @Override
+  protected String getCacheKey(HttpServletRequest request) {
+    return Integer.toString(Template.getTemplate(request).getProf().getMessages());
+  }
 }
@@ -27,6 +27,7 @@ import java.util.List;
 
 @Controller
 public class TagCloudBoxlet extends AbstractBoxlet {
+  private static final int EXPIRE_TIME = 10 * 60 * 1000;
   private static final int TAGS_IN_CLOUD = 50;
   @Autowired
   private TagCloudDao tagDao;
@@ -38,4 +39,9 @@ public class TagCloudBoxlet extends AbstractBoxlet {
     List<TagDTO> list = tagDao.getTags(TAGS_IN_CLOUD);
     return new ModelAndView("boxlets/tagcloud", "tags", list);
   }
+
+  @Override
+  protected long getExpireTime() {
+    return EXPIRE_TIME;
+  }
 }
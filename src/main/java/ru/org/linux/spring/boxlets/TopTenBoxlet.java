@@ -33,6 +33,8 @@ import java.util.Map;
 
 @Controller
 public class TopTenBoxlet extends AbstractBoxlet {
+  private static final int EXPIRE_TIME = 5 * 60 * 1000;
+
   private TopTenDao topTenDao;
 
   public TopTenDao getTopTenDao() {
@@ -66,4 +68,14 @@ public class TopTenBoxlet extends AbstractBoxlet {
 
     return new ModelAndView("boxlets/top10", params);
   }
+
+  @Override
+  protected long getExpireTime() {
+    return EXPIRE_TIME;
+  }
+
+  @Override
+  protected String getCacheKey(HttpServletRequest request) {
+    return Integer.toString(Template.getTemplate(request).getProf().getMessages());
+  }
 }
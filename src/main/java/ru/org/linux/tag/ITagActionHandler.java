@@ -41,4 +41,13 @@ public interface ITagActionHandler {
    */
   void reCalculateAllCounters();
 
+  /**
+   * Проверка и исправление счётчиков использования для диапазона тегов.
+   *
+   * @param fromTagId  идентификационный номер первого тега диапазона
+   * @param toTagId    идентификационный номер последнего тега диапазона
+   * @return количество исправленных счётчиков
+   */
+  int repairCounters(int fromTagId, int toTagId);
+
 }
@@ -1,19 +1,57 @@
 package ru.org.linux.tag;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
+
+/**
+ * Проверка счётчиков использования тегов.
+ *
+ * Счётчики поддерживаются инкрементально при изменении тегов, удалении
+ * и восстановлении топиков; здесь по кругу проверяются небольшие диапазоны
+ * тегов и исправляются только разошедшиеся счётчики.
+ */
 @Component
 public class TagCountersUpdater {
-  private static final int HOUR = 60*60*1000;
+  private static final Log logger = LogFactory.getLog(TagCountersUpdater.class);
+
   private static final int FIVE_MINS = 5 * 60 * 1000;
+  private static final int CHECK_BATCH = 1000;
 
   @Autowired
   private TagService tagService;
-  
-  @Scheduled(fixedDelay = HOUR, initialDelay = FIVE_MINS)
-  public void recalcTagsCounters() {
-    tagService.reCalculateAllCounters();
+
+  @Autowired
+  private TagDao tagDao;
+
+  private int lastTagId = 0;
+
+  @Scheduled(fixedDelay = FIVE_MINS, initialDelay = FIVE_MINS)
+  public synchronized void checkTagsCounters() {
+    List<Integer> ids = tagDao.getTagIds(lastTagId, CHECK_BATCH);
+
+    if (ids.isEmpty()) {
+      lastTagId = 0;
+      return;
+    }
+
+    int fromTagId = ids.get(0);
+    int toTagId = ids.get(ids.size() - 1);
+
+    int repaired = tagService.repairCounters(fromTagId, toTagId);
+
+    if (repaired > 0) {
+      logger.warn("Исправлены счётчики " + repaired + " тегов в диапазоне " + fromTagId + '-' + toTagId);
+    }
+
+    lastTagId = ids.size() < CHECK_BATCH ? 0 : toTagId;
+  }
+
+  int getLastTagId() {
+    return lastTagId;
   }
 }
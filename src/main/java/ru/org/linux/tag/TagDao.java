@@ -190,4 +190,20 @@ public class TagDao {
   public int getCounter(int tagId) {
     return jdbcTemplate.queryForInt("SELECT counter FROM tags_values WHERE id=?", tagId);
   }
+
+  /**
+   * Получение идентификационных номеров тегов по порядку, начиная со следующего за указанным.
+   *
+   * @param afterTagId идентификационный номер, после которого начинать
+   * @param limit      максимальное количество
+   * @return список идентификационных номеров
+   */
+  public List<Integer> getTagIds(int afterTagId, int limit) {
+    return jdbcTemplate.queryForList(
+            "SELECT id FROM tags_values WHERE id>? ORDER BY id LIMIT ?",
+            Integer.class,
+            afterTagId,
+            limit
+    );
+  }
 }
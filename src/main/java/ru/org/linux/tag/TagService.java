@@ -309,6 +309,24 @@ public class TagService {
     }
   }
 
+  /**
+   * Проверка счётчиков использования для диапазона тегов,
+   * исправляются только разошедшиеся счётчики.
+   *
+   * @param fromTagId идентификационный номер первого тега диапазона
+   * @param toTagId   идентификационный номер последнего тега диапазона
+   * @return количество исправленных счётчиков
+   */
+  public int repairCounters(int fromTagId, int toTagId) {
+    int repaired = 0;
+
+    for (ITagActionHandler actionHandler : actionHandlers) {
+      repaired += actionHandler.repairCounters(fromTagId, toTagId);
+    }
+
+    return repaired;
+  }
+
   public int getCounter(String tag) throws TagNotFoundException {
     int tagId = tagDao.getTagId(tag);
 
@@ -141,6 +141,8 @@ public class AddTopicController {
 
   @ModelAttribute("ipBlockInfo")
   private IPBlockInfo loadIPBlock(HttpServletRequest request) {
+    ipBlockDao.prefetchTor(request.getRemoteAddr());
+
     return ipBlockDao.getBlockInfo(request.getRemoteAddr());
   }
 
@@ -241,7 +243,7 @@ public class AddTopicController {
 
     user.checkBlocked(errors);
 
-    IPBlockDao.checkBlockIP(ipBlockInfo, errors, user);
+    ipBlockDao.checkBlockIP(ipBlockInfo, errors, user);
 
     if (group!=null && !groupPermissionService.isTopicPostingAllowed(group, user)) {
       errors.reject(null, "Недостаточно прав для постинга тем в эту группу");
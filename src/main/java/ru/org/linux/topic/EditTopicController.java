@@ -257,6 +257,8 @@ public class EditTopicController {
 
   @ModelAttribute("ipBlockInfo")
   private IPBlockInfo loadIPBlock(HttpServletRequest request) {
+    ipBlockDao.prefetchTor(request.getRemoteAddr());
+
     return ipBlockDao.getBlockInfo(request.getRemoteAddr());
   }
 
@@ -284,7 +286,7 @@ public class EditTopicController {
 
     User user = tmpl.getCurrentUser();
 
-    IPBlockDao.checkBlockIP(ipBlockInfo, errors, user);
+    ipBlockDao.checkBlockIP(ipBlockInfo, errors, user);
 
     boolean tagsEditable = permissionService.isTagsEditable(preparedTopic, user);
     boolean editable = permissionService.isEditable(preparedTopic, user);
@@ -0,0 +1,172 @@
+/*
+ * Copyright 1998-2012 Linux.org.ru
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.org.linux.topic;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.jms.core.MessageCreator;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.Nullable;
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.Session;
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Кеш топиков по id для TopicDao.getById.
+ *
+ * Любое изменение строки топика должно вызывать invalidate: запись
+ * сбрасывается сразу и еще раз после завершения транзакции, а после фиксации
+ * через JMS topic рассылается сообщение остальным узлам. Остальные узлы
+ * получают его, только если все узлы подключены к общему брокеру
+ * (jms.brokerUrl); со встроенным брокером узла, а также при потере сообщения,
+ * чужие изменения видны не позже чем через TTL.
+ */
+@Component
+public class TopicCache {
+  private static final Log logger = LogFactory.getLog(TopicCache.class);
+
+  private static final int TEN_MINS = 10 * 60 * 1000;
+
+  /**
+   * Время жизни записи в минутах: предел устаревания, если сообщение
+   * о сбросе не дошло до узла
+   */
+  private static final int TTL = 2;
+
+  private final Cache<Integer, Topic> cache = CacheBuilder.newBuilder()
+          .maximumSize(5000)
+          .expireAfterWrite(TTL, TimeUnit.MINUTES)
+          .recordStats()
+          .build();
+
+  private JmsTemplate jmsTemplate;
+  private Destination destination;
+
+  @Autowired
+  public void setJmsTemplate(JmsTemplate jmsTemplate) {
+    this.jmsTemplate = jmsTemplate;
+  }
+
+  @Autowired
+  public void setDestination(@Qualifier("topicCacheInvalidation") Destination destination) {
+    this.destination = destination;
+  }
+
+  @Nullable
+  public Topic get(int id) {
+    return cache.getIfPresent(id);
+  }
+
+  public void put(Topic topic) {
+    cache.put(topic.getId(), topic);
+  }
+
+  /**
+   * Сбросить топик из кеша на всех узлах
+   *
+   * @param topicId id измененного топика
+   */
+  public void invalidate(final int topicId) {
+    cache.invalidate(topicId);
+
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+        @Override
+        public void afterCompletion(int status) {
+          // до фиксации топик мог быть прочитан и закеширован заново
+          cache.invalidate(topicId);
+
+          if (status == STATUS_COMMITTED) {
+            publish(topicId);
+          }
+        }
+      });
+    } else {
+      publish(topicId);
+    }
+  }
+
+  private void publish(int topicId) {
+    final InvalidateTopic message = new InvalidateTopic(topicId);
+
+    try {
+      jmsTemplate.send(destination, new MessageCreator() {
+        @Override
+        public Message createMessage(Session session) throws JMSException {
+          return session.createObjectMessage(message);
+        }
+      });
+    } catch (RuntimeException ex) {
+      // локально запись уже сброшена, на остальных узлах она истечет через TTL
+      logger.warn("Can't send topic cache invalidation for " + topicId + ": " + ex.toString());
+    }
+  }
+
+  /**
+   * Сообщение от другого узла (или от себя же) об изменении топика
+   */
+  public void handleMessage(InvalidateTopic message) {
+    cache.invalidate(message.getTopicId());
+  }
+
+  public CacheStats getStats() {
+    return cache.stats();
+  }
+
+  public long getSize() {
+    return cache.size();
+  }
+
+  @Scheduled(fixedDelay = TEN_MINS, initialDelay = TEN_MINS)
+  public void logStats() {
+    CacheStats stats = cache.stats();
+
+    logger.info(
+            "Topic cache: size=" + cache.size() +
+            ", hit rate=" + String.format("%.2f", stats.hitRate()) +
+            ", hits=" + stats.hitCount() +
+            ", misses=" + stats.missCount() +
+            ", evictions=" + stats.evictionCount()
+    );
+  }
+
+  public static class InvalidateTopic implements Serializable {
+    private final int topicId;
+
+    private static final long serialVersionUID = 4621860384115734527L;
+
+    public InvalidateTopic(int topicId) {
+      this.topicId = topicId;
+    }
+
+    public int getTopicId() {
+      return topicId;
+    }
+  }
+}
@@ -41,6 +41,7 @@ import ru.org.linux.user.IgnoreListDao;
 import ru.org.linux.user.Profile;
 import ru.org.linux.user.User;
 import ru.org.linux.util.LorURL;
+import ru.org.linux.util.IntSet;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -250,12 +251,12 @@ public class TopicController {
               true
       ));
 
-      Set<Integer> ignoreList;
+      IntSet ignoreList;
 
       if (currentUser != null) {
         ignoreList = ignoreListDao.get(currentUser);
       } else {
-        ignoreList = ImmutableSet.of();
+        ignoreList = IntSet.EMPTY;
       }
 
       int defaultFilterMode = getDefaultFilter(tmpl.getProf(), ignoreList.isEmpty());
@@ -449,7 +450,7 @@ public class TopicController {
     }
 
     if (tmpl.isSessionAuthorized() && !deleted) {
-      Set<Integer> ignoreList = ignoreListDao.get(tmpl.getCurrentUser());
+      IntSet ignoreList = ignoreListDao.get(tmpl.getCurrentUser());
 
       Set<Integer> hideSet = commentService.makeHideSet(
               comments,
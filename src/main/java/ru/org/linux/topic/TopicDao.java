@@ -37,6 +37,7 @@ import ru.org.linux.edithistory.EditHistoryObjectTypeEnum;
 import ru.org.linux.edithistory.EditHistoryService;
 import ru.org.linux.group.Group;
 import ru.org.linux.group.GroupDao;
+import ru.org.linux.section.Section;
 import ru.org.linux.section.SectionNotFoundException;
 import ru.org.linux.section.SectionScrollModeEnum;
 import ru.org.linux.section.SectionService;
@@ -47,6 +48,7 @@ import ru.org.linux.spring.dao.MsgbaseDao;
 import ru.org.linux.tag.TagService;
 import ru.org.linux.user.User;
 import ru.org.linux.user.UserDao;
+import ru.org.linux.util.StringUtil;
 
 import javax.annotation.Nonnull;
 import javax.sql.DataSource;
@@ -56,7 +58,10 @@ import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Операции над сообщениями
@@ -75,6 +80,9 @@ public class TopicDao {
   @Autowired
   private TopicTagService topicTagService;
 
+  @Autowired
+  private TopicTagDao topicTagDao;
+
   @Autowired
   private SectionService sectionService;
 
@@ -104,11 +112,11 @@ public class TopicDao {
   /**
    * Удаление топика
    */
-  private static final String updateDeleteMessage = "UPDATE topics SET deleted='t',sticky='f' WHERE id=?";
+  private static final String updateDeleteMessage = "UPDATE topics SET deleted='t',sticky='f' WHERE id=? AND NOT deleted";
 
   private static final String queryTags = "SELECT tags_values.value FROM tags, tags_values WHERE tags.msgid=? AND tags_values.id=tags.tagid ORDER BY value";
 
-  private static final String updateUndeleteMessage = "UPDATE topics SET deleted='f' WHERE id=?";
+  private static final String updateUndeleteMessage = "UPDATE topics SET deleted='f' WHERE id=? AND deleted";
   private static final String updateUneleteInfo = "DELETE FROM del_info WHERE msgid=?";
 
   private static final String queryTopicsIdByTime = "SELECT id FROM topics WHERE postdate>=? AND postdate<?";
@@ -123,6 +131,9 @@ public class TopicDao {
   @Autowired
   private UserDao userDao;
 
+  @Autowired
+  private TopicCache topicCache;
+
   @Autowired
   public void setDataSource(DataSource dataSource) {
     jdbcTemplate = new JdbcTemplate(dataSource);
@@ -147,17 +158,25 @@ public class TopicDao {
       updateLastmodToCurrentTime,
       topicId
     );
+
+    topicCache.invalidate(topicId);
   }
 
   /**
-   * Получить сообщение по id
+   * Получить сообщение по id. Результат кешируется в TopicCache,
+   * поэтому все изменения строки топика должны вызывать topicCache.invalidate
    * @param id id нужного сообщения
    * @return сообщение
    * @throws MessageNotFoundException при отсутствии сообщения
    */
   @Nonnull
   public Topic getById(int id) throws MessageNotFoundException {
-    Topic message;
+    Topic message = topicCache.get(id);
+
+    if (message != null) {
+      return message;
+    }
+
     try {
       message = jdbcTemplate.queryForObject(queryMessage, new RowMapper<Topic>() {
         @Override
@@ -169,9 +188,47 @@ public class TopicDao {
       //noinspection ThrowInsideCatchBlockWhichIgnoresCaughtException
       throw new MessageNotFoundException(id);
     }
+
+    topicCache.put(message);
+
     return message;
   }
 
+  /**
+   * Получить заголовки топиков одним запросом
+   * @param ids id топиков
+   * @return заголовки найденных топиков по id, отсутствующих топиков в результате нет
+   */
+  @Nonnull
+  public Map<Integer, TopicHeader> getTopicHeaders(Collection<Integer> ids) {
+    if (ids.isEmpty()) {
+      return ImmutableMap.of();
+    }
+
+    final Map<Integer, TopicHeader> headers = new HashMap<>();
+
+    namedJdbcTemplate.query(
+            "SELECT topics.id, topics.title, topics.deleted, groups.section, groups.urlname " +
+                    "FROM topics JOIN groups ON groups.id = topics.groupid WHERE topics.id IN (:list)",
+            ImmutableMap.of("list", ids),
+            new RowCallbackHandler() {
+              @Override
+              public void processRow(ResultSet rs) throws SQLException {
+                int id = rs.getInt("id");
+
+                headers.put(id, new TopicHeader(
+                        id,
+                        StringUtil.makeTitle(rs.getString("title")),
+                        rs.getBoolean("deleted"),
+                        sectionService.getSection(rs.getInt("section")).getSectionLink() + rs.getString("urlname") + '/'
+                ));
+              }
+            }
+    );
+
+    return headers;
+  }
+
   /**
    * Получить group message
    * @param message message
@@ -251,7 +308,11 @@ public class TopicDao {
   }
 
   public void delete(int msgid) {
-    jdbcTemplate.update(updateDeleteMessage, msgid);
+    if (jdbcTemplate.update(updateDeleteMessage, msgid) > 0) {
+      topicTagDao.updateCounters(msgid, -1);
+    }
+
+    topicCache.invalidate(msgid);
   }
 
   @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
@@ -262,8 +323,13 @@ public class TopicDao {
       userDao.changeScore(message.getUid(), -deleteInfo.getBonus());
     }
 
-    jdbcTemplate.update(updateUndeleteMessage, message.getId());
+    if (jdbcTemplate.update(updateUndeleteMessage, message.getId()) > 0) {
+      topicTagDao.updateCounters(message.getId(), 1);
+    }
+
     jdbcTemplate.update(updateUneleteInfo, message.getId());
+
+    topicCache.invalidate(message.getId());
   }
 
   private int allocateMsgid() {
@@ -318,6 +384,9 @@ public class TopicDao {
             msgid, text, true
     );
 
+    // в кеше нового топика нет, но об изменении узнают списки топиков групп
+    topicCache.invalidate(msgid);
+
     return msgid;
   }
 
@@ -377,7 +446,11 @@ public class TopicDao {
 
       if (modifiedTags) {
         editHistoryDto.setOldtags(TagService.toString(oldTags));
-        tagService.updateCounters(oldTags, newTags);
+
+        if (!oldMsg.isDeleted()) {
+          tagService.updateCounters(oldTags, newTags);
+        }
+
         modified = true;
       }
     }
@@ -393,6 +466,8 @@ public class TopicDao {
 
     if (modified) {
       editHistoryService.insert(editHistoryDto);
+
+      topicCache.invalidate(msg.getId());
     }
 
     return modified;
@@ -412,10 +487,14 @@ public class TopicDao {
             commiter.getId(),
             msg.getId()
     );
+
+    topicCache.invalidate(msg.getId());
   }
 
   public void uncommit(Topic msg) {
     jdbcTemplate.update("UPDATE topics SET moderate='f',commitby=NULL,commitdate=NULL WHERE id=?", msg.getId());
+
+    topicCache.invalidate(msg.getId());
   }
 
   public Topic getPreviousMessage(Topic message, User currentUser) {
@@ -569,6 +648,8 @@ public class TopicDao {
             b,
             msgid
     );
+
+    topicCache.invalidate(msgid);
   }
 
   public void setTopicOptions(Topic msg, int postscore, boolean sticky, boolean notop) {
@@ -579,10 +660,14 @@ public class TopicDao {
             notop,
             msg.getId()
     );
+
+    topicCache.invalidate(msg.getId());
   }
 
   public void changeGroup(Topic msg, int changeGroupId) {
     jdbcTemplate.update("UPDATE topics SET groupid=?,lastmod=CURRENT_TIMESTAMP WHERE id=?", changeGroupId, msg.getId());
+
+    topicCache.invalidate(msg.getId());
   }
 
   @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
@@ -601,6 +686,7 @@ public class TopicDao {
 
     if (!newGrp.isLinksAllowed()) {
       jdbcTemplate.update("UPDATE topics SET linktext=null, url=null WHERE id=?", msg.getId());
+      topicCache.invalidate(msg.getId());
 
       String title = msg.getGroupUrl();
       String linktext = msg.getLinktext();
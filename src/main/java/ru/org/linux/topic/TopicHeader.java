@@ -0,0 +1,53 @@
+/*
+ * Copyright 1998-2012 Linux.org.ru
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.org.linux.topic;
+
+/**
+ * Минимальные сведения о топике, нужные для ссылки на него:
+ * заголовок, флаг удаления и url группы
+ */
+public class TopicHeader {
+  private final int id;
+  private final String title;
+  private final boolean deleted;
+  private final String groupUrl;
+
+  public TopicHeader(int id, String title, boolean deleted, String groupUrl) {
+    this.id = id;
+    this.title = title;
+    this.deleted = deleted;
+    this.groupUrl = groupUrl;
+  }
+
+  public int getId() {
+    return id;
+  }
+
+  public String getTitle() {
+    return title;
+  }
+
+  public boolean isDeleted() {
+    return deleted;
+  }
+
+  /**
+   * @return url группы топика, например /forum/talks/
+   */
+  public String getGroupUrl() {
+    return groupUrl;
+  }
+}
@@ -22,6 +22,7 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.ModelAndView;
 import org.springframework.web.servlet.View;
 import org.springframework.web.servlet.view.RedirectView;
+import org.springframework.web.util.UriComponentsBuilder;
 import ru.org.linux.group.Group;
 import ru.org.linux.group.GroupDao;
 import ru.org.linux.group.GroupNotFoundException;
@@ -83,18 +84,54 @@ public class TopicListController {
 
     modelAndView.addObject("navtitle", calculateNavTitle(section, group, topicListForm));
 
-    topicListForm.setOffset(
-      topicListService.fixOffset(topicListForm.getOffset())
-    );
+    List<Topic> messages;
 
-    List<Topic> messages = topicListService.getTopicsFeed(
-      section,
-      group,
-      null,
-      topicListForm.getOffset(),
-      topicListForm.getYear(),
-      topicListForm.getMonth()
-    );
+    if (topicListForm.getMonth() == null) {
+      if (topicListForm.getOffset() != null) {
+        return new ModelAndView(redirectOffsetLink(request, section, group, topicListForm.getOffset()));
+      }
+
+      Integer cursor = topicListForm.getBefore() != null ? topicListForm.getBefore() : topicListForm.getAfter();
+
+      if (cursor != null && !topicListService.isFeedCursorValid(section, group, cursor)) {
+        // топик удален из базы или не подтвержден - показываем начало ленты
+        return new ModelAndView(redirectFeedLink(request, null));
+      }
+
+      messages = topicListService.getTopicsFeedPage(
+        section,
+        group,
+        topicListForm.getBefore(),
+        topicListForm.getAfter()
+      );
+
+      boolean firstPage = topicListForm.getBefore() == null && topicListForm.getAfter() == null;
+
+      if (!firstPage && topicListForm.getBefore() == null && messages.size() < TopicListService.FEED_PAGE_SIZE) {
+        // более новых топиков меньше, чем на страницу - показываем начало ленты
+        messages = topicListService.getTopicsFeedPage(section, group, null, null);
+        firstPage = true;
+      }
+
+      modelAndView.addObject("firstPage", firstPage);
+
+      if (!firstPage && !messages.isEmpty()) {
+        modelAndView.addObject("prevCursor", messages.get(0).getId());
+      }
+
+      if (messages.size() == TopicListService.FEED_PAGE_SIZE) {
+        modelAndView.addObject("nextCursor", messages.get(messages.size() - 1).getId());
+      }
+    } else {
+      messages = topicListService.getTopicsFeed(
+        section,
+        group,
+        null,
+        0,
+        topicListForm.getYear(),
+        topicListForm.getMonth()
+      );
+    }
 
     modelAndView.addObject(
       "messages",
@@ -112,6 +149,48 @@ public class TopicListController {
     return modelAndView;
   }
 
+  /**
+   * Перенаправление старых ссылок с ?offset=N на страницу с соответствующим курсором
+   */
+  private View redirectOffsetLink(
+    HttpServletRequest request,
+    Section section,
+    @Nullable Group group,
+    int offset
+  ) throws Exception {
+    Integer cursor = topicListService.getTopicsFeedCursor(section, group, topicListService.fixOffset(offset));
+
+    return redirectFeedLink(request, cursor);
+  }
+
+  /**
+   * Перенаправление на страницу ленты с курсором; остальные параметры
+   * запроса (фильтры и т.п.) сохраняются
+   *
+   * @param before курсор или null для начала ленты
+   */
+  private static View redirectFeedLink(HttpServletRequest request, @Nullable Integer before) {
+    RedirectView redirectView = new RedirectView(feedLink(request.getRequestURI(), request.getQueryString(), before));
+    redirectView.setExposeModelAttributes(false);
+
+    return redirectView;
+  }
+
+  static String feedLink(String uri, @Nullable String query, @Nullable Integer before) {
+    UriComponentsBuilder builder = UriComponentsBuilder
+      .fromPath(uri)
+      .query(query)
+      .replaceQueryParam("offset")
+      .replaceQueryParam("before")
+      .replaceQueryParam("after");
+
+    if (before != null) {
+      builder.queryParam("before", before);
+    }
+
+    return builder.build().toUriString();
+  }
+
   @RequestMapping("/gallery/")
   public ModelAndView gallery(
     HttpServletRequest request,
@@ -44,6 +44,15 @@ public interface TopicListDao {
    */
   List<Topic> getTopics(TopicListDto topicListDto);
 
+  /**
+   * Проверка курсора постраничной навигации: топик существует и у него
+   * есть значение, по которому сортируется лента.
+   *
+   * @param topicListDto объект, содержащий условия выборки и курсор
+   * @return true если от курсора можно листать или курсор не задан
+   */
+  boolean isCursorValid(TopicListDto topicListDto);
+
   /**
    *
    * @param sectionId
@@ -28,6 +28,7 @@ import java.sql.SQLException;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 @Repository
@@ -76,7 +77,7 @@ public class TopicListDaoImpl implements TopicListDao {
 
     logger.trace("SQL query: " + query.toString());
 
-    return jdbcTemplate.query(
+    List<Topic> topics = jdbcTemplate.query(
       query.toString(),
       new RowMapper<Topic>() {
         @Override
@@ -85,6 +86,28 @@ public class TopicListDaoImpl implements TopicListDao {
         }
       }
     );
+
+    if (isKeyset(topicListDto) && topicListDto.getAfterId() != null) {
+      Collections.reverse(topics);
+    }
+
+    return topics;
+  }
+
+  @Override
+  public boolean isCursorValid(TopicListDto topicListDto) {
+    if (!isKeyset(topicListDto)) {
+      return true;
+    }
+
+    // сравнение строк с NULL дает NULL, и страница молча оказывается пустой
+    List<Boolean> valid = jdbcTemplate.queryForList(
+      "SELECT " + getSortColumn(topicListDto) + " IS NOT NULL FROM topics WHERE id=?",
+      Boolean.class,
+      getCursor(topicListDto)
+    );
+
+    return !valid.isEmpty() && valid.get(0);
   }
 
   @Override
@@ -218,6 +241,18 @@ public class TopicListDaoImpl implements TopicListDao {
         .append(topicListDto.getTag())
         .append(')');
     }
+
+    if (isKeyset(topicListDto)) {
+      String sortColumn = getSortColumn(topicListDto);
+      Integer cursor = getCursor(topicListDto);
+
+      where
+        .append(" AND (").append(sortColumn).append(", topics.id)")
+        .append(topicListDto.getBeforeId() != null ? " < " : " > ")
+        .append("(SELECT ").append(sortColumn).append(", id FROM topics WHERE id=")
+        .append(cursor)
+        .append(')');
+    }
     return where.toString();
   }
 
@@ -232,18 +267,53 @@ public class TopicListDaoImpl implements TopicListDao {
       return "ORDER BY memories.id DESC";
     }
 
+    String sortColumn = getSortColumn(topicListDto);
+
+    if (isKeyset(topicListDto)) {
+      String direction = topicListDto.getAfterId() != null ? "ASC" : "DESC";
+
+      return " ORDER BY " + sortColumn + ' ' + direction + ", topics.id " + direction;
+    }
+
+    return " ORDER BY " + sortColumn + " DESC";
+  }
+
+  /**
+   * Выражение, по которому сортируется лента.
+   *
+   * @param topicListDto объект, содержащий условия выборки
+   * @return колонка или выражение SQL
+   */
+  private static String getSortColumn(TopicListDto topicListDto) {
     switch (topicListDto.getCommitMode()) {
       case COMMITED_ONLY:
-        return " ORDER BY commitdate DESC";
+        return "commitdate";
       case UNCOMMITED_ONLY:
-        return " ORDER BY postdate DESC";
+        return "postdate";
       case POSTMODERATED_ONLY:
-        return " ORDER BY postdate DESC";
+        return "postdate";
       default:
-        return " ORDER BY COALESCE(commitdate, postdate) DESC";
+        return "COALESCE(commitdate, postdate)";
     }
   }
 
+  /**
+   * Постраничная навигация по курсору: вместо OFFSET выбираются топики
+   * старше (или новее) заданного, сортировка дополняется id топика.
+   * Для избранного сортировка идет по memories.id, там остается OFFSET.
+   *
+   * @param topicListDto объект, содержащий условия выборки
+   * @return true если задан курсор
+   */
+  private static boolean isKeyset(TopicListDto topicListDto) {
+    return !topicListDto.isUserFavs() &&
+      (topicListDto.getBeforeId() != null || topicListDto.getAfterId() != null);
+  }
+
+  private static Integer getCursor(TopicListDto topicListDto) {
+    return topicListDto.getBeforeId() != null ? topicListDto.getBeforeId() : topicListDto.getAfterId();
+  }
+
   /**
    * Создание ограничений размера результатов SQL-запроса.
    *
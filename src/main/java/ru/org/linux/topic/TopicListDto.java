@@ -38,6 +38,8 @@ public class TopicListDto {
   private int tag = 0;
   private Integer limit = null;
   private Integer offset = null;
+  private Integer beforeId = null;
+  private Integer afterId = null;
   private DateLimitType dateLimitType = DateLimitType.NONE;
   private Date fromDate;
   private Date toDate;
@@ -89,6 +91,28 @@ public class TopicListDto {
     this.offset = offset;
   }
 
+  /**
+   * Идентификатор топика, начиная с которого (не включая его) выбираются более старые топики
+   */
+  public Integer getBeforeId() {
+    return beforeId;
+  }
+
+  public void setBeforeId(Integer beforeId) {
+    this.beforeId = beforeId;
+  }
+
+  /**
+   * Идентификатор топика, начиная с которого (не включая его) выбираются более новые топики
+   */
+  public Integer getAfterId() {
+    return afterId;
+  }
+
+  public void setAfterId(Integer afterId) {
+    this.afterId = afterId;
+  }
+
   public DateLimitType getDateLimitType() {
     return dateLimitType;
   }
@@ -165,6 +189,8 @@ public class TopicListDto {
       .append("; tag=").append(tag)
       .append("; limit=").append(limit)
       .append("; offset=").append(offset)
+      .append("; beforeId=").append(beforeId)
+      .append("; afterId=").append(afterId)
       .append("; dateLimitType=").append(dateLimitType)
       .append("; fromDate=").append((fromDate != null) ? fromDate.toString() : "")
       .append("; toDate=").append((toDate != null) ? toDate.toString() : "")
@@ -183,6 +209,8 @@ public class TopicListDto {
     tag = topicListDto.getTag();
     limit = topicListDto.getLimit();
     offset = topicListDto.getOffset();
+    beforeId = topicListDto.getBeforeId();
+    afterId = topicListDto.getAfterId();
     dateLimitType = topicListDto.getDateLimitType();
     fromDate = topicListDto.getFromDate();
     toDate = topicListDto.getToDate();
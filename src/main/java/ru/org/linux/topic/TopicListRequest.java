@@ -7,6 +7,8 @@ public class TopicListRequest {
   private Integer section;
   private Integer group;
   private Integer offset;
+  private Integer before;
+  private Integer after;
   private String output;
   private Integer month;
   private Integer year;
@@ -28,6 +30,22 @@ public class TopicListRequest {
     this.offset = offset;
   }
 
+  public Integer getBefore() {
+    return before;
+  }
+
+  public void setBefore(Integer before) {
+    this.before = before;
+  }
+
+  public Integer getAfter() {
+    return after;
+  }
+
+  public void setAfter(Integer after) {
+    this.after = after;
+  }
+
   public String getOutput() {
     return output;
   }
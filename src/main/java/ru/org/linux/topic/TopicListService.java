@@ -28,6 +28,7 @@ import ru.org.linux.user.User;
 import ru.org.linux.user.UserErrorException;
 import ru.org.linux.util.URLUtil;
 
+import javax.annotation.Nullable;
 import java.io.UnsupportedEncodingException;
 import java.util.Calendar;
 import java.util.Date;
@@ -37,6 +38,11 @@ import java.util.List;
 public class TopicListService {
   private static final Log logger = LogFactory.getLog(TopicListService.class);
 
+  /**
+   * Число топиков на странице ленты раздела
+   */
+  public static final int FEED_PAGE_SIZE = 20;
+
   @Autowired
   private TagService tagService;
 
@@ -81,6 +87,99 @@ public class TopicListService {
         .toString()
     );
 
+    TopicListDto topicListDto = makeTopicsFeedDto(section, group, tag);
+
+    if (month != null && year != null) {
+      topicListDto.setDateLimitType(TopicListDto.DateLimitType.BETWEEN);
+      Calendar calendar = Calendar.getInstance();
+
+      calendar.set(year, month - 1, 1, 0, 0, 0);
+      topicListDto.setFromDate(calendar.getTime());
+
+      calendar.add(Calendar.MONTH, 1);
+      topicListDto.setToDate(calendar.getTime());
+    } else {
+      setFeedPageLimits(topicListDto, section, group, tag);
+      topicListDto.setOffset(offset > 0 ? offset : null);
+    }
+    return getCachedFeed(topicListDto);
+  }
+
+  /**
+   * Получение страницы ленты топиков по курсору.
+   *
+   * @param section секция
+   * @param group   группа
+   * @param before  id топика, более старые чем который нужно выбрать, или null
+   * @param after   id топика, более новые чем который нужно выбрать, или null
+   * @return список топиков, от новых к старым
+   */
+  public List<Topic> getTopicsFeedPage(
+    Section section,
+    @Nullable Group group,
+    @Nullable Integer before,
+    @Nullable Integer after
+  ) throws UserErrorException, TagNotFoundException {
+    TopicListDto topicListDto = makeTopicsFeedDto(section, group, null);
+
+    setFeedPageLimits(topicListDto, section, group, null);
+    topicListDto.setBeforeId(before);
+    topicListDto.setAfterId(before == null ? after : null);
+
+    return getCachedFeed(topicListDto);
+  }
+
+  /**
+   * Можно ли листать ленту от курсора. Нельзя, если топика нет или у него
+   * нет значения, по которому сортируется лента (например, commitdate
+   * у неподтвержденного топика в премодерируемой секции).
+   *
+   * @param section секция
+   * @param group   группа
+   * @param cursor  id топика
+   */
+  public boolean isFeedCursorValid(Section section, @Nullable Group group, int cursor)
+    throws UserErrorException, TagNotFoundException {
+    TopicListDto topicListDto = makeTopicsFeedDto(section, group, null);
+
+    topicListDto.setBeforeId(cursor);
+
+    return topicListDao.isCursorValid(topicListDto);
+  }
+
+  /**
+   * Поиск курсора, соответствующего смещению в ленте. Нужен для перенаправления
+   * старых ссылок вида ?offset=N на ссылки с курсором.
+   *
+   * @param section секция
+   * @param group   группа
+   * @param offset  смещение в ленте
+   * @return id последнего топика перед смещением или null, если лента короче
+   */
+  @Nullable
+  public Integer getTopicsFeedCursor(Section section, @Nullable Group group, int offset)
+    throws UserErrorException, TagNotFoundException {
+    if (offset <= 0) {
+      return null;
+    }
+
+    TopicListDto topicListDto = makeTopicsFeedDto(section, group, null);
+
+    setFeedPageLimits(topicListDto, section, group, null);
+    topicListDto.setLimit(1);
+    topicListDto.setOffset(offset - 1);
+
+    List<Topic> topics = topicListDao.getTopics(topicListDto);
+
+    if (topics.isEmpty()) {
+      return null;
+    } else {
+      return topics.get(0).getId();
+    }
+  }
+
+  private TopicListDto makeTopicsFeedDto(Section section, Group group, String tag)
+    throws UserErrorException, TagNotFoundException {
     TopicListDto topicListDto = new TopicListDto();
 
     if (section != null) {
@@ -100,28 +199,19 @@ public class TopicListService {
       topicListDto.setTag(tagService.getTagId(tag));
     }
 
-    if (month != null && year != null) {
-      topicListDto.setDateLimitType(TopicListDto.DateLimitType.BETWEEN);
-      Calendar calendar = Calendar.getInstance();
+    return topicListDto;
+  }
 
-      calendar.set(year, month - 1, 1, 0, 0, 0);
-      topicListDto.setFromDate(calendar.getTime());
+  private static void setFeedPageLimits(TopicListDto topicListDto, Section section, Group group, String tag) {
+    topicListDto.setLimit(FEED_PAGE_SIZE);
 
-      calendar.add(Calendar.MONTH, 1);
-      topicListDto.setToDate(calendar.getTime());
-    } else {
-
-      topicListDto.setLimit(20);
-      topicListDto.setOffset(offset > 0 ? offset : null);
-      if (tag == null && group == null && !section.isPremoderated()) {
-        topicListDto.setDateLimitType(TopicListDto.DateLimitType.MONTH_AGO);
-        Calendar calendar = Calendar.getInstance();
-        calendar.setTime(new Date());
-        calendar.add(Calendar.MONTH, -6);
-        topicListDto.setFromDate(calendar.getTime());
-      }
+    if (tag == null && group == null && !section.isPremoderated()) {
+      topicListDto.setDateLimitType(TopicListDto.DateLimitType.MONTH_AGO);
+      Calendar calendar = Calendar.getInstance();
+      calendar.setTime(new Date());
+      calendar.add(Calendar.MONTH, -6);
+      topicListDto.setFromDate(calendar.getTime());
     }
-    return getCachedFeed(topicListDto);
   }
 
   /**
@@ -383,6 +473,8 @@ public class TopicListService {
     builder.queryParam("f", topicListDto.isUserFavs());
     builder.queryParam("lmt", topicListDto.getLimit());
     builder.queryParam("offst", topicListDto.getOffset());
+    builder.queryParam("before", topicListDto.getBeforeId());
+    builder.queryParam("after", topicListDto.getAfterId());
     builder.queryParam("notalks", topicListDto.isNotalks());
     builder.queryParam("tech", topicListDto.isTech());
 
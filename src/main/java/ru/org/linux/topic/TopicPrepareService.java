@@ -27,6 +27,7 @@ import org.springframework.stereotype.Service;
 import ru.org.linux.edithistory.EditHistoryDto;
 import ru.org.linux.edithistory.EditHistoryObjectTypeEnum;
 import ru.org.linux.edithistory.EditHistoryService;
+import ru.org.linux.edithistory.EditInfoSummary;
 import ru.org.linux.gallery.Image;
 import ru.org.linux.gallery.ImageDao;
 import ru.org.linux.group.Group;
@@ -189,15 +190,15 @@ public class TopicPrepareService {
         commiter = null;
       }
 
-      List<EditHistoryDto> editHistoryDtoList = editHistoryService.getEditInfo(message.getId(), EditHistoryObjectTypeEnum.TOPIC);
+      EditInfoSummary editInfoSummary = editHistoryService.getLastEditInfo(message.getId(), EditHistoryObjectTypeEnum.TOPIC);
       EditHistoryDto editHistoryDto;
       User lastEditor;
       int editCount;
 
-      if (!editHistoryDtoList.isEmpty()) {
-        editHistoryDto = editHistoryDtoList.get(0);
+      if (editInfoSummary != null) {
+        editHistoryDto = editInfoSummary.getLastEdit();
         lastEditor = userDao.getUserCached(editHistoryDto.getEditor());
-        editCount = editHistoryDtoList.size();
+        editCount = editInfoSummary.getEditCount();
       } else {
         editHistoryDto = null;
         lastEditor = null;
@@ -224,7 +225,11 @@ public class TopicPrepareService {
           processedMessage = lorCodeService.parseTopic(text.getText(), secure, ! topicPermissionService.followInTopic(message, author));
         }
 
-        ogDescription = lorCodeService.parseForOgDescription(text.getText());
+        if (message.getId() != 0) {
+          ogDescription = lorCodeService.parseForOgDescription(message.getId(), text.getText());
+        } else {
+          ogDescription = lorCodeService.parseForOgDescription(text.getText());
+        }
       } else {
         processedMessage = "<p>" + text.getText();
         ogDescription = "";
@@ -243,7 +248,7 @@ public class TopicPrepareService {
       }
       Remark remark = null;
       if (user != null ){
-        remark = userDao.getRemark(user, author);
+        remark = userDao.getRemarks(user).get(author.getId());
       }
 
       return new PreparedTopic(
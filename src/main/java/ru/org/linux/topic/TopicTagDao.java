@@ -14,7 +14,9 @@
  */
 package ru.org.linux.topic;
 
+import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowCallbackHandler;
@@ -24,6 +26,8 @@ import javax.annotation.Nonnull;
 import javax.sql.DataSource;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 @Repository
@@ -81,6 +85,61 @@ public class TopicTagDao {
     return tags.build();
   }
 
+  /**
+   * Получение идентификаторов тегов для нескольких топиков одним запросом.
+   *
+   * @param msgids идентификационные номера топиков
+   * @return идентификаторы тегов по номерам топиков
+   */
+  public ImmutableListMultimap<Integer, Integer> getTagIds(Collection<Integer> msgids) {
+    final ImmutableListMultimap.Builder<Integer, Integer> tags = ImmutableListMultimap.builder();
+
+    if (msgids.isEmpty()) {
+      return tags.build();
+    }
+
+    jdbcTemplate.query(
+      "SELECT msgid, tagid FROM tags WHERE msgid IN (" + Joiner.on(',').join(Collections.nCopies(msgids.size(), '?')) + ')',
+      new RowCallbackHandler() {
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+          tags.put(rs.getInt("msgid"), rs.getInt("tagid"));
+        }
+      },
+      msgids.toArray()
+    );
+
+    return tags.build();
+  }
+
+  /**
+   * Получение тегов для нескольких топиков одним запросом.
+   *
+   * @param msgids идентификационные номера топиков
+   * @return теги по номерам топиков, отсортированные по названию
+   */
+  public ImmutableListMultimap<Integer, String> getTags(Collection<Integer> msgids) {
+    final ImmutableListMultimap.Builder<Integer, String> tags = ImmutableListMultimap.builder();
+
+    if (msgids.isEmpty()) {
+      return tags.build();
+    }
+
+    jdbcTemplate.query(
+      "SELECT msgid, tags_values.value FROM tags, tags_values WHERE tags.msgid IN (" +
+        Joiner.on(',').join(Collections.nCopies(msgids.size(), '?')) + ") AND tags_values.id=tags.tagid ORDER BY value",
+      new RowCallbackHandler() {
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+          tags.put(rs.getInt("msgid"), rs.getString("value"));
+        }
+      },
+      msgids.toArray()
+    );
+
+    return tags.build();
+  }
+
   /**
    * Получение количества тегов, которые будут изменены для топиков (величина прироста использования тега).
    *
@@ -90,7 +149,8 @@ public class TopicTagDao {
    */
   public int getCountReplacedTags(int oldTagId, int newTagId) {
     List<Integer> res = jdbcTemplate.queryForList(
-      "SELECT count (tagid) FROM tags WHERE tagid=? AND msgid NOT IN (SELECT msgid FROM tags WHERE tagid=?)",
+      "SELECT count (tagid) FROM tags JOIN topics ON tags.msgid=topics.id " +
+        "WHERE tagid=? AND NOT deleted AND msgid NOT IN (SELECT msgid FROM tags WHERE tagid=?)",
       Integer.class,
       oldTagId,
       newTagId
@@ -130,4 +190,39 @@ public void reCalculateAllCounters() {
     jdbcTemplate.update("update tags_values set counter = (select count(*) from tags join topics on tags.msgid=topics.id where tags.tagid=tags_values.id and not deleted)");
   }
 
+  /**
+   * Изменение счётчиков использования всех тегов топика.
+   * Вызывается при удалении и восстановлении топика.
+   *
+   * @param msgId идентификационный номер топика
+   * @param delta на какое значение изменить счётчики
+   */
+  public void updateCounters(int msgId, int delta) {
+    jdbcTemplate.update(
+      "UPDATE tags_values SET counter=counter+? WHERE id IN (SELECT tagid FROM tags WHERE msgid=?)",
+      delta,
+      msgId
+    );
+  }
+
+  /**
+   * Исправление счётчиков использования для диапазона тегов.
+   * Обновляются только счётчики, разошедшиеся с фактическим числом топиков.
+   *
+   * @param fromTagId идентификационный номер первого тега диапазона
+   * @param toTagId   идентификационный номер последнего тега диапазона
+   * @return количество исправленных счётчиков
+   */
+  public int repairCounters(int fromTagId, int toTagId) {
+    return jdbcTemplate.update(
+      "UPDATE tags_values SET counter=actual.counter FROM " +
+        "(SELECT tags_values.id, (SELECT count(*) FROM tags JOIN topics ON tags.msgid=topics.id " +
+        "WHERE tags.tagid=tags_values.id AND NOT deleted) AS counter " +
+        "FROM tags_values WHERE id BETWEEN ? AND ?) AS actual " +
+        "WHERE tags_values.id=actual.id AND tags_values.counter<>actual.counter",
+      fromTagId,
+      toTagId
+    );
+  }
+
 }
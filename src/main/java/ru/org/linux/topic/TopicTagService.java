@@ -15,6 +15,8 @@
 package ru.org.linux.topic;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.Iterables;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -29,8 +31,10 @@ import ru.org.linux.tag.TagService;
 
 import javax.annotation.Nonnull;
 import javax.annotation.PostConstruct;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 @Service
@@ -62,6 +66,11 @@ public class TopicTagService {
     public void reCalculateAllCounters() {
       topicTagDao.reCalculateAllCounters();
     }
+
+    @Override
+    public int repairCounters(int fromTagId, int toTagId) {
+      return topicTagDao.repairCounters(fromTagId, toTagId);
+    }
   };
 
 
@@ -140,6 +149,34 @@ public class TopicTagService {
     return tags.subList(0, Math.min(tags.size(), MAX_TAGS_IN_TITLE));
   }
 
+  /**
+   * Теги для показа в заголовке для нескольких топиков одним запросом.
+   *
+   * @param msgids идентификационные номера топиков
+   * @return теги по номерам топиков
+   */
+  @Nonnull
+  public ImmutableListMultimap<Integer, String> getMessageTagsForTitle(Collection<Integer> msgids) {
+    ImmutableListMultimap.Builder<Integer, String> result = ImmutableListMultimap.builder();
+
+    for (Map.Entry<Integer, Collection<String>> entry : topicTagDao.getTags(msgids).asMap().entrySet()) {
+      result.putAll(entry.getKey(), Iterables.limit(entry.getValue(), MAX_TAGS_IN_TITLE));
+    }
+
+    return result.build();
+  }
+
+  /**
+   * Теги нескольких топиков одним запросом.
+   *
+   * @param msgids идентификационные номера топиков
+   * @return идентификаторы тегов по номерам топиков
+   */
+  @Nonnull
+  public ImmutableListMultimap<Integer, Integer> getTagIds(Collection<Integer> msgids) {
+    return topicTagDao.getTagIds(msgids);
+  }
+
   /**
    * Разбор строки тегов. Error при ошибках
    *
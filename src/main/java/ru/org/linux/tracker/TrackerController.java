@@ -29,6 +29,7 @@ import ru.org.linux.user.User;
 import ru.org.linux.user.UserDao;
 import ru.org.linux.user.UserErrorException;
 
+import javax.annotation.Nullable;
 import javax.servlet.http.HttpServletRequest;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
@@ -38,7 +39,7 @@ import java.util.*;
 @Controller
 public class TrackerController {
   @Autowired
-  private TrackerDao trackerDao;
+  private TrackerService trackerService;
 
   @Autowired
   private UserDao userDao;
@@ -99,21 +100,20 @@ public class TrackerController {
   public ModelAndView tracker(
       @RequestParam(value="filter", defaultValue = "all") String filterAction,
       @RequestParam(value="offset", required = false) Integer offset,
+      @RequestParam(value="before", required = false) Long before,
+      @RequestParam(value="beforeId", required = false) Integer beforeId,
+      @RequestParam(value="after", required = false) Long after,
+      @RequestParam(value="afterId", required = false) Integer afterId,
       HttpServletRequest request) throws Exception {
 
-    if (offset==null) {
-      offset = 0;
-    } else {
-      if (offset<0 || offset>300) {
-        throw new UserErrorException("Некорректное значение offset");
-      }
+    if (offset!=null && (offset<0 || offset>300)) {
+      throw new UserErrorException("Некорректное значение offset");
     }
 
     TrackerFilterEnum trackerFilter = getFilterValue(filterAction);
 
     Map<String, Object> params = new HashMap<>();
     params.put("mine", trackerFilter == TrackerFilterEnum.MINE);
-    params.put("offset", offset);
     params.put("filter", trackerFilter.getValue());
 
     if(trackerFilter != TrackerFilterEnum.ALL) {
@@ -147,7 +147,45 @@ public class TrackerController {
     } else {
       params.put("title", "Последние сообщения");
     }
-    params.put("msgs", trackerDao.getTrackAll(trackerFilter, user, dateLimit, topics, offset, messages));
+
+    if (offset != null) {
+      return new ModelAndView(redirectOffsetLink(trackerFilter, user, dateLimit, offset, messages));
+    }
+
+    List<TrackerItem> msgs;
+    boolean firstPage;
+
+    if (before != null) {
+      msgs = trackerService.getTrackAll(trackerFilter, user, dateLimit, topics, 0, toTrackerCursor(before, beforeId, false), false, messages);
+      firstPage = false;
+    } else if (after != null) {
+      msgs = trackerService.getTrackAll(trackerFilter, user, dateLimit, topics, 0, toTrackerCursor(after, afterId, true), true, messages);
+      firstPage = false;
+
+      if (msgs.size() < topics) {
+        // более новых сообщений меньше, чем на страницу - показываем начало трекера
+        msgs = trackerService.getTrackAll(trackerFilter, user, dateLimit, topics, 0, null, false, messages);
+        firstPage = true;
+      }
+    } else {
+      msgs = trackerService.getTrackAll(trackerFilter, user, dateLimit, topics, 0, null, false, messages);
+      firstPage = true;
+    }
+
+    params.put("msgs", msgs);
+    params.put("firstPage", firstPage);
+
+    if (!firstPage && !msgs.isEmpty()) {
+      params.put("prevCursor", toCursor(msgs.get(0).getLastmod()));
+      params.put("prevCursorId", msgs.get(0).getMsgid());
+    }
+
+    if (msgs.size() == topics) {
+      TrackerItem last = msgs.get(msgs.size() - 1);
+
+      params.put("nextCursor", toCursor(last.getLastmod()));
+      params.put("nextCursorId", last.getMsgid());
+    }
 
     if (tmpl.isModeratorSession() && trackerFilter != TrackerFilterEnum.MINE) {
       params.put("newUsers", userDao.getNewUsers());
@@ -157,4 +195,71 @@ public class TrackerController {
     return new ModelAndView("tracker", params);
   }
 
+  /**
+   * Перенаправление старых ссылок с ?offset=N на страницу с соответствующим курсором
+   */
+  private View redirectOffsetLink(TrackerFilterEnum filter, User user, Timestamp dateLimit, int offset, int messages)
+    throws UnsupportedEncodingException {
+    StringBuilder link = new StringBuilder("/tracker/");
+
+    if (filter != TrackerFilterEnum.ALL) {
+      link.append("?filter=").append(URLEncoder.encode(filter.getValue(), "UTF-8"));
+    }
+
+    if (offset > 0) {
+      List<TrackerItem> items = trackerService.getTrackAll(filter, user, dateLimit, 1, offset - 1, null, false, messages);
+
+      if (!items.isEmpty()) {
+        link
+          .append(filter != TrackerFilterEnum.ALL ? '&' : '?')
+          .append("before=")
+          .append(toCursor(items.get(0).getLastmod()))
+          .append("&beforeId=")
+          .append(items.get(0).getMsgid());
+      }
+    }
+
+    RedirectView redirectView = new RedirectView(link.toString());
+    redirectView.setExposeModelAttributes(false);
+
+    return redirectView;
+  }
+
+  /**
+   * Курсор трекера - время изменения в микросекундах, с той же точностью,
+   * с какой оно хранится в базе, чтобы не терять элементы на границе страниц.
+   */
+  static long toCursor(Timestamp lastmod) {
+    return lastmod.getTime() / 1000 * 1000000 + lastmod.getNanos() / 1000;
+  }
+
+  /**
+   * Позиция из параметров ссылки. В старых ссылках id нет - тогда выбираются
+   * элементы строго старше или новее времени курсора.
+   */
+  static TrackerCursor toTrackerCursor(long cursor, @Nullable Integer id, boolean newer) {
+    Timestamp lastmod = fromCursor(cursor);
+
+    if (id == null) {
+      return TrackerCursor.ofLastmod(lastmod, newer);
+    }
+
+    return new TrackerCursor(lastmod, id);
+  }
+
+  static Timestamp fromCursor(long cursor) {
+    long seconds = cursor / 1000000;
+    int micros = (int) (cursor % 1000000);
+
+    if (micros < 0) {
+      seconds--;
+      micros += 1000000;
+    }
+
+    Timestamp timestamp = new Timestamp(seconds * 1000);
+    timestamp.setNanos(micros * 1000);
+
+    return timestamp;
+  }
+
 }
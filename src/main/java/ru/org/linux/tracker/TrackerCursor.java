@@ -0,0 +1,82 @@
+/*
+ * Copyright 1998-2012 Linux.org.ru
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.org.linux.tracker;
+
+import com.google.common.base.Objects;
+
+import java.sql.Timestamp;
+
+/**
+ * Позиция в трекере: время изменения и id крайнего элемента страницы.
+ *
+ * Время изменения у нескольких элементов может совпадать, поэтому страницы
+ * выбираются по паре (lastmod, id) - иначе элементы на границе страниц
+ * теряются или повторяются.
+ */
+public final class TrackerCursor {
+  private final Timestamp lastmod;
+  private final int id;
+
+  public TrackerCursor(Timestamp lastmod, int id) {
+    this.lastmod = lastmod;
+    this.id = id;
+  }
+
+  public static TrackerCursor of(TrackerItem item) {
+    return new TrackerCursor(item.getLastmod(), item.getMsgid());
+  }
+
+  /**
+   * Курсор только по времени изменения, для ссылок без id: выбираются
+   * элементы строго старше (newer=false) или строго новее (newer=true) lastmod
+   */
+  public static TrackerCursor ofLastmod(Timestamp lastmod, boolean newer) {
+    return new TrackerCursor(lastmod, newer ? Integer.MAX_VALUE : 0);
+  }
+
+  public Timestamp getLastmod() {
+    return lastmod;
+  }
+
+  public int getId() {
+    return id;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+
+    if (!(o instanceof TrackerCursor)) {
+      return false;
+    }
+
+    TrackerCursor other = (TrackerCursor) o;
+
+    return id == other.id && lastmod.equals(other.lastmod);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hashCode(lastmod, id);
+  }
+
+  @Override
+  public String toString() {
+    return "TrackerCursor{" + lastmod + ", " + id + '}';
+  }
+}
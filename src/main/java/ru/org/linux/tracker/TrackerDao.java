@@ -16,21 +16,26 @@
 package ru.org.linux.tracker;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.support.rowset.SqlRowSet;
 import org.springframework.stereotype.Repository;
 import ru.org.linux.topic.Topic;
+import ru.org.linux.topic.TopicTagDao;
 import ru.org.linux.topic.TopicTagService;
 import ru.org.linux.user.User;
 import ru.org.linux.user.UserDao;
 import ru.org.linux.user.UserNotFoundException;
+import ru.org.linux.util.IntSet;
 import ru.org.linux.util.StringUtil;
 
+import javax.annotation.Nullable;
 import javax.sql.DataSource;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 @Repository
@@ -48,6 +53,9 @@ public class TrackerDao {
   @Autowired
   private TopicTagService topicTagService;
 
+  @Autowired
+  private TopicTagDao topicTagDao;
+
   private static final String queryTrackerZeroMain =
       "SELECT " +
           "t.userid as author, " +
@@ -66,9 +74,9 @@ public class TrackerDao {
           "t.moderate " +
           "FROM topics AS t, groups AS g, sections " +
           "WHERE sections.id=g.section AND not t.deleted AND t.postdate > :interval " +
-          "%s" + /* user!=null ? queryPartIgnored*/
+          "%s" + /* cursor */
           " AND t.stat1=0 AND g.id=t.groupid " +
-          "ORDER BY lastmod DESC LIMIT :topics OFFSET :offset";
+          "ORDER BY lastmod %s, id %s LIMIT :topics OFFSET :offset";
 
   private static final String queryTrackerMain =
       "SELECT " +
@@ -91,8 +99,8 @@ public class TrackerDao {
         "AND comments.id=(SELECT id FROM comments WHERE NOT deleted AND comments.topic=t.id ORDER BY postdate DESC LIMIT 1) " +
         "AND t.lastmod > :interval " +
         "%s" + /* noUncommited */
-        "%s" + /* user!=null ? queryPartIgnored*/
         "%s" + /* noTalks ? queryPartNoTalks tech ? queryPartTech mine ? queryPartMine*/
+        "%s" + /* cursor */
      "UNION ALL " +
       "SELECT " +
           "t.userid as author, " +
@@ -112,11 +120,12 @@ public class TrackerDao {
       "FROM topics AS t, groups AS g, sections " +
       "WHERE sections.id=g.section AND not t.deleted AND t.postdate > :interval " +
           "%s" + /* noUncommited */
-          "%s" + /* user!=null ? queryPartIgnored*/
           "%s" + /* noTalks ? queryPartNoTalks tech ? queryPartTech mine ? queryPartMine*/
+          "%s" + /* cursor */
           " AND t.stat1=0 AND g.id=t.groupid " +
       "%s" + /* wikiPart */
-     "ORDER BY lastmod DESC LIMIT :topics OFFSET :offset";
+      "%s" + /* wiki cursor */
+     "ORDER BY lastmod %s, id %s LIMIT :topics OFFSET :offset";
 
   private static final String queryPartWiki = "UNION ALL " +
       "SELECT " + // wiki
@@ -159,30 +168,59 @@ public class TrackerDao {
   
   
 
-  private static final String queryPartIgnored = " AND t.userid NOT IN (select ignored from ignore_list where userid=:userid) ";
-  private static final String queryPartTagIgnored = " AND t.id NOT IN (select distinct tags.msgid from tags, user_tags "
-    + "where tags.tagid=user_tags.tag_id and user_tags.is_favorite = false and user_id=:userid) ";
   private static final String queryPartNoTalks = " AND not t.groupid=8404 ";
   private static final String queryPartTech = " AND not t.groupid=8404 AND not t.groupid=4068 AND section=2 ";
   private static final String queryPartMine = " AND t.userid=:userid ";
 
   private static final String noUncommited = " AND (t.moderate or NOT sections.moderate) ";
 
+  private static final String queryPartBefore = " AND (t.lastmod, t.id) < (:cursor, :cursorId) ";
+  private static final String queryPartAfter = " AND (t.lastmod, t.id) > (:cursor, :cursorId) ";
+  // у правок wiki id всегда 0
+  private static final String queryPartWikiBefore = " AND (change_date, 0) < (:cursor, :cursorId) ";
+  private static final String queryPartWikiAfter = " AND (change_date, 0) > (:cursor, :cursorId) ";
+
+  /**
+   * Выборка трекера.
+   *
+   * Страницы выбираются по курсору - времени последнего изменения и id
+   * крайнего элемента предыдущей страницы, OFFSET используется только для
+   * перенаправления старых ссылок.
+   *
+   * Игнорируемые пользователи и теги здесь не учитываются, выборка
+   * общая для всех пользователей - фильтрацию делает {@link TrackerService}.
+   *
+   * @param cursor позиция, от которой выбирать элементы, или null для первой страницы
+   * @param newer true - выбирать элементы новее курсора, false - старше
+   * @return элементы трекера, от новых к старым
+   */
   public List<TrackerItem> getTrackAll(TrackerFilterEnum filter, User currentUser, Timestamp interval,
-                                       int topics, int offset, final int messagesInPage) {
+                                       int topics, int offset, @Nullable TrackerCursor cursor, boolean newer,
+                                       final int messagesInPage) {
+
 
     MapSqlParameterSource parameter = new MapSqlParameterSource();
     parameter.addValue("interval", interval);
     parameter.addValue("topics", topics);
     parameter.addValue("offset", offset);
 
-    String partIgnored;
+    String partCursor;
+    String partWikiCursor;
+
+    if (cursor != null) {
+      partCursor = newer ? queryPartAfter : queryPartBefore;
+      partWikiCursor = newer ? queryPartWikiAfter : queryPartWikiBefore;
+      parameter.addValue("cursor", cursor.getLastmod());
+      parameter.addValue("cursorId", cursor.getId());
+    } else {
+      partCursor = "";
+      partWikiCursor = "";
+    }
+
+    String order = cursor != null && newer ? "ASC" : "DESC";
 
     if(currentUser != null) {
-      partIgnored = queryPartIgnored + queryPartTagIgnored;
       parameter.addValue("userid", currentUser.getId());
-    } else {
-      partIgnored = "";
     }
 
     String partFilter;
@@ -216,15 +254,30 @@ public class TrackerDao {
     String query;
 
     if(filter != TrackerFilterEnum.ZERO) {
-      query = String.format(queryTrackerMain, partUncommited, partIgnored, partFilter, partUncommited, partIgnored, partFilter, partWiki);
+      query = String.format(queryTrackerMain, partUncommited, partFilter, partCursor,
+              partUncommited, partFilter, partCursor, partWiki, partWikiCursor, order, order);
     } else {
-      query = String.format(queryTrackerZeroMain, partIgnored);
+      query = String.format(queryTrackerZeroMain, partCursor, order, order);
     }
 
     SqlRowSet resultSet = jdbcTemplate.queryForRowSet(query, parameter);
 
+    List<Integer> msgids = new ArrayList<>(topics);
+
+    while (resultSet.next()) {
+      int msgid = resultSet.getInt("id");
+
+      if (msgid != 0) {
+        msgids.add(msgid);
+      }
+    }
+
+    ImmutableListMultimap<Integer, Integer> tagIds = topicTagDao.getTagIds(msgids);
+
+    resultSet.beforeFirst();
+
     List<TrackerItem> res = new ArrayList<>(topics);
-    
+
     while (resultSet.next()) {
       User author;
       int author_id = resultSet.getInt("author");
@@ -269,9 +322,13 @@ public class TrackerDao {
 
       res.add(new TrackerItem(author, msgid, lastmod, stat1,
               groupId, groupTitle, title, cid, lastCommentBy, resolved,
-              section, groupUrlName, postdate, uncommited, pages, tags));
+              section, groupUrlName, postdate, uncommited, pages, tags, IntSet.of(tagIds.get(msgid))));
     }
-    
+
+    if (cursor != null && newer) {
+      Collections.reverse(res);
+    }
+
     return res;
   }
 }
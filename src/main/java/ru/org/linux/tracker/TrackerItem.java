@@ -18,14 +18,18 @@ package ru.org.linux.tracker;
 import com.google.common.collect.ImmutableList;
 import ru.org.linux.section.Section;
 import ru.org.linux.user.User;
+import ru.org.linux.util.IntSet;
 import ru.org.linux.util.URLUtil;
 
+import java.io.Serializable;
 import java.sql.Timestamp;
 
 /**
  *
  */
-public class TrackerItem {
+public class TrackerItem implements Serializable {
+  private static final long serialVersionUID = 2480374183746192833L;
+
   private final User author;
   private final int msgid;
   private final Timestamp lastmod;
@@ -42,13 +46,15 @@ public class TrackerItem {
   private final boolean uncommited;
   private final int pages;
   private final ImmutableList<String> tags;
+  private final IntSet tagIds;
 
   public TrackerItem(User author, int msgid, Timestamp lastmod,
                      int stat1,
                      int groupId, String groupTitle, String title,
                      int cid, User lastCommentBy, boolean resolved,
                      int section, String groupUrlName,
-                     Timestamp postdate, boolean uncommited, int pages, ImmutableList<String> tags) {
+                     Timestamp postdate, boolean uncommited, int pages, ImmutableList<String> tags,
+                     IntSet tagIds) {
     this.author = author;
     this.msgid = msgid;
     this.lastmod = lastmod;
@@ -65,6 +71,7 @@ public class TrackerItem {
     this.uncommited = uncommited;
     this.pages = pages;
     this.tags = tags;
+    this.tagIds = tagIds;
   }
 
   public String getUrl() {
@@ -178,4 +185,11 @@ public class TrackerItem {
   public ImmutableList<String> getTags() {
     return tags;
   }
+
+  /**
+   * Все теги топика, для фильтрации игнорируемых тегов
+   */
+  public IntSet getTagIds() {
+    return tagIds;
+  }
 }
@@ -0,0 +1,141 @@
+/*
+ * Copyright 1998-2012 Linux.org.ru
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.org.linux.tracker;
+
+import com.google.common.collect.Lists;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import ru.org.linux.spring.commons.CacheProvider;
+import ru.org.linux.user.IgnoreListDao;
+import ru.org.linux.user.User;
+import ru.org.linux.user.UserTagDao;
+import ru.org.linux.util.IntSet;
+
+import javax.annotation.Nullable;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Трекер с учетом игнорируемых пользователей и тегов.
+ *
+ * Из базы выбирается общая для всех страница без учета игнор-листов, первая страница
+ * кешируется. Игнорируемое отфильтровывается в памяти, если после фильтрации
+ * элементов не хватает - дочитываются следующие страницы.
+ */
+@Service
+public class TrackerService {
+  private static final int CACHE_AGE = 10 * 1000;
+
+  /**
+   * Сколько страниц из базы можно прочитать, чтобы заполнить одну страницу трекера
+   */
+  private static final int MAX_PAGES = 5;
+
+  @Autowired
+  private TrackerDao trackerDao;
+
+  @Autowired
+  private IgnoreListDao ignoreListDao;
+
+  @Autowired
+  private UserTagDao userTagDao;
+
+  @Autowired
+  private CacheProvider cacheProvider;
+
+  /**
+   * @see TrackerDao#getTrackAll
+   */
+  public List<TrackerItem> getTrackAll(TrackerFilterEnum filter, @Nullable User currentUser, Timestamp interval,
+                                       int topics, int offset, @Nullable TrackerCursor cursor, boolean newer,
+                                       int messagesInPage) {
+    IntSet ignoredUsers;
+    IntSet ignoredTags;
+
+    if (currentUser != null) {
+      ignoredUsers = ignoreListDao.get(currentUser);
+      ignoredTags = userTagDao.getTagIds(currentUser.getId(), false);
+    } else {
+      ignoredUsers = IntSet.EMPTY;
+      ignoredTags = IntSet.EMPTY;
+    }
+
+    if (ignoredUsers.isEmpty() && ignoredTags.isEmpty()) {
+      return getPage(filter, currentUser, interval, topics, offset, cursor, newer, messagesInPage);
+    }
+
+    List<TrackerItem> result = new ArrayList<>(topics);
+
+    TrackerCursor pageCursor = cursor;
+    int pageOffset = offset;
+
+    for (int i = 0; i < MAX_PAGES && result.size() < topics; i++) {
+      List<TrackerItem> page = getPage(filter, currentUser, interval, topics, pageOffset, pageCursor, newer, messagesInPage);
+
+      // от ближних к курсору к дальним
+      List<TrackerItem> ordered = newer ? Lists.reverse(page) : page;
+
+      for (TrackerItem item : ordered) {
+        if (result.size() < topics && !isIgnored(item, ignoredUsers, ignoredTags)) {
+          result.add(item);
+        }
+      }
+
+      if (page.size() < topics) {
+        break;
+      }
+
+      // курсор по (lastmod, id): элементы с тем же lastmod на границе
+      // страниц не теряются и не повторяются
+      pageCursor = TrackerCursor.of(ordered.get(ordered.size() - 1));
+      pageOffset = 0;
+    }
+
+    return newer ? Lists.reverse(result) : result;
+  }
+
+  static boolean isIgnored(TrackerItem item, IntSet ignoredUsers, IntSet ignoredTags) {
+    if (item.getAuthor() != null && ignoredUsers.contains(item.getAuthor().getId())) {
+      return true;
+    }
+
+    return item.getTagIds() != null && ignoredTags.containsAny(item.getTagIds());
+  }
+
+  private List<TrackerItem> getPage(TrackerFilterEnum filter, @Nullable User currentUser, Timestamp interval,
+                                    int topics, int offset, @Nullable TrackerCursor cursor, boolean newer,
+                                    int messagesInPage) {
+    boolean showUncommited = currentUser != null && (currentUser.isModerator() || currentUser.isCorrector());
+
+    if (filter == TrackerFilterEnum.MINE || cursor != null || offset != 0) {
+      return trackerDao.getTrackAll(filter, currentUser, interval, topics, offset, cursor, newer, messagesInPage);
+    }
+
+    String cacheKey = "tracker?filter=" + filter.getValue() + "&uncommited=" + showUncommited +
+      "&topics=" + topics + "&messages=" + messagesInPage;
+
+    @SuppressWarnings("unchecked")
+    List<TrackerItem> result = (List<TrackerItem>) cacheProvider.getFromCache(cacheKey);
+
+    if (result == null) {
+      result = trackerDao.getTrackAll(filter, currentUser, interval, topics, offset, cursor, newer, messagesInPage);
+      cacheProvider.storeToCache(cacheKey, new ArrayList<>(result), CACHE_AGE);
+    }
+
+    return result;
+  }
+}
@@ -85,9 +85,10 @@ public class AddRemoveBoxesController {
     if (!boxlets.isEmpty()) {
       if (boxlets.size() > form.position) {
         boxlets.remove(form.position.intValue());
-        tmpl.getProf().setBoxlets(boxlets);
+        Profile profile = new Profile(tmpl.getProf());
+        profile.setBoxlets(boxlets);
 
-        profileDao.writeProfile(tmpl.getCurrentUser(), tmpl.getProf());
+        profileDao.writeProfile(tmpl.getCurrentUser(), profile);
       }
     }
     
@@ -132,9 +133,10 @@ public class AddRemoveBoxesController {
       boxlets.add(form.boxName);
     }
     
-    t.getProf().setBoxlets(boxlets);
+    Profile profile = new Profile(t.getProf());
+    profile.setBoxlets(boxlets);
 
-    profileDao.writeProfile(t.getCurrentUser(), t.getProf());
+    profileDao.writeProfile(t.getCurrentUser(), profile);
 
     status.setComplete();
     return "redirect:/edit-boxes.jsp";
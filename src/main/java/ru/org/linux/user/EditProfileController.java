@@ -90,30 +90,32 @@ public class EditProfileController {
       throw new BadInputException("неправльное название темы");
     }
 
-    tmpl.getProf().setTopics(topics);
-    tmpl.getProf().setMessages(messages);
-    tmpl.getProf().setShowNewFirst("on".equals(request.getParameter("newfirst")));
-    tmpl.getProf().setShowPhotos("on".equals(request.getParameter("photos")));
-    tmpl.getProf().setHideAdsense("on".equals(request.getParameter("hideAdsense")));
-    tmpl.getProf().setShowGalleryOnMain("on".equals(request.getParameter("mainGallery")));
-    tmpl.getProf().setFormatMode(request.getParameter("format_mode"));
-    tmpl.getProf().setStyle(request.getParameter("style")); // TODO убрать как только
-    userDao.setStyle(tmpl.getCurrentUser(), request.getParameter("style"));
-    
-    tmpl.getProf().setShowSocial("on".equals(request.getParameter("showSocial")));
-
     String avatar = request.getParameter("avatar");
 
     if (!DefaultProfile.getAvatars().contains(avatar)) {
       throw new BadInputException("invalid avatar value");
     }
 
-    tmpl.getProf().setAvatarMode(avatar);
+    Profile profile = new Profile(tmpl.getProf());
+
+    profile.setTopics(topics);
+    profile.setMessages(messages);
+    profile.setShowNewFirst("on".equals(request.getParameter("newfirst")));
+    profile.setShowPhotos("on".equals(request.getParameter("photos")));
+    profile.setHideAdsense("on".equals(request.getParameter("hideAdsense")));
+    profile.setShowGalleryOnMain("on".equals(request.getParameter("mainGallery")));
+    profile.setFormatMode(request.getParameter("format_mode"));
+    profile.setStyle(request.getParameter("style")); // TODO убрать как только
+    userDao.setStyle(tmpl.getCurrentUser(), request.getParameter("style"));
+    
+    profile.setShowSocial("on".equals(request.getParameter("showSocial")));
+
+    profile.setAvatarMode(avatar);
 
-    tmpl.getProf().setShowAnonymous("on".equals(request.getParameter("showanonymous")));
-    tmpl.getProf().setUseHover("on".equals(request.getParameter("hover")));
+    profile.setShowAnonymous("on".equals(request.getParameter("showanonymous")));
+    profile.setUseHover("on".equals(request.getParameter("hover")));
 
-    profileDao.writeProfile(tmpl.getCurrentUser(), tmpl.getProf());
+    profileDao.writeProfile(tmpl.getCurrentUser(), profile);
 
     return new ModelAndView(new RedirectView("/people/" + nick + "/profile"));
   }
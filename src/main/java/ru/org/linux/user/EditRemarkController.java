@@ -76,7 +76,7 @@ public class EditRemarkController {
     User refUser = userDao.getUser(nick);
     Remark rm = userDao.getRemark(user,refUser);
     if(rm!=null){
-        userDao.updateRemark(rm.getId(),text);
+        userDao.updateRemark(user, rm.getId(), text);
     } else {
       userDao.setRemark(user,refUser,text);
     }
@@ -15,19 +15,21 @@
 
 package ru.org.linux.user;
 
-import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.ImmutableSet.Builder;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Repository;
 import ru.org.linux.auth.AccessViolationException;
+import ru.org.linux.util.IntSet;
 
 import javax.annotation.Nonnull;
 import javax.sql.DataSource;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.List;
 
 @Repository
 public class IgnoreListDao {
@@ -41,6 +43,7 @@ public class IgnoreListDao {
     jdbcTemplate = new JdbcTemplate(ds);
   }
 
+  @CacheEvict(value="IgnoreLists", key="#listOwner.id")
   public void addUser(User listOwner, User userToIgnore) throws AccessViolationException {
     if (userToIgnore.isModerator()) {
       throw new AccessViolationException("Нельзя игнорировать модератора");
@@ -53,6 +56,7 @@ public class IgnoreListDao {
     );
   }
 
+  @CacheEvict(value="IgnoreLists", key="#listOwner.id")
   public void remove(User listOwner, User userToIgnore) {
     jdbcTemplate.update(
             "DELETE FROM ignore_list WHERE userid=? AND ignored=?",
@@ -62,20 +66,23 @@ public class IgnoreListDao {
   }
 
   /**
-   * Получить список игнорируемых
+   * Получить список игнорируемых. Список кешируется, кеш сбрасывается
+   * при изменении списка через {@link #addUser} и {@link #remove}.
+   *
    * @param user пользователь который игнорирует
    * @return список игнорируемых
    */
   @Nonnull
-  public Set<Integer> get(@Nonnull User user) {
-    final Builder<Integer> builder = ImmutableSet.builder();
+  @Cacheable(value="IgnoreLists", key="#user.id")
+  public IntSet get(@Nonnull User user) {
+    final List<Integer> ignored = new ArrayList<>();
     jdbcTemplate.query(queryIgnoreList, new RowCallbackHandler() {
       @Override
       public void processRow(ResultSet resultSet) throws SQLException {
-        builder.add(resultSet.getInt("ignored"));
+        ignored.add(resultSet.getInt("ignored"));
       }
     }, user.getId());
-    return builder.build();
+    return IntSet.of(ignored);
   }
 
   public int getIgnoreStat(User ignoredUser) {
@@ -0,0 +1,112 @@
+/*
+ * Copyright 1998-2012 Linux.org.ru
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.org.linux.user;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Отложенное обновление users.lastlogin.
+ *
+ * Время последнего входа запоминается в памяти и раз в минуту записывается
+ * в базу одним UPDATE ... FROM (VALUES ...) на все накопившиеся id.
+ */
+@Component
+public class LastLoginTracker {
+  private static final Log logger = LogFactory.getLog(LastLoginTracker.class);
+
+  private static final int MINUTE = 60 * 1000;
+  private static final int BATCH_SIZE = 1000;
+
+  private final ConcurrentMap<Integer, Long> pending = new ConcurrentHashMap<>();
+
+  private JdbcTemplate jdbcTemplate;
+
+  @Autowired
+  public void setDataSource(DataSource dataSource) {
+    jdbcTemplate = new JdbcTemplate(dataSource);
+  }
+
+  public void record(int userid) {
+    pending.put(userid, System.currentTimeMillis());
+  }
+
+  @Scheduled(fixedDelay = MINUTE, initialDelay = MINUTE)
+  @PreDestroy
+  public void flush() {
+    List<Object> params = new ArrayList<>();
+    int rows = 0;
+
+    Iterator<Map.Entry<Integer, Long>> it = pending.entrySet().iterator();
+
+    while (it.hasNext()) {
+      Map.Entry<Integer, Long> entry = it.next();
+
+      // remove(key, value) не удалит запись, если пользователь зашел еще раз
+      // во время сброса - она уйдет в следующий раз
+      if (pending.remove(entry.getKey(), entry.getValue())) {
+        params.add(entry.getKey());
+        params.add(new Timestamp(entry.getValue()));
+        rows++;
+      }
+
+      if (rows == BATCH_SIZE) {
+        update(rows, params);
+
+        params.clear();
+        rows = 0;
+      }
+    }
+
+    if (rows > 0) {
+      update(rows, params);
+    }
+  }
+
+  private void update(int rows, List<Object> params) {
+    StringBuilder values = new StringBuilder();
+
+    for (int i = 0; i < rows; i++) {
+      if (i > 0) {
+        values.append(',');
+      }
+
+      values.append("(?, ?::timestamp)");
+    }
+
+    int updated = jdbcTemplate.update(
+            "UPDATE users SET lastlogin=v.lastlogin FROM (VALUES " + values + ") AS v(id, lastlogin) " +
+            "WHERE users.id=v.id AND (users.lastlogin IS NULL OR users.lastlogin<v.lastlogin)",
+            params.toArray()
+    );
+
+    logger.debug("Updated lastlogin for " + updated + " users");
+  }
+}
@@ -73,6 +73,18 @@ public class Profile {
     this.boxes = boxes;
   }
 
+  /**
+   * Копия профиля. Профиль текущего пользователя общий для всех его запросов
+   * (кеш Principals), поэтому изменять нужно копию, а затем записывать ее
+   * через {@link ProfileDao#writeProfile(User, Profile)}.
+   */
+  public Profile(Profile other) {
+    this(
+            new ProfileHashtable(DefaultProfile.getDefaultProfile(), other.getSettings()),
+            other.boxes == null ? null : new ArrayList<>(other.boxes)
+    );
+  }
+
   public Map<String, String> getSettings() {
     ProfileHashtable p = new ProfileHashtable(DefaultProfile.getDefaultProfile(), new HashMap<String, String>());
 
@@ -16,6 +16,7 @@
 package ru.org.linux.user;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.PreparedStatementCreator;
 import org.springframework.jdbc.core.RowMapper;
@@ -73,10 +74,12 @@ public class ProfileDao {
     }
   }
 
+  @CacheEvict(value="Principals", key="#user.id")
   public void deleteProfile(@Nonnull User user) {
     jdbcTemplate.update("DELETE FROM user_settings WHERE id=?", user.getId());
   }
 
+  @CacheEvict(value="Principals", key="#user.id")
   public void writeProfile(@Nonnull final User user, @Nonnull final Profile profile) {
     String boxlets[] = null;
 
@@ -24,6 +24,13 @@ public class Remark {
   private final int refUserId;
   private final String text;
 
+  public Remark(int id, int userId, int refUserId, String text) {
+    this.id = id;
+    this.userId = userId;
+    this.refUserId = refUserId;
+    this.text = text;
+  }
+
   public Remark(ResultSet resultSet) throws SQLException {
     id = resultSet.getInt("id");
     userId = resultSet.getInt("user_id");
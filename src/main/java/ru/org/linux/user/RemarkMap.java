@@ -0,0 +1,97 @@
+/*
+ * Copyright 1998-2012 Linux.org.ru
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.org.linux.user;
+
+import javax.annotation.Nullable;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Все комментарии одного пользователя о других пользователях.
+ *
+ * Хранится в кеше, поэтому вместо карты объектов - отсортированный массив
+ * id пользователей и параллельные массивы id и текстов комментариев.
+ */
+public final class RemarkMap implements Serializable {
+  private static final long serialVersionUID = -2017315896418806452L;
+
+  private final int userId;
+  private final int[] refUserIds;
+  private final int[] ids;
+  private final String[] texts;
+
+  public RemarkMap(int userId, List<Remark> remarks) {
+    List<Remark> sorted = new ArrayList<>(remarks);
+
+    Collections.sort(sorted, new Comparator<Remark>() {
+      @Override
+      public int compare(Remark o1, Remark o2) {
+        return Integer.compare(o1.getRefUserId(), o2.getRefUserId());
+      }
+    });
+
+    this.userId = userId;
+    refUserIds = new int[sorted.size()];
+    ids = new int[sorted.size()];
+    texts = new String[sorted.size()];
+
+    for (int i = 0; i < sorted.size(); i++) {
+      Remark remark = sorted.get(i);
+
+      refUserIds[i] = remark.getRefUserId();
+      ids[i] = remark.getId();
+      texts[i] = remark.getText();
+    }
+  }
+
+  /**
+   * @param refUserId пользователь, о котором комментарий
+   * @return комментарий или null
+   */
+  @Nullable
+  public Remark get(int refUserId) {
+    int index = Arrays.binarySearch(refUserIds, refUserId);
+
+    if (index < 0) {
+      return null;
+    }
+
+    return new Remark(ids[index], userId, refUserId, texts[index]);
+  }
+
+  /**
+   * @param refUserId пользователь, о котором комментарий
+   * @return текст комментария или null
+   */
+  @Nullable
+  public String getText(int refUserId) {
+    int index = Arrays.binarySearch(refUserIds, refUserId);
+
+    return index < 0 ? null : texts[index];
+  }
+
+  public int size() {
+    return refUserIds.length;
+  }
+
+  public boolean isEmpty() {
+    return refUserIds.length == 0;
+  }
+}
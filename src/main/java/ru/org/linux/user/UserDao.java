@@ -53,6 +53,9 @@ public class UserDao {
   @Autowired
   private UserLogDao userLogDao;
 
+  @Autowired
+  private LastLoginTracker lastLoginTracker;
+
   /**
    * изменение score пользователю
    */
@@ -295,7 +298,7 @@ public class UserDao {
    * @param cleaner пользователь который чистит
    */
   @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
-  @CacheEvict(value="Users", key="#user.id")
+  @CacheEvict(value={"Users", "Principals"}, key="#user.id")
   public boolean resetUserpic(User user, User cleaner) {
     boolean r = jdbcTemplate.update("UPDATE users SET photo=null WHERE id=? and photo is not null", user.getId()) > 0;
 
@@ -319,7 +322,7 @@ public class UserDao {
    * @param user пользователь
    * @param photo userpick
    */
-  @CacheEvict(value="Users", key="#user.id")
+  @CacheEvict(value={"Users", "Principals"}, key="#user.id")
   @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
   public void setPhoto(@Nonnull User user, @Nonnull String photo){
     jdbcTemplate.update("UPDATE users SET photo=? WHERE id=?", photo, user.getId());
@@ -342,7 +345,7 @@ public class UserDao {
    * @param id id пользователя
    * @param delta дельта на которую меняется шкворец
    */
-  @CacheEvict(value="Users", key="#id")
+  @CacheEvict(value={"Users", "Principals"}, key="#id")
   public void changeScore(int id, int delta) {
     if (jdbcTemplate.update(queryChangeScore, delta, id)==0) {
       throw new IllegalArgumentException(new UserNotFoundException(id));
@@ -354,7 +357,7 @@ public class UserDao {
    * @param user пользователь у которого меняется признак корректора
    */
   @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
-  @CacheEvict(value="Users", key="#user.id")
+  @CacheEvict(value={"Users", "Principals"}, key="#user.id")
   public void toggleCorrector(User user){
     if(user.canCorrect()){
       jdbcTemplate.update("UPDATE users SET corrector='f' WHERE id=?", user.getId());
@@ -368,7 +371,7 @@ public class UserDao {
    * @param user пользователь у которого меняется стиль\тема
    */
   @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
-  @CacheEvict(value="Users", key="#user.id")
+  @CacheEvict(value={"Users", "Principals"}, key="#user.id")
   public void setStyle(User user, String theme){
     jdbcTemplate.update(updateUserStyle, theme, user.getId());
   }
@@ -379,7 +382,7 @@ public class UserDao {
    * @param user пользователь которому сбрасывается пароль
    * @return новый пароь в открытом виде
    */
-  @CacheEvict(value="Users", key="#user.id")
+  @CacheEvict(value={"Users", "Principals"}, key="#user.id")
   @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
   public String resetPassword(User user){
     String password = StringUtil.generatePassword();
@@ -387,7 +390,7 @@ public class UserDao {
     return setPassword(user, password);
   }
 
-  @CacheEvict(value="Users", key="#user.id")
+  @CacheEvict(value={"Users", "Principals"}, key="#user.id")
   @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
   public void resetPassword(User user, User moderator){
     setPassword(user, StringUtil.generatePassword());
@@ -419,7 +422,7 @@ public class UserDao {
    * @param reason причина блокировки
    */
   @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
-  @CacheEvict(value="Users", key="#user.id")
+  @CacheEvict(value={"Users", "Principals"}, key="#user.id")
   public void block(@Nonnull User user, @Nonnull User moderator, @Nonnull String reason) {
     jdbcTemplate.update("UPDATE users SET blocked='t' WHERE id=?", user.getId());
     jdbcTemplate.update("INSERT INTO ban_info (userid, reason, ban_by) VALUES (?, ?, ?)", user.getId(), reason, moderator.getId());
@@ -431,7 +434,7 @@ public class UserDao {
    * @param user разблокируемый пользователь
    */
   @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
-  @CacheEvict(value="Users", key="#user.id")
+  @CacheEvict(value={"Users", "Principals"}, key="#user.id")
   public void unblock(@Nonnull User user, @Nonnull User moderator){
     jdbcTemplate.update("UPDATE users SET blocked='f' WHERE id=?", user.getId());
     jdbcTemplate.update("DELETE FROM ban_info WHERE userid=?", user.getId());
@@ -501,13 +504,13 @@ public class UserDao {
     );
   }
 
-  @CacheEvict(value="Users", key="#user.id")
+  @CacheEvict(value={"Users", "Principals"}, key="#user.id")
   public void activateUser(User user) {
     jdbcTemplate.update("UPDATE users SET activated='t' WHERE id=?", user.getId());
   }
 
   @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
-  @CacheEvict(value="Users", key="#user.id")
+  @CacheEvict(value={"Users", "Principals"}, key="#user.id")
   public void updateUser(
           @Nonnull User user,
           String name,
@@ -570,7 +573,7 @@ public class UserDao {
     return jdbcTemplate.queryForObject("SELECT new_email FROM users WHERE id=?", String.class, user.getId());
   }
 
-  @CacheEvict(value="Users", key="#user.id")
+  @CacheEvict(value={"Users", "Principals"}, key="#user.id")
   @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
   public void acceptNewEmail(@Nonnull User user, @Nonnull String newEmail) {
     jdbcTemplate.update("UPDATE users SET email=?, new_email=null WHERE id=?", newEmail, user.getId());
@@ -580,13 +583,13 @@ public class UserDao {
   /**
    * Update lastlogin time in database
    * @param user logged user
-   * @throws SQLException on database failure
+   * @param force записать сразу, иначе время будет записано позже {@link LastLoginTracker}
    */
   public void updateLastlogin(User user, boolean force) {
     if (force) {
       jdbcTemplate.update("UPDATE users SET lastlogin=CURRENT_TIMESTAMP WHERE id=?", user.getId());
     } else {
-      jdbcTemplate.update("UPDATE users SET lastlogin=CURRENT_TIMESTAMP WHERE id=? AND CURRENT_TIMESTAMP-lastlogin > '1 hour'::interval", user.getId());
+      lastLoginTracker.record(user.getId());
     }
   }
 
@@ -611,6 +614,25 @@ public class UserDao {
     }
   }
 
+  /**
+   * Получить все комментарии пользователя user о других пользователях.
+   * Результат кешируется, кеш сбрасывается при изменении комментариев.
+   *
+   * @param user logged user
+   * @return комментарии по id пользователей
+   */
+  @Cacheable(value="Remarks", key="#user.id")
+  public RemarkMap getRemarks(User user) {
+    List<Remark> remarks = jdbcTemplate.query("SELECT * FROM user_remarks WHERE user_id=?", new RowMapper<Remark>() {
+      @Override
+      public Remark mapRow(ResultSet resultSet, int i) throws SQLException {
+        return new Remark(resultSet);
+      }
+    }, user.getId());
+
+    return new RemarkMap(user.getId(), remarks);
+  }
+
   public int getRemarkCount(User user) {
     return jdbcTemplate.queryForInt(
       "SELECT count(*) as c FROM user_remarks WHERE user_id=?", user.getId() );
@@ -647,6 +669,7 @@ public class UserDao {
    * @param text текст комментария
    * @throws SQLException on database failure
    */
+  @CacheEvict(value="Remarks", key="#user.id")
   public void setRemark(User user, User ref, String text) {
     if(text.isEmpty()) {
       return;
@@ -658,12 +681,14 @@ public class UserDao {
   
   /**
    * Обновить комментарий пользователя user о ref
+   * @param user logged user
    * @param id id of remark
    * @param text - комментарий
    * @throws SQLException on database failure
    * если комментарий нулевой длины - он удаляется из базы
    */
-  public void updateRemark(int id, String text) {
+  @CacheEvict(value="Remarks", key="#user.id")
+  public void updateRemark(User user, int id, String text) {
     if(text.isEmpty()) {
       jdbcTemplate.update("DELETE FROM user_remarks WHERE id=?", id);
     } else {
@@ -22,11 +22,12 @@ import java.sql.Timestamp;
  * Элемент списка уведомлений
  */
 public class UserEvent implements Serializable {
+  private final int id;
   private final int cid;
   private final int cAuthor;
   private final Timestamp cDate;
   private final int groupId;
-  private static final long serialVersionUID = -8433869244309809050L;
+  private static final long serialVersionUID = 2960164651394281287L;
   private final String subj;
   private final Timestamp lastmod;
   private final int msgid;
@@ -35,10 +36,11 @@ public class UserEvent implements Serializable {
   private final Timestamp eventDate;
   private final boolean unread;
 
-  public UserEvent(int cid, int cAuthor, Timestamp cDate,
+  public UserEvent(int id, int cid, int cAuthor, Timestamp cDate,
                    int groupId, String subj,
                    Timestamp lastmod, int msgid, UserEventFilterEnum type, String eventMessage,
                    Timestamp eventDate, boolean unread) {
+    this.id = id;
     this.cid = cid;
     this.cAuthor = cAuthor;
     this.cDate = cDate;
@@ -52,6 +54,10 @@ public class UserEvent implements Serializable {
     this.unread = unread;
   }
   
+  public int getId() {
+    return id;
+  }
+
   public boolean isComment() {
     return cid>0;
   }
@@ -19,6 +19,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 import org.springframework.web.servlet.ModelAndView;
 import org.springframework.web.servlet.view.RedirectView;
 import ru.org.linux.auth.AccessViolationException;
@@ -72,7 +73,8 @@ public class UserEventController {
    *
    * @param request    запрос
    * @param response   ответ
-   * @param offset     смещение
+   * @param before     id уведомления, после которого показывать более старые
+   * @param after      id уведомления, после которого показывать более новые
    * @param forceReset принудительная отсчистка уведомлений
    * @return вьюшку
    * @throws Exception возможны исключительные ситуации :-(
@@ -82,7 +84,8 @@ public class UserEventController {
     HttpServletRequest request,
     HttpServletResponse response,
     @ModelAttribute("notifications") Action action,
-    @RequestParam(value = "offset", defaultValue = "0") int offset,
+    @RequestParam(value = "before", required = false) Integer before,
+    @RequestParam(value = "after", required = false) Integer after,
     @RequestParam(value = "forceReset", defaultValue = "false") boolean forceReset
   ) throws Exception {
     Template tmpl = Template.getTemplate(request);
@@ -110,20 +113,14 @@ public class UserEventController {
       params.put("addition_query", "");
     }
 
-    if (offset < 0) {
-      offset = 0;
-    }
-
-    boolean firstPage = offset == 0;
     int topics = tmpl.getProf().getTopics();
 
     if (topics > 200) {
       topics = 200;
     }
 
-    params.put("firstPage", firstPage);
-    params.put("topics", topics);
-    params.put("offset", offset);
+    List<UserEvent> list = loadPage(params, currentUser, true, topics, before, after, eventFilter);
+    boolean firstPage = (Boolean) params.get("firstPage");
 
     params.put("disable_event_header", true);
 
@@ -135,7 +132,6 @@ public class UserEventController {
     params.put("isMyNotifications", true);
 
     response.addHeader("Cache-Control", "no-cache");
-    List<UserEvent> list = userEventService.getRepliesForUser(currentUser, true, topics, offset, eventFilter);
     List<PreparedUserEvent> prepared = userEventService.prepare(list, false, request.isSecure());
 
     if ("POST".equalsIgnoreCase(request.getMethod())) {
@@ -145,17 +141,43 @@ public class UserEventController {
     }
 
     params.put("topicsList", prepared);
-    params.put("hasMore", list.size() == topics);
 
     return new ModelAndView("show-replies", params);
   }
 
+  /**
+   * Ожидание изменения счетчика непрочитанных уведомлений (long polling)
+   *
+   * @param request запрос
+   * @param response ответ
+   * @param version версия счетчика, известная клиенту
+   * @return версия и количество непрочитанных уведомлений
+   * @throws Exception возможны исключительные ситуации :-(
+   */
+  @ResponseBody
+  @RequestMapping(value = "/notifications-count", method = RequestMethod.GET)
+  public DeferredResult<Map<String, Object>> waitUnreadCount(
+    HttpServletRequest request,
+    HttpServletResponse response,
+    @RequestParam(value = "count", defaultValue = "-1") int count
+  ) throws Exception {
+    Template tmpl = Template.getTemplate(request);
+    if (!tmpl.isSessionAuthorized()) {
+      throw new AccessViolationException("not authorized");
+    }
+
+    response.addHeader("Cache-Control", "no-cache");
+
+    return userEventService.waitUnreadCount(tmpl.getCurrentUser(), count);
+  }
+
   @RequestMapping(value = "/show-replies.jsp", method = RequestMethod.GET)
   public ModelAndView showReplies(
     HttpServletRequest request,
     HttpServletResponse response,
     @RequestParam(value = "nick", required = false) String nick,
-    @RequestParam(value = "offset", defaultValue = "0") int offset,
+    @RequestParam(value = "before", required = false) Integer before,
+    @RequestParam(value = "after", required = false) Integer after,
     @ModelAttribute("notifications") Action action
   ) throws Exception {
     Template tmpl = Template.getTemplate(request);
@@ -182,29 +204,17 @@ public class UserEventController {
     Map<String, Object> params = new HashMap<>();
     params.put("nick", nick);
 
-    if (offset < 0) {
-      offset = 0;
-    }
-
-    boolean firstPage = offset == 0;
     int topics = tmpl.getProf().getTopics();
     if (feedRequested) {
       topics = 50;
+      before = null;
+      after = null;
     }
 
     if (topics > 200) {
       topics = 200;
     }
 
-    params.put("firstPage", firstPage);
-    params.put("topics", topics);
-    params.put("offset", offset);
-
-    /* define timestamps for caching */
-    long time = System.currentTimeMillis();
-    int delay = firstPage ? 90 : 60 * 60;
-    response.setDateHeader("Expires", time + 1000 * delay);
-
     User user = userDao.getUser(nick);
 
     boolean showPrivate = tmpl.isModeratorSession();
@@ -218,12 +228,18 @@ public class UserEventController {
       response.addHeader("Cache-Control", "no-cache");
     }
 
-    List<UserEvent> list = userEventService.getRepliesForUser(user, showPrivate, topics, offset, UserEventFilterEnum.ALL);
+    List<UserEvent> list = loadPage(params, user, showPrivate, topics, before, after, UserEventFilterEnum.ALL);
+    boolean firstPage = (Boolean) params.get("firstPage");
+
+    /* define timestamps for caching */
+    long time = System.currentTimeMillis();
+    int delay = firstPage ? 90 : 60 * 60;
+    response.setDateHeader("Expires", time + 1000 * delay);
+
     List<PreparedUserEvent> prepared = userEventService.prepare(list, feedRequested, request.isSecure());
 
     params.put("isMyNotifications", false);
     params.put("topicsList", prepared);
-    params.put("hasMore", list.size() == topics);
 
     ModelAndView result = new ModelAndView("show-replies", params);
 
@@ -237,6 +253,44 @@ public class UserEventController {
     return result;
   }
 
+  /**
+   * Загрузка страницы уведомлений по курсору.
+   * В params выставляются firstPage, hasMore и курсоры для ссылок на соседние страницы.
+   *
+   * @param params      модель страницы
+   * @param user        чьи уведомления показываем
+   * @param showPrivate включать ли приватные
+   * @param topics      уведомлений на странице
+   * @param before      id уведомления, после которого показывать более старые
+   * @param after       id уведомления, после которого показывать более новые
+   * @param eventFilter тип уведомлений
+   * @return список уведомлений, от новых к старым
+   */
+  private List<UserEvent> loadPage(Map<String, Object> params, User user, boolean showPrivate, int topics,
+                                   Integer before, Integer after, UserEventFilterEnum eventFilter) {
+    boolean newer = before == null && after != null;
+    Integer cursor = newer ? after : before;
+
+    // запрашиваем на одно уведомление больше, чтобы узнать, есть ли следующая страница
+    List<UserEvent> list = userEventService.getRepliesForUser(user, showPrivate, topics + 1, cursor, newer, eventFilter);
+
+    boolean more = list.size() > topics;
+
+    if (more) {
+      list = newer ? list.subList(1, list.size()) : list.subList(0, topics);
+    }
+
+    params.put("firstPage", cursor == null || (newer && !more));
+    params.put("hasMore", newer || more);
+
+    if (!list.isEmpty()) {
+      params.put("prevCursor", list.get(0).getId());
+      params.put("nextCursor", list.get(list.size() - 1).getId());
+    }
+
+    return list;
+  }
+
   @ExceptionHandler(UserNotFoundException.class)
   @ResponseStatus(HttpStatus.NOT_FOUND)
   public ModelAndView handleUserNotFound() {
@@ -15,10 +15,8 @@
 
 package ru.org.linux.user;
 
-import com.google.common.base.Function;
-import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
@@ -33,6 +31,7 @@ import javax.sql.DataSource;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -41,8 +40,9 @@ import java.util.Map;
 public class UserEventDao {
   private static final String UPDATE_RESET_UNREAD_REPLIES = "UPDATE users SET unread_events=0 where id=?";
 
-  private static final String QUERY_ALL_REPLIES_FOR_USER =
+  private static final String QUERY_REPLIES_FOR_USER =
     "SELECT event_date, " +
+      " user_events.id as event_id, " +
       " topics.title as subj, " +
       " lastmod, topics.id as msgid, " +
       " comments.id AS cid, " +
@@ -57,30 +57,16 @@ public class UserEventDao {
       " WHERE user_events.userid = ? " +
       " %s " +
       " AND (comments.id is null or NOT comments.topic_deleted)" +
-      " ORDER BY event_date DESC LIMIT ?" +
-      " OFFSET ?";
+      " ORDER BY event_date %s, user_events.id %s LIMIT ?";
 
-  private static final String QUERY_REPLIES_FOR_USER_WIHOUT_PRIVATE =
-    "SELECT event_date, " +
-      " topics.title as subj, " +
-      " lastmod, topics.id as msgid, " +
-      " comments.id AS cid, " +
-      " comments.postdate AS cDate, " +
-      " comments.userid AS cAuthor, " +
-      " unread, " +
-      " groupid, comments.deleted," +
-      " type, user_events.message as ev_msg" +
-      " FROM user_events INNER JOIN topics ON (topics.id = message_id)" +
-      " INNER JOIN groups ON (groups.id = topics.groupid) " +
-      " LEFT JOIN comments ON (comments.id=comment_id) " +
-      " WHERE user_events.userid = ? " +
-      " AND NOT private " +
-      " AND (comments.id is null or NOT comments.topic_deleted)" +
-      " ORDER BY event_date DESC LIMIT ?" +
-      " OFFSET ?";
+  /**
+   * Позиция уведомления в списке: (event_date, id) уведомления-курсора
+   */
+  private static final String QUERY_CURSOR = "(SELECT event_date, id FROM user_events WHERE id=? AND userid=?)";
+
+  private static final int BATCH_SIZE = 1000;
 
   private SimpleJdbcInsert insert;
-  private SimpleJdbcInsert insertTopicUsersNotified;
 
   private JdbcTemplate jdbcTemplate;
 
@@ -91,10 +77,6 @@ public class UserEventDao {
     insert.setTableName("user_events");
     insert.usingColumns("userid", "type", "private", "message_id", "comment_id", "message");
 
-    insertTopicUsersNotified = new SimpleJdbcInsert(ds);
-    insertTopicUsersNotified.setTableName("topic_users_notified");
-    insertTopicUsersNotified.usingColumns("topic", "userid");
-
     jdbcTemplate = new JdbcTemplate(ds);
   }
 
@@ -133,20 +115,75 @@ public class UserEventDao {
     insert.execute(params);
   }
 
-  public void insertTopicNotification(final int topicId, Iterable<Integer> userIds) {
-    @SuppressWarnings("unchecked") Map<String, Object>[] batch = Iterables.toArray(
-            Iterables.transform(
-                    userIds,
-                    new Function<Integer, Map<String, Object>>() {
-                      @Nullable
-                      @Override
-                      public Map<String, Object> apply(Integer userId) {
-                        return ImmutableMap.<String, Object>of("topic", topicId, "userid", userId);
-                      }
-                    }
-            ), Map.class);
-
-    insertTopicUsersNotified.executeBatch(batch);
+  /**
+   * Добавление уведомлений одного типа для списка пользователей.
+   * Уведомления вставляются многострочными INSERT по BATCH_SIZE пользователей.
+   * Пользователи, у которых уже есть такое уведомление (тот же тип, топик и комментарий),
+   * пропускаются, поэтому повторная доставка сообщения из очереди не создает дублей.
+   *
+   * Счетчик users.unread_events по-прежнему увеличивает триггер на вставку в user_events,
+   * он срабатывает только для реально вставленных строк.
+   *
+   * @param eventType тип уведомления
+   * @param userIds   идентификационные номера пользователей
+   * @param topicId   идентификационный номер топика
+   * @param commentId идентификационный номер комментария (null если нет)
+   */
+  public void addEvents(String eventType, List<Integer> userIds, int topicId, @Nullable Integer commentId) {
+    for (List<Integer> chunk : Lists.partition(userIds, BATCH_SIZE)) {
+      List<Object> params = new ArrayList<>(chunk.size() + 3);
+      params.addAll(chunk);
+      params.add(eventType);
+      params.add(topicId);
+      params.add(commentId);
+
+      jdbcTemplate.update(
+              "INSERT INTO user_events (userid, type, private, message_id, comment_id) " +
+              "SELECT v.userid, e.type, 'f', e.message_id, e.comment_id FROM (VALUES " + placeholders(chunk.size(), "(?::integer)") + ") AS v(userid), " +
+              "(SELECT ?::event_type AS type, ?::integer AS message_id, ?::integer AS comment_id) AS e " +
+              "WHERE NOT EXISTS (SELECT 1 FROM user_events u WHERE u.userid=v.userid AND u.type=e.type " +
+              "AND u.message_id=e.message_id AND u.comment_id IS NOT DISTINCT FROM e.comment_id)",
+              params.toArray()
+      );
+    }
+  }
+
+  /**
+   * Отметить пользователей как оповещенных по топику. Уже отмеченные пользователи
+   * пропускаются, поэтому повторная доставка сообщения из очереди не приводит к ошибке.
+   *
+   * @param topicId id топика
+   * @param userIds id пользователей без повторов
+   */
+  public void insertTopicNotification(int topicId, List<Integer> userIds) {
+    for (List<Integer> chunk : Lists.partition(userIds, BATCH_SIZE)) {
+      List<Object> params = new ArrayList<>(chunk.size() + 1);
+
+      params.addAll(chunk);
+      params.add(topicId);
+
+      jdbcTemplate.update(
+              "INSERT INTO topic_users_notified (topic, userid) " +
+              "SELECT t.topic, v.userid FROM (VALUES " + placeholders(chunk.size(), "(?::integer)") + ") AS v(userid), " +
+              "(SELECT ?::integer AS topic) AS t " +
+              "WHERE NOT EXISTS (SELECT 1 FROM topic_users_notified n WHERE n.topic=t.topic AND n.userid=v.userid)",
+              params.toArray()
+      );
+    }
+  }
+
+  private static String placeholders(int rows, String row) {
+    StringBuilder values = new StringBuilder();
+
+    for (int i = 0; i < rows; i++) {
+      if (i > 0) {
+        values.append(',');
+      }
+
+      values.append(row);
+    }
+
+    return values.toString();
   }
 
   public List<Integer> getNotifiedUsers(int topicId) {
@@ -165,30 +202,31 @@ public class UserEventDao {
   }
 
   /**
-   * Получение списка первых 10 идентификационных номеров пользователей,
-   * количество уведомлений которых превышает максимально допустимое значение.
+   * Получение количества непрочитанных уведомлений пользователя.
    *
-   * @param maxEventsPerUser максимальное количество уведомлений для одного пользователя
-   * @return список идентификационных номеров пользователей
+   * @param userId идентификационный номер пользователя
+   * @return количество непрочитанных уведомлений
    */
-  public List<Integer> getUserIdListByOldEvents(int maxEventsPerUser) {
-    return jdbcTemplate.queryForList(
-      "select userid from user_events group by userid having count(user_events.id) > ? order by count(user_events.id) DESC limit 10",
-      Integer.class,
-      maxEventsPerUser
-    );
+  public int getUnreadCount(int userId) {
+    return jdbcTemplate.queryForObject("SELECT unread_events FROM users WHERE id=?", Integer.class, userId);
   }
 
   /**
-   * Очистка старых уведомлений пользователя.
+   * Очистка старых уведомлений: у всех пользователей, у которых уведомлений больше
+   * максимально допустимого значения, удаляются самые старые, одним запросом.
    *
-   * @param userId           идентификационный номер пользователя
    * @param maxEventsPerUser максимальное количество уведомлений для одного пользователя
+   * @return количество удаленных уведомлений
    */
-  public void cleanupOldEvents(int userId, int maxEventsPerUser) {
-    jdbcTemplate.update(
-      "DELETE FROM user_events WHERE user_events.id IN (SELECT id FROM user_events WHERE userid=? ORDER BY event_date DESC OFFSET ?)",
-      userId,
+  public int cleanupOldEvents(int maxEventsPerUser) {
+    return jdbcTemplate.update(
+      "DELETE FROM user_events WHERE id IN (" +
+        "SELECT id FROM (" +
+          "SELECT id, row_number() OVER (PARTITION BY userid ORDER BY event_date DESC, id DESC) AS rn " +
+          "FROM user_events WHERE userid IN " +
+            "(SELECT userid FROM user_events GROUP BY userid HAVING count(*) > ?)" +
+        ") AS ranked WHERE rn > ?)",
+      maxEventsPerUser,
       maxEventsPerUser
     );
   }
@@ -196,26 +234,45 @@ public class UserEventDao {
   /**
    * Получить список уведомлений для пользователя.
    *
+   * Постраничный вывод по ключу (event_date, id): страница начинается
+   * сразу после уведомления-курсора, без OFFSET.
+   *
    * @param userId          идентификационный номер пользователя
    * @param showPrivate     включать ли приватные
    * @param topics          кол-во уведомлений
-   * @param offset          сдвиг относительно начала
+   * @param cursorId        id уведомления, после которого начинается страница (null - с начала)
+   * @param newer           true - уведомления новее курсора, false - старее
    * @param eventFilterType тип уведомлений
-   * @return список уведомлений
+   * @return список уведомлений, от новых к старым
    */
-  public List<UserEvent> getRepliesForUser(int userId, boolean showPrivate, int topics, int offset,
+  public List<UserEvent> getRepliesForUser(int userId, boolean showPrivate, int topics,
+                                           @Nullable Integer cursorId, boolean newer,
                                            String eventFilterType) {
-    String queryString;
+    StringBuilder condition = new StringBuilder();
+    List<Object> params = new ArrayList<>();
+
+    params.add(userId);
+
     if (showPrivate) {
-      String queryPart = "";
       if (eventFilterType != null) {
-        queryPart = " AND type = '" + eventFilterType + "' ";
+        condition.append(" AND type = '").append(eventFilterType).append("' ");
       }
-      queryString = String.format(QUERY_ALL_REPLIES_FOR_USER, queryPart);
     } else {
-      queryString = QUERY_REPLIES_FOR_USER_WIHOUT_PRIVATE;
+      condition.append(" AND NOT private ");
+    }
+
+    if (cursorId != null) {
+      condition.append(" AND (event_date, user_events.id) ").append(newer ? '>' : '<').append(' ').append(QUERY_CURSOR);
+      params.add(cursorId);
+      params.add(userId);
     }
-    return jdbcTemplate.query(queryString, new RowMapper<UserEvent>() {
+
+    params.add(topics);
+
+    String order = newer ? "ASC" : "DESC";
+    String queryString = String.format(QUERY_REPLIES_FOR_USER, condition, order, order);
+
+    List<UserEvent> events = jdbcTemplate.query(queryString, new RowMapper<UserEvent>() {
       @Override
       public UserEvent mapRow(ResultSet resultSet, int i) throws SQLException {
         String subj = StringUtil.makeTitle(resultSet.getString("subj"));
@@ -241,10 +298,16 @@ public class UserEventDao {
 
         boolean unread = resultSet.getBoolean("unread");
 
-        return new UserEvent(cid, cAuthor, cDate,
+        return new UserEvent(resultSet.getInt("event_id"), cid, cAuthor, cDate,
                 groupId, subj, lastmod, msgid, type, eventMessage, eventDate, unread);
       }
-    }, userId, topics, offset);
+    }, params.toArray());
+
+    if (newer) {
+      return Lists.reverse(events);
+    } else {
+      return events;
+    }
   }
 
   @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
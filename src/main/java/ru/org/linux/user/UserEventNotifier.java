@@ -0,0 +1,202 @@
+/*
+ * Copyright 1998-2012 Linux.org.ru
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.org.linux.user;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Ожидание изменения счетчика непрочитанных уведомлений.
+ *
+ * Клиент присылает известное ему количество непрочитанных уведомлений. Счетчик
+ * хранится в базе и общий для всех узлов, поэтому ответ приходит сразу, только
+ * если количество действительно изменилось, а запросы клиента могут попадать
+ * на разные узлы. Иначе ответ приходит при изменении уведомлений пользователя
+ * на этом узле или по таймауту. По таймауту отдается значение, прочитанное
+ * при регистрации запроса; изменение на другом узле клиент получит сразу
+ * в ответ на следующий запрос, то есть не позже таймаута.
+ */
+@Component
+public class UserEventNotifier {
+  static final long TIMEOUT = 50 * 1000;
+
+  /**
+   * userId -> ожидающие запросы и известное им количество уведомлений.
+   * Пользователь удаляется, когда у него не остается ожидающих запросов.
+   * Все обращения под блокировкой waiters.
+   */
+  private final Map<Integer, Map<DeferredResult<Map<String, Object>>, Integer>> waiters = new HashMap<>();
+
+  @Autowired
+  private UserEventDao userEventDao;
+
+  /**
+   * Ожидать изменения количества непрочитанных уведомлений пользователя
+   *
+   * @param userId     идентификационный номер пользователя
+   * @param knownCount количество, которое уже видел клиент, или -1
+   * @return результат с количеством непрочитанных уведомлений
+   */
+  public DeferredResult<Map<String, Object>> await(final int userId, int knownCount) {
+    final DeferredResult<Map<String, Object>> result = new DeferredResult<>(TIMEOUT);
+
+    addWaiter(userId, result, knownCount);
+
+    result.onCompletion(new Runnable() {
+      @Override
+      public void run() {
+        removeWaiter(userId, result);
+      }
+    });
+
+    // счетчик проверяем после регистрации, иначе можно пропустить изменение
+    final int count = userEventDao.getUnreadCount(userId);
+
+    result.onTimeout(new Runnable() {
+      @Override
+      public void run() {
+        result.setResult(getState(count));
+      }
+    });
+
+    if (count != knownCount) {
+      removeWaiter(userId, result);
+      result.setResult(getState(count));
+    }
+
+    return result;
+  }
+
+  /**
+   * Уведомления пользователей изменились; ожидающие клиенты, у которых
+   * количество отличается от нового, получают его
+   */
+  public void notifyUsers(Iterable<Integer> userIds) {
+    for (int userId : userIds) {
+      if (getWaitersCount(userId) == 0) {
+        continue;
+      }
+
+      int count = userEventDao.getUnreadCount(userId);
+
+      List<DeferredResult<Map<String, Object>>> changed = new ArrayList<>();
+
+      synchronized (waiters) {
+        Map<DeferredResult<Map<String, Object>>, Integer> userWaiters = waiters.get(userId);
+
+        if (userWaiters == null) {
+          continue;
+        }
+
+        Iterator<Map.Entry<DeferredResult<Map<String, Object>>, Integer>> it = userWaiters.entrySet().iterator();
+
+        while (it.hasNext()) {
+          Map.Entry<DeferredResult<Map<String, Object>>, Integer> waiter = it.next();
+
+          if (waiter.getValue() != count) {
+            changed.add(waiter.getKey());
+            it.remove();
+          }
+        }
+
+        if (userWaiters.isEmpty()) {
+          waiters.remove(userId);
+        }
+      }
+
+      Map<String, Object> state = getState(count);
+
+      for (DeferredResult<Map<String, Object>> result : changed) {
+        result.setResult(state);
+      }
+    }
+  }
+
+  /**
+   * То же, что notifyUsers, но внутри транзакции - после ее фиксации,
+   * чтобы клиент прочитал уже обновленный счетчик
+   */
+  public void notifyUsersAfterCommit(Iterable<Integer> userIds) {
+    final ImmutableList<Integer> users = ImmutableList.copyOf(userIds);
+
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+        @Override
+        public void afterCommit() {
+          notifyUsers(users);
+        }
+      });
+    } else {
+      notifyUsers(users);
+    }
+  }
+
+  int getWaitersCount(int userId) {
+    synchronized (waiters) {
+      Map<DeferredResult<Map<String, Object>>, Integer> userWaiters = waiters.get(userId);
+
+      return userWaiters == null ? 0 : userWaiters.size();
+    }
+  }
+
+  int getWaitingUsersCount() {
+    synchronized (waiters) {
+      return waiters.size();
+    }
+  }
+
+  private void addWaiter(int userId, DeferredResult<Map<String, Object>> result, int knownCount) {
+    synchronized (waiters) {
+      Map<DeferredResult<Map<String, Object>>, Integer> userWaiters = waiters.get(userId);
+
+      if (userWaiters == null) {
+        userWaiters = new HashMap<>();
+        waiters.put(userId, userWaiters);
+      }
+
+      userWaiters.put(result, knownCount);
+    }
+  }
+
+  private void removeWaiter(int userId, DeferredResult<Map<String, Object>> result) {
+    synchronized (waiters) {
+      Map<DeferredResult<Map<String, Object>>, Integer> userWaiters = waiters.get(userId);
+
+      if (userWaiters != null) {
+        userWaiters.remove(result);
+
+        if (userWaiters.isEmpty()) {
+          waiters.remove(userId);
+        }
+      }
+    }
+  }
+
+  private static Map<String, Object> getState(int count) {
+    return ImmutableMap.<String, Object>of("count", count);
+  }
+}
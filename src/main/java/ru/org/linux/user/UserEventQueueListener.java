@@ -0,0 +1,104 @@
+/*
+ * Copyright 1998-2012 Linux.org.ru
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.org.linux.user;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import ru.org.linux.user.UserEventQueueSender.FanoutMessage;
+
+/**
+ * Рассылка уведомлений из очереди.
+ *
+ * Считает задержку от постановки в очередь до записи уведомлений в базу.
+ */
+@Component
+public class UserEventQueueListener {
+  private static final Log logger = LogFactory.getLog(UserEventQueueListener.class);
+
+  private static final int SLOW_FANOUT = 60 * 1000;
+
+  @Autowired
+  private UserEventService userEventService;
+
+  private long processed = 0;
+  private long recipients = 0;
+  private long totalLatency = 0;
+  private long maxLatency = 0;
+  private long lastLatency = 0;
+
+  public void handleMessage(FanoutMessage message) {
+    long start = System.currentTimeMillis();
+
+    userEventService.insertEvents(
+            message.getEventType(),
+            message.getUserIds(),
+            message.getTopicId(),
+            message.getCommentId(),
+            message.isNotifyTopic()
+    );
+
+    long now = System.currentTimeMillis();
+    long latency = now - message.getCreated();
+
+    updateStats(message.getUserIds().size(), latency);
+
+    String logmessage = "Fan-out " + message.getEventType() + " topic=" + message.getTopicId() +
+            ": " + message.getUserIds().size() + " recipients in " + (now - start) + " ms, latency " + latency + " ms";
+
+    if (latency > SLOW_FANOUT) {
+      logger.warn(logmessage);
+    } else {
+      logger.debug(logmessage);
+    }
+  }
+
+  private synchronized void updateStats(int count, long latency) {
+    processed++;
+    recipients += count;
+    totalLatency += latency;
+    lastLatency = latency;
+    maxLatency = Math.max(maxLatency, latency);
+  }
+
+  public synchronized long getProcessed() {
+    return processed;
+  }
+
+  public synchronized long getRecipients() {
+    return recipients;
+  }
+
+  public synchronized long getLastLatency() {
+    return lastLatency;
+  }
+
+  public synchronized long getMaxLatency() {
+    return maxLatency;
+  }
+
+  /**
+   * Средняя задержка рассылки в миллисекундах
+   */
+  public synchronized long getAverageLatency() {
+    if (processed == 0) {
+      return 0;
+    }
+
+    return totalLatency / processed;
+  }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 1998-2012 Linux.org.ru
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.org.linux.user;
+
+import com.google.common.collect.ImmutableList;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.jms.core.MessageCreator;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.Nullable;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.Queue;
+import javax.jms.Session;
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Постановка рассылки уведомлений в очередь.
+ *
+ * Если вызов идет внутри транзакции, сообщение отправляется только после ее
+ * фиксации: обработчик очереди должен видеть уже сохраненный топик/комментарий.
+ */
+@Component
+public class UserEventQueueSender {
+  private JmsTemplate jmsTemplate;
+  private Queue queue;
+
+  @Autowired
+  public void setJmsTemplate(JmsTemplate jmsTemplate) {
+    this.jmsTemplate = jmsTemplate;
+  }
+
+  @Autowired
+  public void setQueue(@Qualifier("userEventQueue") Queue queue) {
+    this.queue = queue;
+  }
+
+  /**
+   * Поставить в очередь рассылку уведомлений
+   *
+   * @param eventType     тип уведомления
+   * @param userIds       получатели
+   * @param topicId       идентификационный номер топика
+   * @param commentId     идентификационный номер комментария (null если нет)
+   * @param notifyTopic   отметить получателей как оповещенных по топику
+   */
+  public void send(String eventType, Iterable<Integer> userIds, int topicId, @Nullable Integer commentId, boolean notifyTopic) {
+    ImmutableList<Integer> users = ImmutableList.copyOf(userIds);
+
+    if (users.isEmpty()) {
+      return;
+    }
+
+    final FanoutMessage message = new FanoutMessage(eventType, users, topicId, commentId, notifyTopic);
+
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+        @Override
+        public void afterCommit() {
+          doSend(message);
+        }
+      });
+    } else {
+      doSend(message);
+    }
+  }
+
+  private void doSend(final FanoutMessage message) {
+    jmsTemplate.send(queue, new MessageCreator() {
+      @Override
+      public Message createMessage(Session session) throws JMSException {
+        return session.createObjectMessage(message);
+      }
+    });
+  }
+
+  public static class FanoutMessage implements Serializable {
+    private final String eventType;
+    private final List<Integer> userIds;
+    private final int topicId;
+    private final Integer commentId;
+    private final boolean notifyTopic;
+    private final long created;
+
+    private static final long serialVersionUID = -3146127830815329215L;
+
+    public FanoutMessage(String eventType, List<Integer> userIds, int topicId, @Nullable Integer commentId, boolean notifyTopic) {
+      this.eventType = eventType;
+      this.userIds = userIds;
+      this.topicId = topicId;
+      this.commentId = commentId;
+      this.notifyTopic = notifyTopic;
+      created = System.currentTimeMillis();
+    }
+
+    public String getEventType() {
+      return eventType;
+    }
+
+    public List<Integer> getUserIds() {
+      return userIds;
+    }
+
+    public int getTopicId() {
+      return topicId;
+    }
+
+    @Nullable
+    public Integer getCommentId() {
+      return commentId;
+    }
+
+    public boolean isNotifyTopic() {
+      return notifyTopic;
+    }
+
+    /**
+     * Время постановки в очередь
+     */
+    public long getCreated() {
+      return created;
+    }
+  }
+}
@@ -15,6 +15,7 @@
 
 package ru.org.linux.user;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -22,6 +23,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.context.request.async.DeferredResult;
 import ru.org.linux.group.Group;
 import ru.org.linux.group.GroupDao;
 import ru.org.linux.site.DeleteInfo;
@@ -30,8 +32,11 @@ import ru.org.linux.spring.dao.MessageText;
 import ru.org.linux.spring.dao.MsgbaseDao;
 import ru.org.linux.util.bbcode.LorCodeService;
 
+import javax.annotation.Nullable;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import static ru.org.linux.user.UserEventFilterEnum.*;
@@ -58,6 +63,12 @@ public class UserEventService {
   @Autowired
   private GroupDao groupDao;
 
+  @Autowired
+  private UserEventQueueSender userEventQueueSender;
+
+  @Autowired
+  private UserEventNotifier userEventNotifier;
+
 
   /**
    * @param events      список событий
@@ -71,15 +82,10 @@ public class UserEventService {
     for (UserEvent event : events) {
       String text;
       if (readMessage) {
-        MessageText messageText;
+        int msgid = event.isComment() ? event.getCid() : event.getMsgid();
+        MessageText messageText = msgbaseDao.getMessageText(msgid);
 
-        if (event.isComment()) {
-          messageText = msgbaseDao.getMessageText(event.getCid());
-        } else { // Топик
-          messageText = msgbaseDao.getMessageText(event.getMsgid());
-        }
-
-        text = lorCodeService.prepareTextRSS(messageText.getText(), secure, messageText.isLorcode());
+        text = lorCodeService.prepareTextRSS(msgid, messageText.getText(), secure, messageText.isLorcode());
       } else {
         text = null;
       }
@@ -123,16 +129,13 @@ public class UserEventService {
    * @param commentId идентификационный номер комментария
    */
   public void addUserRefEvent(Iterable<User> users, int topicId, int commentId) {
+    List<Integer> userIds = new ArrayList<>();
+
     for (User user : users) {
-      userEventDao.addEvent(
-        REFERENCE.getType(),
-        user.getId(),
-        false,
-        topicId,
-        commentId,
-        null
-      );
+      userIds.add(user.getId());
     }
+
+    userEventQueueSender.send(REFERENCE.getType(), userIds, topicId, commentId, false);
   }
 
   /**
@@ -141,20 +144,8 @@ public class UserEventService {
    * @param users   список пользователей. которых надо оповестить
    * @param topicId идентификационный номер топика
    */
-  @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
   public void addUserRefEvent(Iterable<Integer> users, int topicId) {
-    userEventDao.insertTopicNotification(topicId, users);
-
-    for (int user : users) {
-      userEventDao.addEvent(
-        REFERENCE.getType(),
-        user,
-        false,
-        topicId,
-        null,
-        null
-      );
-    }
+    userEventQueueSender.send(REFERENCE.getType(), users, topicId, null, true);
   }
 
   public Set<Integer> getNotifiedUsers(int topicId) {
@@ -169,14 +160,9 @@ public class UserEventService {
    * @param commentId
    */
   public void addReplyEvent(User parentAuthor, int topicId, int commentId) {
-    userEventDao.addEvent(
-      ANSWERS.getType(),
-      parentAuthor.getId(),
-      false,
-      topicId,
-      commentId,
-      null
-    );
+    userEventDao.addEvents(ANSWERS.getType(), ImmutableList.of(parentAuthor.getId()), topicId, commentId);
+
+    userEventNotifier.notifyUsersAfterCommit(ImmutableList.of(parentAuthor.getId()));
   }
 
   /**
@@ -185,20 +171,44 @@ public class UserEventService {
    * @param userIdList  список ID пользователей, которых надо оповестить
    * @param topicId     идентификационный номер топика
    */
-  @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
   public void addUserTagEvent(Iterable<Integer> userIdList, int topicId) {
-    userEventDao.insertTopicNotification(topicId, userIdList);
-
-    for (int userId : userIdList) {
-      userEventDao.addEvent(
-        TAG.getType(),
-        userId,
-        false,
-        topicId,
-        null,
-        null
-      );
+    userEventQueueSender.send(TAG.getType(), userIdList, topicId, null, true);
+  }
+
+  /**
+   * Запись уведомлений, поставленных в очередь через UserEventQueueSender.
+   * Сообщение может быть доставлено повторно: уже записанные уведомления
+   * и отметки об оповещении по топику пропускаются.
+   *
+   * @param eventType   тип уведомления
+   * @param userIds     список ID пользователей, которых надо оповестить
+   * @param topicId     идентификационный номер топика
+   * @param commentId   идентификационный номер комментария (null если нет)
+   * @param notifyTopic отметить пользователей как оповещенных по топику
+   */
+  @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
+  public void insertEvents(String eventType, List<Integer> userIds, int topicId, @Nullable Integer commentId, boolean notifyTopic) {
+    List<Integer> recipients = userIds;
+
+    if (notifyTopic) {
+      // между отправкой в очередь и записью пользователя могли оповестить
+      // другим сообщением, а это сообщение могло быть доставлено повторно
+      Set<Integer> fresh = new LinkedHashSet<>(userIds);
+
+      fresh.removeAll(getNotifiedUsers(topicId));
+
+      if (fresh.isEmpty()) {
+        return;
+      }
+
+      recipients = ImmutableList.copyOf(fresh);
+
+      userEventDao.insertTopicNotification(topicId, recipients);
     }
+
+    userEventDao.addEvents(eventType, recipients, topicId, commentId);
+
+    userEventNotifier.notifyUsersAfterCommit(recipients);
   }
 
   /**
@@ -207,11 +217,10 @@ public class UserEventService {
    * @param maxEventsPerUser максимальное количество уведомлений для одного пользователя
    */
   public void cleanupOldEvents(final int maxEventsPerUser) {
-    List<Integer> oldEventsList = userEventDao.getUserIdListByOldEvents(maxEventsPerUser);
+    int deleted = userEventDao.cleanupOldEvents(maxEventsPerUser);
 
-    for (int userId : oldEventsList) {
-      logger.info("Cleaning up messages for userid=" + userId);
-      userEventDao.cleanupOldEvents(userId, maxEventsPerUser);
+    if (deleted > 0) {
+      logger.info("Cleaned up " + deleted + " old user events");
     }
   }
 
@@ -221,17 +230,19 @@ public class UserEventService {
    * @param user        пользователь
    * @param showPrivate включать ли приватные
    * @param topics      кол-во уведомлений
-   * @param offset      сдвиг относительно начала
+   * @param cursorId    id уведомления, от которого начинается страница (null - с начала)
+   * @param newer       true - уведомления новее курсора, false - старее
    * @param eventFilter тип уведомлений
-   * @return список уведомлений
+   * @return список уведомлений, от новых к старым
    */
-  public List<UserEvent> getRepliesForUser(User user, boolean showPrivate, int topics, int offset,
+  public List<UserEvent> getRepliesForUser(User user, boolean showPrivate, int topics,
+                                           @Nullable Integer cursorId, boolean newer,
                                            UserEventFilterEnum eventFilter) {
     String eventFilterType = null;
     if (eventFilter != ALL) {
       eventFilterType = eventFilter.getType();
     }
-    return userEventDao.getRepliesForUser(user.getId(), showPrivate, topics, offset, eventFilterType);
+    return userEventDao.getRepliesForUser(user.getId(), showPrivate, topics, cursorId, newer, eventFilterType);
   }
 
   /**
@@ -241,6 +252,19 @@ public class UserEventService {
    */
   public void resetUnreadReplies(User user) {
     userEventDao.resetUnreadReplies(user.getId());
+
+    userEventNotifier.notifyUsers(ImmutableList.of(user.getId()));
+  }
+
+  /**
+   * Ожидание изменения счетчика непрочитанных уведомлений.
+   *
+   * @param user       пользователь
+   * @param knownCount количество непрочитанных уведомлений, известное клиенту
+   * @return отложенный результат с количеством непрочитанных уведомлений
+   */
+  public DeferredResult<Map<String, Object>> waitUnreadCount(User user, int knownCount) {
+    return userEventNotifier.await(user.getId(), knownCount);
   }
 
   public void processTopicDeleted(int msgid) {
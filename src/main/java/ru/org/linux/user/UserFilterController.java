@@ -30,13 +30,13 @@ import ru.org.linux.site.BadInputException;
 import ru.org.linux.site.Template;
 import ru.org.linux.tag.TagNotFoundException;
 import ru.org.linux.tag.TagService;
+import ru.org.linux.util.IntSet;
 
 import javax.servlet.ServletRequest;
 import javax.servlet.http.HttpServletRequest;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 @Controller
 public class UserFilterController {
@@ -93,8 +93,10 @@ public class UserFilterController {
   private Map<Integer, Remark> getIgnoreRemarks(User currentUser, Iterable<User> users) {
     ImmutableMap.Builder<Integer, Remark> builder = ImmutableMap.builder();
 
+    RemarkMap remarks = userDao.getRemarks(currentUser);
+
     for (User user : users) {
-      Remark remark = userDao.getRemark(currentUser, user);
+      Remark remark = remarks.get(user.getId());
 
       if (remark!=null) {
         builder.put(user.getId(), remark);
@@ -104,10 +106,10 @@ public class UserFilterController {
     return builder.build();
   }
 
-  private Map<Integer, User> createIgnoreMap(Set<Integer> ignoreList) {
+  private Map<Integer, User> createIgnoreMap(IntSet ignoreList) {
     Map<Integer, User> ignoreMap = new HashMap<>(ignoreList.size());
 
-    for (int id : ignoreList) {
+    for (int id : ignoreList.toArray()) {
       ignoreMap.put(id, userDao.getUserCached(id));
     }
 
@@ -135,7 +137,7 @@ public class UserFilterController {
       throw new BadInputException("нельзя игнорировать самого себя");
     }
 
-    Set<Integer> ignoreSet = ignoreListDao.get(user);
+    IntSet ignoreSet = ignoreListDao.get(user);
 
     if (!ignoreSet.contains(addUser.getId())) {
       ignoreListDao.addUser(user, addUser);
@@ -20,11 +20,14 @@ import com.google.common.collect.ImmutableMap;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.dao.DuplicateKeyException;
 import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Repository;
+import ru.org.linux.util.IntSet;
 
 import javax.sql.DataSource;
 import java.sql.ResultSet;
@@ -48,6 +51,7 @@ public class UserTagDao {
    * @param tagId      идентификационный номер тега
    * @param isFavorite выбирать фаворитные теги (true) или игнорируемые (false)
    */
+  @CacheEvict(value="UserTags", key="#userId + ':' + #isFavorite")
   public void addTag(int userId, int tagId, boolean isFavorite) {
     MapSqlParameterSource parameters = new MapSqlParameterSource();
     parameters.addValue("user_id", userId);
@@ -71,6 +75,7 @@ public class UserTagDao {
    * @param tagId      идентификационный номер тега
    * @param isFavorite выбирать фаворитные теги (true) или игнорируемые (false)
    */
+  @CacheEvict(value="UserTags", key="#userId + ':' + #isFavorite")
   public void deleteTag(int userId, int tagId, boolean isFavorite) {
     MapSqlParameterSource parameters = new MapSqlParameterSource();
     parameters.addValue("user_id", userId);
@@ -88,6 +93,7 @@ public class UserTagDao {
    *
    * @param tagId идентификационный номер тега
    */
+  @CacheEvict(value="UserTags", allEntries=true)
   public void deleteTags(int tagId) {
     MapSqlParameterSource parameters = new MapSqlParameterSource();
     parameters.addValue("tag_id", tagId);
@@ -124,6 +130,28 @@ public class UserTagDao {
     return tags.build();
   }
 
+  /**
+   * Получить идентификаторы всех тегов пользователя.
+   *
+   * @param userId     идентификационный номер пользователя
+   * @param isFavorite выбирать фаворитные теги (true) или игнорируемые (false)
+   * @return множество идентификаторов тегов
+   */
+  @Cacheable(value="UserTags", key="#userId + ':' + #isFavorite")
+  public IntSet getTagIds(int userId, boolean isFavorite) {
+    MapSqlParameterSource parameters = new MapSqlParameterSource();
+    parameters.addValue("user_id", userId);
+    parameters.addValue("is_favorite", isFavorite);
+
+    List<Integer> tags = jdbcTemplate.queryForList(
+      "SELECT tag_id FROM user_tags WHERE user_id=:user_id AND is_favorite=:is_favorite",
+      parameters,
+      Integer.class
+    );
+
+    return IntSet.of(tags);
+  }
+
   /**
    * Получить список ID пользователей, у которых в профиле есть перечисленные фаворитные теги.
    *
@@ -154,6 +182,7 @@ public class UserTagDao {
    * @param oldTagId идентификационный номер старого тега
    * @param newTagId идентификационный номер нового тега
    */
+  @CacheEvict(value="UserTags", allEntries=true)
   public void replaceTag(int oldTagId, int newTagId) {
     MapSqlParameterSource parameters = new MapSqlParameterSource();
     parameters.addValue("new_tag_id", newTagId);
@@ -55,6 +55,11 @@ public class UserTagService {
     @Override
     public void reCalculateAllCounters() {
     }
+
+    @Override
+    public int repairCounters(int fromTagId, int toTagId) {
+      return 0;
+    }
   };
 
   @Autowired
@@ -31,6 +31,7 @@ import ru.org.linux.section.SectionService;
 import ru.org.linux.site.Template;
 import ru.org.linux.topic.TopicPermissionService;
 import ru.org.linux.util.bbcode.LorCodeService;
+import ru.org.linux.util.IntSet;
 
 import javax.servlet.ServletRequest;
 import javax.servlet.http.HttpServletRequest;
@@ -38,7 +39,6 @@ import javax.servlet.http.HttpServletResponse;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.util.List;
-import java.util.Set;
 
 @Controller
 public class WhoisController {
@@ -111,11 +111,11 @@ public class WhoisController {
     mv.getModel().put("currentUser", currentUser);
 
     if (tmpl.isSessionAuthorized() && !currentUser) {
-      Set<Integer> ignoreList = ignoreListDao.get(tmpl.getCurrentUser());
+      IntSet ignoreList = ignoreListDao.get(tmpl.getCurrentUser());
 
       mv.getModel().put("ignored", ignoreList.contains(user.getId()));
 
-      mv.getModel().put("remark", userDao.getRemark(tmpl.getCurrentUser() , user) );
+      mv.getModel().put("remark", userDao.getRemarks(tmpl.getCurrentUser()).get(user.getId()));
     }
 
     if (tmpl.isSessionAuthorized() && currentUser) {
@@ -19,10 +19,11 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.xbill.DNS.*;
 
+import java.io.IOException;
 import java.net.UnknownHostException;
 import java.util.StringTokenizer;
 
-public class DNSBLClient {
+public class DNSBLClient implements DNSBLResolver {
   public static final int DNSBL_TIMEOUT_SEC = 10;
 
   private static final Log logger = LogFactory.getLog(DNSBLClient.class);
@@ -31,14 +32,23 @@ public class DNSBLClient {
   private final String zone;
 
   public DNSBLClient(String zone) throws UnknownHostException {
+    this(zone, DNSBL_TIMEOUT_SEC);
+  }
+
+  public DNSBLClient(String zone, int timeout) throws UnknownHostException {
     resolver = new ExtendedResolver();
-    resolver.setTimeout(DNSBL_TIMEOUT_SEC);
+    resolver.setTimeout(timeout);
     this.zone = zone;
   }
 
-  public boolean checkIP(String addr) throws TextParseException {
+  public boolean checkIP(String addr) throws IOException {
+    return lookup(addr) != NOT_LISTED;
+  }
+
+  @Override
+  public int lookup(String addr) throws IOException {
     if (addr.equals("127.0.0.1")) {
-      return false;
+      return NOT_LISTED;
     }
 
     String query = invertIPAddress(addr)+ '.' +zone;
@@ -50,14 +60,24 @@ public class DNSBLClient {
 
     Record[] r = lookup.run();
 
+    switch (lookup.getResult()) {
+      case Lookup.SUCCESSFUL:
+        break;
+      case Lookup.HOST_NOT_FOUND:
+      case Lookup.TYPE_NOT_FOUND:
+        return NOT_LISTED;
+      default:
+        throw new IOException("DNSBL lookup failed for "+query+": "+lookup.getErrorString());
+    }
+
     if (r==null || r.length==0) {
-      return false;
+      return NOT_LISTED;
     }
 
     logger.info("DNSBL: found "+addr+" in DNSBL: "+r[0]);
 
     // TODO: check what we really got ;-)
-    return true;
+    return (int) Math.min(Integer.MAX_VALUE, r[0].getTTL());
   }
 
   private static String invertIPAddress(String originalIPAddress) {
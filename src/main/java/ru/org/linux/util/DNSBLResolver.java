@@ -0,0 +1,32 @@
+/*
+ * Copyright 1998-2012 Linux.org.ru
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.org.linux.util;
+
+import java.io.IOException;
+
+/**
+ * Проверка адреса по DNSBL
+ */
+public interface DNSBLResolver {
+  int NOT_LISTED = -1;
+
+  /**
+   * @param addr IP адрес
+   * @return время жизни записи в секундах, если адрес в списке, иначе NOT_LISTED
+   * @throws IOException если DNS сервер не ответил
+   */
+  int lookup(String addr) throws IOException;
+}
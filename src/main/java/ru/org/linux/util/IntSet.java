@@ -0,0 +1,121 @@
+/*
+ * Copyright 1998-2012 Linux.org.ru
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.org.linux.util;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Неизменяемое множество int на отсортированном массиве.
+ *
+ * Занимает 4 байта на элемент вместо объекта Integer и узла хеш-таблицы,
+ * поиск - двоичный.
+ */
+public final class IntSet implements Serializable {
+  private static final long serialVersionUID = -4119245227384512650L;
+
+  public static final IntSet EMPTY = new IntSet(new int[0]);
+
+  private final int[] values;
+
+  private IntSet(int[] values) {
+    this.values = values;
+  }
+
+  public static IntSet of(Collection<Integer> values) {
+    if (values.isEmpty()) {
+      return EMPTY;
+    }
+
+    int[] array = new int[values.size()];
+
+    int i = 0;
+    for (Integer value : values) {
+      array[i++] = value;
+    }
+
+    return of(array);
+  }
+
+  /**
+   * @param values значения, массив копируется
+   */
+  public static IntSet of(int... values) {
+    if (values.length == 0) {
+      return EMPTY;
+    }
+
+    int[] array = values.clone();
+    Arrays.sort(array);
+
+    int size = 0;
+    for (int i = 0; i < array.length; i++) {
+      if (i == 0 || array[i] != array[size - 1]) {
+        array[size++] = array[i];
+      }
+    }
+
+    return new IntSet(size == array.length ? array : Arrays.copyOf(array, size));
+  }
+
+  public boolean contains(int value) {
+    return Arrays.binarySearch(values, value) >= 0;
+  }
+
+  /**
+   * @return true если множества пересекаются
+   */
+  public boolean containsAny(IntSet other) {
+    IntSet small = values.length <= other.values.length ? this : other;
+    IntSet large = small == this ? other : this;
+
+    for (int value : small.values) {
+      if (large.contains(value)) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  public int size() {
+    return values.length;
+  }
+
+  public boolean isEmpty() {
+    return values.length == 0;
+  }
+
+  public int[] toArray() {
+    return values.clone();
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    return this == o || o instanceof IntSet && Arrays.equals(values, ((IntSet) o).values);
+  }
+
+  @Override
+  public int hashCode() {
+    return Arrays.hashCode(values);
+  }
+
+  @Override
+  public String toString() {
+    return Arrays.toString(values);
+  }
+}
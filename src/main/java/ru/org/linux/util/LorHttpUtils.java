@@ -17,6 +17,7 @@ package ru.org.linux.util;
 
 import java.util.Properties;
 
+import javax.annotation.Nullable;
 import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletRequest;
 
@@ -24,6 +25,26 @@ public final class LorHttpUtils {
   private LorHttpUtils() {
   }
 
+  /**
+   * Значение cookie без разбора остальных cookie запроса
+   *
+   * @return значение или null, если такой cookie нет
+   */
+  @Nullable
+  public static String getCookie(@Nullable Cookie[] cookies, String name) {
+    if (cookies == null) {
+      return null;
+    }
+
+    for (Cookie cookie : cookies) {
+      if (name.equals(cookie.getName())) {
+        return cookie.getValue();
+      }
+    }
+
+    return null;
+  }
+
   public static Properties getCookies(Cookie[] cookies) {
     Properties c = new Properties();
 
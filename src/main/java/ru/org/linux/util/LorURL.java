@@ -278,6 +278,20 @@ public class LorURL extends URI {
 
       Group group = messageDao.getGroup(message);
 
+      return formatJump(group.getUrl(), secure);
+    }
+    return "";
+  }
+
+  /**
+   * Получить url для редиректа на топик или комментарий по известному url группы
+   * @param groupUrl url группы топика
+   * @param secure https ли текуший клиент
+   * @return url для редиректа или пустая строка
+   * @throws URIException если url неправильный
+   */
+  public String formatJump(String groupUrl, boolean secure) throws URIException {
+    if(_topic_id != -1) {
       String scheme;
       if(secure) {
         scheme = "https";
@@ -286,7 +300,7 @@ public class LorURL extends URI {
       }
       String host = getHost();
       int port = getPort();
-      String path = group.getUrl() + _topic_id;
+      String path = groupUrl + _topic_id;
       String query = "";
       if(_comment_id != -1) {
         query = "cid=" + _comment_id;
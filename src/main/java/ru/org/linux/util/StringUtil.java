@@ -113,38 +113,57 @@ public final class StringUtil {
    * @return отэкранированная строка
    */
   public static String escapeHtml(String str) {
-    StringBuilder res = new StringBuilder();
+    StringBuilder res = new StringBuilder(str.length());
 
-    for (int i = 0; i < str.length(); i++) {
-      switch (str.charAt(i)) {
+    escapeHtml(str, 0, str.length(), res);
+
+    return res.toString();
+  }
+
+  /**
+   * Экранируем управляющие html символьные последовательности, кроме &#NNNN;
+   * Результат дописывается в out, промежуточных строк не создается
+   *
+   * @param str сырая строка
+   * @param start начало экранируемого фрагмента
+   * @param end конец экранируемого фрагмента
+   * @param out буфер для результата
+   */
+  public static void escapeHtml(CharSequence str, int start, int end, StringBuilder out) {
+    Matcher m = null;
+
+    for (int i = start; i < end; i++) {
+      char c = str.charAt(i);
+
+      switch (c) {
         case '<':
-          res.append("&lt;");
+          out.append("&lt;");
           break;
         case '>':
-          res.append("&gt;");
+          out.append("&gt;");
           break;
         case '\"':
-          res.append("&quot;");
+          out.append("&quot;");
           break;
         case '&':
-          Matcher m = uniRE.matcher(str.substring(i));
-          if (m.find()) {
-              String s = m.group();
-              res.append(s);
-              i+=s.length()-1;
-              continue;
+          if (m == null) {
+            m = uniRE.matcher(str);
+          }
+
+          m.region(i, end);
+
+          if (m.lookingAt()) {
+            out.append(str, i, m.end());
+            i = m.end() - 1;
           } else {
-            res.append("&amp;");
+            out.append("&amp;");
           }
 
           break;
         default:
-          res.append(str.charAt(i));
+          out.append(c);
       }
-
     }
-
-    return res.toString();
   }
 
   /**
@@ -16,6 +16,8 @@
 
 package ru.org.linux.util.bbcode;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import org.apache.commons.httpclient.URI;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -27,11 +29,24 @@ import ru.org.linux.util.bbcode.nodes.RootNode;
 import ru.org.linux.util.formatter.ToHtmlFormatter;
 
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class LorCodeService {
   private static final Parser defaultParser = new Parser(new DefaultParserParameters());
 
+  /**
+   * Производные представления сообщений (og:description и RSS) по id сообщения.
+   * Вместе с представлениями хранится исходный текст: после правки
+   * он не совпадет и сообщение будет разобрано заново. В HTML попадают
+   * заголовки и состояние топиков по ссылкам, они меняются без правки текста,
+   * поэтому запись живет ограниченное время с момента разбора
+   */
+  private final Cache<Integer, RenderedText> renderCache = CacheBuilder.newBuilder()
+          .maximumSize(2000)
+          .expireAfterWrite(10, TimeUnit.MINUTES)
+          .build();
+
   private UserDao userDao;
   private Configuration configuration;
   private ToHtmlFormatter toHtmlFormatter;
@@ -51,6 +66,16 @@ public class LorCodeService {
     this.toHtmlFormatter = toHtmlFormatter;
   }
 
+  /**
+   * Заранее загрузить заголовки топиков, на которые ссылается текст,
+   * чтобы при выводе ссылок не было отдельного запроса на каждую
+   */
+  private void prefetchMessageLinks(String text) {
+    if (toHtmlFormatter != null) {
+      toHtmlFormatter.prefetchMessageLinks(text);
+    }
+  }
+
   /**
    * Преобразует LORCODE в HTML для комментариев
    * тэги [cut] не отображаются никак
@@ -61,13 +86,10 @@ public class LorCodeService {
    * @return HTML
    */
   public String parseComment(String text, boolean secure, boolean nofollow) {
+    prefetchMessageLinks(text);
     return defaultParser.parseRoot(prepareCommentRootNode(secure, false, nofollow), text).renderXHtml();
   }
 
-  public String parseCommentRSS(String text, boolean secure) {
-    return defaultParser.parseRoot(prepareCommentRootNode(secure, true, false), text).renderXHtml();
-  }
-
   /**
    * Получить og:description из LORCODE текста. Тоесть только текст и без содержимого [code]
    * @param text обрабатываемый текст
@@ -77,6 +99,56 @@ public class LorCodeService {
     return defaultParser.parseRoot(prepareCommentRootNode(false, true, false), text).renderOg();
   }
 
+  /**
+   * Получить og:description сообщения, используя кеш производных представлений
+   * @param msgid id сообщения
+   * @param text обрабатываемый текст
+   * @return og:description
+   */
+  public String parseForOgDescription(int msgid, String text) {
+    return getRenderedText(msgid, text).getOgDescription();
+  }
+
+  /**
+   * Получить RSS представление LORCODE сообщения, используя кеш производных представлений
+   * @param msgid id сообщения
+   * @param text LORCODE
+   * @param secure является ли текущее соединение secure
+   * @return HTML
+   */
+  public String parseCommentRSS(int msgid, String text, boolean secure) {
+    return getRenderedText(msgid, text).getRss(secure);
+  }
+
+  private RenderedText getRenderedText(int msgid, String text) {
+    RenderedText rendered = renderCache.getIfPresent(msgid);
+
+    if (rendered == null || !rendered.getText().equals(text)) {
+      rendered = renderText(text);
+      renderCache.put(msgid, rendered);
+    }
+
+    return rendered;
+  }
+
+  /**
+   * Все производные представления за один разбор текста: og:description
+   * и RSS для обычного и secure соединений
+   */
+  RenderedText renderText(String text) {
+    prefetchMessageLinks(text);
+
+    RootNode rootNode = defaultParser.parseRoot(prepareCommentRootNode(false, true, false), text);
+
+    String ogDescription = rootNode.renderOg();
+    String rss = rootNode.renderXHtml();
+
+    rootNode.setSecure(true);
+    String rssSecure = rootNode.renderXHtml();
+
+    return new RenderedText(text, ogDescription, rss, rssSecure);
+  }
+
   /**
    * Проверяем комментарий на отсутствие текста
    * @param msg текст
@@ -92,6 +164,7 @@ public class LorCodeService {
    * @return множество пользователей
    */
   public Set<User> getReplierFromMessage(String text) {
+    prefetchMessageLinks(text);
     RootNode rootNode = defaultParser.parseRoot(prepareCommentRootNode(false, false, false), text);
     rootNode.renderXHtml();
     return rootNode.getReplier();
@@ -105,6 +178,7 @@ public class LorCodeService {
    * @return HTML
    */
   public String parseTopicWithMinimizedCut(String text, String cutURL, boolean secure, boolean nofollow) {
+    prefetchMessageLinks(text);
     return defaultParser.parseRoot(prepareTopicRootNode(true, cutURL, secure, nofollow), text).renderXHtml();
   }
   /**
@@ -116,6 +190,7 @@ public class LorCodeService {
    * @return HTML
    */
   public String parseTopic(String text, boolean secure, boolean nofollow) {
+    prefetchMessageLinks(text);
     return defaultParser.parseRoot(prepareTopicRootNode(false, null, secure, nofollow), text).renderXHtml();
   }
 
@@ -156,11 +231,37 @@ public class LorCodeService {
     return rootNode;
   }
   
-  public String prepareTextRSS(String text, boolean secure, boolean lorcode) {
+  public String prepareTextRSS(int msgid, String text, boolean secure, boolean lorcode) {
     if (lorcode) {
-      return parseCommentRSS(text, secure);
+      return parseCommentRSS(msgid, text, secure);
     } else {
       return "<p>" + text + "</p>";
     }
   }
+
+  static class RenderedText {
+    private final String text;
+    private final String ogDescription;
+    private final String rss;
+    private final String rssSecure;
+
+    RenderedText(String text, String ogDescription, String rss, String rssSecure) {
+      this.text = text;
+      this.ogDescription = ogDescription;
+      this.rss = rss;
+      this.rssSecure = rssSecure;
+    }
+
+    String getText() {
+      return text;
+    }
+
+    String getOgDescription() {
+      return ogDescription;
+    }
+
+    String getRss(boolean secure) {
+      return secure ? rssSecure : rss;
+    }
+  }
 }
@@ -397,6 +397,7 @@ public class Parser {
     public ParserAutomatonState(RootNode rootNode, ParserParameters parserParameters) {
       this.rootNode = rootNode;
       allTagsNames = parserParameters.getAllTagsNames();
+      rootNode.setTypoChanger(changer);
     }
 
     public void processTagMatcher(Matcher match) {
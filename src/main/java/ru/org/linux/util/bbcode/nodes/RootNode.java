@@ -43,6 +43,7 @@ import ru.org.linux.user.User;
 import ru.org.linux.user.UserDao;
 import ru.org.linux.util.bbcode.ParserParameters;
 import ru.org.linux.util.bbcode.ParserParameters.CutType;
+import ru.org.linux.util.formatter.RuTypoChanger;
 import ru.org.linux.util.formatter.ToHtmlFormatter;
 
 import java.util.HashSet;
@@ -62,6 +63,7 @@ public class RootNode extends Node {
   private boolean secure;
   private boolean rss;
   private boolean nofollow = false;
+  private RuTypoChanger typoChanger;
 
   public RootNode(ParserParameters parserParameters) {
     super(parserParameters);
@@ -120,6 +122,14 @@ public class RootNode extends Node {
     this.nofollow = nofollow;
   }
 
+  /**
+   * Типограф, с которым разбирался текст. Сбрасывается перед каждым выводом,
+   * чтобы одно дерево можно было выводить несколько раз с разными параметрами
+   */
+  public void setTypoChanger(RuTypoChanger typoChanger) {
+    this.typoChanger = typoChanger;
+  }
+
   public void addReplier(User nick) {
     replier.add(nick);
   }
@@ -155,6 +165,12 @@ public class RootNode extends Node {
 
   @Override
   public String renderXHtml() {
+    cutCount = -1;
+
+    if (typoChanger != null) {
+      typoChanger.reset();
+    }
+
     return renderChildrenXHtml();
   }
 
@@ -39,8 +39,16 @@ public class RuTypoChanger {
 
   private static final char[] PUNCTUATION = {'.', ',', ':', ';', '-', '!', '?', '(', ')'};
 
+  private static final String QUOT_ENTITY = "&quot;";
+
   private int quoteDepth = 0;
-  private String localBuff = "";
+
+  /**
+   * Состояние после предыдущего фрагмента: был ли он пустым и
+   * последний символ в нем, не являющийся кавычкой
+   */
+  private boolean previousEmpty = true;
+  private char previousLastNonQuote = '\0';
 
   private static boolean isQuoteChar(char ch) {
     return ch == QUOTE_SYMBOL ||
@@ -55,7 +63,7 @@ public class RuTypoChanger {
     return false;
   }
 
-  private static char firstNonQuote(String buff, int start) {
+  private static char firstNonQuote(CharSequence buff, int start) {
 
     for (int pt = start - 1; pt >= 0; pt--) {
       if (!isQuoteChar(buff.charAt(pt)))
@@ -64,7 +72,7 @@ public class RuTypoChanger {
     return buff.charAt(0);
   }
 
-  private static char lastNonQuote(String buff, int start) {
+  private static char lastNonQuote(CharSequence buff, int start) {
 
     for (int pt = start + 1; pt < buff.length(); pt++) {
       if (!isQuoteChar(buff.charAt(pt)))
@@ -74,7 +82,7 @@ public class RuTypoChanger {
   }
 
 
-  private static boolean isQuoteOpening(String buff, int position) {
+  private static boolean isQuoteOpening(CharSequence buff, int position) {
     char before, after;
 
     if (position == buff.length() - 1)
@@ -96,10 +104,10 @@ public class RuTypoChanger {
     return true;
   }
 
-  private boolean isQuoteClosing(String buff, int position) {
+  private boolean isQuoteClosing(CharSequence buff, int position) {
     char before, after;
 
-    if (position == 0 && localBuff.equals(""))
+    if (position == 0 && previousEmpty)
       return false;
     else if (position == buff.length() - 1)
       return true;
@@ -107,7 +115,7 @@ public class RuTypoChanger {
     after = lastNonQuote(buff, position);
 
     if (position == 0)
-      before = firstNonQuote(localBuff, localBuff.length());
+      before = previousLastNonQuote;
     else
       before = firstNonQuote(buff, position);
 
@@ -120,20 +128,65 @@ public class RuTypoChanger {
     return true;
   }
 
+  /**
+   * Сбросить состояние, чтобы начать форматирование текста заново
+   */
+  public void reset() {
+    quoteDepth = 0;
+    previousEmpty = true;
+    previousLastNonQuote = '\0';
+  }
+
   /**
    * Делает всякие типографичские штучки (тире и кавычки).
    *
    * @param input
    * @return форматированный текст
    */
-
   public String format(String input) {
+    StringBuilder out = new StringBuilder(input.length());
+
+    format(input, 0, input.length(), out);
+
+    return out.toString();
+  }
+
+  /**
+   * Делает всякие типографичские штучки (тире и кавычки) с фрагментом текста,
+   * результат дописывается в out. Фрагменты без кавычек и сущностей
+   * копируются как есть.
+   *
+   * @param input текст
+   * @param start начало фрагмента
+   * @param end конец фрагмента
+   * @param out буфер для результата
+   */
+  public void format(CharSequence input, int start, int end, StringBuilder out) {
+    if (isPlain(input, start, end)) {
+      out.append(input, start, end);
+
+      previousEmpty = start == end;
+      if (!previousEmpty) {
+        previousLastNonQuote = input.charAt(end - 1);
+      }
+
+      return;
+    }
+
+    StringBuilder buff = new StringBuilder(end - start);
 
-    StringBuffer buff = new StringBuffer(input.replaceAll("&quot;", "\""));
+    for (int i = start; i < end; i++) {
+      if (input.charAt(i) == '&' && regionMatches(input, i, end, QUOT_ENTITY)) {
+        buff.append(QUOTE_SYMBOL);
+        i += QUOT_ENTITY.length() - 1;
+      } else {
+        buff.append(input.charAt(i));
+      }
+    }
 
     for (int iter = 0; iter < buff.length(); iter++) {
       if (buff.charAt(iter) == QUOTE_SYMBOL) {
-        if (isQuoteClosing(buff.toString(), iter) && quoteDepth > 0) {
+        if (isQuoteClosing(buff, iter) && quoteDepth > 0) {
           if (quoteDepth == 1)
             buff.setCharAt(iter, QUOTE_OUT_CLOSE);
           else
@@ -141,7 +194,7 @@ public class RuTypoChanger {
           quoteDepth--;
         }
         else
-        if (isQuoteOpening(buff.toString(), iter)) { //убеждаемся, что всё так
+        if (isQuoteOpening(buff, iter)) { //убеждаемся, что всё так
           if (quoteDepth == 0)
             buff.setCharAt(iter, QUOTE_OUT_OPEN);
           else
@@ -153,15 +206,70 @@ public class RuTypoChanger {
 
     }
 
-    localBuff = buff.toString();
-    input = buff.toString().replaceAll("(''|\")", "&quot;");
+    previousEmpty = buff.length() == 0;
+    if (!previousEmpty) {
+      previousLastNonQuote = firstNonQuote(buff, buff.length());
+    }
 
-    input = input.replaceAll(Character.toString(QUOTE_IN_OPEN), QUOTE_IN_OPEN_HTML);
-    input = input.replaceAll(Character.toString(QUOTE_IN_CLOSE), QUOTE_IN_CLOSE_HTML);
-    input = input.replaceAll(Character.toString(QUOTE_OUT_OPEN), QUOTE_OUT_OPEN_HTML);
-    input = input.replaceAll(Character.toString(QUOTE_OUT_CLOSE), QUOTE_OUT_CLOSE_HTML);
+    for (int i = 0; i < buff.length(); i++) {
+      char ch = buff.charAt(i);
+
+      switch (ch) {
+        case '\'':
+          if (i + 1 < buff.length() && buff.charAt(i + 1) == '\'') {
+            out.append(QUOT_ENTITY);
+            i++;
+          } else {
+            out.append(ch);
+          }
+          break;
+        case QUOTE_SYMBOL:
+          out.append(QUOT_ENTITY);
+          break;
+        case QUOTE_IN_OPEN:
+          out.append(QUOTE_IN_OPEN_HTML);
+          break;
+        case QUOTE_IN_CLOSE:
+          out.append(QUOTE_IN_CLOSE_HTML);
+          break;
+        case QUOTE_OUT_OPEN:
+          out.append(QUOTE_OUT_OPEN_HTML);
+          break;
+        case QUOTE_OUT_CLOSE:
+          out.append(QUOTE_OUT_CLOSE_HTML);
+          break;
+        default:
+          out.append(ch);
+      }
+    }
+  }
 
-    return input;
+  /**
+   * Во фрагменте нет ничего, что format может изменить
+   */
+  private static boolean isPlain(CharSequence input, int start, int end) {
+    for (int i = start; i < end; i++) {
+      char ch = input.charAt(i);
+
+      if (ch == '&' || ch == '\'' || isQuoteChar(ch)) {
+        return false;
+      }
+    }
+
+    return true;
   }
 
+  private static boolean regionMatches(CharSequence input, int offset, int end, String str) {
+    if (offset + str.length() > end) {
+      return false;
+    }
+
+    for (int i = 0; i < str.length(); i++) {
+      if (input.charAt(offset + i) != str.charAt(i)) {
+        return false;
+      }
+    }
+
+    return true;
+  }
 }
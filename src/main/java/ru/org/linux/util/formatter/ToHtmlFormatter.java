@@ -15,23 +15,29 @@
 
 package ru.org.linux.util.formatter;
 
+import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
 import org.apache.commons.httpclient.URI;
 import org.apache.commons.httpclient.URIException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
-import ru.org.linux.comment.Comment;
 import ru.org.linux.comment.CommentService;
-import ru.org.linux.site.MessageNotFoundException;
 import ru.org.linux.spring.Configuration;
-import ru.org.linux.topic.Topic;
 import ru.org.linux.topic.TopicDao;
+import ru.org.linux.topic.TopicHeader;
 import ru.org.linux.user.User;
 import ru.org.linux.util.LorURL;
 import ru.org.linux.util.StringUtil;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
-import java.util.StringTokenizer;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -47,7 +53,7 @@ public class ToHtmlFormatter {
     "\\w=?+/~@%#-]|(?:&[\\w:|\\[\\]$_.+!*'#%(),@\\p{L}=;/-]+)+|(\\([^\\)]*\\))))?)?)" +
     "|(?:mailto: ?[a-z0-9+.]+@[a-z0-9.-]+.[a-z]+)|(?:news:([\\w+]\\.?)+)";
 
-  private static final Pattern URL_PATTERN = Pattern.compile(URL_REGEX, Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+  static final Pattern URL_PATTERN = Pattern.compile(URL_REGEX, Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
 
   /*
   Замена двойного минуса на тире
@@ -64,6 +70,18 @@ public class ToHtmlFormatter {
 
   private int maxLength=80;
 
+  /**
+   * Заголовки топиков и флаги удаления комментариев, на которые ссылаются сообщения.
+   * Живут недолго, чтобы правка заголовка или удаление быстро становились видны в ссылках.
+   * Отсутствующие id тоже кешируются (Optional.absent()), чтобы ссылка на несуществующий
+   * топик не вызывала запрос при каждом выводе
+   */
+  private final Cache<Integer, Optional<TopicHeader>> topicHeaderCache =
+          CacheBuilder.newBuilder().maximumSize(10000).expireAfterWrite(1, TimeUnit.MINUTES).build();
+
+  private final Cache<Integer, Optional<Boolean>> commentDeletedCache =
+          CacheBuilder.newBuilder().maximumSize(10000).expireAfterWrite(1, TimeUnit.MINUTES).build();
+
   @Autowired
   public void setConfiguration(Configuration configuration) {
     this.configuration = configuration;
@@ -97,19 +115,66 @@ public class ToHtmlFormatter {
   }
 
   public String format(String text, boolean secure, boolean nofollow, RuTypoChanger changer) {
-    String escapedText = StringUtil.escapeHtml(text);
+    StringBuilder out = new StringBuilder(text.length() + text.length() / 4);
+
+    format(text, secure, nofollow, changer, out);
+
+    return out.toString();
+  }
+
+  /**
+   * Форматирует текст за один проход: экранирование, ссылки, кавычки и тире.
+   * Текст разбивается на слова по пробелам и переводам строк, ссылки ищутся
+   * только в словах, где они возможны.
+   *
+   * @param text текст
+   * @param secure флаг https
+   * @param nofollow
+   * @param changer типограф, может быть null
+   * @param out буфер, в который дописывается результат
+   */
+  public void format(String text, boolean secure, boolean nofollow, @Nullable RuTypoChanger changer, StringBuilder out) {
+    int outStart = out.length();
+
+    StringBuilder word = new StringBuilder();
+    Matcher m = null;
+
+    int length = text.length();
+    int pos = 0;
+
+    while (pos < length) {
+      char ch = text.charAt(pos);
 
+      if (ch == ' ' || ch == '\n') {
+        appendFragment(text, pos, pos + 1, changer, out);
+        pos++;
+        continue;
+      }
+
+      int wordEnd = pos + 1;
+      while (wordEnd < length && text.charAt(wordEnd) != ' ' && text.charAt(wordEnd) != '\n') {
+        wordEnd++;
+      }
+
+      word.setLength(0);
+      StringUtil.escapeHtml(text, pos, wordEnd, word);
+
+      if (!mayContainUrl(word)) {
+        appendFragment(word, 0, word.length(), changer, out);
+      } else {
+        if (m == null) {
+          m = URL_PATTERN.matcher(word);
+        } else {
+          m.reset(word);
+        }
 
-    StringTokenizer st = new StringTokenizer(escapedText, " \n", true);
-    StringBuilder sb = new StringBuilder();
+        formatURL(word, m, secure, nofollow, changer, out);
+      }
 
-    while (st.hasMoreTokens()) {
-      String token = st.nextToken();
-      String formattedToken = formatURL(token, secure, nofollow, changer);
-      sb.append(formattedToken);
+      pos = wordEnd;
     }
 
-    return sb.toString().replaceAll(MDASH_REGEX, MDASH_REPLACE);
+    replaceMdash(out, outStart);
   }
 
   /**
@@ -118,12 +183,47 @@ public class ToHtmlFormatter {
    * @return форматированый текст
    */
   public String simpleFormat(String text) {
-    return StringUtil.escapeHtml(text).replaceAll(MDASH_REGEX, MDASH_REPLACE);
+    StringBuilder out = new StringBuilder(text.length());
+
+    StringUtil.escapeHtml(text, 0, text.length(), out);
+    replaceMdash(out, 0);
+
+    return out.toString();
+  }
+
+  /**
+   * Замена двойного минуса на тире в буфере, начиная с позиции from
+   */
+  private static void replaceMdash(StringBuilder out, int from) {
+    int index = out.indexOf(MDASH_REGEX, from);
+
+    while (index >= 0) {
+      out.replace(index, index + MDASH_REGEX.length(), MDASH_REPLACE);
+      index = out.indexOf(MDASH_REGEX, index + MDASH_REPLACE.length());
+    }
+  }
+
+  /**
+   * Все варианты URL_PATTERN содержат точку или двоеточие
+   */
+  private static boolean mayContainUrl(CharSequence word) {
+    for (int i = 0; i < word.length(); i++) {
+      char ch = word.charAt(i);
+
+      if (ch == '.' || ch == ':') {
+        return true;
+      }
+    }
+
+    return false;
   }
 
-  private String formatWithMagic(String text, RuTypoChanger changer) {
-    String text2 = changer!=null ? changer.format(text) : text;
-    return text2;
+  private static void appendFragment(CharSequence text, int start, int end, @Nullable RuTypoChanger changer, StringBuilder out) {
+    if (changer != null) {
+      changer.format(text, start, end, out);
+    } else {
+      out.append(text, start, end);
+    }
   }
 
   public String memberURL(User user, boolean secure) throws URIException {
@@ -137,44 +237,42 @@ public class ToHtmlFormatter {
     return (new URI(scheme, null, mainUri.getHost(), mainUri.getPort(), String.format("/people/%s/profile", user.getNick()))).getEscapedURIReference();
   }
 
-  protected String formatURL(String line, boolean secure, boolean nofollow, RuTypoChanger changer) {
-    StringBuilder out = new StringBuilder();
-    Matcher m = URL_PATTERN.matcher(line);
+  private void formatURL(CharSequence line, Matcher m, boolean secure, boolean nofollow, RuTypoChanger changer, StringBuilder out) {
     int index = 0;
     while (m.find()) {
       int start = m.start();
       int end = m.end();
 
       // обработка начальной части до URL
-      out.append(formatWithMagic(line.substring(index, start), changer));
+      appendFragment(line, index, start, changer, out);
 
       // возможно это url
-      String mayUrl = line.substring(start, end);
+      String mayUrl = m.group();
       // href
       String urlHref = mayUrl;
 
-      if (mayUrl.toLowerCase().startsWith("www.")) {
+      if (mayUrl.regionMatches(true, 0, "www.", 0, 4)) {
         urlHref = "http://" + mayUrl;
-      } else if (mayUrl.toLowerCase().startsWith("ftp.")) {
+      } else if (mayUrl.regionMatches(true, 0, "ftp.", 0, 4)) {
         urlHref = "ftp://" + mayUrl;
       }
 
+      int mark = out.length();
+
       try {
         processUrl(secure, nofollow, out, urlHref, null);
       } catch (URIException e) {
-        // e.printStackTrace();
         // ссылка не ссылка
-        out.append(formatWithMagic(mayUrl, changer));
+        out.setLength(mark);
+        appendFragment(mayUrl, 0, mayUrl.length(), changer, out);
       }
       index = end;
     }
 
     // обработка последнего фрагмента
     if (index < line.length()) {
-      out.append(formatWithMagic(line.substring(index), changer));
+      appendFragment(line, index, line.length(), changer, out);
     }
-
-    return out.toString();
   }
 
   public void processUrl(
@@ -223,6 +321,88 @@ public class ToHtmlFormatter {
     out.append("<a href=\"").append(fixedUrlHref).append("\">").append(fixedUrlBody).append("</a>");
   }
 
+  /**
+   * Загрузить одним запросом заголовки всех топиков и комментариев, ссылки на которые есть в тексте.
+   * Вызывается перед форматированием, чтобы при выводе ссылок не ходить в базу за каждой
+   *
+   * @param text исходный текст сообщения
+   */
+  public void prefetchMessageLinks(String text) {
+    Set<Integer> topicIds = new HashSet<>();
+    Set<Integer> commentIds = new HashSet<>();
+
+    Matcher m = URL_PATTERN.matcher(text);
+
+    while (m.find()) {
+      String urlHref = m.group();
+
+      if (urlHref.toLowerCase().startsWith("www.")) {
+        urlHref = "http://" + urlHref;
+      }
+
+      try {
+        LorURL url = new LorURL(configuration.getMainURI(), urlHref);
+
+        if (url.isMessageUrl()) {
+          topicIds.add(url.getMessageId());
+
+          if (url.isCommentUrl()) {
+            commentIds.add(url.getCommentId());
+          }
+        }
+      } catch (URIException ignored) {
+        // ссылка не ссылка
+      }
+    }
+
+    loadTopicHeaders(topicIds);
+    loadCommentFlags(commentIds);
+  }
+
+  private void loadTopicHeaders(Set<Integer> ids) {
+    Set<Integer> missing = Sets.difference(ids, topicHeaderCache.getAllPresent(ids).keySet());
+
+    if (!missing.isEmpty()) {
+      ImmutableSet<Integer> load = ImmutableSet.copyOf(missing);
+      Map<Integer, TopicHeader> headers = messageDao.getTopicHeaders(load);
+
+      for (Integer id : load) {
+        topicHeaderCache.put(id, Optional.fromNullable(headers.get(id)));
+      }
+    }
+  }
+
+  private void loadCommentFlags(Set<Integer> ids) {
+    Set<Integer> missing = Sets.difference(ids, commentDeletedCache.getAllPresent(ids).keySet());
+
+    if (!missing.isEmpty()) {
+      ImmutableSet<Integer> load = ImmutableSet.copyOf(missing);
+      Map<Integer, Boolean> flags = commentService.getDeletedFlags(load);
+
+      for (Integer id : load) {
+        commentDeletedCache.put(id, Optional.fromNullable(flags.get(id)));
+      }
+    }
+  }
+
+  @Nullable
+  private TopicHeader getTopicHeader(int id) {
+    loadTopicHeaders(ImmutableSet.of(id));
+
+    Optional<TopicHeader> header = topicHeaderCache.getIfPresent(id);
+
+    return header != null ? header.orNull() : null;
+  }
+
+  @Nullable
+  private Boolean getCommentDeleted(int id) {
+    loadCommentFlags(ImmutableSet.of(id));
+
+    Optional<Boolean> deleted = commentDeletedCache.getIfPresent(id);
+
+    return deleted != null ? deleted.orNull() : null;
+  }
+
   /**
    * Ссылка на топик или комментарий
    *
@@ -237,33 +417,39 @@ public class ToHtmlFormatter {
           @Nonnull LorURL url,
           @Nullable String linkText
   ) throws URIException {
-    try {
-      Topic message = messageDao.getById(url.getMessageId());
+    TopicHeader message = getTopicHeader(url.getMessageId());
+
+    if (message == null) {
+      out.append("<a href=\"").append(url.toString()).append("\">").append(url.formatUrlBody(maxLength)).append("</a>");
+      return;
+    }
 
-      boolean deleted = message.isDeleted();
+    boolean deleted = message.isDeleted();
 
-      if (!deleted && url.isCommentUrl()) {
-        Comment comment = commentService.getById(url.getCommentId());
+    if (!deleted && url.isCommentUrl()) {
+      Boolean commentDeleted = getCommentDeleted(url.getCommentId());
 
-        deleted = comment.isDeleted();
+      if (commentDeleted == null) {
+        out.append("<a href=\"").append(url.toString()).append("\">").append(url.formatUrlBody(maxLength)).append("</a>");
+        return;
       }
 
-      String urlTitle = linkText!=null?simpleFormat(linkText):StringUtil.escapeHtml(message.getTitle());
+      deleted = commentDeleted;
+    }
 
-      String newUrlHref = url.formatJump(messageDao, secure);
-      String fixedUrlBody = url.formatUrlBody(maxLength);
+    String urlTitle = linkText!=null?simpleFormat(linkText):StringUtil.escapeHtml(message.getTitle());
 
-      if (deleted) {
-        out.append("<s>");
-      }
+    String newUrlHref = url.formatJump(message.getGroupUrl(), secure);
+    String fixedUrlBody = url.formatUrlBody(maxLength);
 
-      out.append("<a href=\"").append(newUrlHref).append("\" title=\"").append(urlTitle).append("\">").append(fixedUrlBody).append("</a>");
+    if (deleted) {
+      out.append("<s>");
+    }
 
-      if (deleted) {
-        out.append("</s>");
-      }
-    } catch (MessageNotFoundException ex) {
-      out.append("<a href=\"").append(url.toString()).append("\">").append(url.formatUrlBody(maxLength)).append("</a>");
+    out.append("<a href=\"").append(newUrlHref).append("\" title=\"").append(urlTitle).append("\">").append(fixedUrlBody).append("</a>");
+
+    if (deleted) {
+      out.append("</s>");
     }
   }
 }
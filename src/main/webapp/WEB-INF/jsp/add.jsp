@@ -1,4 +1,4 @@
-<%@ page contentType="text/html; charset=utf-8" import="ru.org.linux.gallery.Screenshot"  %>
+<%@ page contentType="text/html; charset=utf-8" import="ru.org.linux.gallery.Screenshot" session="false"  %>
 <%@ page import="ru.org.linux.topic.TopicTagService"%>
 <%--
   ~ Copyright 1998-2012 Linux.org.ru
@@ -1,4 +1,4 @@
-<%@ page contentType="text/html; charset=utf-8" %>
+<%@ page contentType="text/html; charset=utf-8" session="false" %>
 <%@ page
         import="ru.org.linux.comment.PreparedComment" %>
 <%@ taglib tagdir="/WEB-INF/tags" prefix="lor" %>
@@ -1,3 +1,4 @@
+<%@ page session="false" %>
 <%@ page import="ru.org.linux.user.UserService" %>
 <%@ page pageEncoding="utf-8" contentType="text/html; charset=utf-8"%>
 <%@ taglib prefix="c" uri="http://java.sun.com/jsp/jstl/core" %>
@@ -13,7 +13,7 @@
   ~    limitations under the License.
   --%>
 
-<%@ page contentType="text/html; charset=utf-8"%>
+<%@ page contentType="text/html; charset=utf-8" session="false"%>
 <!-- SiteSearch Google -->
 <form method="get" action="http://www.google.ru/custom" target="_top">
 <table border="0" bgcolor="#000000">
@@ -1,4 +1,4 @@
-<%@ page contentType="text/html; charset=utf-8"%>
+<%@ page contentType="text/html; charset=utf-8" session="false"%>
 <%@ taglib uri="http://java.sun.com/jsp/jstl/core" prefix="c" %>
 <%--
   ~ Copyright 1998-2012 Linux.org.ru
@@ -63,7 +63,7 @@
 <c:if test="${template.sessionAuthorized}">
   <c:url var="userUrl" value="/people/${template.nick}/profile"/>
   добро пожаловать, <a style="text-decoration: none" href="${userUrl}">${template.nick}</a>
-  [<a href="logout?sessionId=<%= session.getId() %>" title="Выйти">x</a>]
+  [<a href="logout?sessionId=${pageContext.request.session.id}" title="Выйти">x</a>]
   <%--<br>--%>
   <%--<img src="/black/pingvin.gif" alt="Linux Logo" height=114 width=102>--%>
 </c:if>
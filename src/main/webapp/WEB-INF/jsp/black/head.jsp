@@ -1,4 +1,4 @@
-<%@ page contentType="text/html; charset=utf-8"%>
+<%@ page contentType="text/html; charset=utf-8" session="false"%>
 <%@ taglib uri="http://java.sun.com/jsp/jstl/core" prefix="c" %>
 <%@ taglib tagdir="/WEB-INF/tags" prefix="lor" %>
 <%--
@@ -25,7 +25,7 @@
           <c:if test="${template.sessionAuthorized}">
             <c:url var="userUrl" value="/people/${template.nick}/profile"/>
             добро пожаловать, <a style="text-decoration: none" href="${userUrl}">${template.nick}</a>
-            [<a href="logout?sessionId=<%= session.getId() %>" title="Выйти">x</a>]
+            [<a href="logout?sessionId=${pageContext.request.session.id}" title="Выйти">x</a>]
           </c:if>
 
           <c:if test="${not template.sessionAuthorized}">
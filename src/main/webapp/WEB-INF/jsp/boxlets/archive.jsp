@@ -13,12 +13,12 @@
   ~    limitations under the License.
   --%>
 
-<%@ page contentType="text/html;charset=UTF-8" language="java" %>
+<%@ page contentType="text/html;charset=UTF-8" language="java" session="false" %>
 <%@ taglib prefix="c" uri="http://java.sun.com/jsp/jstl/core" %>
 <%@ taglib prefix="fmt" uri="http://java.sun.com/jsp/jstl/fmt" %>
 <%@ taglib prefix="lor" uri="http://www.linux.org.ru" %>
 <%@ taglib prefix="fn" uri="http://java.sun.com/jsp/jstl/functions"%>
-<fmt:setLocale value="ru" scope="session"/>
+<fmt:setLocale value="ru" scope="request"/>
 <c:url var="head_url" value="/news/"/>
 <h2><a href="${head_url}">Архив Новостей</a></h2>
 
@@ -1,3 +1,4 @@
+<%@ page session="false" %>
 <%@ page import="ru.org.linux.tag.TagCloudDao" %>
 <%@ page import="ru.org.linux.topic.TagTopicListController" %>
 <%--
@@ -12,7 +12,7 @@
   ~    See the License for the specific language governing permissions and
   ~    limitations under the License.
   --%>
-<%@ page contentType="text/html; charset=utf-8"%>
+<%@ page contentType="text/html; charset=utf-8" session="false"%>
 <%@ taglib tagdir="/WEB-INF/tags" prefix="lor" %>
 <%--@elvariable id="preparedTopic" type="ru.org.linux.topic.PreparedTopic"--%>
 <%--@elvariable id="image" type="ru.org.linux.gallery.Image"--%>
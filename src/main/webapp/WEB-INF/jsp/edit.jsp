@@ -1,3 +1,4 @@
+<%@ page session="false" %>
 <%@ page import="ru.org.linux.topic.TopicTagService" %>
 <%@ page contentType="text/html; charset=utf-8"%>
 <%@ taglib tagdir="/WEB-INF/tags" prefix="lor" %>
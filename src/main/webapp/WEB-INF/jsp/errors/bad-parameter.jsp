@@ -1,5 +1,5 @@
 <%@ taglib prefix="c" uri="http://java.sun.com/jstl/core" %>
-<%@ page contentType="text/html; charset=utf-8"%>
+<%@ page contentType="text/html; charset=utf-8" session="false"%>
 <%@ page import="ru.org.linux.util.StringUtil,org.apache.commons.logging.Log" isErrorPage="true" %>
 <%@ page import="org.apache.commons.logging.LogFactory"%>
 <%@ page import="org.springframework.validation.BindException" %>
@@ -1,6 +1,6 @@
 <%@ taglib prefix="c" uri="http://java.sun.com/jsp/jstl/core" %>
 <%@ taglib prefix="l" uri="http://www.linux.org.ru" %>
-<%@ page contentType="text/html; charset=utf-8"%>
+<%@ page contentType="text/html; charset=utf-8" session="false"%>
 <%@ taglib tagdir="/WEB-INF/tags" prefix="lor" %>
 <%--
   ~ Copyright 1998-2012 Linux.org.ru
@@ -73,4 +73,15 @@
 </c:forEach>
 </div>
 
+<c:if test="${prevOffset != null || nextOffset != null}">
+  <div class="nav">
+    <c:if test="${prevOffset != null}">
+      <a href="?offset=${prevOffset}">← более новые версии</a>
+    </c:if>
+    <c:if test="${nextOffset != null}">
+      <a href="?offset=${nextOffset}">более старые версии →</a>
+    </c:if>
+  </div>
+</c:if>
+
 <jsp:include page="/WEB-INF/jsp/footer.jsp"/>
@@ -12,7 +12,7 @@
   ~    See the License for the specific language governing permissions and
   ~    limitations under the License.
   --%><?xml version="1.0" encoding="utf-8"?>
-<%@ page contentType="text/xml; charset=utf-8"%>
+<%@ page contentType="text/xml; charset=utf-8" session="false"%>
 <%@ taglib uri="http://java.sun.com/jsp/jstl/core" prefix="c" %>
 
 <login>
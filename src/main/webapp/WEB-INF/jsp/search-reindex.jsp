@@ -1,4 +1,5 @@
 <%@ taglib prefix="c" uri="http://java.sun.com/jsp/jstl/core" %>
+<%@ taglib prefix="fmt" uri="http://java.sun.com/jsp/jstl/fmt" %>
 <%@ taglib tagdir="/WEB-INF/tags" prefix="lor" %>
 <%--
   ~ Copyright 1998-2012 Linux.org.ru
@@ -15,7 +16,7 @@
   ~    limitations under the License.
   --%>
 
-<%@ page contentType="text/html;charset=UTF-8" language="java" %>
+<%@ page contentType="text/html;charset=UTF-8" language="java" session="false" %>
 <jsp:include page="/WEB-INF/jsp/head.jsp"/>
 <title>Search Reindex</title>
 <jsp:include page="/WEB-INF/jsp/header.jsp"/>
@@ -29,4 +30,36 @@
   <input type="submit"> 
 </form>
 
+<h2>Полная переиндексация</h2>
+<p>
+  <c:if test="${reindex.running}">Выполняется: </c:if>
+  ${reindex.percent}%
+  <c:if test="${reindex.etaMinutes != null}">, осталось примерно ${reindex.etaMinutes} мин.</c:if>
+  <c:if test="${reindex.skipped > 0}">, пропущено топиков: ${reindex.skipped}</c:if>
+</p>
+<c:if test="${not empty reindex.partitions}">
+<table class="message-table">
+  <thead>
+  <tr><th>#</th><th>id</th><th>позиция</th><th>узел</th><th>готово</th></tr>
+  </thead>
+  <c:forEach items="${reindex.partitions}" var="partition">
+    <tr>
+      <td>${partition.partition}</td>
+      <td>${partition.startId} - ${partition.endId}</td>
+      <td>${partition.lastId}</td>
+      <td><c:out value="${partition.owner}"/></td>
+      <td><c:if test="${partition.finished}">да</c:if></td>
+    </tr>
+  </c:forEach>
+</table>
+</c:if>
+
+<h2>Очередь индексации</h2>
+<table class="message-table">
+  <tr><td>Ожидают индексации</td><td>${pending}</td></tr>
+  <tr><td>Получено запросов</td><td>${received}</td></tr>
+  <tr><td>Проиндексировано</td><td>${indexed}</td></tr>
+  <tr><td>Степень схлопывания</td><td><fmt:formatNumber value="${coalescingRatio}" maxFractionDigits="2"/></td></tr>
+</table>
+
 <jsp:include page="/WEB-INF/jsp/footer.jsp"/>
@@ -13,7 +13,7 @@
   ~    limitations under the License.
   --%><?xml version="1.0" encoding="utf-8"?>
 <%--@elvariable id="messages" type="java.util.List<ru.org.linux.topic.PreparedTopic>"--%>
-<%@ page contentType="application/rss+xml; charset=utf-8"%>
+<%@ page contentType="application/rss+xml; charset=utf-8" session="false"%>
 <%@ page import="java.util.Date"   buffer="200kb"%>
 <%@ taglib prefix="c" uri="http://java.sun.com/jsp/jstl/core" %>
 <%@ taglib tagdir="/WEB-INF/tags" prefix="lor" %>
@@ -1,5 +1,5 @@
 <%@ taglib prefix="c" uri="http://java.sun.com/jsp/jstl/core" %>
-<%@ page contentType="text/html; charset=utf-8" %>
+<%@ page contentType="text/html; charset=utf-8" session="false" %>
 <%@ page import="ru.org.linux.topic.Topic" %>
 <%@ page import="ru.org.linux.topic.TopicPermissionService" %>
 <%--
@@ -1,4 +1,4 @@
-<%@ page contentType="text/html; charset=utf-8"%>
+<%@ page contentType="text/html; charset=utf-8" session="false"%>
 <%--
   ~ Copyright 1998-2012 Linux.org.ru
   ~    Licensed under the Apache License, Version 2.0 (the "License");
@@ -21,6 +21,8 @@
 <%--@elvariable id="firstPage" type="Boolean"--%>
 <%--@elvariable id="nick" type="String"--%>
 <%--@elvariable id="hasMore" type="String"--%>
+<%--@elvariable id="prevCursor" type="Integer"--%>
+<%--@elvariable id="nextCursor" type="Integer"--%>
 <%--@elvariable id="unreadCount" type="Integer"--%>
 <%--@elvariable id="enableReset" type="Boolean"--%>
 <%--@elvariable id="forceReset" type="Boolean"--%>
@@ -102,10 +104,10 @@
 <c:if test="${not firstPage}">
 <c:choose>
 <c:when test="${not isMyNotifications}">
-  <a rel=prev href="show-replies.jsp?nick=${nick}&amp;offset=${offset-topics}${addition_query}">← назад</a>
+  <a rel=prev href="show-replies.jsp?nick=${nick}&amp;after=${prevCursor}${addition_query}">← назад</a>
 </c:when>
 <c:otherwise>
-  <a rel=prev href="notifications?offset=${offset-topics}${addition_query}">← назад</a>
+  <a rel=prev href="notifications?after=${prevCursor}${addition_query}">← назад</a>
 </c:otherwise>
 </c:choose>
 </c:if>
@@ -115,10 +117,10 @@
 <c:if test="${hasMore}">
 <c:choose>
 <c:when test="${not isMyNotifications}">
-  <a rel=next href="show-replies.jsp?nick=${nick}&amp;offset=${offset+topics}${addition_query}">вперед →</a>
+  <a rel=next href="show-replies.jsp?nick=${nick}&amp;before=${nextCursor}${addition_query}">вперед →</a>
 </c:when>
 <c:otherwise>
-  <a rel=next href="notifications?offset=${offset+topics}${addition_query}">вперед →</a>
+  <a rel=next href="notifications?before=${nextCursor}${addition_query}">вперед →</a>
 </c:otherwise>
 </c:choose>
 </c:if>
@@ -188,10 +190,10 @@
 <c:if test="${not firstPage}">
 <c:choose>
 <c:when test="${not isMyNotifications}">
-  <a rel=prev rev=next href="show-replies.jsp?nick=${nick}&amp;offset=${offset-topics}${addition_query}">← назад</a>
+  <a rel=prev rev=next href="show-replies.jsp?nick=${nick}&amp;after=${prevCursor}${addition_query}">← назад</a>
 </c:when>
 <c:otherwise>
-  <a rel=prev rev=next href="notifications?offset=${offset-topics}${addition_query}">← назад</a>
+  <a rel=prev rev=next href="notifications?after=${prevCursor}${addition_query}">← назад</a>
 </c:otherwise>
 </c:choose>
 </c:if>
@@ -201,10 +203,10 @@
 <c:if test="${hasMore}">
 <c:choose>
 <c:when test="${not isMyNotifications}">
-  <a rel=next rev=prev href="show-replies.jsp?nick=${nick}&amp;offset=${offset+topics}${addition_query}">вперед →</a>
+  <a rel=next rev=prev href="show-replies.jsp?nick=${nick}&amp;before=${nextCursor}${addition_query}">вперед →</a>
 </c:when>
 <c:otherwise>
-  <a rel=next rev=prev href="notifications?offset=${offset+topics}${addition_query}">вперед →</a>
+  <a rel=next rev=prev href="notifications?before=${nextCursor}${addition_query}">вперед →</a>
 </c:otherwise>
 </c:choose>
 </c:if>
@@ -13,7 +13,7 @@
   ~    limitations under the License.
   --%>
 
-<%@ page contentType="text/html; charset=utf-8"%>
+<%@ page contentType="text/html; charset=utf-8" session="false"%>
 
 
 <form action="http://www.linux.org.ru/google-search.jsp" id="cse-search-box">
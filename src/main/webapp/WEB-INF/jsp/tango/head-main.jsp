@@ -1,4 +1,4 @@
-<%@ page contentType="text/html; charset=utf-8"%>
+<%@ page contentType="text/html; charset=utf-8" session="false"%>
 <%@ taglib uri="http://java.sun.com/jsp/jstl/core" prefix="c" %>
 <%@ taglib tagdir="/WEB-INF/tags" prefix="lor" %>
 <%--
@@ -49,7 +49,7 @@
             <c:if test="${template.sessionAuthorized}">
               <c:url var="userUrl" value="/people/${template.nick}/profile"/>
               <a style="text-decoration: none" href="${userUrl}">${template.nick}</a>
-              <a href="logout?sessionId=<%= session.getId() %>" title="Выйти">
+              <a href="logout?sessionId=${pageContext.request.session.id}" title="Выйти">
                 <img style="position: relative; bottom: -2px; border: 0" src="/img/logout.png" width="16" height="16"
                      alt="[x]">
               </a>
@@ -1,4 +1,4 @@
-<%@ page info="last active topics" %>
+<%@ page info="last active topics" session="false" %>
 <%@ page contentType="text/html; charset=utf-8" %>
 <%@ page import="ru.org.linux.site.Template" %>
 <%--
@@ -128,13 +128,20 @@
 <div class="nav">
   <div style="display: table; width: 100%">
     <div style="display: table-cell; text-align: left">
-      <c:if test="${offset>0}">
-        <a href="/tracker/?offset=${offset-topics}${addition_query}">← предыдущие</a>
+      <c:if test="${not firstPage}">
+        <c:choose>
+          <c:when test="${prevCursor != null}">
+            <a href="/tracker/?after=${prevCursor}&amp;afterId=${prevCursorId}${addition_query}">← предыдущие</a>
+          </c:when>
+          <c:otherwise>
+            <a href="/tracker/?filter=${filter}">← предыдущие</a>
+          </c:otherwise>
+        </c:choose>
       </c:if>
     </div>
     <div style="display: table-cell; text-align: right">
-      <c:if test="${offset+topics<300 and fn:length(msgs)==topics}">
-        <a href="/tracker/?offset=${offset+topics}${addition_query}">следующие →</a>
+      <c:if test="${nextCursor != null}">
+        <a href="/tracker/?before=${nextCursor}&amp;beforeId=${nextCursorId}${addition_query}">следующие →</a>
       </c:if>
     </div>
   </div>
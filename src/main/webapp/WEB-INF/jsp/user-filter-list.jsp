@@ -1,4 +1,4 @@
-<%@ page contentType="text/html; charset=utf-8"  %>
+<%@ page contentType="text/html; charset=utf-8" session="false"  %>
 <%@ taglib uri="http://java.sun.com/jsp/jstl/core" prefix="c" %>
 <%@ taglib uri="http://java.sun.com/jsp/jstl/functions" prefix="fn" %>
 <%@ taglib tagdir="/WEB-INF/tags" prefix="lor" %>
@@ -1,7 +1,7 @@
 <%@ taglib prefix="c" uri="http://java.sun.com/jsp/jstl/core" %>
 <%@ taglib prefix="fmt" uri="http://java.sun.com/jsp/jstl/fmt" %>
 <%@ taglib prefix="fn" uri="http://java.sun.com/jsp/jstl/functions" %>
-<%@ page contentType="text/html; charset=utf-8" %>
+<%@ page contentType="text/html; charset=utf-8" session="false" %>
 <%--
   ~ Copyright 1998-2012 Linux.org.ru
   ~    Licensed under the Apache License, Version 2.0 (the "License");
@@ -20,6 +20,7 @@
 <%--@elvariable id="section" type="ru.org.linux.section.Section"--%>
 <%--@elvariable id="group" type="ru.org.linux.group.Group"--%>
 <%--@elvariable id="items" type="ru.org.linux.topic.ArchiveDao.ArchiveDTO"--%>
+<fmt:setLocale value="ru" scope="request"/>
 
 <jsp:include page="/WEB-INF/jsp/head.jsp"/>
 <title>
@@ -1,4 +1,4 @@
-<%@ page contentType="text/html; charset=utf-8"%>
+<%@ page contentType="text/html; charset=utf-8" session="false"%>
 <%@ taglib uri="http://java.sun.com/jsp/jstl/core" prefix="c" %>
 <%@ taglib tagdir="/WEB-INF/tags" prefix="lor" %>
 <%@ taglib prefix="fn" uri="http://java.sun.com/jsp/jstl/functions" %>
@@ -94,9 +94,9 @@
   <table class="nav">
     <tr>
       <c:choose>
-        <c:when test="${topicListRequest.offset < 200 && fn:length(messages) == 20}">
+        <c:when test="${nextCursor != null}">
           <td align="left" width="35%">
-            <a href="${url}?${aparams}offset=${topicListRequest.offset+20}">← предыдущие</a>
+            <a href="${url}?${aparams}before=${nextCursor}">← предыдущие</a>
           </td>
         </c:when>
         <c:otherwise>
@@ -107,19 +107,19 @@
           </c:if>
         </c:otherwise>
       </c:choose>
-      <c:if test="${topicListRequest.offset > 20}">
+      <c:if test="${not firstPage}">
         <td width="35%" align="right">
-          <a href="${url}?${aparams}offset=${topicListRequest.offset-20}">следующие →</a>
-        </td>
-      </c:if>
-      <c:if test="${topicListRequest.offset == 20}">
-        <td width="35%" align="right">
-          <c:if test="${params!=null}">
-            <a href="${url}?${params}">следующие →</a>
-          </c:if>
-          <c:if test="${params==null}">
-            <a href="${url}">следующие →</a>
-          </c:if>
+          <c:choose>
+            <c:when test="${prevCursor != null}">
+              <a href="${url}?${aparams}after=${prevCursor}">следующие →</a>
+            </c:when>
+            <c:when test="${params!=null}">
+              <a href="${url}?${params}">следующие →</a>
+            </c:when>
+            <c:otherwise>
+              <a href="${url}">следующие →</a>
+            </c:otherwise>
+          </c:choose>
         </td>
       </c:if>
     </tr>
@@ -1,5 +1,5 @@
 <%@ taglib prefix="c" uri="http://java.sun.com/jsp/jstl/core" %>
-<%@ page contentType="text/html; charset=utf-8"%>
+<%@ page contentType="text/html; charset=utf-8" session="false"%>
 <%--
   ~ Copyright 1998-2012 Linux.org.ru
   ~    Licensed under the Apache License, Version 2.0 (the "License");
@@ -20,7 +20,7 @@
 
 <c:if test="${template.sessionAuthorized}">
 <div style="float: right">
-  [<a href="/logout?sessionId=<%= session.getId() %>">выйти</a>]
+  [<a href="/logout?sessionId=${pageContext.request.session.id}">выйти</a>]
 </div>
 </c:if>
 
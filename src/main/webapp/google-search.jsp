@@ -13,7 +13,7 @@
   ~    limitations under the License.
   --%>
 
-<%@ page contentType="text/html; charset=utf-8"%>
+<%@ page contentType="text/html; charset=utf-8" session="false"%>
 
 <jsp:include page="WEB-INF/jsp/head.jsp"/>
 <title>Результаты поиска</title>
@@ -238,8 +238,48 @@ $(document).ready(function() {
   // remove hidden quote elements
   $(".none").remove();
 
+  function initUnreadEventsPoll() {
+    var link = $('#main_events_count');
+
+    if (link.length == 0) {
+      return;
+    }
+
+    var count = -1;
+
+    // ответ с изменившимся счетчиком приходит сразу, поэтому
+    // следующий запрос отправляется не чаще раза в MIN_DELAY мс
+    var MIN_DELAY = 5000;
+    var MAX_FAIL_DELAY = 600000;
+    var failDelay = 60000;
+
+    function poll() {
+      var started = new Date().getTime();
+
+      $.ajax({
+        url: "/notifications-count",
+        data: { count: count },
+        dataType: "json",
+        cache: false,
+        timeout: 60000
+      }).done(function(data) {
+        count = data.count;
+        link.text(count > 0 ? "Уведомления (" + count + ")" : "Уведомления");
+
+        failDelay = 60000;
+        setTimeout(poll, Math.max(0, MIN_DELAY - (new Date().getTime() - started)));
+      }).fail(function() {
+        setTimeout(poll, failDelay);
+        failDelay = Math.min(failDelay * 2, MAX_FAIL_DELAY);
+      });
+    }
+
+    poll();
+  }
+
   initSamepageCommentNavigation();
   initScollupButton();
+  initUnreadEventsPoll();
 });
 
 
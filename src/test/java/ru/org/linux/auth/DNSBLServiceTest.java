@@ -0,0 +1,159 @@
+/*
+ * Copyright 1998-2012 Linux.org.ru
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.org.linux.auth;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.org.linux.util.DNSBLResolver;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class DNSBLServiceTest {
+  private DNSBLService service;
+
+  private final AtomicInteger lookups = new AtomicInteger();
+
+  @Before
+  public void init() throws Exception {
+    service = new DNSBLService();
+  }
+
+  @After
+  public void shutdown() {
+    service.shutdown();
+  }
+
+  @Test
+  public void testCached() {
+    service.setResolver(new DNSBLResolver() {
+      @Override
+      public int lookup(String addr) {
+        lookups.incrementAndGet();
+        return "10.0.0.1".equals(addr) ? 60 : NOT_LISTED;
+      }
+    });
+
+    assertTrue(service.isListed("10.0.0.1"));
+    assertTrue(service.isListed("10.0.0.1"));
+    assertFalse(service.isListed("10.0.0.2"));
+    assertFalse(service.isListed("10.0.0.2"));
+
+    assertEquals(2, lookups.get());
+  }
+
+  @Test
+  public void testPrefetch() throws Exception {
+    service.setResolver(new DNSBLResolver() {
+      @Override
+      public int lookup(String addr) {
+        lookups.incrementAndGet();
+        return 60;
+      }
+    });
+
+    service.prefetch("10.0.0.1");
+
+    assertTrue(service.isListed("10.0.0.1"));
+    assertEquals(1, lookups.get());
+  }
+
+  @Test
+  public void testBreaker() {
+    service.setResolver(new DNSBLResolver() {
+      @Override
+      public int lookup(String addr) throws IOException {
+        lookups.incrementAndGet();
+        throw new IOException("timeout");
+      }
+    });
+
+    for (int i = 0; i < 10; i++) {
+      assertFalse(service.isListed("10.0.0." + i));
+    }
+
+    assertTrue(service.isBreakerOpen());
+    assertEquals(5, lookups.get());
+  }
+
+  @Test
+  public void testTimeoutCountedOnce() throws Exception {
+    final CountDownLatch done = new CountDownLatch(1);
+
+    service.setResolver(new DNSBLResolver() {
+      @Override
+      public int lookup(String addr) {
+        Uninterruptibles.sleepUninterruptibly(2500, TimeUnit.MILLISECONDS);
+        done.countDown();
+        return NOT_LISTED;
+      }
+    });
+
+    assertFalse(service.isListed("10.0.0.1"));
+    assertTrue(done.await(5, TimeUnit.SECONDS));
+    Thread.sleep(100);
+
+    assertEquals(1, ((AtomicInteger) ReflectionTestUtils.getField(service, "failures")).get());
+  }
+
+  @Test
+  public void testQueueOverflowDiscarded() throws Exception {
+    final CountDownLatch release = new CountDownLatch(1);
+    // 2 потока пула + 100 мест в очереди
+    final CountDownLatch drained = new CountDownLatch(102);
+
+    service.setResolver(new DNSBLResolver() {
+      @Override
+      public int lookup(String addr) {
+        lookups.incrementAndGet();
+        Uninterruptibles.awaitUninterruptibly(release);
+        drained.countDown();
+        return 60;
+      }
+    });
+
+    for (int i = 0; i < 102; i++) {
+      service.prefetch("10.0." + (i / 256) + '.' + (i % 256));
+    }
+
+    long start = System.currentTimeMillis();
+    assertFalse(service.isListed("10.1.0.1"));
+    assertTrue(System.currentTimeMillis() - start < 1000);
+
+    release.countDown();
+
+    // очередь должна освободиться, иначе следующий запрос снова будет отброшен
+    assertTrue(drained.await(5, TimeUnit.SECONDS));
+
+    assertTrue(service.isListed("10.0.0.0"));
+
+    service.setResolver(new DNSBLResolver() {
+      @Override
+      public int lookup(String addr) {
+        return 60;
+      }
+    });
+
+    assertTrue(service.isListed("10.1.0.1"));
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 1998-2012 Linux.org.ru
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.org.linux.auth;
+
+import org.junit.Test;
+
+import java.sql.Timestamp;
+
+import static org.junit.Assert.*;
+
+public class IPBlockTableTest {
+  private static final Timestamp PAST = new Timestamp(System.currentTimeMillis() - 3600 * 1000);
+
+  private static IPBlockInfo ban(String ip, Timestamp banDate) {
+    return new IPBlockInfo(ip, "test", banDate, PAST, 1, false, false);
+  }
+
+  @Test
+  public void testExactMatch() {
+    IPBlockTable table = IPBlockTable.builder()
+            .add("192.168.1.1", ban("192.168.1.1", null))
+            .build();
+
+    assertTrue(table.lookup("192.168.1.1").isBlocked());
+    assertNull(table.lookup("192.168.1.2"));
+  }
+
+  @Test
+  public void testPrefixMatch() {
+    IPBlockTable table = IPBlockTable.builder()
+            .add("10.1.0.0/16", ban("10.1.0.0/16", null))
+            .build();
+
+    assertTrue(table.lookup("10.1.200.3").isBlocked());
+    assertNull(table.lookup("10.2.0.1"));
+  }
+
+  @Test
+  public void testExpiredHostInsideActiveNetwork() {
+    IPBlockTable table = IPBlockTable.builder()
+            .add("10.1.0.0/16", ban("10.1.0.0/16", null))
+            .add("10.1.2.3", ban("10.1.2.3", PAST))
+            .build();
+
+    assertEquals("10.1.0.0/16", table.lookup("10.1.2.3").getIp());
+  }
+
+  @Test
+  public void testExpiredOnly() {
+    IPBlockTable table = IPBlockTable.builder()
+            .add("10.1.2.3", ban("10.1.2.3", PAST))
+            .build();
+
+    IPBlockInfo info = table.lookup("10.1.2.3");
+
+    assertNotNull(info);
+    assertFalse(info.isBlocked());
+  }
+
+  @Test
+  public void testIPv6() {
+    IPBlockTable table = IPBlockTable.builder()
+            .add("2001:db8::/32", ban("2001:db8::/32", null))
+            .build();
+
+    assertTrue(table.lookup("2001:db8:1::1").isBlocked());
+    assertNull(table.lookup("2001:db9::1"));
+    assertNull(table.lookup("32.1.13.184"));
+  }
+
+  @Test
+  public void testBadAddress() {
+    IPBlockTable table = IPBlockTable.builder().build();
+
+    assertNull(table.lookup("not-an-ip"));
+  }
+}
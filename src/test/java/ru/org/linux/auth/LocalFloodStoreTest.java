@@ -0,0 +1,56 @@
+/*
+ * Copyright 1998-2012 Linux.org.ru
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.org.linux.auth;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LocalFloodStoreTest {
+  private static final FloodProtector.Action ACTION = FloodProtector.Action.ADD_COMMENT;
+
+  @Test
+  public void testSingleMessage() {
+    LocalFloodStore store = new LocalFloodStore();
+
+    assertTrue(store.tryAcquire(ACTION, "127.0.0.1", 30000, 1, 1000000));
+    assertFalse(store.tryAcquire(ACTION, "127.0.0.1", 30000, 1, 1010000));
+    assertTrue(store.tryAcquire(ACTION, "127.0.0.2", 30000, 1, 1010000));
+    assertTrue(store.tryAcquire(ACTION, "127.0.0.1", 30000, 1, 1030000));
+  }
+
+  @Test
+  public void testBurst() {
+    LocalFloodStore store = new LocalFloodStore();
+
+    assertTrue(store.tryAcquire(ACTION, "127.0.0.1", 10000, 3, 1000000));
+    assertTrue(store.tryAcquire(ACTION, "127.0.0.1", 10000, 3, 1000001));
+    assertTrue(store.tryAcquire(ACTION, "127.0.0.1", 10000, 3, 1000002));
+    assertFalse(store.tryAcquire(ACTION, "127.0.0.1", 10000, 3, 1000003));
+
+    // одно сообщение восстановилось
+    assertTrue(store.tryAcquire(ACTION, "127.0.0.1", 10000, 3, 1010000));
+    assertFalse(store.tryAcquire(ACTION, "127.0.0.1", 10000, 3, 1010001));
+  }
+
+  @Test
+  public void testActionsAreIndependent() {
+    LocalFloodStore store = new LocalFloodStore();
+
+    assertTrue(store.tryAcquire(FloodProtector.Action.ADD_COMMENT, "127.0.0.1", 30000, 1, 1000000));
+    assertTrue(store.tryAcquire(FloodProtector.Action.ADD_TOPIC, "127.0.0.1", 30000, 1, 1000000));
+  }
+}
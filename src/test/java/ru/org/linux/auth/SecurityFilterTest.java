@@ -0,0 +1,118 @@
+/*
+ * Copyright 1998-2012 Linux.org.ru
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.org.linux.auth;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.session.HttpSessionCreatedEvent;
+import org.springframework.security.web.session.HttpSessionDestroyedEvent;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.org.linux.csrf.CSRFProtectionService;
+import ru.org.linux.spring.Configuration;
+import ru.org.linux.user.Profile;
+import ru.org.linux.user.User;
+
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+public class SecurityFilterTest {
+  private SecurityFilter filter;
+
+  @Before
+  public void setUp() throws Exception {
+    filter = new SecurityFilter();
+    ReflectionTestUtils.setField(filter, "configuration", mock(Configuration.class));
+    filter.afterPropertiesSet();
+  }
+
+  @After
+  public void tearDown() {
+    SecurityContextHolder.clearContext();
+  }
+
+  private MockHttpServletRequest doFilter(MockHttpServletRequest request) throws Exception {
+    filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+    return request;
+  }
+
+  @Test
+  public void testAnonymousWithoutSession() throws Exception {
+    MockHttpServletRequest first = doFilter(new MockHttpServletRequest());
+    MockHttpServletRequest second = doFilter(new MockHttpServletRequest());
+
+    assertNull(first.getSession(false));
+    assertNull(second.getSession(false));
+
+    assertNotNull(first.getAttribute("template"));
+    assertSame(first.getAttribute("template"), second.getAttribute("template"));
+    assertNotNull(first.getAttribute(CSRFProtectionService.CSRF_ATTRIBUTE));
+  }
+
+  @Test
+  public void testExistingCSRFCookie() throws Exception {
+    MockHttpServletRequest request = new MockHttpServletRequest();
+    request.setCookies(new Cookie(CSRFProtectionService.CSRF_COOKIE, " token "));
+
+    assertEquals("token", doFilter(request).getAttribute(CSRFProtectionService.CSRF_ATTRIBUTE));
+  }
+
+  @Test
+  public void testAuthorizedUserSession() throws Exception {
+    Object anonymousTemplate = doFilter(new MockHttpServletRequest()).getAttribute("template");
+
+    User user = mock(User.class);
+    ImmutableList<GrantedAuthority> authorities = ImmutableList.<GrantedAuthority>of(new SimpleGrantedAuthority("ROLE_ANONYMOUS"));
+
+    SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+            new UserDetailsImpl(user, authorities, Profile.createDefault()), null, authorities
+    ));
+
+    MockHttpServletRequest request = doFilter(new MockHttpServletRequest());
+
+    assertNotNull(request.getSession(false));
+    assertNotSame(anonymousTemplate, request.getAttribute("template"));
+    verify(user).acegiSecurityHack(any(HttpServletResponse.class), any(HttpSession.class));
+  }
+
+  @Test
+  public void testSessionCounter() {
+    SessionCounter counter = new SessionCounter();
+    MockHttpSession session1 = new MockHttpSession();
+    MockHttpSession session2 = new MockHttpSession();
+
+    counter.onApplicationEvent(new HttpSessionCreatedEvent(session1));
+    counter.onApplicationEvent(new HttpSessionCreatedEvent(session2));
+    counter.onApplicationEvent(new HttpSessionDestroyedEvent(session1));
+
+    assertEquals(1, counter.getActiveSessions());
+    assertEquals(2, counter.getCreatedSessions());
+  }
+}
@@ -4,10 +4,16 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.ImportResource;
 import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jms.core.JmsTemplate;
 import ru.org.linux.spring.dao.DeleteInfoDao;
+import ru.org.linux.topic.TopicCache;
+import ru.org.linux.topic.TopicTagDao;
 
+import javax.jms.Destination;
 import javax.sql.DataSource;
 
+import static org.mockito.Mockito.mock;
+
 @Configuration
 @ImportResource("classpath:database.xml")
 public class CommentDaoIntegrationTestConfiguration {
@@ -25,4 +31,24 @@ public class CommentDaoIntegrationTestConfiguration {
   public DeleteInfoDao deleteInfoDao() {
     return new DeleteInfoDao();
   }
+
+  @Bean
+  public TopicTagDao topicTagDao() {
+    return new TopicTagDao();
+  }
+
+  @Bean
+  public TopicCache topicCache() {
+    return new TopicCache();
+  }
+
+  @Bean
+  public JmsTemplate jmsTemplate() {
+    return mock(JmsTemplate.class);
+  }
+
+  @Bean
+  public Destination topicCacheInvalidation() {
+    return mock(Destination.class);
+  }
 }
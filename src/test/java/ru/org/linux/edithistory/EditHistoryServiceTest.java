@@ -0,0 +1,111 @@
+/*
+ * Copyright 1998-2012 Linux.org.ru
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.org.linux.edithistory;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class EditHistoryServiceTest {
+  private static List<String> versions(int count) {
+    List<String> versions = new ArrayList<>();
+
+    for (int i = count; i > 0; i--) {
+      versions.add("Текст новости\nверсия " + i + "\nподпись");
+    }
+
+    return versions;
+  }
+
+  private static List<String> restore(String current, List<TextDelta> revisions) {
+    EditHistoryService.TextHistory history = new EditHistoryService.TextHistory(current);
+    List<String> restored = new ArrayList<>();
+
+    for (TextDelta revision : revisions) {
+      history.back(revision);
+      restored.add(history.get());
+    }
+
+    return restored;
+  }
+
+  @Test
+  public void testCompact() {
+    List<String> versions = versions(25);
+
+    List<TextDelta> stored = new ArrayList<>();
+    for (String version : versions) {
+      stored.add(TextDelta.snapshot(version));
+    }
+
+    List<TextDelta> packed = EditHistoryService.compact(stored);
+
+    assertEquals(versions.size(), packed.size());
+
+    for (int i = 0; i < packed.size(); i++) {
+      assertEquals(i % EditHistoryService.SNAPSHOT_INTERVAL == 0, packed.get(i).isSnapshot());
+    }
+
+    assertEquals(versions, restore("текущий текст", packed));
+
+    // повторное сжатие ничего не меняет
+    assertEquals(packed, EditHistoryService.compact(packed));
+  }
+
+  @Test
+  public void testLazyRestore() {
+    List<String> versions = versions(15);
+
+    EditHistoryService.TextHistory history = new EditHistoryService.TextHistory("текущий текст");
+
+    assertEquals("текущий текст", history.get());
+
+    history.back(TextDelta.snapshot(versions.get(0)));
+    for (int i = 1; i < versions.size(); i++) {
+      history.back(TextDelta.encode(versions.get(i - 1), versions.get(i)));
+    }
+
+    assertEquals(versions.get(versions.size() - 1), history.get());
+  }
+
+  @Test
+  public void testChainFull() {
+    List<EditHistoryDto> revisions = new ArrayList<>();
+
+    EditHistoryDto latest = new EditHistoryDto();
+    latest.setMessageDelta(TextDelta.snapshot("text"));
+    revisions.add(latest);
+
+    for (int i = 1; i < EditHistoryService.SNAPSHOT_INTERVAL; i++) {
+      assertFalse(EditHistoryService.isChainFull(revisions));
+
+      EditHistoryDto delta = new EditHistoryDto();
+      delta.setMessageDelta(new TextDelta(1, 1, "x"));
+      revisions.add(delta);
+    }
+
+    assertTrue(EditHistoryService.isChainFull(revisions));
+
+    EditHistoryDto legacy = new EditHistoryDto();
+    legacy.setOldmessage("full text");
+    revisions.add(1, legacy);
+
+    assertFalse(EditHistoryService.isChainFull(revisions));
+  }
+}
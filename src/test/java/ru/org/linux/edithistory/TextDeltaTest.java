@@ -0,0 +1,106 @@
+/*
+ * Copyright 1998-2012 Linux.org.ru
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.org.linux.edithistory;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TextDeltaTest {
+  @Test
+  public void testSingleChange() {
+    String newer = "Первая строка\nвторая строка\nтретья строка";
+    String older = "Первая строка\nстарая вторая\nтретья строка";
+
+    TextDelta delta = TextDelta.encode(newer, older);
+
+    assertEquals(older, delta.apply(newer));
+    assertFalse(delta.isSnapshot());
+    assertTrue(delta.getMiddle().length() < older.length());
+  }
+
+  @Test
+  public void testAppendAndTruncate() {
+    assertEquals("abc", TextDelta.encode("abcdef", "abc").apply("abcdef"));
+    assertEquals("abcdef", TextDelta.encode("abc", "abcdef").apply("abc"));
+    assertEquals("xabc", TextDelta.encode("abc", "xabc").apply("abc"));
+  }
+
+  @Test
+  public void testRepeatedChars() {
+    assertEquals("aaaa", TextDelta.encode("aa", "aaaa").apply("aa"));
+    assertEquals("aa", TextDelta.encode("aaaa", "aa").apply("aaaa"));
+  }
+
+  @Test
+  public void testSameText() {
+    TextDelta delta = TextDelta.encode("text", "text");
+
+    assertEquals("", delta.getMiddle());
+    assertEquals("text", delta.apply("text"));
+  }
+
+  @Test
+  public void testNothingInCommon() {
+    TextDelta delta = TextDelta.encode("abc", "xyz");
+
+    assertTrue(delta.isSnapshot());
+    assertEquals("xyz", delta.apply("something else"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMismatch() {
+    TextDelta.encode("abcdef", "abXdef").apply("ab");
+  }
+
+  private static boolean isWellFormed(String text) {
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+
+      if (Character.isHighSurrogate(c)) {
+        if (i + 1 >= text.length() || !Character.isLowSurrogate(text.charAt(i + 1))) {
+          return false;
+        }
+
+        i++;
+      } else if (Character.isLowSurrogate(c)) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  @Test
+  public void testEmojiNotSplit() {
+    // U+1F600 и U+1F601: общий старший суррогат
+    String newer = "смайлик \uD83D\uDE00 в тексте";
+    String older = "смайлик \uD83D\uDE01 в тексте";
+
+    TextDelta delta = TextDelta.encode(newer, older);
+
+    assertEquals("\uD83D\uDE01", delta.getMiddle());
+    assertEquals(older, delta.apply(newer));
+
+    // U+1F600 и U+1F200: общий младший суррогат
+    String other = "смайлик \uD83C\uDE00 в тексте";
+
+    TextDelta reverse = TextDelta.encode(newer, other);
+
+    assertTrue(isWellFormed(reverse.getMiddle()));
+    assertEquals(other, reverse.apply(newer));
+  }
+}
@@ -7,6 +7,7 @@ import ru.org.linux.section.SectionDao;
 import ru.org.linux.section.SectionDaoImpl;
 import ru.org.linux.section.SectionService;
 import ru.org.linux.user.IgnoreListDao;
+import ru.org.linux.user.LastLoginTracker;
 import ru.org.linux.user.UserDao;
 import ru.org.linux.user.UserLogDao;
 
@@ -35,6 +36,11 @@ public class ImageDaoIntegrationTestConfiguration {
     return new UserDao();
   }
 
+  @Bean
+  public LastLoginTracker lastLoginTracker() {
+    return new LastLoginTracker();
+  }
+
   @Bean
   public UserLogDao userLogDao() {
     return mock(UserLogDao.class);
@@ -0,0 +1,204 @@
+/*
+ * Copyright 1998-2012 Linux.org.ru
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.org.linux.group;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.org.linux.topic.TopicCache;
+import ru.org.linux.user.User;
+import ru.org.linux.util.IntSet;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class GroupListServiceTest {
+  private static final long DAY = 24 * 60 * 60 * 1000L;
+
+  private User author1;
+  private User author2;
+
+  @Before
+  public void setUp() {
+    author1 = mock(User.class);
+    when(author1.getId()).thenReturn(1);
+
+    author2 = mock(User.class);
+    when(author2.getId()).thenReturn(2);
+  }
+
+  private static GroupTopicRow row(int msgid, User author, long age, int... tags) {
+    Timestamp postdate = new Timestamp(System.currentTimeMillis() - age);
+
+    return new GroupTopicRow(
+            msgid, "topic " + msgid, postdate, postdate, author, false, 0, 0, 0, false, false,
+            ImmutableList.<String>of(), IntSet.of(tags)
+    );
+  }
+
+  private static List<Integer> ids(List<GroupTopicRow> rows) {
+    List<Integer> result = new ArrayList<>();
+
+    for (GroupTopicRow row : rows) {
+      result.add(row.getMsgid());
+    }
+
+    return result;
+  }
+
+  @Test
+  public void testPaging() {
+    GroupListService.GroupTopics topics = new GroupListService.GroupTopics(
+            ImmutableList.<GroupTopicRow>of(),
+            ImmutableList.of(row(5, author1, DAY), row(4, author1, DAY), row(3, author1, DAY), row(2, author1, DAY)),
+            false
+    );
+
+    assertEquals(ImmutableList.of(5, 4), ids(GroupListService.getPage(topics, 2, 0, IntSet.EMPTY, IntSet.EMPTY)));
+    assertEquals(ImmutableList.of(3, 2), ids(GroupListService.getPage(topics, 2, 2, IntSet.EMPTY, IntSet.EMPTY)));
+    assertNull(GroupListService.getPage(topics, 2, 3, IntSet.EMPTY, IntSet.EMPTY));
+  }
+
+  @Test
+  public void testCompleteGroup() {
+    GroupListService.GroupTopics topics = new GroupListService.GroupTopics(
+            ImmutableList.<GroupTopicRow>of(),
+            ImmutableList.of(row(2, author1, DAY), row(1, author1, DAY)),
+            true
+    );
+
+    assertEquals(ImmutableList.of(1), ids(GroupListService.getPage(topics, 2, 1, IntSet.EMPTY, IntSet.EMPTY)));
+    assertTrue(GroupListService.getPage(topics, 2, 5, IntSet.EMPTY, IntSet.EMPTY).isEmpty());
+  }
+
+  @Test
+  public void testIgnored() {
+    GroupListService.GroupTopics topics = new GroupListService.GroupTopics(
+            ImmutableList.<GroupTopicRow>of(),
+            ImmutableList.of(row(4, author2, DAY), row(3, author1, DAY, 10, 11), row(2, author1, DAY), row(1, author1, DAY)),
+            true
+    );
+
+    assertEquals(
+            ImmutableList.of(2, 1),
+            ids(GroupListService.getPage(topics, 2, 0, IntSet.of(2), IntSet.of(11)))
+    );
+
+    assertEquals(
+            ImmutableList.of(1),
+            ids(GroupListService.getPage(topics, 2, 1, IntSet.of(2), IntSet.of(11)))
+    );
+  }
+
+  @Test
+  public void testFirstPageOnlyRecent() {
+    GroupListService.GroupTopics topics = new GroupListService.GroupTopics(
+            ImmutableList.<GroupTopicRow>of(),
+            ImmutableList.of(row(3, author1, DAY), row(2, author1, 200 * DAY), row(1, author1, 300 * DAY)),
+            true
+    );
+
+    assertEquals(ImmutableList.of(3), ids(GroupListService.getPage(topics, 3, 0, IntSet.EMPTY, IntSet.EMPTY)));
+    assertEquals(ImmutableList.of(2, 1), ids(GroupListService.getPage(topics, 3, 1, IntSet.EMPTY, IntSet.EMPTY)));
+  }
+
+  @Test
+  public void testInvalidation() {
+    GroupListService service = new GroupListService();
+    GroupListDao dao = mock(GroupListDao.class);
+    ReflectionTestUtils.setField(service, "groupListDao", dao);
+    ReflectionTestUtils.setField(service, "rebuildInterval", 0L);
+
+    Group group1 = mock(Group.class);
+    when(group1.getId()).thenReturn(1);
+    Group group2 = mock(Group.class);
+    when(group2.getId()).thenReturn(2);
+
+    when(dao.getRecentTopics(group1, GroupListService.MATERIALIZED_TOPICS)).thenReturn(ImmutableList.of(row(10, author1, DAY)));
+    when(dao.getRecentTopics(group2, GroupListService.MATERIALIZED_TOPICS)).thenReturn(ImmutableList.of(row(20, author1, DAY)));
+
+    service.getStickyTopics(group1, 50);
+    service.getStickyTopics(group2, 50);
+    service.getStickyTopics(group1, 50);
+
+    verify(dao, times(1)).getRecentTopics(group1, GroupListService.MATERIALIZED_TOPICS);
+
+    // топик 10 перенесен во вторую группу
+    when(dao.getTopicGroupId(10)).thenReturn(2);
+    service.handleMessage(new TopicCache.InvalidateTopic(10));
+
+    service.getStickyTopics(group1, 50);
+    service.getStickyTopics(group2, 50);
+
+    verify(dao, times(2)).getRecentTopics(group1, GroupListService.MATERIALIZED_TOPICS);
+    verify(dao, times(2)).getRecentTopics(group2, GroupListService.MATERIALIZED_TOPICS);
+  }
+
+  @Test
+  public void testRebuildRateLimited() {
+    GroupListService service = new GroupListService();
+    GroupListDao dao = mock(GroupListDao.class);
+    ReflectionTestUtils.setField(service, "groupListDao", dao);
+
+    Group group = mock(Group.class);
+    when(group.getId()).thenReturn(1);
+
+    when(dao.getRecentTopics(group, GroupListService.MATERIALIZED_TOPICS)).thenReturn(ImmutableList.of(row(10, author1, DAY)));
+    when(dao.getTopicGroupId(10)).thenReturn(1);
+
+    service.getStickyTopics(group, 50);
+
+    // комментарии к топику: список только помечается устаревшим
+    for (int i = 0; i < 10; i++) {
+      service.handleMessage(new TopicCache.InvalidateTopic(10));
+      service.getStickyTopics(group, 50);
+    }
+
+    verify(dao, times(1)).getRecentTopics(group, GroupListService.MATERIALIZED_TOPICS);
+
+    ReflectionTestUtils.setField(service, "rebuildInterval", 0L);
+
+    service.getStickyTopics(group, 50);
+    service.getStickyTopics(group, 50);
+
+    verify(dao, times(2)).getRecentTopics(group, GroupListService.MATERIALIZED_TOPICS);
+  }
+
+  @Test
+  public void testTryRebuild() {
+    GroupListService.GroupTopics topics = new GroupListService.GroupTopics(
+            ImmutableList.<GroupTopicRow>of(),
+            ImmutableList.of(row(1, author1, DAY)),
+            true
+    );
+
+    long now = System.currentTimeMillis();
+
+    assertFalse(topics.tryRebuild(now + 1000, 0));
+
+    topics.invalidate();
+
+    assertFalse(topics.tryRebuild(now - 1000, 1000));
+    assertTrue(topics.tryRebuild(now + 1000, 0));
+    assertFalse(topics.tryRebuild(now + 1000, 0));
+    assertFalse(topics.isInvalid());
+  }
+}
@@ -15,6 +15,7 @@
 package ru.org.linux.poll;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -31,6 +32,7 @@ import static org.junit.Assert.assertEquals;
 @ContextConfiguration(classes = PollDaoIntegrationTestConfiguration.class)
 public class PollDaoIntegrationTest {
   private static final Integer TEST_TOPIC_ID = 1937504;
+  private static final int TEST_USER_ID = 32670;
 
   @Autowired
   private PollDao pollDao;
@@ -69,4 +71,29 @@ public class PollDaoIntegrationTest {
     pollVariants = pollDao.getPollVariants(poll);
     assertEquals(3, pollVariants.size());
   }
+
+  @Test
+  @Transactional
+  public void voteMultiselectSavedOncePerUserTest()
+      throws Exception {
+    pollDao.createPoll(ImmutableList.of("Case 1", "Case 2", "Case 3"), true, TEST_TOPIC_ID);
+    Poll poll = pollDao.getPollByTopicId(TEST_TOPIC_ID);
+
+    ImmutableList<PollVariantResult> pollVariants = pollDao.getPollVariants(poll);
+    int first = pollVariants.get(0).getId();
+    int second = pollVariants.get(1).getId();
+    int third = pollVariants.get(2).getId();
+
+    pollDao.saveVotes(poll.getId(), ImmutableMap.of(TEST_USER_ID, new int[] { first, second }));
+
+    /* Повторный голос пользователя за другой вариант не записывается */
+    pollDao.saveVotes(poll.getId(), ImmutableMap.of(TEST_USER_ID, new int[] { third }));
+
+    assertEquals(1, pollDao.getVotersCount(poll.getId()));
+
+    pollVariants = pollDao.getPollVariants(poll);
+    assertEquals(1, pollVariants.get(0).getVotes());
+    assertEquals(1, pollVariants.get(1).getVotes());
+    assertEquals(0, pollVariants.get(2).getVotes());
+  }
 }
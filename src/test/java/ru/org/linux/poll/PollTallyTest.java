@@ -0,0 +1,184 @@
+/*
+ * Copyright 1998-2012 Linux.org.ru
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.org.linux.poll;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Before;
+import org.junit.Test;
+import ru.org.linux.util.IntSet;
+
+import static org.junit.Assert.*;
+
+public class PollTallyTest {
+  private Poll poll;
+  private PollTally tally;
+
+  @Before
+  public void setUp() {
+    poll = new Poll(1, 100, true, true, ImmutableList.of(
+            new PollVariant(10, "first"),
+            new PollVariant(11, "second"),
+            new PollVariant(12, "third")
+    ));
+
+    tally = new PollTally(1, ImmutableList.of(
+            new PollVariantResult(10, "first", 5, false),
+            new PollVariantResult(11, "second", 3, false),
+            new PollVariantResult(12, "third", 0, false)
+    ), ImmutableList.of(1, 2, 2, 3));
+  }
+
+  @Test
+  public void testVote() throws Exception {
+    assertEquals(3, tally.getVoterCount());
+    assertEquals(8, tally.getTotalVotes());
+
+    assertTrue(tally.vote(4, new int[] { 12, 11, 12 }));
+
+    assertEquals(4, tally.getVoterCount());
+    assertEquals(10, tally.getTotalVotes());
+    assertTrue(tally.hasVoted(4));
+    assertArrayEquals(new int[] { 11, 12 }, tally.getPendingVotes(4));
+  }
+
+  @Test
+  public void testDuplicateVoteIgnored() throws Exception {
+    assertTrue(tally.vote(2, new int[] { 12 }));
+    assertTrue(tally.vote(4, new int[] { 12 }));
+    assertTrue(tally.vote(4, new int[] { 11 }));
+
+    assertEquals(4, tally.getVoterCount());
+    assertEquals(9, tally.getTotalVotes());
+    assertEquals(1, tally.getPendingCount());
+  }
+
+  @Test(expected = BadVoteException.class)
+  public void testBadVariant() throws Exception {
+    tally.vote(4, new int[] { 10, 99 });
+  }
+
+  @Test
+  public void testBadVariantNotCounted() {
+    try {
+      tally.vote(4, new int[] { 10, 99 });
+      fail();
+    } catch (BadVoteException ignored) {
+    }
+
+    assertFalse(tally.hasVoted(4));
+    assertEquals(8, tally.getTotalVotes());
+  }
+
+  @Test
+  public void testDrainAndRequeue() throws Exception {
+    tally.vote(4, new int[] { 10 });
+    tally.vote(5, new int[] { 11 });
+
+    ImmutableMap<Integer, int[]> batch = tally.drain();
+
+    assertEquals(2, batch.size());
+    assertEquals(0, tally.getPendingCount());
+    assertNull(tally.getPendingVotes(4));
+    assertTrue(tally.hasVoted(4));
+
+    tally.vote(6, new int[] { 12 });
+    tally.requeue(batch);
+
+    assertEquals(3, tally.getPendingCount());
+  }
+
+  @Test
+  public void testReload() throws Exception {
+    tally.vote(4, new int[] { 12 });
+    tally.vote(5, new int[] { 10 });
+
+    // пользователи 5 и 7 проголосовали на другом узле
+    tally.reload(ImmutableList.of(
+            new PollVariantResult(10, "first", 5, false),
+            new PollVariantResult(11, "second", 4, false),
+            new PollVariantResult(12, "third", 1, false)
+    ), ImmutableList.of(1, 2, 3, 5, 7));
+
+    assertNull(tally.getPendingVotes(5));
+    assertArrayEquals(new int[] { 12 }, tally.getPendingVotes(4));
+    assertEquals(6, tally.getVoterCount());
+    assertEquals(11, tally.getTotalVotes());
+
+    assertTrue(tally.hasVoted(7));
+    assertTrue(tally.vote(7, new int[] { 10 }));
+    assertNull(tally.getPendingVotes(7));
+    assertEquals(11, tally.getTotalVotes());
+  }
+
+  @Test
+  public void testReloadSkippedWhenVariantsChanged() throws Exception {
+    tally.reload(ImmutableList.of(new PollVariantResult(10, "first", 100, false)), ImmutableList.of(1));
+
+    assertEquals(3, tally.getVoterCount());
+    assertEquals(8, tally.getTotalVotes());
+  }
+
+  @Test
+  public void testClose() throws Exception {
+    tally.vote(4, new int[] { 10 });
+
+    assertEquals(1, tally.close().size());
+    assertFalse(tally.vote(5, new int[] { 10 }));
+    assertEquals(0, tally.getPendingCount());
+  }
+
+  @Test
+  public void testMatches() {
+    assertTrue(tally.matches(poll));
+
+    assertFalse(tally.matches(poll.createNew(ImmutableList.of(
+            new PollVariant(10, "first"),
+            new PollVariant(11, "second")
+    ))));
+
+    assertFalse(tally.matches(new Poll(2, 100, true, true, poll.getVariants())));
+  }
+
+  @Test
+  public void testResults() throws Exception {
+    tally.vote(4, new int[] { 12 });
+
+    ImmutableList<PollVariantResult> byId = tally.getResults(poll, Poll.ORDER_ID, IntSet.of(12));
+
+    assertEquals(10, byId.get(0).getId());
+    assertEquals("third", byId.get(2).getLabel());
+    assertEquals(1, byId.get(2).getVotes());
+    assertTrue(byId.get(2).getUserVoted());
+    assertFalse(byId.get(0).getUserVoted());
+
+    tally.vote(5, new int[] { 12 });
+    tally.vote(6, new int[] { 12 });
+
+    ImmutableList<PollVariantResult> byVotes = tally.getResults(poll, Poll.ORDER_VOTES, IntSet.EMPTY);
+
+    assertEquals(10, byVotes.get(0).getId());
+    assertEquals(11, byVotes.get(1).getId());
+    assertEquals(12, byVotes.get(2).getId());
+
+    tally.vote(7, new int[] { 12 });
+
+    byVotes = tally.getResults(poll, Poll.ORDER_VOTES, IntSet.EMPTY);
+
+    assertEquals(10, byVotes.get(0).getId());
+    assertEquals(12, byVotes.get(1).getId());
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 1998-2012 Linux.org.ru
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.org.linux.search;
+
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.client.solrj.SolrServer;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.common.util.NamedList;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.org.linux.comment.CommentService;
+import ru.org.linux.search.SearchQueueSender.UpdateMessage;
+import ru.org.linux.site.MessageNotFoundException;
+import ru.org.linux.spring.dao.MsgbaseDao;
+import ru.org.linux.topic.Topic;
+import ru.org.linux.topic.TopicDao;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+public class SearchQueueListenerTest {
+  private SearchQueueListener listener;
+  private SolrServer solrServer;
+  private TopicDao topicDao;
+
+  @Before
+  public void setUp() {
+    listener = new SearchQueueListener();
+    solrServer = mock(SolrServer.class);
+    topicDao = mock(TopicDao.class);
+
+    ReflectionTestUtils.setField(listener, "solrServer", solrServer);
+    ReflectionTestUtils.setField(listener, "topicDao", topicDao);
+    ReflectionTestUtils.setField(listener, "commentService", mock(CommentService.class));
+    ReflectionTestUtils.setField(listener, "msgbaseDao", mock(MsgbaseDao.class));
+  }
+
+  @Test
+  public void testMissingTopicRemovedFromIndex() throws Exception {
+    when(topicDao.getById(1)).thenThrow(new MessageNotFoundException(1));
+    when(solrServer.request(any(SolrRequest.class))).thenReturn(new NamedList<Object>());
+
+    listener.handleMessage(new UpdateMessage(1, false));
+    listener.flush();
+
+    verify(solrServer).request(any(SolrRequest.class));
+    verify(solrServer, never()).commit();
+    assertEquals(0, listener.getPendingCount());
+  }
+
+  @Test
+  public void testPoisonTopicIsolated() throws Exception {
+    Topic good = mock(Topic.class);
+    when(good.getId()).thenReturn(2);
+    when(good.isDeleted()).thenReturn(true);
+
+    when(topicDao.getById(1)).thenThrow(new IllegalStateException("broken"));
+    when(topicDao.getById(2)).thenReturn(good);
+    when(solrServer.request(any(SolrRequest.class))).thenReturn(new NamedList<Object>());
+
+    listener.handleMessage(new UpdateMessage(1, false));
+    listener.handleMessage(new UpdateMessage(2, false));
+
+    for (int i = 0; i < SearchUpdateBuffer.MAX_ATTEMPTS; i++) {
+      listener.flush();
+    }
+
+    // топик 2 проиндексирован с первой попытки, топик 1 отброшен после MAX_ATTEMPTS
+    verify(topicDao, atMost(2)).getById(2);
+    verify(solrServer, times(1)).request(any(SolrRequest.class));
+    assertEquals(0, listener.getPendingCount());
+  }
+
+  @Test
+  public void testFailedBatchRetriedWithBackoff() throws Exception {
+    when(topicDao.getById(1)).thenThrow(new MessageNotFoundException(1));
+    when(solrServer.request(any(SolrRequest.class))).thenThrow(new SolrServerException("down"));
+
+    listener.handleMessage(new UpdateMessage(1, false));
+    listener.flush();
+
+    assertEquals(1, listener.getPendingCount());
+
+    // следующий сброс откладывается
+    listener.flush();
+
+    verify(solrServer, times(1)).request(any(SolrRequest.class));
+    assertEquals(1, listener.getPendingCount());
+  }
+
+  @Test
+  public void testShutdownFlushes() throws Exception {
+    when(topicDao.getById(1)).thenThrow(new MessageNotFoundException(1));
+    when(solrServer.request(any(SolrRequest.class))).thenReturn(new NamedList<Object>());
+
+    listener.handleMessage(new UpdateMessage(1, false));
+    listener.shutdown();
+
+    verify(solrServer).request(any(SolrRequest.class));
+    assertEquals(0, listener.getPendingCount());
+  }
+}
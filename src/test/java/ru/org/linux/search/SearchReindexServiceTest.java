@@ -0,0 +1,129 @@
+/*
+ * Copyright 1998-2012 Linux.org.ru
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.org.linux.search;
+
+import com.google.common.collect.ImmutableList;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.org.linux.site.MessageNotFoundException;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+public class SearchReindexServiceTest {
+  private SearchReindexService service;
+  private SearchReindexDao dao;
+  private SearchQueueListener listener;
+
+  private final ReindexPartition partition = new ReindexPartition(0, 0, 100, 0, false, null);
+
+  @Before
+  public void setUp() {
+    service = new SearchReindexService();
+    dao = mock(SearchReindexDao.class);
+    listener = mock(SearchQueueListener.class);
+
+    ReflectionTestUtils.setField(service, "searchReindexDao", dao);
+    ReflectionTestUtils.setField(service, "searchQueueListener", listener);
+
+    when(dao.updateCheckpoint(anyInt(), anyString(), anyInt(), anyBoolean())).thenReturn(true);
+  }
+
+  @Test
+  public void testPoisonTopicSkipped() throws Exception {
+    List<Integer> batch = ImmutableList.of(1, 2, 3);
+
+    when(dao.getTopicIds(0, 100, 50)).thenReturn(batch);
+    when(dao.getTopicIds(3, 100, 50)).thenReturn(Collections.<Integer>emptyList());
+
+    doThrow(new MessageNotFoundException(2)).when(listener).reindexTopics(batch);
+    doThrow(new MessageNotFoundException(2)).when(listener).reindexTopics(Collections.singletonList(2));
+
+    service.processPartition(partition);
+
+    verify(listener).reindexTopics(Collections.singletonList(1));
+    verify(listener).reindexTopics(Collections.singletonList(3));
+    verify(dao).addSkipped(eq(2), eq(0), anyString());
+    verify(dao, never()).addSkipped(eq(1), anyInt(), anyString());
+    verify(dao).updateCheckpoint(eq(0), anyString(), eq(3), eq(false));
+    verify(dao).updateCheckpoint(eq(0), anyString(), eq(100), eq(true));
+  }
+
+  @Test
+  public void testSolrErrorStopsPartition() throws Exception {
+    List<Integer> batch = ImmutableList.of(1, 2);
+
+    when(dao.getTopicIds(0, 100, 50)).thenReturn(batch);
+    doThrow(new SolrServerException("down")).when(listener).reindexTopics(batch);
+
+    service.processPartition(partition);
+
+    verify(listener, times(1)).reindexTopics(anyListOf(Integer.class));
+    verify(dao, never()).addSkipped(anyInt(), anyInt(), anyString());
+    verify(dao, never()).updateCheckpoint(anyInt(), anyString(), anyInt(), anyBoolean());
+    verify(dao).release(eq(0), anyString());
+  }
+
+  @Test
+  public void testLostClaimStopsPartition() throws Exception {
+    when(dao.getTopicIds(0, 100, 50)).thenReturn(ImmutableList.of(1, 2));
+    when(dao.updateCheckpoint(anyInt(), anyString(), anyInt(), anyBoolean())).thenReturn(false);
+
+    service.processPartition(partition);
+
+    verify(dao, times(1)).getTopicIds(anyInt(), anyInt(), anyInt());
+    verify(dao, never()).release(anyInt(), anyString());
+  }
+
+  @Test
+  public void testResumeWithoutClaimDoesNothing() throws Exception {
+    when(dao.getPartitions()).thenReturn(ImmutableList.of(partition));
+    when(dao.claim(eq(0), anyString(), anyInt())).thenReturn(false);
+
+    service.resume();
+
+    assertFalse(service.isRunning());
+    verify(dao, never()).getTopicIds(anyInt(), anyInt(), anyInt());
+  }
+
+  @Test
+  public void testResumeProcessesClaimedPartitions() throws Exception {
+    ReindexPartition other = new ReindexPartition(1, 100, 200, 100, false, "other");
+    ReindexPartition finished = new ReindexPartition(2, 200, 300, 300, true, null);
+
+    when(dao.getPartitions()).thenReturn(ImmutableList.of(partition, other, finished));
+    when(dao.claim(eq(0), anyString(), anyInt())).thenReturn(true);
+    when(dao.claim(eq(1), anyString(), anyInt())).thenReturn(false);
+    when(dao.getTopicIds(anyInt(), anyInt(), anyInt())).thenReturn(Collections.<Integer>emptyList());
+
+    service.resume();
+
+    ExecutorService executor = (ExecutorService) ReflectionTestUtils.getField(service, "executor");
+    assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+    verify(dao, never()).claim(eq(2), anyString(), anyInt());
+    verify(dao).updateCheckpoint(eq(0), anyString(), eq(100), eq(true));
+    verify(dao, never()).updateCheckpoint(eq(1), anyString(), anyInt(), anyBoolean());
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 1998-2012 Linux.org.ru
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.org.linux.search;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SearchUpdateBufferTest {
+  @Test
+  public void testCoalesceTopics() {
+    SearchUpdateBuffer buffer = new SearchUpdateBuffer();
+
+    buffer.addTopic(1, false);
+    buffer.addTopic(1, true);
+    buffer.addTopic(1, false);
+    buffer.addTopic(2, false);
+
+    assertEquals(2, buffer.getPendingCount());
+
+    SearchUpdateBuffer.Batch batch = buffer.drain();
+
+    assertEquals(2, batch.getTopics().size());
+    assertTrue(batch.getTopics().get(1));
+    assertFalse(batch.getTopics().get(2));
+
+    assertEquals(0, buffer.getPendingCount());
+    assertEquals(2.0, buffer.getCoalescingRatio(), 0.001);
+  }
+
+  @Test
+  public void testCoalesceComments() {
+    SearchUpdateBuffer buffer = new SearchUpdateBuffer();
+
+    buffer.addComments(ImmutableList.of(10, 11));
+    buffer.addComments(ImmutableList.of(11, 12));
+
+    SearchUpdateBuffer.Batch batch = buffer.drain();
+
+    assertEquals(3, batch.getComments().size());
+    assertEquals(4, buffer.getReceivedCount());
+    assertEquals(3, buffer.getDrainedCount());
+  }
+
+  @Test
+  public void testRequeue() {
+    SearchUpdateBuffer buffer = new SearchUpdateBuffer();
+
+    buffer.addTopic(1, true);
+    buffer.addComments(ImmutableList.of(10));
+
+    SearchUpdateBuffer.Batch batch = buffer.drain();
+
+    buffer.addTopic(1, false);
+    buffer.requeue(batch);
+
+    SearchUpdateBuffer.Batch retry = buffer.drain();
+
+    assertTrue(retry.getTopics().get(1));
+    assertTrue(retry.getComments().contains(10));
+    assertTrue(buffer.drain().isEmpty());
+  }
+
+  @Test
+  public void testAttemptsCapped() {
+    SearchUpdateBuffer buffer = new SearchUpdateBuffer();
+
+    buffer.addTopic(1, false);
+
+    for (int i = 1; i < SearchUpdateBuffer.MAX_ATTEMPTS; i++) {
+      assertTrue(buffer.requeue(buffer.drain()).isEmpty());
+    }
+
+    assertEquals(ImmutableSet.of(1), buffer.requeue(buffer.drain()));
+    assertEquals(0, buffer.getPendingCount());
+  }
+
+  @Test
+  public void testDoneResetsAttempts() {
+    SearchUpdateBuffer buffer = new SearchUpdateBuffer();
+
+    buffer.addTopic(1, false);
+
+    for (int i = 1; i < SearchUpdateBuffer.MAX_ATTEMPTS; i++) {
+      buffer.requeue(buffer.drain());
+    }
+
+    buffer.done(buffer.drain());
+
+    buffer.addTopic(1, false);
+    assertTrue(buffer.requeue(buffer.drain()).isEmpty());
+  }
+
+  @Test
+  public void testSplit() {
+    SearchUpdateBuffer buffer = new SearchUpdateBuffer();
+
+    buffer.addTopic(1, true);
+    buffer.addComments(ImmutableList.of(10, 11));
+
+    List<SearchUpdateBuffer.Batch> items = buffer.drain().split();
+
+    assertEquals(3, items.size());
+
+    for (SearchUpdateBuffer.Batch item : items) {
+      assertEquals(1, item.size());
+    }
+
+    assertEquals(Boolean.TRUE, items.get(0).getTopics().get(1));
+  }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 1998-2012 Linux.org.ru
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.org.linux.spring;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.View;
+import org.springframework.web.servlet.ViewResolver;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.util.Locale;
+import java.util.Scanner;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyMap;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class FeedCacheInterceptorTest {
+  private static final String RSS = "<rss><title>Новости</title></rss>";
+
+  private View view;
+  private FeedCacheInterceptor interceptor;
+  private int calls;
+
+  @Before
+  public void setUp() throws Exception {
+    view = mock(View.class);
+
+    ViewResolver resolver = mock(ViewResolver.class);
+    when(resolver.resolveViewName(anyString(), any(Locale.class))).thenReturn(view);
+
+    doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) throws Throwable {
+        HttpServletResponse response = (HttpServletResponse) invocation.getArguments()[2];
+
+        response.setContentType("application/rss+xml; charset=utf-8");
+        response.getWriter().write(RSS);
+
+        return null;
+      }
+    }).when(view).render(anyMap(), any(HttpServletRequest.class), any(HttpServletResponse.class));
+
+    interceptor = new FeedCacheInterceptor();
+    interceptor.setViewResolver(resolver);
+  }
+
+  private static MockHttpServletRequest request() {
+    MockHttpServletRequest request = new MockHttpServletRequest("GET", "/section-rss.jsp");
+    request.setQueryString("section=1&noredirect=1");
+
+    return request;
+  }
+
+  private MockHttpServletResponse handle(MockHttpServletRequest request, String viewName) throws Exception {
+    MockHttpServletResponse response = new MockHttpServletResponse();
+
+    if (interceptor.preHandle(request, response, null)) {
+      calls++;
+
+      ModelAndView mav = new ModelAndView(viewName);
+      interceptor.postHandle(request, response, null, mav);
+
+      if (mav.isReference()) {
+        view.render(mav.getModel(), request, response);
+      } else {
+        mav.getView().render(mav.getModel(), request, response);
+      }
+    }
+
+    return response;
+  }
+
+  private static String gunzip(byte[] data) throws Exception {
+    try (Scanner scanner = new Scanner(new GZIPInputStream(new ByteArrayInputStream(data)), "UTF-8")) {
+      return scanner.useDelimiter("\\A").next();
+    }
+  }
+
+  @Test
+  public void testGzipServedFromCache() throws Exception {
+    MockHttpServletRequest request = request();
+    request.addHeader("Accept-Encoding", "gzip, deflate");
+
+    MockHttpServletResponse first = handle(request, "section-rss");
+    MockHttpServletResponse second = handle(request, "section-rss");
+
+    assertEquals(1, calls);
+    assertEquals("gzip", second.getHeader("Content-Encoding"));
+    assertEquals("Accept-Encoding", second.getHeader("Vary"));
+    assertEquals("application/rss+xml; charset=utf-8", second.getContentType());
+    assertEquals(RSS, gunzip(first.getContentAsByteArray()));
+    assertEquals(RSS, gunzip(second.getContentAsByteArray()));
+  }
+
+  @Test
+  public void testPlainForClientsWithoutGzip() throws Exception {
+    MockHttpServletRequest gzip = request();
+    gzip.addHeader("Accept-Encoding", "gzip");
+
+    handle(gzip, "section-rss");
+    MockHttpServletResponse plain = handle(request(), "section-rss");
+
+    assertEquals(1, calls);
+    assertNull(plain.getHeader("Content-Encoding"));
+    assertEquals(RSS, new String(plain.getContentAsByteArray(), "UTF-8"));
+  }
+
+  @Test
+  public void testKeyedBySchemeAndQuery() throws Exception {
+    handle(request(), "section-rss");
+
+    MockHttpServletRequest secure = request();
+    secure.setSecure(true);
+    handle(secure, "section-rss");
+
+    MockHttpServletRequest other = request();
+    other.setQueryString("section=2");
+    handle(other, "section-rss");
+
+    MockHttpServletRequest feedBurner = request();
+    feedBurner.addHeader("User-Agent", "FeedBurner/1.0");
+    handle(feedBurner, "section-rss");
+
+    assertEquals(4, calls);
+  }
+
+  @Test
+  public void testRedirectNotCached() throws Exception {
+    handle(request(), "redirect:http://feeds.feedburner.com/org/LOR");
+    handle(request(), "redirect:http://feeds.feedburner.com/org/LOR");
+
+    assertEquals(2, calls);
+  }
+
+  @Test
+  public void testAcceptsGzip() {
+    assertTrue(FeedCacheInterceptor.acceptsGzip("gzip"));
+    assertTrue(FeedCacheInterceptor.acceptsGzip("deflate, GZIP;q=0.5"));
+    assertTrue(FeedCacheInterceptor.acceptsGzip("*"));
+    assertFalse(FeedCacheInterceptor.acceptsGzip(null));
+    assertFalse(FeedCacheInterceptor.acceptsGzip("deflate"));
+    assertFalse(FeedCacheInterceptor.acceptsGzip("gzip;q=0"));
+    assertFalse(FeedCacheInterceptor.acceptsGzip("gzip;q=0, *"));
+  }
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright 1998-2012 Linux.org.ru
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.org.linux.spring.boxlets;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.View;
+import org.springframework.web.servlet.ViewResolver;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyMap;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class BoxletCacheInterceptorTest {
+  private TestBoxlet boxlet;
+  private HandlerMethod handler;
+  private View view;
+  private BoxletCacheInterceptor interceptor;
+
+  @Before
+  public void setUp() throws Exception {
+    boxlet = new TestBoxlet();
+    handler = new HandlerMethod(boxlet, "getData", HttpServletRequest.class);
+    view = mock(View.class);
+
+    ViewResolver resolver = mock(ViewResolver.class);
+    when(resolver.resolveViewName(anyString(), any(Locale.class))).thenReturn(view);
+
+    interceptor = new BoxletCacheInterceptor();
+    interceptor.setViewResolver(resolver);
+  }
+
+  private MockHttpServletResponse handle(MockHttpServletRequest request) throws Exception {
+    MockHttpServletResponse response = new MockHttpServletResponse();
+
+    if (interceptor.preHandle(request, response, handler)) {
+      ModelAndView mav = boxlet.getData(request);
+      interceptor.postHandle(request, response, handler, mav);
+      View rendered = mav.isReference() ? view : mav.getView();
+      rendered.render(mav.getModel(), request, response);
+      interceptor.afterCompletion(request, response, handler, null);
+    }
+
+    return response;
+  }
+
+  private void renders(final String html) throws Exception {
+    doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) throws Throwable {
+        ((HttpServletResponse) invocation.getArguments()[2]).getWriter().write(html);
+        return null;
+      }
+    }).when(view).render(anyMap(), any(HttpServletRequest.class), any(HttpServletResponse.class));
+  }
+
+  @Test
+  public void testFreshFragmentServedFromCache() throws Exception {
+    renders("<p>1</p>");
+
+    assertEquals("<p>1</p>", handle(new MockHttpServletRequest()).getContentAsString());
+    assertEquals("<p>1</p>", handle(new MockHttpServletRequest()).getContentAsString());
+
+    assertEquals(1, boxlet.calls);
+  }
+
+  @Test
+  public void testStaleFragmentRefreshed() throws Exception {
+    renders("<p>1</p>");
+    handle(new MockHttpServletRequest());
+
+    boxlet.putFragment("", new CachedFragment("<p>old</p>", 0));
+    renders("<p>2</p>");
+
+    assertEquals("<p>2</p>", handle(new MockHttpServletRequest()).getContentAsString());
+    assertEquals(2, boxlet.calls);
+  }
+
+  @Test
+  public void testStaleServedWhileRefreshing() throws Exception {
+    CachedFragment stale = new CachedFragment("<p>old</p>", 0);
+    boxlet.putFragment("", stale);
+
+    assertTrue(stale.tryRefresh());
+
+    assertEquals("<p>old</p>", handle(new MockHttpServletRequest()).getContentAsString());
+    assertEquals(0, boxlet.calls);
+  }
+
+  @Test
+  public void testStaleServedOnRenderFailure() throws Exception {
+    boxlet.putFragment("", new CachedFragment("<p>old</p>", 0));
+    doThrow(new IllegalStateException()).when(view).render(anyMap(), any(HttpServletRequest.class), any(HttpServletResponse.class));
+
+    assertEquals("<p>old</p>", handle(new MockHttpServletRequest()).getContentAsString());
+    assertTrue(boxlet.getFragment("").tryRefresh());
+  }
+
+  @Test
+  public void testStaleServedOnHandlerFailure() throws Exception {
+    boxlet.putFragment("", new CachedFragment("<p>old</p>", 0));
+    boxlet.fail = true;
+
+    MockHttpServletRequest request = new MockHttpServletRequest();
+    MockHttpServletResponse response = new MockHttpServletResponse();
+
+    assertTrue(interceptor.preHandle(request, response, handler));
+
+    try {
+      boxlet.getData(request);
+      fail();
+    } catch (IllegalStateException ex) {
+      ModelAndView resolved = new BoxletExceptionResolver().resolveException(request, response, handler, ex);
+
+      assertNotNull(resolved);
+      assertTrue(resolved.isEmpty());
+    }
+
+    interceptor.afterCompletion(request, response, handler, null);
+
+    assertEquals("<p>old</p>", response.getContentAsString());
+    assertTrue(boxlet.getFragment("").tryRefresh());
+  }
+
+  @Test
+  public void testHandlerFailureWithoutFragmentNotResolved() throws Exception {
+    boxlet.fail = true;
+
+    MockHttpServletRequest request = new MockHttpServletRequest();
+    MockHttpServletResponse response = new MockHttpServletResponse();
+
+    assertTrue(interceptor.preHandle(request, response, handler));
+    assertNull(new BoxletExceptionResolver().resolveException(request, response, handler, new IllegalStateException()));
+    interceptor.afterCompletion(request, response, handler, new IllegalStateException());
+
+    boxlet.fail = false;
+    renders("<p>1</p>");
+
+    assertEquals("<p>1</p>", handle(new MockHttpServletRequest()).getContentAsString());
+  }
+
+  @Test
+  public void testColdMissRenderedOnce() throws Exception {
+    renders("<p>1</p>");
+
+    MockHttpServletRequest first = new MockHttpServletRequest();
+    MockHttpServletResponse firstResponse = new MockHttpServletResponse();
+
+    assertTrue(interceptor.preHandle(first, firstResponse, handler));
+
+    final MockHttpServletResponse[] waiting = new MockHttpServletResponse[1];
+
+    Thread waiter = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          waiting[0] = handle(new MockHttpServletRequest());
+        } catch (Exception e) {
+          throw new RuntimeException(e);
+        }
+      }
+    });
+
+    waiter.start();
+    Thread.sleep(100);
+
+    assertTrue(waiter.isAlive());
+
+    ModelAndView mav = boxlet.getData(first);
+    interceptor.postHandle(first, firstResponse, handler, mav);
+    mav.getView().render(mav.getModel(), first, firstResponse);
+    interceptor.afterCompletion(first, firstResponse, handler, null);
+
+    waiter.join(5000);
+
+    assertEquals("<p>1</p>", firstResponse.getContentAsString());
+    assertEquals("<p>1</p>", waiting[0].getContentAsString());
+    assertEquals(1, boxlet.calls);
+  }
+
+  @Test
+  public void testEditModeBypassesCache() throws Exception {
+    renders("<p>1</p>");
+
+    MockHttpServletRequest request = new MockHttpServletRequest();
+    request.setParameter("edit", "true");
+
+    handle(request);
+    handle(request);
+
+    assertEquals(2, boxlet.calls);
+    assertNull(boxlet.getFragment(""));
+  }
+
+  private static class TestBoxlet extends AbstractBoxlet {
+    private volatile int calls = 0;
+    private volatile boolean fail = false;
+
+    @Override
+    public ModelAndView getData(HttpServletRequest request) {
+      if (fail) {
+        throw new IllegalStateException();
+      }
+
+      calls++;
+      return new ModelAndView("boxlets/test");
+    }
+
+    @Override
+    protected long getExpireTime() {
+      return 60 * 1000;
+    }
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 1998-2012 Linux.org.ru
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.org.linux.tag;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.*;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration("unit-tests-context.xml")
+public class TagCountersUpdaterTest {
+  @Autowired
+  TagCountersUpdater tagCountersUpdater;
+
+  @Autowired
+  TagService tagService;
+
+  @Autowired
+  TagDao tagDao;
+
+  ITagActionHandler handler;
+
+  @Before
+  public void setUp() {
+    reset(tagDao);
+    handler = mock(ITagActionHandler.class);
+    tagService.getActionHandlers().add(handler);
+  }
+
+  @After
+  public void tearDown() {
+    tagService.getActionHandlers().remove(handler);
+  }
+
+  @Test
+  public void checkWrapsAround() {
+    ImmutableList.Builder<Integer> batch = ImmutableList.builder();
+    for (int i = 1; i <= 1000; i++) {
+      batch.add(i);
+    }
+
+    when(tagDao.getTagIds(0, 1000)).thenReturn(batch.build());
+    when(tagDao.getTagIds(1000, 1000)).thenReturn(ImmutableList.of(1001, 1005));
+
+    tagCountersUpdater.checkTagsCounters();
+    verify(handler).repairCounters(1, 1000);
+    assertEquals(1000, tagCountersUpdater.getLastTagId());
+
+    tagCountersUpdater.checkTagsCounters();
+    verify(handler).repairCounters(1001, 1005);
+    assertEquals(0, tagCountersUpdater.getLastTagId());
+  }
+
+  @Test
+  public void emptyTable() {
+    when(tagDao.getTagIds(anyInt(), anyInt())).thenReturn(ImmutableList.<Integer>of());
+
+    tagCountersUpdater.checkTagsCounters();
+
+    verify(handler, never()).repairCounters(anyInt(), anyInt());
+    assertEquals(0, tagCountersUpdater.getLastTagId());
+  }
+}
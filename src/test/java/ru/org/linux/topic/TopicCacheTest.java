@@ -0,0 +1,121 @@
+/*
+ * Copyright 1998-2012 Linux.org.ru
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.org.linux.topic;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.jms.core.MessageCreator;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.jms.Destination;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+
+public class TopicCacheTest {
+  private TopicCache topicCache;
+  private JmsTemplate jmsTemplate;
+  private Destination destination;
+  private Topic topic;
+
+  @Before
+  public void init() {
+    jmsTemplate = mock(JmsTemplate.class);
+    destination = mock(Destination.class);
+
+    topicCache = new TopicCache();
+    topicCache.setJmsTemplate(jmsTemplate);
+    topicCache.setDestination(destination);
+
+    topic = mock(Topic.class);
+    when(topic.getId()).thenReturn(100);
+  }
+
+  @After
+  public void cleanup() {
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+  }
+
+  @Test
+  public void testInvalidate() {
+    assertNull(topicCache.get(100));
+
+    topicCache.put(topic);
+
+    assertSame(topic, topicCache.get(100));
+
+    topicCache.invalidate(100);
+
+    assertNull(topicCache.get(100));
+    verify(jmsTemplate).send(eq(destination), any(MessageCreator.class));
+
+    assertEquals(1, topicCache.getStats().hitCount());
+    assertEquals(2, topicCache.getStats().missCount());
+  }
+
+  @Test
+  public void testInvalidateAfterCommit() {
+    TransactionSynchronizationManager.initSynchronization();
+
+    topicCache.put(topic);
+    topicCache.invalidate(100);
+
+    assertNull(topicCache.get(100));
+    verify(jmsTemplate, never()).send(any(Destination.class), any(MessageCreator.class));
+
+    // топик перечитан до фиксации транзакции
+    topicCache.put(topic);
+
+    for (TransactionSynchronization sync : TransactionSynchronizationManager.getSynchronizations()) {
+      sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+    }
+
+    assertNull(topicCache.get(100));
+    verify(jmsTemplate).send(eq(destination), any(MessageCreator.class));
+  }
+
+  @Test
+  public void testInvalidateAfterRollback() {
+    TransactionSynchronizationManager.initSynchronization();
+
+    topicCache.invalidate(100);
+    topicCache.put(topic);
+
+    for (TransactionSynchronization sync : TransactionSynchronizationManager.getSynchronizations()) {
+      sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+    }
+
+    assertNull(topicCache.get(100));
+    verify(jmsTemplate, never()).send(any(Destination.class), any(MessageCreator.class));
+  }
+
+  @Test
+  public void testRemoteInvalidation() {
+    topicCache.put(topic);
+
+    topicCache.handleMessage(new TopicCache.InvalidateTopic(100));
+
+    assertNull(topicCache.get(100));
+    verifyZeroInteractions(jmsTemplate);
+  }
+}
@@ -2,12 +2,15 @@ package ru.org.linux.topic;
 
 import net.tanesha.recaptcha.ReCaptcha;
 import org.springframework.context.annotation.*;
+import org.springframework.jms.core.JmsTemplate;
 import org.springframework.stereotype.Controller;
 import ru.org.linux.search.SearchQueueListener;
 import ru.org.linux.search.SearchQueueSender;
 import ru.org.linux.search.SolrOptimizer;
 import ru.org.linux.spring.FeedPinger;
 
+import javax.jms.Destination;
+import javax.jms.Queue;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.util.Properties;
@@ -54,4 +57,19 @@ public class TopicIntegrationTestConfiguration {
 
     return properties;
   }
+
+  @Bean
+  public JmsTemplate jmsTemplate() {
+    return mock(JmsTemplate.class);
+  }
+
+  @Bean
+  public Queue userEventQueue() {
+    return mock(Queue.class);
+  }
+
+  @Bean
+  public Destination topicCacheInvalidation() {
+    return mock(Destination.class);
+  }
 }
@@ -29,6 +29,8 @@ import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
+import static org.junit.Assert.assertEquals;
+
 @RunWith(SpringJUnit4ClassRunner.class)
 @ContextConfiguration("unit-tests-context.xml")
 public class TopicListControllerTest {
@@ -71,4 +73,10 @@ public class TopicListControllerTest {
 */
   }
 
+  @Test
+  public void feedLinkKeepsParams() {
+    assertEquals("/news/?filter=tech&before=123", TopicListController.feedLink("/news/", "offset=40&filter=tech", 123));
+    assertEquals("/news/?filter=tech", TopicListController.feedLink("/news/", "before=5&filter=tech", null));
+    assertEquals("/news/", TopicListController.feedLink("/news/", null, null));
+  }
 }
@@ -102,6 +102,42 @@ public class TopicListServiceTest {
     assertNull(topicListDto.getOffset());
   }
 
+  @Test
+  public void getTopicsFeedPageTest() throws Exception {
+    topicListService.getTopicsFeedPage(section1, group, 1000, null);
+
+    assertEquals(Integer.valueOf(1000), topicListDto.getBeforeId());
+    assertNull(topicListDto.getAfterId());
+    assertNull(topicListDto.getOffset());
+    assertEquals(Integer.valueOf(20), topicListDto.getLimit());
+    assertEquals(TopicListDao.CommitMode.COMMITED_ONLY, topicListDto.getCommitMode());
+
+    topicListService.getTopicsFeedPage(section2, null, null, 2000);
+
+    assertNull(topicListDto.getBeforeId());
+    assertEquals(Integer.valueOf(2000), topicListDto.getAfterId());
+    assertEquals(TopicListDto.DateLimitType.MONTH_AGO, topicListDto.getDateLimitType());
+  }
+
+  @Test
+  public void isFeedCursorValidTest() throws Exception {
+    assertTrue(topicListService.isFeedCursorValid(section1, null, 1000));
+
+    assertEquals(Integer.valueOf(1000), topicListDto.getBeforeId());
+    assertEquals(TopicListDao.CommitMode.COMMITED_ONLY, topicListDto.getCommitMode());
+  }
+
+  @Test
+  public void getTopicsFeedCursorTest() throws Exception {
+    assertNull(topicListService.getTopicsFeedCursor(section1, null, 0));
+
+    topicListService.getTopicsFeedCursor(section1, null, 40);
+
+    assertEquals(Integer.valueOf(1), topicListDto.getLimit());
+    assertEquals(Integer.valueOf(39), topicListDto.getOffset());
+    assertNull(topicListDto.getBeforeId());
+  }
+
   @Test
   public void getUserTopicsFeedTest() {
 
@@ -33,6 +33,12 @@ public class TestTopicListDaoImpl implements TopicListDao {
     return new ArrayList<>();
   }
 
+  @Override
+  public boolean isCursorValid(TopicListDto topicListDto) {
+    this.topicListDto.copy(topicListDto);
+    return true;
+  }
+
   @Override
   public List<TopicListDto.DeletedTopic> getDeletedTopics(Integer sectionId) {
 
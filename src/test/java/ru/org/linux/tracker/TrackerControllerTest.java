@@ -0,0 +1,51 @@
+/*
+ * Copyright 1998-2012 Linux.org.ru
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.org.linux.tracker;
+
+import org.junit.Test;
+
+import java.sql.Timestamp;
+
+import static org.junit.Assert.assertEquals;
+
+public class TrackerControllerTest {
+  @Test
+  public void testCursorRoundtrip() {
+    Timestamp lastmod = Timestamp.valueOf("2013-06-12 14:35:12.123456");
+
+    long cursor = TrackerController.toCursor(lastmod);
+
+    assertEquals(lastmod, TrackerController.fromCursor(cursor));
+    assertEquals(123456, cursor % 1000000);
+  }
+
+  @Test
+  public void testCursorMillis() {
+    Timestamp lastmod = new Timestamp(1371033312123L);
+
+    assertEquals(lastmod, TrackerController.fromCursor(TrackerController.toCursor(lastmod)));
+  }
+
+  @Test
+  public void testTrackerCursor() {
+    Timestamp lastmod = Timestamp.valueOf("2013-06-12 14:35:12.123456");
+    long cursor = TrackerController.toCursor(lastmod);
+
+    assertEquals(new TrackerCursor(lastmod, 42), TrackerController.toTrackerCursor(cursor, 42, false));
+    assertEquals(new TrackerCursor(lastmod, 0), TrackerController.toTrackerCursor(cursor, null, false));
+    assertEquals(new TrackerCursor(lastmod, Integer.MAX_VALUE), TrackerController.toTrackerCursor(cursor, null, true));
+  }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 1998-2012 Linux.org.ru
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.org.linux.tracker;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.org.linux.spring.commons.CacheProvider;
+import ru.org.linux.user.IgnoreListDao;
+import ru.org.linux.user.User;
+import ru.org.linux.user.UserTagDao;
+import ru.org.linux.util.IntSet;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.isNull;
+import static org.mockito.Mockito.*;
+
+public class TrackerServiceTest {
+  private static final Timestamp INTERVAL = new Timestamp(0);
+
+  private TrackerService trackerService;
+  private TrackerDao trackerDao;
+  private IgnoreListDao ignoreListDao;
+  private UserTagDao userTagDao;
+  private CacheProvider cacheProvider;
+
+  private User user;
+  private User author;
+  private User ignored;
+
+  @Before
+  public void setUp() {
+    trackerService = new TrackerService();
+    trackerDao = mock(TrackerDao.class);
+    ignoreListDao = mock(IgnoreListDao.class);
+    userTagDao = mock(UserTagDao.class);
+    cacheProvider = mock(CacheProvider.class);
+
+    ReflectionTestUtils.setField(trackerService, "trackerDao", trackerDao);
+    ReflectionTestUtils.setField(trackerService, "ignoreListDao", ignoreListDao);
+    ReflectionTestUtils.setField(trackerService, "userTagDao", userTagDao);
+    ReflectionTestUtils.setField(trackerService, "cacheProvider", cacheProvider);
+
+    user = mock(User.class);
+    when(user.getId()).thenReturn(1);
+
+    author = mock(User.class);
+    when(author.getId()).thenReturn(2);
+
+    ignored = mock(User.class);
+    when(ignored.getId()).thenReturn(3);
+
+    when(ignoreListDao.get(user)).thenReturn(IntSet.of(3));
+    when(userTagDao.getTagIds(1, false)).thenReturn(IntSet.of(100));
+  }
+
+  private static TrackerItem item(User author, long lastmod, int... tags) {
+    return new TrackerItem(author, (int) lastmod, new Timestamp(lastmod), 0, 0, "", "", 0, null, false,
+            1, "", new Timestamp(lastmod), false, 1, ImmutableList.<String>of(), IntSet.of(tags));
+  }
+
+  @Test
+  public void testAnonymousUsesCachedPage() {
+    List<TrackerItem> page = ImmutableList.of(item(author, 10), item(ignored, 9));
+
+    when(trackerDao.getTrackAll(TrackerFilterEnum.ALL, null, INTERVAL, 2, 0, null, false, 50)).thenReturn(page);
+
+    List<TrackerItem> result = trackerService.getTrackAll(TrackerFilterEnum.ALL, null, INTERVAL, 2, 0, null, false, 50);
+
+    assertEquals(page, result);
+    verify(cacheProvider).storeToCache(anyString(), any(), anyInt());
+    verifyZeroInteractions(ignoreListDao);
+  }
+
+  @Test
+  public void testFilterAndOverfetch() {
+    List<TrackerItem> first = ImmutableList.of(item(author, 10), item(ignored, 9), item(author, 8, 100, 5));
+    List<TrackerItem> second = ImmutableList.of(item(author, 7), item(author, 6), item(author, 5));
+
+    when(trackerDao.getTrackAll(eq(TrackerFilterEnum.ALL), eq(user), eq(INTERVAL), eq(3), eq(0), (TrackerCursor) isNull(), eq(false), anyInt()))
+            .thenReturn(first);
+    when(trackerDao.getTrackAll(TrackerFilterEnum.ALL, user, INTERVAL, 3, 0, new TrackerCursor(new Timestamp(8), 8), false, 50))
+            .thenReturn(second);
+
+    List<TrackerItem> result = trackerService.getTrackAll(TrackerFilterEnum.ALL, user, INTERVAL, 3, 0, null, false, 50);
+
+    assertEquals(3, result.size());
+    assertEquals(10, result.get(0).getMsgid());
+    assertEquals(7, result.get(1).getMsgid());
+    assertEquals(6, result.get(2).getMsgid());
+  }
+
+  @Test
+  public void testFilterNewer() {
+    // страница новее курсора, от новых к старым
+    List<TrackerItem> first = ImmutableList.of(item(author, 13), item(author, 12), item(ignored, 11));
+    List<TrackerItem> second = ImmutableList.of(item(author, 16), item(author, 15), item(author, 14));
+
+    when(trackerDao.getTrackAll(TrackerFilterEnum.ALL, user, INTERVAL, 3, 0, TrackerCursor.ofLastmod(new Timestamp(10), true), true, 50))
+            .thenReturn(first);
+    when(trackerDao.getTrackAll(TrackerFilterEnum.ALL, user, INTERVAL, 3, 0, new TrackerCursor(new Timestamp(13), 13), true, 50))
+            .thenReturn(second);
+
+    List<TrackerItem> result = trackerService.getTrackAll(TrackerFilterEnum.ALL, user, INTERVAL, 3, 0, TrackerCursor.ofLastmod(new Timestamp(10), true), true, 50);
+
+    List<Integer> ids = new ArrayList<>();
+    for (TrackerItem item : result) {
+      ids.add(item.getMsgid());
+    }
+
+    assertEquals(ImmutableList.of(14, 13, 12), ids);
+  }
+
+  @Test
+  public void testOverfetchKeepsSameLastmod() {
+    // у 7 и 6 одинаковое время изменения, 6 - на следующей странице
+    TrackerItem sameTime = new TrackerItem(author, 6, new Timestamp(7), 0, 0, "", "", 0, null, false,
+            1, "", new Timestamp(7), false, 1, ImmutableList.<String>of(), IntSet.of());
+
+    List<TrackerItem> first = ImmutableList.of(item(author, 9), item(ignored, 8), item(author, 7));
+    List<TrackerItem> second = ImmutableList.of(sameTime, item(author, 5), item(author, 4));
+
+    when(trackerDao.getTrackAll(eq(TrackerFilterEnum.ALL), eq(user), eq(INTERVAL), eq(3), eq(0), (TrackerCursor) isNull(), eq(false), anyInt()))
+            .thenReturn(first);
+    when(trackerDao.getTrackAll(TrackerFilterEnum.ALL, user, INTERVAL, 3, 0, new TrackerCursor(new Timestamp(7), 7), false, 50))
+            .thenReturn(second);
+
+    List<TrackerItem> result = trackerService.getTrackAll(TrackerFilterEnum.ALL, user, INTERVAL, 3, 0, null, false, 50);
+
+    assertEquals(3, result.size());
+    assertEquals(6, result.get(2).getMsgid());
+  }
+
+  @Test
+  public void testShortPageStops() {
+    List<TrackerItem> first = ImmutableList.of(item(ignored, 10));
+
+    when(trackerDao.getTrackAll(eq(TrackerFilterEnum.ALL), eq(user), eq(INTERVAL), eq(3), eq(0), (TrackerCursor) isNull(), anyBoolean(), anyInt()))
+            .thenReturn(first);
+
+    assertEquals(0, trackerService.getTrackAll(TrackerFilterEnum.ALL, user, INTERVAL, 3, 0, null, false, 50).size());
+    verify(trackerDao, times(1)).getTrackAll(any(TrackerFilterEnum.class), any(User.class), any(Timestamp.class),
+            anyInt(), anyInt(), any(TrackerCursor.class), anyBoolean(), anyInt());
+  }
+}
@@ -34,6 +34,11 @@ public class MemoriesDaoIntegrationTestConfiguration {
     return new UserDao();
   }
 
+  @Bean
+  public LastLoginTracker lastLoginTracker() {
+    return new LastLoginTracker();
+  }
+
   @Bean
   public IgnoreListDao ignoreListDao() {
     return new IgnoreListDao();
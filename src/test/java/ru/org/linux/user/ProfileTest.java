@@ -0,0 +1,53 @@
+/*
+ * Copyright 1998-2012 Linux.org.ru
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.org.linux.user;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+import ru.org.linux.site.DefaultProfile;
+import ru.org.linux.util.ProfileHashtable;
+
+import java.util.HashMap;
+
+import static org.junit.Assert.*;
+
+public class ProfileTest {
+  @Test
+  public void testCopyIsIndependent() {
+    Profile original = new Profile(
+            new ProfileHashtable(DefaultProfile.getDefaultProfile(), new HashMap<String, String>()),
+            ImmutableList.of("poll")
+    );
+
+    original.setTopics(30);
+    original.setUseHover(true);
+
+    Profile copy = new Profile(original);
+
+    assertEquals(30, copy.getTopics());
+    assertTrue(copy.isUseHover());
+    assertEquals(original.getStyle(), copy.getStyle());
+    assertEquals(ImmutableList.of("poll"), copy.getBoxlets());
+
+    copy.setTopics(50);
+    copy.setUseHover(false);
+    copy.setBoxlets(ImmutableList.of("tagcloud"));
+
+    assertEquals(30, original.getTopics());
+    assertTrue(original.isUseHover());
+    assertEquals(ImmutableList.of("poll"), original.getBoxlets());
+  }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 1998-2012 Linux.org.ru
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.org.linux.user;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RemarkMapTest {
+  @Test
+  public void testGet() {
+    RemarkMap remarks = new RemarkMap(1, ImmutableList.of(
+            new Remark(10, 1, 30, "thirty"),
+            new Remark(11, 1, 20, "twenty")
+    ));
+
+    assertEquals(2, remarks.size());
+
+    Remark remark = remarks.get(20);
+
+    assertNotNull(remark);
+    assertEquals(11, remark.getId());
+    assertEquals(1, remark.getUserId());
+    assertEquals(20, remark.getRefUserId());
+    assertEquals("twenty", remark.getText());
+
+    assertEquals("thirty", remarks.getText(30));
+    assertNull(remarks.get(25));
+    assertNull(remarks.getText(40));
+  }
+
+  @Test
+  public void testEmpty() {
+    RemarkMap remarks = new RemarkMap(1, ImmutableList.<Remark>of());
+
+    assertTrue(remarks.isEmpty());
+    assertNull(remarks.get(1));
+  }
+}
@@ -22,6 +22,11 @@ public class SimpleIntegrationTestConfiguration {
     return new UserDao();
   }
 
+  @Bean
+  public LastLoginTracker lastLoginTracker() {
+    return new LastLoginTracker();
+  }
+
   @Bean
   public IgnoreListDao ignoreListDao() {
     return mock(IgnoreListDao.class);
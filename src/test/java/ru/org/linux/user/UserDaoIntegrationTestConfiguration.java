@@ -39,6 +39,11 @@ public class UserDaoIntegrationTestConfiguration {
     return new UserDao();
   }
 
+  @Bean
+  public LastLoginTracker lastLoginTracker() {
+    return new LastLoginTracker();
+  }
+
   @Bean
   public IgnoreListDao ignoreListDao() {
     return new IgnoreListDao();
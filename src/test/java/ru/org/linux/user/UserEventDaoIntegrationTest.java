@@ -5,7 +5,6 @@ import com.google.common.collect.ImmutableSet;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.dao.DuplicateKeyException;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.springframework.transaction.annotation.Transactional;
@@ -27,7 +26,7 @@ public class UserEventDaoIntegrationTest {
   public void testAdd() {
     createSimpleEvent();
 
-    List<UserEvent> events = userEventDao.getRepliesForUser(TEST_USER_ID, true, 50, 0, null);
+    List<UserEvent> events = userEventDao.getRepliesForUser(TEST_USER_ID, true, 50, null, false, null);
 
     assertEquals(1, events.size());
   }
@@ -37,10 +36,12 @@ public class UserEventDaoIntegrationTest {
     userEventDao.insertTopicNotification(TEST_TOPIC_ID, ImmutableList.of(TEST_USER_ID));
   }
 
-  @Test(expected = DuplicateKeyException.class)
+  @Test
   public void testInsertTopicUserNotificationDup() {
     userEventDao.insertTopicNotification(TEST_TOPIC_ID, ImmutableList.of(TEST_USER_ID));
     userEventDao.insertTopicNotification(TEST_TOPIC_ID, ImmutableList.of(TEST_USER_ID));
+
+    assertEquals(ImmutableList.of(TEST_USER_ID), userEventDao.getNotifiedUsers(TEST_TOPIC_ID));
   }
 
   private void createSimpleEvent() {
@@ -58,17 +59,65 @@ public class UserEventDaoIntegrationTest {
   public void testAddRemove() {
     createSimpleEvent();
 
-    List<UserEvent> events = userEventDao.getRepliesForUser(TEST_USER_ID, true, 50, 0, null);
+    List<UserEvent> events = userEventDao.getRepliesForUser(TEST_USER_ID, true, 50, null, false, null);
 
     assertEquals(1, events.size());
 
     userEventDao.deleteTopicEvents(TEST_TOPIC_ID, ImmutableSet.of(UserEventFilterEnum.TAG.getType()));
 
-    List<UserEvent> eventsAfterDelete = userEventDao.getRepliesForUser(TEST_USER_ID, true, 50, 0, null);
+    List<UserEvent> eventsAfterDelete = userEventDao.getRepliesForUser(TEST_USER_ID, true, 50, null, false, null);
 
     assertEquals(0, eventsAfterDelete.size());
   }
 
+  @Test
+  public void testAddEvents() {
+    userEventDao.addEvents(UserEventFilterEnum.TAG.getType(), ImmutableList.of(TEST_USER_ID), TEST_TOPIC_ID, null);
+
+    List<UserEvent> events = userEventDao.getRepliesForUser(TEST_USER_ID, true, 50, null, false, null);
+
+    assertEquals(1, events.size());
+    assertEquals(UserEventFilterEnum.TAG, events.get(0).getType());
+  }
+
+  @Test
+  public void testAddEventsDup() {
+    userEventDao.addEvents(UserEventFilterEnum.REFERENCE.getType(), ImmutableList.of(TEST_USER_ID), TEST_TOPIC_ID, null);
+    userEventDao.addEvents(UserEventFilterEnum.REFERENCE.getType(), ImmutableList.of(TEST_USER_ID), TEST_TOPIC_ID, null);
+
+    assertEquals(1, userEventDao.getRepliesForUser(TEST_USER_ID, true, 50, null, false, null).size());
+  }
+
+  @Test
+  public void testCursor() {
+    userEventDao.addEvents(UserEventFilterEnum.TAG.getType(), ImmutableList.of(TEST_USER_ID), TEST_TOPIC_ID, null);
+    userEventDao.addEvents(UserEventFilterEnum.REFERENCE.getType(), ImmutableList.of(TEST_USER_ID), TEST_TOPIC_ID, null);
+
+    List<UserEvent> events = userEventDao.getRepliesForUser(TEST_USER_ID, true, 50, null, false, null);
+
+    assertEquals(2, events.size());
+
+    List<UserEvent> older = userEventDao.getRepliesForUser(TEST_USER_ID, true, 50, events.get(0).getId(), false, null);
+
+    assertEquals(1, older.size());
+    assertEquals(events.get(1).getId(), older.get(0).getId());
+
+    List<UserEvent> newer = userEventDao.getRepliesForUser(TEST_USER_ID, true, 50, events.get(1).getId(), true, null);
+
+    assertEquals(1, newer.size());
+    assertEquals(events.get(0).getId(), newer.get(0).getId());
+  }
+
+  @Test
+  public void testCleanup() {
+    userEventDao.addEvents(UserEventFilterEnum.TAG.getType(), ImmutableList.of(TEST_USER_ID), TEST_TOPIC_ID, null);
+    userEventDao.addEvents(UserEventFilterEnum.REFERENCE.getType(), ImmutableList.of(TEST_USER_ID), TEST_TOPIC_ID, null);
+
+    userEventDao.cleanupOldEvents(1);
+
+    assertEquals(1, userEventDao.getRepliesForUser(TEST_USER_ID, true, 50, null, false, null).size());
+  }
+
   @Test
   public void testRemoveSyntax() {
     userEventDao.deleteTopicEvents(TEST_TOPIC_ID,
@@ -0,0 +1,101 @@
+/*
+ * Copyright 1998-2012 Linux.org.ru
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.org.linux.user;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class UserEventNotifierTest {
+  private static final int USER_ID = 100;
+
+  private UserEventNotifier notifier;
+  private UserEventDao userEventDao;
+
+  @Before
+  public void setUp() {
+    userEventDao = mock(UserEventDao.class);
+    when(userEventDao.getUnreadCount(USER_ID)).thenReturn(5);
+
+    notifier = new UserEventNotifier();
+    ReflectionTestUtils.setField(notifier, "userEventDao", userEventDao);
+  }
+
+  private static class Handler implements DeferredResult.DeferredResultHandler {
+    private Object result;
+
+    @Override
+    public void handleResult(Object result) {
+      this.result = result;
+    }
+  }
+
+  @Test
+  public void testImmediateResultOnCountMismatch() {
+    Handler handler = new Handler();
+
+    DeferredResult<Map<String, Object>> result = notifier.await(USER_ID, -1);
+    result.setResultHandler(handler);
+
+    assertTrue(result.isSetOrExpired());
+    assertEquals(5, ((Map<?, ?>) handler.result).get("count"));
+    assertEquals(0, notifier.getWaitingUsersCount());
+  }
+
+  @Test
+  public void testWaitWhenCountKnown() {
+    DeferredResult<Map<String, Object>> result = notifier.await(USER_ID, 5);
+
+    assertFalse(result.isSetOrExpired());
+    assertEquals(1, notifier.getWaitersCount(USER_ID));
+  }
+
+  @Test
+  public void testWakeUp() {
+    Handler handler = new Handler();
+
+    DeferredResult<Map<String, Object>> result = notifier.await(USER_ID, 5);
+    result.setResultHandler(handler);
+
+    assertFalse(result.isSetOrExpired());
+
+    when(userEventDao.getUnreadCount(USER_ID)).thenReturn(6);
+    notifier.notifyUsers(ImmutableList.of(USER_ID, USER_ID + 1));
+
+    assertTrue(result.isSetOrExpired());
+    assertEquals(6, ((Map<?, ?>) handler.result).get("count"));
+    assertEquals(0, notifier.getWaitersCount(USER_ID));
+    assertEquals(0, notifier.getWaitingUsersCount());
+  }
+
+  @Test
+  public void testNoWakeUpWithoutChange() {
+    DeferredResult<Map<String, Object>> result = notifier.await(USER_ID, 5);
+
+    notifier.notifyUsers(ImmutableList.of(USER_ID));
+
+    assertFalse(result.isSetOrExpired());
+    assertEquals(1, notifier.getWaitersCount(USER_ID));
+  }
+}
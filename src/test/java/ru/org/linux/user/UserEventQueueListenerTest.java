@@ -0,0 +1,52 @@
+/*
+ * Copyright 1998-2012 Linux.org.ru
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.org.linux.user;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.org.linux.user.UserEventQueueSender.FanoutMessage;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class UserEventQueueListenerTest {
+  private UserEventService userEventService;
+  private UserEventQueueListener listener;
+
+  @Before
+  public void setUp() {
+    userEventService = mock(UserEventService.class);
+    listener = new UserEventQueueListener();
+    ReflectionTestUtils.setField(listener, "userEventService", userEventService);
+  }
+
+  @Test
+  public void testFanout() {
+    ImmutableList<Integer> users = ImmutableList.of(1, 2, 3);
+
+    listener.handleMessage(new FanoutMessage("TAG", users, 100, null, true));
+    listener.handleMessage(new FanoutMessage("REF", ImmutableList.of(4), 100, 200, false));
+
+    verify(userEventService).insertEvents("TAG", users, 100, null, true);
+    verify(userEventService).insertEvents("REF", ImmutableList.of(4), 100, 200, false);
+
+    assertEquals(2, listener.getProcessed());
+    assertEquals(4, listener.getRecipients());
+  }
+}
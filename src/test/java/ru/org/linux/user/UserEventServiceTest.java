@@ -0,0 +1,75 @@
+/*
+ * Copyright 1998-2012 Linux.org.ru
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.org.linux.user;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class UserEventServiceTest {
+  private UserEventService service;
+  private UserEventDao userEventDao;
+  private UserEventNotifier userEventNotifier;
+
+  @Before
+  public void setUp() {
+    service = new UserEventService();
+    userEventDao = mock(UserEventDao.class);
+    userEventNotifier = mock(UserEventNotifier.class);
+
+    ReflectionTestUtils.setField(service, "userEventDao", userEventDao);
+    ReflectionTestUtils.setField(service, "userEventNotifier", userEventNotifier);
+  }
+
+  @Test
+  public void testAlreadyNotifiedSkipped() {
+    when(userEventDao.getNotifiedUsers(100)).thenReturn(ImmutableList.of(2));
+
+    service.insertEvents("TAG", ImmutableList.of(1, 2, 3, 1), 100, null, true);
+
+    List<Integer> expected = ImmutableList.of(1, 3);
+
+    verify(userEventDao).insertTopicNotification(100, expected);
+    verify(userEventDao).addEvents("TAG", expected, 100, null);
+    verify(userEventNotifier).notifyUsersAfterCommit(expected);
+  }
+
+  @Test
+  public void testRedeliveryIsNoop() {
+    when(userEventDao.getNotifiedUsers(100)).thenReturn(ImmutableList.of(1, 2));
+
+    service.insertEvents("TAG", ImmutableList.of(1, 2), 100, null, true);
+
+    verify(userEventDao, never()).insertTopicNotification(anyInt(), anyListOf(Integer.class));
+    verify(userEventDao, never()).addEvents(anyString(), anyListOf(Integer.class), anyInt(), anyInt());
+  }
+
+  @Test
+  public void testWithoutTopicNotification() {
+    service.insertEvents("REF", ImmutableList.of(4), 100, 200, false);
+
+    verify(userEventDao, never()).getNotifiedUsers(anyInt());
+    verify(userEventDao).addEvents("REF", ImmutableList.of(4), 100, 200);
+  }
+}
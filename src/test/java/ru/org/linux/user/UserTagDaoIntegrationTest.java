@@ -26,12 +26,14 @@ import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.springframework.transaction.annotation.Transactional;
+import ru.org.linux.util.IntSet;
 
 import javax.sql.DataSource;
 import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 @RunWith(SpringJUnit4ClassRunner.class)
 @ContextConfiguration(classes = SimpleIntegrationTestConfiguration.class)
@@ -215,6 +217,17 @@ public class UserTagDaoIntegrationTest {
     assertEquals("Wrong count of user tags.", 2, tags.size());
   }
 
+  @Test
+  public void getTagIdsTest() {
+    prepareUserTags();
+
+    IntSet tagIds = userTagDao.getTagIds(user1Id, true);
+    assertEquals("Wrong count of user tags.", 5, tagIds.size());
+    assertTrue(tagIds.contains(tag1Id));
+
+    assertEquals("Wrong count of user tags.", 2, userTagDao.getTagIds(user1Id, false).size());
+  }
+
   @Test
   public void getUserIdListByTagsTest() {
     prepareUserTags();
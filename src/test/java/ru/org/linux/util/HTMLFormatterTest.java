@@ -15,24 +15,32 @@
 
 package ru.org.linux.util;
 
+import com.google.common.base.Predicates;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
 import org.apache.commons.httpclient.URI;
 import org.hamcrest.CoreMatchers;
 import org.junit.Before;
 import org.junit.Test;
-import ru.org.linux.comment.Comment;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import ru.org.linux.comment.CommentService;
-import ru.org.linux.group.Group;
 import ru.org.linux.spring.Configuration;
-import ru.org.linux.topic.Topic;
 import ru.org.linux.topic.TopicDao;
+import ru.org.linux.topic.TopicHeader;
 import ru.org.linux.util.bbcode.LorCodeService;
 import ru.org.linux.util.formatter.ToHtmlFormatter;
 import ru.org.linux.util.formatter.ToLorCodeFormatter;
 import ru.org.linux.util.formatter.ToLorCodeTexFormatter;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
 import static org.junit.Assert.*;
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.when;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Mockito.*;
 import static ru.org.linux.util.bbcode.tags.QuoteTag.citeFooter;
 import static ru.org.linux.util.bbcode.tags.QuoteTag.citeHeader;
 
@@ -105,56 +113,42 @@ public class HTMLFormatterTest {
   private LorCodeService lorCodeService;
   private ToLorCodeTexFormatter toLorCodeTexFormatter;
   private URI mainURI;
+  private TopicDao messageDao;
 
   @Before
   public void init() throws Exception {
 
     mainURI = new URI("http://www.linux.org.ru/", true, "UTF-8");
 
-    TopicDao messageDao = mock(TopicDao.class);
-    Topic message1 = mock(Topic.class);
-    Group group1 = mock(Group.class);
-    Topic message2 = mock(Topic.class);
-    Group group2 = mock(Group.class);
-    Topic message3 = mock(Topic.class);
-    Group group3 = mock(Group.class);
-    Topic message12 = mock(Topic.class);
-    Group group12 = mock(Group.class);
-    Topic message15 = mock(Topic.class);
-    Group group15 = mock(Group.class);
-    Topic messageHistory = mock(Topic.class);
-    Group groupHistory = mock(Group.class);
+    messageDao = mock(TopicDao.class);
     CommentService commentService = mock(CommentService.class);
 
-    Comment comment = mock(Comment.class);
-
-    when(message1.getTitle()).thenReturn("привет1");
-    when(message2.getTitle()).thenReturn("привет2");
-    when(message3.getTitle()).thenReturn("привет3");
-    when(message12.getTitle()).thenReturn("привет12");
-    when(message15.getTitle()).thenReturn("привет15");
-    when(messageHistory.getTitle()).thenReturn("привет история");
-    when(group1.getUrl()).thenReturn("/news/debian/");
-    when(group2.getUrl()).thenReturn("/forum/talks/");
-    when(group3.getUrl()).thenReturn("/forum/general/");
-    when(group12.getUrl()).thenReturn("/forum/security/");
-    when(group15.getUrl()).thenReturn("/forum/linux-org-ru/");
-    when(groupHistory.getUrl()).thenReturn("/news/kernel/");
-    when(messageDao.getGroup(message1)).thenReturn(group1);
-    when(messageDao.getGroup(message2)).thenReturn(group2);
-    when(messageDao.getGroup(message3)).thenReturn(group3);
-    when(messageDao.getGroup(message12)).thenReturn(group12);
-    when(messageDao.getGroup(message15)).thenReturn(group15);
-    when(messageDao.getGroup(messageHistory)).thenReturn(groupHistory);
-    when(messageDao.getById(6753486)).thenReturn(message1);
-    when(messageDao.getById(6893165)).thenReturn(message2);
-    when(messageDao.getById(6890857)).thenReturn(message3);
-    when(messageDao.getById(1948661)).thenReturn(message12);
-    when(messageDao.getById(6944260)).thenReturn(message15);
-    when(messageDao.getById(6992532)).thenReturn(messageHistory);
-    when(commentService.getById(6892917)).thenReturn(comment);
-    when(commentService.getById(1948675)).thenReturn(comment);
-    when(commentService.getById(6944831)).thenReturn(comment);
+    final Map<Integer, TopicHeader> headers = new HashMap<>();
+
+    headers.put(6753486, new TopicHeader(6753486, "привет1", false, "/news/debian/"));
+    headers.put(6893165, new TopicHeader(6893165, "привет2", false, "/forum/talks/"));
+    headers.put(6890857, new TopicHeader(6890857, "привет3", false, "/forum/general/"));
+    headers.put(1948661, new TopicHeader(1948661, "привет12", false, "/forum/security/"));
+    headers.put(6944260, new TopicHeader(6944260, "привет15", false, "/forum/linux-org-ru/"));
+    headers.put(6992532, new TopicHeader(6992532, "привет история", false, "/news/kernel/"));
+
+    final Map<Integer, Boolean> comments = ImmutableMap.of(6892917, false, 1948675, false, 6944831, false);
+
+    when(messageDao.getTopicHeaders(anyCollectionOf(Integer.class))).thenAnswer(new Answer<Map<Integer, TopicHeader>>() {
+      @Override
+      public Map<Integer, TopicHeader> answer(InvocationOnMock invocation) {
+        Collection<?> ids = (Collection<?>) invocation.getArguments()[0];
+        return Maps.filterKeys(headers, Predicates.in(ids));
+      }
+    });
+
+    when(commentService.getDeletedFlags(anyCollectionOf(Integer.class))).thenAnswer(new Answer<Map<Integer, Boolean>>() {
+      @Override
+      public Map<Integer, Boolean> answer(InvocationOnMock invocation) {
+        Collection<?> ids = (Collection<?>) invocation.getArguments()[0];
+        return Maps.filterKeys(comments, Predicates.in(ids));
+      }
+    });
 
     Configuration configuration = mock(Configuration.class);
 
@@ -674,4 +668,34 @@ public class HTMLFormatterTest {
 
   }
 
+
+  @Test
+  public void testMessageLinksBatch() throws Exception {
+    String text = "http://www.linux.org.ru/news/debian/6753486 " +
+            "http://www.linux.org.ru/forum/talks/6893165?cid=6892917 " +
+            "[url=http://www.linux.org.ru/forum/general/6890857]ссылка[/url]";
+
+    String result = lorCodeService.parseComment(text, false, false);
+
+    assertTrue(result.contains("title=\"привет1\""));
+    assertTrue(result.contains("title=\"привет2\""));
+    assertTrue(result.contains("href=\"http://www.linux.org.ru/forum/general/6890857\""));
+
+    verify(messageDao, times(1)).getTopicHeaders(ImmutableSet.of(6753486, 6893165, 6890857));
+    verify(messageDao, never()).getById(anyInt());
+    verifyNoMoreInteractions(messageDao);
+  }
+
+  @Test
+  public void testMissingMessageLinkCached() throws Exception {
+    String text = "http://www.linux.org.ru/forum/general/1000001";
+
+    String first = lorCodeService.parseComment(text, false, false);
+    String second = lorCodeService.parseComment(text, false, false);
+
+    assertEquals(first, second);
+    assertTrue(first.contains("href=\"http://www.linux.org.ru/forum/general/1000001\""));
+
+    verify(messageDao, times(1)).getTopicHeaders(ImmutableSet.of(1000001));
+  }
 }
@@ -0,0 +1,53 @@
+/*
+ * Copyright 1998-2012 Linux.org.ru
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.org.linux.util;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class IntSetTest {
+  @Test
+  public void testContains() {
+    IntSet set = IntSet.of(ImmutableList.of(5, 1, 3, 3, 10));
+
+    assertEquals(4, set.size());
+    assertTrue(set.contains(1));
+    assertTrue(set.contains(3));
+    assertTrue(set.contains(10));
+    assertFalse(set.contains(2));
+    assertFalse(set.contains(11));
+    assertArrayEquals(new int[]{1, 3, 5, 10}, set.toArray());
+  }
+
+  @Test
+  public void testContainsAny() {
+    IntSet set = IntSet.of(1, 2, 3);
+
+    assertTrue(set.containsAny(IntSet.of(10, 3)));
+    assertTrue(IntSet.of(10, 3).containsAny(set));
+    assertFalse(set.containsAny(IntSet.of(4, 5)));
+    assertFalse(set.containsAny(IntSet.EMPTY));
+  }
+
+  @Test
+  public void testEmpty() {
+    assertSame(IntSet.EMPTY, IntSet.of(ImmutableList.<Integer>of()));
+    assertTrue(IntSet.of().isEmpty());
+    assertEquals(IntSet.of(2, 1), IntSet.of(1, 2));
+  }
+}
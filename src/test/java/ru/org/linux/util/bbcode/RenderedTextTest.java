@@ -0,0 +1,104 @@
+/*
+ * Copyright 1998-2012 Linux.org.ru
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.org.linux.util.bbcode;
+
+import org.apache.commons.httpclient.URI;
+import org.junit.Before;
+import org.junit.Test;
+import ru.org.linux.spring.Configuration;
+import ru.org.linux.topic.TopicDao;
+import ru.org.linux.user.UserDao;
+import ru.org.linux.util.bbcode.nodes.RootNode;
+import ru.org.linux.util.formatter.ToHtmlFormatter;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class RenderedTextTest {
+  private static final String[] TEXTS = {
+          "простой текст",
+          "незакрытая \"кавычка",
+          "\"кавычки \"вложенные\" и снова\" -- тире",
+          "[quote]\"цитата\"[/quote]\"после\" цитаты",
+          "ссылка http://127.0.0.1:8080/forum/talks/22464 и https://www.linux.org.ru/news/",
+          "[url=http://127.0.0.1:8080/forum/talks/22464]\"тема\"[/url] [user]maxcom[/user]",
+          "[cut]скрытый \"текст\"[/cut][code]\"код\"[/code] и [b]\"жирный\"[/b]"
+  };
+
+  private LorCodeService lorCodeService;
+  private UserDao userDao;
+  private ToHtmlFormatter toHtmlFormatter;
+
+  @Before
+  public void init() throws Exception {
+    String mainUrl = "http://127.0.0.1:8080/";
+    Configuration configuration = mock(Configuration.class);
+    when(configuration.getMainURI()).thenReturn(new URI(mainUrl, true, "UTF-8"));
+    when(configuration.getMainUrl()).thenReturn(mainUrl);
+
+    userDao = mock(UserDao.class);
+
+    toHtmlFormatter = new ToHtmlFormatter();
+    toHtmlFormatter.setConfiguration(configuration);
+    toHtmlFormatter.setMessageDao(mock(TopicDao.class));
+
+    lorCodeService = new LorCodeService();
+    lorCodeService.setUserDao(userDao);
+    lorCodeService.setConfiguration(configuration);
+    lorCodeService.setToHtmlFormatter(toHtmlFormatter);
+  }
+
+  private String renderRSS(String text, boolean secure) {
+    Parser parser = new Parser(new DefaultParserParameters());
+    RootNode rootNode = parser.getRootNode();
+    rootNode.setCommentCutOptions();
+    rootNode.setUserDao(userDao);
+    rootNode.setSecure(secure);
+    rootNode.setToHtmlFormatter(toHtmlFormatter);
+    rootNode.setRss(true);
+
+    return parser.parseRoot(rootNode, text).renderXHtml();
+  }
+
+  @Test
+  public void testSameAsSeparateRender() {
+    for (String text : TEXTS) {
+      LorCodeService.RenderedText rendered = lorCodeService.renderText(text);
+
+      assertEquals(text, renderRSS(text, false), rendered.getRss(false));
+      assertEquals(text, renderRSS(text, true), rendered.getRss(true));
+      assertEquals(text, lorCodeService.parseForOgDescription(text), rendered.getOgDescription());
+    }
+  }
+
+  @Test
+  public void testCache() {
+    String rss = lorCodeService.parseCommentRSS(1, TEXTS[1], false);
+
+    assertSame(rss, lorCodeService.parseCommentRSS(1, TEXTS[1], false));
+    assertEquals(renderRSS(TEXTS[1], true), lorCodeService.parseCommentRSS(1, TEXTS[1], true));
+  }
+
+  @Test
+  public void testEditedText() {
+    assertEquals(renderRSS(TEXTS[0], false), lorCodeService.parseCommentRSS(1, TEXTS[0], false));
+
+    // текст сообщения исправлен
+    assertEquals(renderRSS(TEXTS[2], false), lorCodeService.parseCommentRSS(1, TEXTS[2], false));
+    assertEquals(lorCodeService.parseForOgDescription(TEXTS[2]), lorCodeService.parseForOgDescription(1, TEXTS[2]));
+  }
+}
@@ -0,0 +1,334 @@
+/*
+ * Copyright 1998-2012 Linux.org.ru
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.org.linux.util.formatter;
+
+import org.apache.commons.httpclient.URI;
+import org.apache.commons.httpclient.URIException;
+import org.junit.Before;
+import org.junit.Test;
+import ru.org.linux.comment.CommentService;
+import ru.org.linux.spring.Configuration;
+import ru.org.linux.topic.TopicDao;
+import ru.org.linux.topic.TopicHeader;
+
+import java.util.Collections;
+import java.util.Random;
+import java.util.StringTokenizer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static ru.org.linux.util.formatter.RuTypoChanger.*;
+
+/**
+ * Сравнение однопроходного форматирования с прежней реализацией
+ * на случайных текстах из "неудобных" фрагментов
+ */
+public class ToHtmlFormatterEquivalenceTest {
+  private static final String[] PIECES = {
+          " ", " ", " ", "\n", "  ", "--", " -- ", "-", "слово", "word", "Текст", "123",
+          "\"", "\"", "''", "'", "«", "»", "„", "“", "&quot;", "&amp;", "&#171;", "&nbsp;", "&", "&#0;", "<b>", ">", "<",
+          ".", ",", ":", "(", ")", "!", "?",
+          "http://www.linux.org.ru/", "www.linux.org.ru", "WWW.example.com", "ftp.example.com", "ftp://example.com/file",
+          "http://example.com/a?b=1&c=2", "https://example.com/wiki/A_(b)", "mailto:test@example.com",
+          "news:comp.os.linux", "http://www.linux.org.ru/forum/talks/6893165", "http://",
+          "http://www.linux.org.ru/news/debian/6753486#comment-6892917", "http://ex\"ample.com"
+  };
+
+  private ToHtmlFormatter formatter;
+
+  @Before
+  public void init() throws Exception {
+    Configuration configuration = mock(Configuration.class);
+    when(configuration.getMainURI()).thenReturn(new URI("http://www.linux.org.ru/", true, "UTF-8"));
+
+    TopicDao topicDao = mock(TopicDao.class);
+    when(topicDao.getTopicHeaders(anyCollectionOf(Integer.class))).thenReturn(
+            Collections.singletonMap(6893165, new TopicHeader(6893165, "\"заголовок\" -- тест", false, "/forum/talks/"))
+    );
+
+    CommentService commentService = mock(CommentService.class);
+    when(commentService.getDeletedFlags(anyCollectionOf(Integer.class))).thenReturn(Collections.<Integer, Boolean>emptyMap());
+
+    formatter = new ToHtmlFormatter();
+    formatter.setConfiguration(configuration);
+    formatter.setMessageDao(topicDao);
+    formatter.setCommentService(commentService);
+    formatter.setMaxLength(20);
+  }
+
+  @Test
+  public void testRandomTexts() {
+    Random random = new Random(20130615);
+
+    for (int i = 0; i < 2000; i++) {
+      StringBuilder text = new StringBuilder();
+
+      int pieces = random.nextInt(30);
+      for (int j = 0; j < pieces; j++) {
+        text.append(PIECES[random.nextInt(PIECES.length)]);
+      }
+
+      check(text.toString());
+    }
+  }
+
+  @Test
+  public void testKnownTexts() {
+    check("");
+    check(" -- ");
+    check("a -- -- b");
+    check("\"слово\" в \"кавычках\" -- и \"вложенные \"тоже\"\"");
+    check("(http://ru.wikipedia.org/wiki/Blah_(blah)) \"www.linux.org.ru\"");
+    check("&#1234; &amp; &lt;b&gt; &foo; &#0; & amp;");
+    check("''двойной апостроф'' и 'одинарный'");
+    check("\"\n\"\n\" \"");
+  }
+
+  private void check(String text) {
+    assertEquals(text, legacyFormat(text, new LegacyTypoChanger()), formatter.format(text, false, true, new RuTypoChanger()));
+    assertEquals(text, legacyFormat(text, null), formatter.format(text, true, false, null));
+    assertEquals(text, legacySimpleFormat(text), formatter.simpleFormat(text));
+    assertEquals(text, new LegacyTypoChanger().format(text), new RuTypoChanger().format(text));
+  }
+
+  private static final Pattern uniRE = Pattern.compile("^&((#[1-9]\\d{1,4})|(\\w{1,8}));");
+
+  private static String legacyEscapeHtml(String str) {
+    StringBuilder res = new StringBuilder();
+
+    for (int i = 0; i < str.length(); i++) {
+      switch (str.charAt(i)) {
+        case '<':
+          res.append("&lt;");
+          break;
+        case '>':
+          res.append("&gt;");
+          break;
+        case '\"':
+          res.append("&quot;");
+          break;
+        case '&':
+          Matcher m = uniRE.matcher(str.substring(i));
+          if (m.find()) {
+              String s = m.group();
+              res.append(s);
+              i+=s.length()-1;
+              continue;
+          } else {
+            res.append("&amp;");
+          }
+
+          break;
+        default:
+          res.append(str.charAt(i));
+      }
+
+    }
+
+    return res.toString();
+  }
+
+  private String legacySimpleFormat(String text) {
+    return legacyEscapeHtml(text).replaceAll(ToHtmlFormatter.MDASH_REGEX, ToHtmlFormatter.MDASH_REPLACE);
+  }
+
+  private String legacyFormat(String text, LegacyTypoChanger changer) {
+    String escapedText = legacyEscapeHtml(text);
+
+    StringTokenizer st = new StringTokenizer(escapedText, " \n", true);
+    StringBuilder sb = new StringBuilder();
+
+    while (st.hasMoreTokens()) {
+      sb.append(legacyFormatURL(st.nextToken(), changer == null, changer));
+    }
+
+    return sb.toString().replaceAll(ToHtmlFormatter.MDASH_REGEX, ToHtmlFormatter.MDASH_REPLACE);
+  }
+
+  private static String formatWithMagic(String text, LegacyTypoChanger changer) {
+    return changer!=null ? changer.format(text) : text;
+  }
+
+  private String legacyFormatURL(String line, boolean secure, LegacyTypoChanger changer) {
+    StringBuilder out = new StringBuilder();
+    Matcher m = ToHtmlFormatter.URL_PATTERN.matcher(line);
+    int index = 0;
+    while (m.find()) {
+      int start = m.start();
+      int end = m.end();
+
+      out.append(formatWithMagic(line.substring(index, start), changer));
+
+      String mayUrl = line.substring(start, end);
+      String urlHref = mayUrl;
+
+      if (mayUrl.toLowerCase().startsWith("www.")) {
+        urlHref = "http://" + mayUrl;
+      } else if (mayUrl.toLowerCase().startsWith("ftp.")) {
+        urlHref = "ftp://" + mayUrl;
+      }
+
+      try {
+        formatter.processUrl(secure, changer != null, out, urlHref, null);
+      } catch (URIException e) {
+        out.append(formatWithMagic(mayUrl, changer));
+      }
+      index = end;
+    }
+
+    if (index < line.length()) {
+      out.append(formatWithMagic(line.substring(index), changer));
+    }
+
+    return out.toString();
+  }
+
+  /**
+   * RuTypoChanger до перехода на однопроходную запись
+   */
+  private static class LegacyTypoChanger {
+    private static final char[] PUNCTUATION = {'.', ',', ':', ';', '-', '!', '?', '(', ')'};
+
+    private int quoteDepth = 0;
+    private String localBuff = "";
+
+    private static boolean isQuoteChar(char ch) {
+      return ch == QUOTE_SYMBOL ||
+              ch == QUOTE_OUT_OPEN || ch == QUOTE_OUT_CLOSE ||
+              ch == QUOTE_IN_OPEN || ch == QUOTE_IN_CLOSE;
+    }
+
+    private static boolean isPunctuation(char ch) {
+      for (char test: PUNCTUATION)
+        if (test == ch)
+          return true;
+      return false;
+    }
+
+    private static char firstNonQuote(String buff, int start) {
+
+      for (int pt = start - 1; pt >= 0; pt--) {
+        if (!isQuoteChar(buff.charAt(pt)))
+          return buff.charAt(pt);
+      }
+      return buff.charAt(0);
+    }
+
+    private static char lastNonQuote(String buff, int start) {
+
+      for (int pt = start + 1; pt < buff.length(); pt++) {
+        if (!isQuoteChar(buff.charAt(pt)))
+          return buff.charAt(pt);
+      }
+      return buff.charAt(buff.length() - 1);
+    }
+
+
+    private static boolean isQuoteOpening(String buff, int position) {
+      char before, after;
+
+      if (position == buff.length() - 1)
+        return false;
+      else if (position == 0)
+        before = '\0';
+      else
+        before = firstNonQuote(buff, position);
+
+      after = lastNonQuote(buff, position);
+
+      if (Character.isWhitespace(after) || isPunctuation(after))
+        return false;
+
+      if (Character.isLetterOrDigit(before))
+        return false;
+
+      // русский авось всегда спасет. авось прокатит :)
+      return true;
+    }
+
+    private boolean isQuoteClosing(String buff, int position) {
+      char before, after;
+
+      if (position == 0 && localBuff.equals(""))
+        return false;
+      else if (position == buff.length() - 1)
+        return true;
+
+      after = lastNonQuote(buff, position);
+
+      if (position == 0)
+        before = firstNonQuote(localBuff, localBuff.length());
+      else
+        before = firstNonQuote(buff, position);
+
+      if (isQuoteChar(before))
+        return false;
+
+      if (Character.isLetterOrDigit(after))
+        return false;
+
+      return true;
+    }
+
+    /**
+     * Делает всякие типографичские штучки (тире и кавычки).
+     *
+     * @param input
+     * @return форматированный текст
+     */
+
+    public String format(String input) {
+
+      StringBuffer buff = new StringBuffer(input.replaceAll("&quot;", "\""));
+
+      for (int iter = 0; iter < buff.length(); iter++) {
+        if (buff.charAt(iter) == QUOTE_SYMBOL) {
+          if (isQuoteClosing(buff.toString(), iter) && quoteDepth > 0) {
+            if (quoteDepth == 1)
+              buff.setCharAt(iter, QUOTE_OUT_CLOSE);
+            else
+              buff.setCharAt(iter, QUOTE_IN_CLOSE);
+            quoteDepth--;
+          }
+          else
+          if (isQuoteOpening(buff.toString(), iter)) { //убеждаемся, что всё так
+            if (quoteDepth == 0)
+              buff.setCharAt(iter, QUOTE_OUT_OPEN);
+            else
+              buff.setCharAt(iter, QUOTE_IN_OPEN);
+            quoteDepth++;
+          }
+
+        }
+
+      }
+
+      localBuff = buff.toString();
+      input = buff.toString().replaceAll("(''|\")", "&quot;");
+
+      input = input.replaceAll(Character.toString(QUOTE_IN_OPEN), QUOTE_IN_OPEN_HTML);
+      input = input.replaceAll(Character.toString(QUOTE_IN_CLOSE), QUOTE_IN_CLOSE_HTML);
+      input = input.replaceAll(Character.toString(QUOTE_OUT_OPEN), QUOTE_OUT_OPEN_HTML);
+      input = input.replaceAll(Character.toString(QUOTE_OUT_CLOSE), QUOTE_OUT_CLOSE_HTML);
+
+      return input;
+    }
+  }
+}